@@ -0,0 +1,89 @@
+package com.yupi.yurpc;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * RPC 调用上下文（线程级）
+ * 消费端在调用前设置附件，当前线程之后发出的请求都会在消息头中带上这些附件，直到被移除；
+ * 服务端处理请求期间，上下文中为请求携带的附件，服务实现中发起的下游调用会继续传递
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航学习圈</a>
+ */
+public class RpcContext {
+
+    /**
+     * 当前线程的附件，修改时整体替换，发送请求时可以直接引用，不需要复制
+     */
+    private static final ThreadLocal<Map<String, String>> ATTACHMENTS =
+            ThreadLocal.withInitial(Collections::emptyMap);
+
+    /**
+     * 获取附件
+     *
+     * @param key
+     * @return
+     */
+    public static String getAttachment(String key) {
+        return ATTACHMENTS.get().get(key);
+    }
+
+    /**
+     * 设置附件
+     *
+     * @param key
+     * @param value
+     */
+    public static void setAttachment(String key, String value) {
+        Map<String, String> attachments = new LinkedHashMap<>(ATTACHMENTS.get());
+        attachments.put(key, value);
+        ATTACHMENTS.set(Collections.unmodifiableMap(attachments));
+    }
+
+    /**
+     * 移除附件
+     *
+     * @param key
+     */
+    public static void removeAttachment(String key) {
+        Map<String, String> current = ATTACHMENTS.get();
+        if (!current.containsKey(key)) {
+            return;
+        }
+        Map<String, String> attachments = new LinkedHashMap<>(current);
+        attachments.remove(key);
+        ATTACHMENTS.set(attachments.isEmpty() ? Collections.emptyMap() : Collections.unmodifiableMap(attachments));
+    }
+
+    /**
+     * 获取当前线程的所有附件（只读）
+     *
+     * @return
+     */
+    public static Map<String, String> getAttachments() {
+        return ATTACHMENTS.get();
+    }
+
+    /**
+     * 整体替换当前线程的附件（服务端处理请求前设置，处理完成后恢复）
+     *
+     * @param attachments
+     * @return 替换前的附件
+     */
+    public static Map<String, String> setAttachments(Map<String, String> attachments) {
+        Map<String, String> previous = ATTACHMENTS.get();
+        ATTACHMENTS.set(attachments == null || attachments.isEmpty()
+                ? Collections.emptyMap() : Collections.unmodifiableMap(attachments));
+        return previous;
+    }
+
+    /**
+     * 清空当前线程的附件
+     */
+    public static void clearAttachments() {
+        ATTACHMENTS.remove();
+    }
+}
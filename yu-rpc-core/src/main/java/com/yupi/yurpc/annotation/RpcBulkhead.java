@@ -0,0 +1,44 @@
+package com.yupi.yurpc.annotation;
+
+import com.yupi.yurpc.server.bulkhead.BulkheadKeys;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 舱壁隔离注解（标注在服务实现类或其方法上）
+ * 标注的服务或方法使用独立的并发名额和队列，过载时只拒绝自身的请求，不占用其他服务的处理能力；
+ * 方法上的配置优先于类上的配置，同名的重载方法共用一个舱壁
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航学习圈</a>
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.METHOD})
+public @interface RpcBulkhead {
+
+    /**
+     * 隔离方式，见 {@link BulkheadKeys}
+     */
+    String type() default BulkheadKeys.THREAD_POOL;
+
+    /**
+     * 最大并发数（线程池的线程数或信号量的许可数）
+     */
+    int maxConcurrency() default 10;
+
+    /**
+     * 等待队列长度（仅线程池）
+     */
+    int queueSize() default 100;
+
+    /**
+     * 拒绝策略，见 {@link BulkheadKeys}
+     */
+    String rejectionPolicy() default BulkheadKeys.ABORT;
+}
@@ -0,0 +1,37 @@
+package com.yupi.yurpc.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 响应缓存注解（标注在服务接口的幂等读方法上）
+ * 消费端按服务、方法和参数缓存成功的返回值，命中时不发起远程调用；
+ * 缓存的返回值被所有调用方共享，调用方不应修改它
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航学习圈</a>
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface RpcCacheable {
+
+    /**
+     * 写入后的过期时间（毫秒）
+     */
+    long ttl() default 60000;
+
+    /**
+     * 最大缓存条数，超出后按 W-TinyLFU 淘汰
+     */
+    long maximumSize() default 10000;
+
+    /**
+     * 是否监听注册中心的缓存版本（仅 Etcd），服务提供者调用 EtcdRegistry.bumpCacheVersion 后清空该服务的缓存
+     */
+    boolean registryInvalidation() default false;
+}
@@ -0,0 +1,22 @@
+package com.yupi.yurpc.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 请求合并注解（标注在服务接口的读方法上）
+ * 同一服务引用上方法和参数都相同的并发调用只发起一次远程调用，所有调用方共享同一个结果对象，
+ * 因此只适用于无副作用、不会修改返回值的方法；参数按 equals/hashCode 比较
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航学习圈</a>
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface RpcCoalesce {
+}
@@ -0,0 +1,25 @@
+package com.yupi.yurpc.annotation;
+
+import com.yupi.yurpc.protocol.ProtocolMessagePriorityEnum;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 调用优先级注解（标注在服务接口的方法上，优先于服务引用配置的优先级）
+ * 服务提供者开启优先级调度后，交互请求先于批处理请求处理，过载时批处理请求最先被丢弃
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航学习圈</a>
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface RpcPriority {
+
+    ProtocolMessagePriorityEnum value();
+}
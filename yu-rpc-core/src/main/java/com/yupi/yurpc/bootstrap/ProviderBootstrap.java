@@ -43,6 +43,11 @@ public class ProviderBootstrap {
             serviceMetaInfo.setServiceName(serviceName);
             serviceMetaInfo.setServiceHost(rpcConfig.getServerHost());
             serviceMetaInfo.setServicePort(rpcConfig.getServerPort());
+            serviceMetaInfo.setWeight(rpcConfig.getServiceWeight());
+            serviceMetaInfo.setWarmup(rpcConfig.getServiceWarmup());
+            serviceMetaInfo.setRegisterTime(System.currentTimeMillis());
+            serviceMetaInfo.setZone(rpcConfig.getZone());
+            serviceMetaInfo.setRegion(rpcConfig.getRegion());
             try {
                 registry.register(serviceMetaInfo);
             } catch (Exception e) {
@@ -0,0 +1,51 @@
+package com.yupi.yurpc.config;
+
+import com.yupi.yurpc.annotation.RpcBulkhead;
+import com.yupi.yurpc.server.bulkhead.BulkheadKeys;
+import lombok.Data;
+
+/**
+ * 舱壁隔离配置
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航学习圈</a>
+ */
+@Data
+public class BulkheadConfig {
+
+    /**
+     * 隔离方式
+     */
+    private String type = BulkheadKeys.THREAD_POOL;
+
+    /**
+     * 最大并发数（线程池的线程数或信号量的许可数）
+     */
+    private int maxConcurrency = 10;
+
+    /**
+     * 等待队列长度（仅线程池）
+     */
+    private int queueSize = 100;
+
+    /**
+     * 拒绝策略
+     */
+    private String rejectionPolicy = BulkheadKeys.ABORT;
+
+    /**
+     * 从注解创建配置
+     *
+     * @param rpcBulkhead
+     * @return
+     */
+    public static BulkheadConfig of(RpcBulkhead rpcBulkhead) {
+        BulkheadConfig bulkheadConfig = new BulkheadConfig();
+        bulkheadConfig.setType(rpcBulkhead.type());
+        bulkheadConfig.setMaxConcurrency(rpcBulkhead.maxConcurrency());
+        bulkheadConfig.setQueueSize(rpcBulkhead.queueSize());
+        bulkheadConfig.setRejectionPolicy(rpcBulkhead.rejectionPolicy());
+        return bulkheadConfig;
+    }
+}
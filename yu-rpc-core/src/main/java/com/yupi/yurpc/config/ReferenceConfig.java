@@ -0,0 +1,59 @@
+package com.yupi.yurpc.config;
+
+import com.yupi.yurpc.constant.RpcConstant;
+import lombok.Data;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * 服务引用配置（单个服务引用的调用设置）
+ * 为空的字段继承全局配置 RpcConfig，在创建代理时一次性解析
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航学习圈</a>
+ */
+@Data
+public class ReferenceConfig {
+
+    /**
+     * 服务版本
+     */
+    private String serviceVersion = RpcConstant.DEFAULT_SERVICE_VERSION;
+
+    /**
+     * 负载均衡器
+     */
+    private String loadBalancer;
+
+    /**
+     * 重试策略
+     */
+    private String retryStrategy;
+
+    /**
+     * 容错策略
+     */
+    private String tolerantStrategy;
+
+    /**
+     * 模拟调用（全局开启时所有引用都使用模拟调用）
+     */
+    private boolean mock = false;
+
+    /**
+     * 直连地址，不为空时绕过注册中心
+     */
+    private String directUrl;
+
+    /**
+     * 需要合并相同参数并发调用的方法名（与方法上的 @RpcCoalesce 效果相同）
+     */
+    private Set<String> coalesceMethods = Collections.emptySet();
+
+    /**
+     * 调用优先级：interactive、normal、batch（方法上的 @RpcPriority 优先）
+     */
+    private String priority;
+}
@@ -37,4 +37,15 @@ public class RegistryConfig {
      * 超时时间（单位毫秒）
      */
     private Long timeout = 10000L;
+
+    /**
+     * 服务发现本地快照文件路径（为空则不开启）
+     * 启动时先从快照恢复服务列表，注册中心不可用时作为兜底
+     */
+    private String snapshotFile;
+
+    /**
+     * 本地快照保存间隔（单位毫秒）
+     */
+    private Long snapshotInterval = 30000L;
 }
@@ -1,11 +1,17 @@
 package com.yupi.yurpc.config;
 
+import com.yupi.yurpc.constant.RpcConstant;
 import com.yupi.yurpc.fault.retry.RetryStrategyKeys;
 import com.yupi.yurpc.fault.tolerant.TolerantStrategyKeys;
 import com.yupi.yurpc.loadbalancer.LoadBalancerKeys;
+import com.yupi.yurpc.proxy.ProxyKeys;
 import com.yupi.yurpc.serializer.SerializerKeys;
+import com.yupi.yurpc.trace.SpanExporterKeys;
 import lombok.Data;
 
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * RPC 框架全局配置
  *
@@ -36,6 +42,46 @@ public class RpcConfig {
      */
     private Integer serverPort = 8999;
 
+    /**
+     * 服务权重（服务注册时发布）
+     */
+    private Integer serviceWeight = RpcConstant.DEFAULT_SERVICE_WEIGHT;
+
+    /**
+     * 服务预热时长（毫秒，服务注册时发布）
+     */
+    private Long serviceWarmup = RpcConstant.DEFAULT_SERVICE_WARMUP;
+
+    /**
+     * 所在可用区（服务注册时发布，消费端优先调用同可用区的节点）
+     */
+    private String zone;
+
+    /**
+     * 所在地域
+     */
+    private String region;
+
+    /**
+     * 同区域路由：本区域健康节点占比低于该值时溢出到其他区域
+     */
+    private double zoneMinHealthyRatio = 0.7;
+
+    /**
+     * 同区域路由：本区域节点权重占全部节点权重的比例低于该值时溢出到其他区域
+     */
+    private double zoneMinCapacityRatio = 0.1;
+
+    /**
+     * 确定性子集大小：每个服务只使用其中固定的若干个提供者，小于等于 0 表示使用全部提供者
+     */
+    private int subsetSize = 0;
+
+    /**
+     * 确定性子集的消费端 ID（为空时使用本机地址 + 进程号），固定该值可在重启后保持相同的子集
+     */
+    private String subsetClientId;
+
     /**
      * 序列化器
      */
@@ -61,11 +107,86 @@ public class RpcConfig {
      */
     private boolean mock = false;
 
+    /**
+     * 服务代理类型（jdk 动态代理或 bytebuddy 生成的服务桩类）
+     */
+    private String proxy = ProxyKeys.JDK;
+
     /**
      * 注册中心配置
      */
     private RegistryConfig registryConfig = new RegistryConfig();
 
+    /**
+     * 请求超时时间（毫秒），超时未收到响应的请求以超时异常结束
+     */
+    private long requestTimeout = 30000;
+
+    /**
+     * 是否合并发往同一连接的请求，批量发送（一个协议帧）
+     */
+    private boolean batchEnabled = false;
+
+    /**
+     * 每批最多请求数
+     */
+    private int batchMaxSize = 32;
+
+    /**
+     * 等待凑批的最长时间（毫秒），为 0 时在当前事件循环轮次结束时发送
+     */
+    private long batchMaxDelay = 0;
+
+    /**
+     * 是否合并同一事件循环轮次内对同一连接的写入，一次刷出
+     */
+    private boolean writeCoalesce = true;
+
+    /**
+     * 是否开启服务端自适应并发限制，超过上限的请求直接以过载状态拒绝
+     */
+    private boolean concurrencyLimitEnabled = false;
+
+    /**
+     * 每个服务的初始并发上限
+     */
+    private int concurrencyLimitInitial = 20;
+
+    /**
+     * 每个服务的最大并发上限
+     */
+    private int concurrencyLimitMax = 1000;
+
+    /**
+     * 是否所有请求都按优先级在业务线程池中调度（关闭时只有批量请求和开启并发限制的请求进入业务线程池）
+     */
+    private boolean prioritySchedulingEnabled = false;
+
+    /**
+     * 业务线程池的排队容量，接近容量时按优先级从低到高丢弃请求
+     */
+    private int workerQueueCapacity = 10000;
+
+    /**
+     * 舱壁隔离配置：服务名或 服务名#方法名 => 配置（优先于服务实现类上的 @RpcBulkhead 注解）
+     */
+    private Map<String, BulkheadConfig> bulkheads = new HashMap<>();
+
+    /**
+     * 链路追踪采样率（0 ~ 1，只决定新链路是否采样，带有上游链路上下文的请求跟随上游的采样决定），默认不采样
+     */
+    private double traceSampleRatio = 0;
+
+    /**
+     * 跨度导出器
+     */
+    private String traceExporter = SpanExporterKeys.MEMORY;
+
+    /**
+     * OTLP JSON 文件导出器写入的文件
+     */
+    private String traceExportFile = "yu-rpc-spans.jsonl";
+
     /**
      * 是否启用异步调用
      */
@@ -19,4 +19,14 @@ public interface RpcConstant {
      */
     String DEFAULT_SERVICE_VERSION = "1.0";
 
+    /**
+     * 默认服务权重
+     */
+    int DEFAULT_SERVICE_WEIGHT = 100;
+
+    /**
+     * 默认服务预热时长（毫秒）
+     */
+    long DEFAULT_SERVICE_WARMUP = 60 * 1000L;
+
 }
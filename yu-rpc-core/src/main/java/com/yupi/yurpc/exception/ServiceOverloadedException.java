@@ -0,0 +1,16 @@
+package com.yupi.yurpc.exception;
+
+/**
+ * 服务过载异常（服务提供者拒绝了请求，请求未被处理，可以安全地转移到其他节点）
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航学习圈</a>
+ */
+public class ServiceOverloadedException extends RpcException {
+
+    public ServiceOverloadedException(String message) {
+        super(message);
+    }
+
+}
@@ -11,15 +11,6 @@ import com.yupi.yurpc.spi.SpiLoader;
  */
 public class RetryStrategyFactory {
 
-    static {
-        SpiLoader.load(RetryStrategy.class);
-    }
-
-    /**
-     * 默认重试器
-     */
-    private static final RetryStrategy DEFAULT_RETRY_STRATEGY = new NoRetryStrategy();
-
     /**
      * 获取实例
      *
@@ -11,15 +11,6 @@ import com.yupi.yurpc.spi.SpiLoader;
  */
 public class TolerantStrategyFactory {
 
-    static {
-        SpiLoader.load(TolerantStrategy.class);
-    }
-
-    /**
-     * 默认容错策略
-     */
-    private static final TolerantStrategy DEFAULT_RETRY_STRATEGY = new FailFastTolerantStrategy();
-
     /**
      * 获取实例
      *
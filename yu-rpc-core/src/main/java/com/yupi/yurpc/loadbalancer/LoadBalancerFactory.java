@@ -11,15 +11,6 @@ import com.yupi.yurpc.spi.SpiLoader;
  */
 public class LoadBalancerFactory {
 
-    static {
-        SpiLoader.load(LoadBalancer.class);
-    }
-
-    /**
-     * 默认负载均衡器
-     */
-    private static final LoadBalancer DEFAULT_LOAD_BALANCER = new RoundRobinLoadBalancer();
-
     /**
      * 获取实例
      *
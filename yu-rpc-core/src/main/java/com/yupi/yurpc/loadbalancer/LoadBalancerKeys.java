@@ -18,4 +18,14 @@ public interface LoadBalancerKeys {
 
     String CONSISTENT_HASH = "consistentHash";
 
+    /**
+     * 平滑加权轮询
+     */
+    String WEIGHTED_ROUND_ROBIN = "weightedRoundRobin";
+
+    /**
+     * 两次随机选择 + EWMA 延迟
+     */
+    String P2C_EWMA = "p2cEwma";
+
 }
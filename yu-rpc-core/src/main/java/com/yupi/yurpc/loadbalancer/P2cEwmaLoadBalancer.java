@@ -0,0 +1,42 @@
+package com.yupi.yurpc.loadbalancer;
+
+import com.yupi.yurpc.model.ServiceMetaInfo;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 两次随机选择（Power of Two Choices）负载均衡器
+ * 随机取两个节点，选择 EWMA 延迟与并发数综合代价更低的一个
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航学习圈</a>
+ */
+public class P2cEwmaLoadBalancer implements LoadBalancer {
+
+    @Override
+    public ServiceMetaInfo select(Map<String, Object> requestParams, List<ServiceMetaInfo> serviceMetaInfoList) {
+        int size = serviceMetaInfoList.size();
+        if (size == 0) {
+            return null;
+        }
+        // 只有 1 个服务，无需比较
+        if (size == 1) {
+            return serviceMetaInfoList.get(0);
+        }
+        // 随机取两个不同的下标
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(size);
+        int second = random.nextInt(size - 1);
+        if (second >= first) {
+            second++;
+        }
+        ServiceMetaInfo firstServiceMetaInfo = serviceMetaInfoList.get(first);
+        ServiceMetaInfo secondServiceMetaInfo = serviceMetaInfoList.get(second);
+        double firstCost = ServiceNodeStats.of(firstServiceMetaInfo).getCost();
+        double secondCost = ServiceNodeStats.of(secondServiceMetaInfo).getCost();
+        return firstCost <= secondCost ? firstServiceMetaInfo : secondServiceMetaInfo;
+    }
+}
@@ -0,0 +1,166 @@
+package com.yupi.yurpc.loadbalancer;
+
+import com.yupi.yurpc.model.ServiceMetaInfo;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 服务节点调用统计（消费端使用）
+ * 记录每个服务节点的并发调用数和时间衰减的 EWMA 延迟，供负载均衡器计算节点代价
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航学习圈</a>
+ */
+public class ServiceNodeStats {
+
+    /**
+     * 节点统计表：服务节点键名 => 统计信息，节点从服务发现中下线时移除
+     * 不用整个节点信息作为键，节点元信息（权重、标签等）变化时仍沿用原来的统计
+     */
+    private static final Map<String, ServiceNodeStats> STATS_MAP = new ConcurrentHashMap<>();
+
+    /**
+     * EWMA 衰减时间常数（纳秒），样本权重每经过该时长衰减为 1/e
+     */
+    private static final double DECAY_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    /**
+     * 调用失败时记入的延迟惩罚（纳秒）
+     */
+    private static final long FAILURE_PENALTY_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * 连续失败多少次后视为不健康
+     */
+    private static final int UNHEALTHY_CONSECUTIVE_FAILURES = 3;
+
+    /**
+     * 当前并发调用数
+     */
+    private final AtomicInteger inflight = new AtomicInteger();
+
+    /**
+     * 连续失败次数
+     */
+    private volatile int consecutiveFailures;
+
+    /**
+     * EWMA 延迟（纳秒），0 表示还没有样本
+     */
+    private volatile double ewmaNanos;
+
+    /**
+     * 最近一次样本的时间戳（纳秒）
+     */
+    private volatile long lastSampleNanos = System.nanoTime();
+
+    /**
+     * 获取服务节点的统计信息
+     *
+     * @param serviceMetaInfo 服务节点
+     * @return
+     */
+    public static ServiceNodeStats of(ServiceMetaInfo serviceMetaInfo) {
+        return of(serviceMetaInfo.getServiceNodeKey());
+    }
+
+    /**
+     * 获取服务节点的统计信息
+     *
+     * @param serviceNodeKey 服务节点键名
+     * @return
+     */
+    public static ServiceNodeStats of(String serviceNodeKey) {
+        // 先无锁读取，命中时不走 computeIfAbsent
+        ServiceNodeStats stats = STATS_MAP.get(serviceNodeKey);
+        if (stats == null) {
+            stats = STATS_MAP.computeIfAbsent(serviceNodeKey, key -> new ServiceNodeStats());
+        }
+        return stats;
+    }
+
+    /**
+     * 移除服务节点的统计信息（节点从服务发现中下线时调用）
+     *
+     * @param serviceNodeKey 服务节点键名
+     */
+    public static void remove(String serviceNodeKey) {
+        STATS_MAP.remove(serviceNodeKey);
+    }
+
+    /**
+     * 开始一次调用
+     *
+     * @return 调用开始时间（纳秒）
+     */
+    public long begin() {
+        inflight.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    /**
+     * 结束一次调用，记录延迟样本
+     *
+     * @param startNanos 调用开始时间（纳秒）
+     * @param success    是否成功
+     */
+    public void end(long startNanos, boolean success) {
+        long now = System.nanoTime();
+        inflight.decrementAndGet();
+        long rtt = now - startNanos;
+        if (!success) {
+            rtt = Math.max(rtt, FAILURE_PENALTY_NANOS);
+        }
+        synchronized (this) {
+            consecutiveFailures = success ? 0 : consecutiveFailures + 1;
+            double current = ewmaNanos;
+            if (current == 0 || rtt > current) {
+                // 首个样本或出现更慢的样本，立即跟随峰值，尽快把流量从慢节点挪走
+                ewmaNanos = rtt;
+            } else {
+                double weight = Math.exp(-(now - lastSampleNanos) / DECAY_NANOS);
+                ewmaNanos = current * weight + rtt * (1 - weight);
+            }
+            lastSampleNanos = now;
+        }
+    }
+
+    /**
+     * 获取节点代价（EWMA 延迟 * (并发数 + 1)），越小越优
+     *
+     * @return
+     */
+    public double getCost() {
+        int pending = inflight.get();
+        double ewma = ewmaNanos;
+        if (ewma == 0) {
+            // 没有样本的新节点：空闲时优先探测，有在途请求时按惩罚值计算
+            return pending == 0 ? 0 : (double) FAILURE_PENALTY_NANOS * (pending + 1);
+        }
+        // 读取时按空闲时长衰减，长时间没被选中的节点可以重新获得流量
+        double weight = Math.exp(-(System.nanoTime() - lastSampleNanos) / DECAY_NANOS);
+        return ewma * weight * (pending + 1);
+    }
+
+    /**
+     * 节点是否健康（最近没有连续失败）
+     *
+     * @return
+     */
+    public boolean isHealthy() {
+        return consecutiveFailures < UNHEALTHY_CONSECUTIVE_FAILURES;
+    }
+
+    /**
+     * 获取当前并发调用数
+     *
+     * @return
+     */
+    public int getInflight() {
+        return inflight.get();
+    }
+}
@@ -0,0 +1,110 @@
+package com.yupi.yurpc.loadbalancer;
+
+import com.yupi.yurpc.model.ServiceMetaInfo;
+import com.yupi.yurpc.utils.WeightUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 平滑加权轮询负载均衡器（nginx 风格）
+ * 每次选择时所有节点的当前权重加上各自的有效权重，选出当前权重最大的节点，再减去总权重，
+ * 使高权重节点的流量均匀地穿插在请求序列中，而不是连续突发
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航学习圈</a>
+ */
+public class WeightedRoundRobinLoadBalancer implements LoadBalancer {
+
+    /**
+     * 长时间未被选择的节点状态回收周期（毫秒）
+     */
+    private static final long RECYCLE_PERIOD = 60 * 1000L;
+
+    /**
+     * 节点当前权重：服务节点 => 当前权重
+     */
+    private final Map<ServiceMetaInfo, WeightedNode> weightedNodeMap = new ConcurrentHashMap<>();
+
+    /**
+     * 下次回收时间
+     */
+    private final AtomicLong nextRecycleTime = new AtomicLong(System.currentTimeMillis() + RECYCLE_PERIOD);
+
+    @Override
+    public ServiceMetaInfo select(Map<String, Object> requestParams, List<ServiceMetaInfo> serviceMetaInfoList) {
+        int size = serviceMetaInfoList.size();
+        if (size == 0) {
+            return null;
+        }
+        // 只有一个服务，无需轮询
+        if (size == 1) {
+            return serviceMetaInfoList.get(0);
+        }
+        long now = System.currentTimeMillis();
+        long totalWeight = 0;
+        long maxCurrent = Long.MIN_VALUE;
+        ServiceMetaInfo selectedServiceMetaInfo = null;
+        WeightedNode selectedNode = null;
+        for (int i = 0; i < size; i++) {
+            ServiceMetaInfo serviceMetaInfo = serviceMetaInfoList.get(i);
+            int weight = WeightUtils.getWarmupWeight(serviceMetaInfo, now);
+            WeightedNode weightedNode = getWeightedNode(serviceMetaInfo);
+            long current = weightedNode.increaseCurrent(weight, now);
+            totalWeight += weight;
+            if (current > maxCurrent) {
+                maxCurrent = current;
+                selectedServiceMetaInfo = serviceMetaInfo;
+                selectedNode = weightedNode;
+            }
+        }
+        selectedNode.current.addAndGet(-totalWeight);
+        recycle(now);
+        return selectedServiceMetaInfo;
+    }
+
+    private WeightedNode getWeightedNode(ServiceMetaInfo serviceMetaInfo) {
+        WeightedNode weightedNode = weightedNodeMap.get(serviceMetaInfo);
+        if (weightedNode == null) {
+            weightedNode = weightedNodeMap.computeIfAbsent(serviceMetaInfo, key -> new WeightedNode());
+        }
+        return weightedNode;
+    }
+
+    /**
+     * 回收已下线节点的状态
+     *
+     * @param now
+     */
+    private void recycle(long now) {
+        long recycleTime = nextRecycleTime.get();
+        if (now < recycleTime || !nextRecycleTime.compareAndSet(recycleTime, now + RECYCLE_PERIOD)) {
+            return;
+        }
+        weightedNodeMap.values().removeIf(weightedNode -> now - weightedNode.lastUpdateTime > RECYCLE_PERIOD);
+    }
+
+    /**
+     * 节点的轮询状态
+     */
+    private static class WeightedNode {
+
+        /**
+         * 当前权重
+         */
+        private final AtomicLong current = new AtomicLong();
+
+        /**
+         * 最近一次参与选择的时间
+         */
+        private volatile long lastUpdateTime;
+
+        long increaseCurrent(int weight, long now) {
+            lastUpdateTime = now;
+            return current.addAndGet(weight);
+        }
+    }
+}
@@ -39,6 +39,31 @@ public class ServiceMetaInfo {
      */
     private String serviceGroup = "default";
 
+    /**
+     * 所在可用区
+     */
+    private String zone;
+
+    /**
+     * 所在地域
+     */
+    private String region;
+
+    /**
+     * 服务权重
+     */
+    private Integer weight = RpcConstant.DEFAULT_SERVICE_WEIGHT;
+
+    /**
+     * 预热时长（毫秒），注册后在该时长内权重从小逐步升到 weight
+     */
+    private Long warmup = RpcConstant.DEFAULT_SERVICE_WARMUP;
+
+    /**
+     * 注册时间戳（毫秒）
+     */
+    private Long registerTime;
+
     /**
      * 获取服务键名
      *
@@ -23,4 +23,31 @@ public interface ProtocolConstant {
      * 协议版本号
      */
     byte PROTOCOL_VERSION = 0x1;
+
+    /**
+     * 带扩展头的协议版本号：消息体前依次为 2 字节扩展头长度和扩展头，二者计入消息体长度，
+     * 只在需要扩展头时使用，不需要时仍按版本 1 发送，兼容旧的服务提供者
+     * 扩展头依次为 1 字节优先级和若干个附件，每个附件为 1 字节键长度、键、2 字节值长度、值（UTF-8）
+     */
+    byte PROTOCOL_VERSION_EXTENDED = 0x2;
+
+    /**
+     * 扩展头长度字段的字节数
+     */
+    int EXTENSION_LENGTH_FIELD_LENGTH = 2;
+
+    /**
+     * 扩展头最大长度
+     */
+    int EXTENSION_MAX_LENGTH = 0xFFFF;
+
+    /**
+     * 附件键最大长度（字节）
+     */
+    int ATTACHMENT_KEY_MAX_LENGTH = 0xFF;
+
+    /**
+     * 附件值最大长度（字节）
+     */
+    int ATTACHMENT_VALUE_MAX_LENGTH = 0xFFFF;
 }
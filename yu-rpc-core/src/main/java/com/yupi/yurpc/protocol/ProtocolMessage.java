@@ -4,6 +4,9 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.Collections;
+import java.util.Map;
+
 /**
  * 协议消息结构
  *
@@ -63,9 +66,19 @@ public class ProtocolMessage<T> {
         private long requestId;
 
         /**
-         * 消息体长度
+         * 消息体长度（版本 2 包括扩展头长度字段和扩展头）
          */
         private int bodyLength;
+
+        /**
+         * 优先级（版本 2 扩展头，不在固定的 17 字节消息头中）
+         */
+        private byte priority = (byte) ProtocolMessagePriorityEnum.NORMAL.getValue();
+
+        /**
+         * 附件（版本 2 扩展头，如链路追踪、租户等元数据，不需要反序列化消息体就能读取），整体替换，不要原地修改
+         */
+        private Map<String, String> attachments = Collections.emptyMap();
     }
 
 }
@@ -7,6 +7,8 @@ import com.yupi.yurpc.serializer.SerializerFactory;
 import io.vertx.core.buffer.Buffer;
 
 import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * 协议消息解码器
@@ -25,22 +27,13 @@ public class ProtocolMessageDecoder {
      * @throws IOException
      */
     public static ProtocolMessage<?> decode(Buffer buffer) throws IOException {
-        // 分别从指定位置读出 Buffer
-        ProtocolMessage.Header header = new ProtocolMessage.Header();
-        byte magic = buffer.getByte(0);
-        // 校验魔数
-        if (magic != ProtocolConstant.PROTOCOL_MAGIC) {
-            throw new RuntimeException("消息 magic 非法");
+        ProtocolMessage.Header header = decodeHeader(buffer);
+        int bodyStart = ProtocolConstant.MESSAGE_HEADER_LENGTH;
+        if (header.getVersion() >= ProtocolConstant.PROTOCOL_VERSION_EXTENDED) {
+            bodyStart += ProtocolConstant.EXTENSION_LENGTH_FIELD_LENGTH + buffer.getUnsignedShort(bodyStart);
         }
-        header.setMagic(magic);
-        header.setVersion(buffer.getByte(1));
-        header.setSerializer(buffer.getByte(2));
-        header.setType(buffer.getByte(3));
-        header.setStatus(buffer.getByte(4));
-        header.setRequestId(buffer.getLong(5));
-        header.setBodyLength(buffer.getInt(13));
         // 解决粘包问题，只读指定长度的数据
-        byte[] bodyBytes = buffer.getBytes(17, 17 + header.getBodyLength());
+        byte[] bodyBytes = buffer.getBytes(bodyStart, ProtocolConstant.MESSAGE_HEADER_LENGTH + header.getBodyLength());
         // 解析消息体
         ProtocolMessageSerializerEnum serializerEnum = ProtocolMessageSerializerEnum.getEnumByKey(header.getSerializer());
         if (serializerEnum == null) {
@@ -58,6 +51,12 @@ public class ProtocolMessageDecoder {
             case RESPONSE:
                 RpcResponse response = serializer.deserialize(bodyBytes, RpcResponse.class);
                 return new ProtocolMessage<>(header, response);
+            case BATCH_REQUEST:
+                RpcRequest[] requests = serializer.deserialize(bodyBytes, RpcRequest[].class);
+                return new ProtocolMessage<>(header, requests);
+            case BATCH_RESPONSE:
+                RpcResponse[] responses = serializer.deserialize(bodyBytes, RpcResponse[].class);
+                return new ProtocolMessage<>(header, responses);
             case HEART_BEAT:
             case OTHERS:
             default:
@@ -65,4 +64,70 @@ public class ProtocolMessageDecoder {
         }
     }
 
+    /**
+     * 只解码消息头（包括版本 2 扩展头中的优先级和附件），不反序列化消息体，可用于路由、过滤等只需要元数据的场景
+     *
+     * @param buffer
+     * @return
+     */
+    public static ProtocolMessage.Header decodeHeader(Buffer buffer) {
+        // 分别从指定位置读出 Buffer
+        ProtocolMessage.Header header = new ProtocolMessage.Header();
+        byte magic = buffer.getByte(0);
+        // 校验魔数
+        if (magic != ProtocolConstant.PROTOCOL_MAGIC) {
+            throw new RuntimeException("消息 magic 非法");
+        }
+        header.setMagic(magic);
+        header.setVersion(buffer.getByte(1));
+        header.setSerializer(buffer.getByte(2));
+        header.setType(buffer.getByte(3));
+        header.setStatus(buffer.getByte(4));
+        header.setRequestId(buffer.getLong(5));
+        header.setBodyLength(buffer.getInt(13));
+        if (header.getVersion() >= ProtocolConstant.PROTOCOL_VERSION_EXTENDED) {
+            decodeExtension(buffer, header);
+        }
+        return header;
+    }
+
+    /**
+     * 解码版本 2 扩展头：1 字节优先级，之后为附件，附件之后不认识的字节直接跳过
+     *
+     * @param buffer
+     * @param header
+     */
+    private static void decodeExtension(Buffer buffer, ProtocolMessage.Header header) {
+        int position = ProtocolConstant.MESSAGE_HEADER_LENGTH;
+        int extensionEnd = position + ProtocolConstant.EXTENSION_LENGTH_FIELD_LENGTH + buffer.getUnsignedShort(position);
+        position += ProtocolConstant.EXTENSION_LENGTH_FIELD_LENGTH;
+        if (position >= extensionEnd) {
+            return;
+        }
+        header.setPriority(buffer.getByte(position++));
+        Map<String, String> attachments = null;
+        // 至少还有 1 字节键长度和 2 字节值长度
+        while (position + 3 <= extensionEnd) {
+            int keyLength = buffer.getUnsignedByte(position);
+            int valueLengthPosition = position + 1 + keyLength;
+            if (keyLength == 0 || valueLengthPosition + 2 > extensionEnd) {
+                break;
+            }
+            int valueLength = buffer.getUnsignedShort(valueLengthPosition);
+            int valueEnd = valueLengthPosition + 2 + valueLength;
+            if (valueEnd > extensionEnd) {
+                break;
+            }
+            if (attachments == null) {
+                attachments = new LinkedHashMap<>();
+            }
+            attachments.put(buffer.getString(position + 1, valueLengthPosition, "UTF-8"),
+                    buffer.getString(valueLengthPosition + 2, valueEnd, "UTF-8"));
+            position = valueEnd;
+        }
+        if (attachments != null) {
+            header.setAttachments(attachments);
+        }
+    }
+
 }
@@ -2,9 +2,12 @@ package com.yupi.yurpc.protocol;
 
 import com.yupi.yurpc.serializer.Serializer;
 import com.yupi.yurpc.serializer.SerializerFactory;
+import io.netty.buffer.Unpooled;
 import io.vertx.core.buffer.Buffer;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
 
 /**
  * 协议消息编码器
@@ -27,14 +30,6 @@ public class ProtocolMessageEncoder {
             return Buffer.buffer();
         }
         ProtocolMessage.Header header = protocolMessage.getHeader();
-        // 依次向缓冲区写入字节
-        Buffer buffer = Buffer.buffer();
-        buffer.appendByte(header.getMagic());
-        buffer.appendByte(header.getVersion());
-        buffer.appendByte(header.getSerializer());
-        buffer.appendByte(header.getType());
-        buffer.appendByte(header.getStatus());
-        buffer.appendLong(header.getRequestId());
         // 获取序列化器
         ProtocolMessageSerializerEnum serializerEnum = ProtocolMessageSerializerEnum.getEnumByKey(header.getSerializer());
         if (serializerEnum == null) {
@@ -42,9 +37,56 @@ public class ProtocolMessageEncoder {
         }
         Serializer serializer = SerializerFactory.getInstance(serializerEnum.getValue());
         byte[] bodyBytes = serializer.serialize(protocolMessage.getBody());
-        // 写入 body 长度和数据
-        buffer.appendInt(bodyBytes.length);
-        buffer.appendBytes(bodyBytes);
-        return buffer;
+        // 版本 2 的扩展头：优先级和附件
+        Buffer extensionBuffer = header.getVersion() >= ProtocolConstant.PROTOCOL_VERSION_EXTENDED
+                ? encodeExtension(header) : null;
+        int extensionLength = extensionBuffer == null ? 0
+                : ProtocolConstant.EXTENSION_LENGTH_FIELD_LENGTH + extensionBuffer.length();
+        // 依次向消息头缓冲区写入字节
+        Buffer headerBuffer = Buffer.buffer(ProtocolConstant.MESSAGE_HEADER_LENGTH + extensionLength);
+        headerBuffer.appendByte(header.getMagic());
+        headerBuffer.appendByte(header.getVersion());
+        headerBuffer.appendByte(header.getSerializer());
+        headerBuffer.appendByte(header.getType());
+        headerBuffer.appendByte(header.getStatus());
+        headerBuffer.appendLong(header.getRequestId());
+        headerBuffer.appendInt(extensionLength + bodyBytes.length);
+        if (extensionBuffer != null) {
+            headerBuffer.appendShort((short) extensionBuffer.length());
+            headerBuffer.appendBuffer(extensionBuffer);
+        }
+        // 消息头和消息体组合为一个缓冲区，不再复制消息体，写出时由 Netty 聚集写（gathering write）
+        return Buffer.buffer(Unpooled.wrappedBuffer(headerBuffer.getByteBuf(), Unpooled.wrappedBuffer(bodyBytes)));
+    }
+
+    /**
+     * 编码扩展头：1 字节优先级，之后每个附件依次为 1 字节键长度、键、2 字节值长度、值
+     *
+     * @param header
+     * @return
+     */
+    private static Buffer encodeExtension(ProtocolMessage.Header header) {
+        Map<String, String> attachments = header.getAttachments();
+        Buffer extensionBuffer = Buffer.buffer(1 + (attachments == null ? 0 : attachments.size() * 32));
+        extensionBuffer.appendByte(header.getPriority());
+        if (attachments != null) {
+            for (Map.Entry<String, String> entry : attachments.entrySet()) {
+                byte[] keyBytes = entry.getKey().getBytes(StandardCharsets.UTF_8);
+                byte[] valueBytes = entry.getValue() == null ? new byte[0]
+                        : entry.getValue().getBytes(StandardCharsets.UTF_8);
+                if (keyBytes.length == 0 || keyBytes.length > ProtocolConstant.ATTACHMENT_KEY_MAX_LENGTH
+                        || valueBytes.length > ProtocolConstant.ATTACHMENT_VALUE_MAX_LENGTH) {
+                    throw new RuntimeException("消息附件长度非法：" + entry.getKey());
+                }
+                extensionBuffer.appendUnsignedByte((short) keyBytes.length);
+                extensionBuffer.appendBytes(keyBytes);
+                extensionBuffer.appendUnsignedShort(valueBytes.length);
+                extensionBuffer.appendBytes(valueBytes);
+            }
+        }
+        if (extensionBuffer.length() > ProtocolConstant.EXTENSION_MAX_LENGTH) {
+            throw new RuntimeException("消息扩展头过长：" + extensionBuffer.length());
+        }
+        return extensionBuffer;
     }
 }
@@ -0,0 +1,63 @@
+package com.yupi.yurpc.protocol;
+
+import lombok.Getter;
+
+/**
+ * 协议消息的优先级枚举（值越小越优先，通过 v2 消息头扩展传输）
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @from <a href="https://yupi.icu">编程导航学习圈</a>
+ * @learn <a href="https://codefather.cn">鱼皮的编程宝典</a>
+ */
+@Getter
+public enum ProtocolMessagePriorityEnum {
+
+    /**
+     * 交互流量：优先调度，最后被丢弃
+     */
+    INTERACTIVE("interactive", 0),
+    NORMAL("normal", 1),
+    /**
+     * 批处理流量：排在其他流量之后，过载时最先被丢弃
+     */
+    BATCH("batch", 2);
+
+    private final String text;
+
+    private final int value;
+
+    ProtocolMessagePriorityEnum(String text, int value) {
+        this.text = text;
+        this.value = value;
+    }
+
+    /**
+     * 根据 value 获取枚举，未知的值按普通优先级处理
+     *
+     * @param value
+     * @return
+     */
+    public static ProtocolMessagePriorityEnum getEnumByValue(int value) {
+        for (ProtocolMessagePriorityEnum anEnum : ProtocolMessagePriorityEnum.values()) {
+            if (anEnum.value == value) {
+                return anEnum;
+            }
+        }
+        return NORMAL;
+    }
+
+    /**
+     * 根据 text 获取枚举
+     *
+     * @param text
+     * @return 不存在时返回 null
+     */
+    public static ProtocolMessagePriorityEnum getEnumByText(String text) {
+        for (ProtocolMessagePriorityEnum anEnum : ProtocolMessagePriorityEnum.values()) {
+            if (anEnum.text.equals(text)) {
+                return anEnum;
+            }
+        }
+        return null;
+    }
+}
@@ -14,7 +14,11 @@ public enum ProtocolMessageStatusEnum {
 
     OK("ok", 20),
     BAD_REQUEST("badRequest", 40),
-    BAD_RESPONSE("badResponse", 50);
+    BAD_RESPONSE("badResponse", 50),
+    /**
+     * 服务端过载，请求未处理直接拒绝，消费端可立即转移到其他节点
+     */
+    OVERLOADED("overloaded", 53);
 
     private final String text;
 
@@ -15,7 +15,15 @@ public enum ProtocolMessageTypeEnum {
     REQUEST(0),
     RESPONSE(1),
     HEART_BEAT(2),
-    OTHERS(3);
+    OTHERS(3),
+    /**
+     * 批量请求，消息体为 RpcRequest[]
+     */
+    BATCH_REQUEST(4),
+    /**
+     * 批量响应，消息体为与批量请求一一对应的 RpcResponse[]
+     */
+    BATCH_RESPONSE(5);
 
     private final int key;
 
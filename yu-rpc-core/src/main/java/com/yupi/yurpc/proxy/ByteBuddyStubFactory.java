@@ -0,0 +1,116 @@
+package com.yupi.yurpc.proxy;
+
+import net.bytebuddy.ByteBuddy;
+import net.bytebuddy.description.modifier.Visibility;
+import net.bytebuddy.dynamic.DynamicType;
+import net.bytebuddy.dynamic.loading.ClassLoadingStrategy;
+import net.bytebuddy.implementation.FieldAccessor;
+import net.bytebuddy.implementation.MethodCall;
+import net.bytebuddy.implementation.bytecode.assign.Assigner;
+import net.bytebuddy.matcher.ElementMatchers;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 服务桩类工厂（基于 ByteBuddy）
+ * 为每个服务接口生成一个实现类，每个接口方法直接调用 RpcInvoker.invoke(方法下标, 参数)，
+ * 不经过 JDK 动态代理的 InvocationHandler 反射分派和 Method 查表
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航学习圈</a>
+ */
+public class ByteBuddyStubFactory {
+
+    /**
+     * 桩类中保存调用入口的字段名
+     */
+    private static final String INVOKER_FIELD = "invoker";
+
+    /**
+     * 桩类构造器缓存：服务接口 => (方法列表 => 构造器)
+     */
+    private static final Map<Class<?>, Map<StubKey, Constructor<?>>> STUB_CONSTRUCTOR_MAP = new ConcurrentHashMap<>();
+
+    /**
+     * 创建服务桩对象
+     *
+     * @param serviceClass 服务接口
+     * @param methods      需要实现的方法，下标即调用时传给 RpcInvoker 的方法下标
+     * @param rpcInvoker   调用入口
+     * @param <T>
+     * @return
+     */
+    public static <T> T newStub(Class<T> serviceClass, Method[] methods, RpcInvoker rpcInvoker) {
+        Constructor<?> constructor = STUB_CONSTRUCTOR_MAP
+                .computeIfAbsent(serviceClass, key -> new ConcurrentHashMap<>())
+                .computeIfAbsent(new StubKey(methods), key -> generateStubClass(serviceClass, methods));
+        try {
+            return serviceClass.cast(constructor.newInstance(rpcInvoker));
+        } catch (Exception e) {
+            throw new RuntimeException("创建服务桩对象失败：" + serviceClass.getName(), e);
+        }
+    }
+
+    /**
+     * 生成桩类：public Stub(RpcInvoker invoker)，每个方法为 return (R) invoker.invoke(i, new Object[]{args...})
+     *
+     * @param serviceClass
+     * @param methods
+     * @return 桩类的构造器
+     */
+    private static Constructor<?> generateStubClass(Class<?> serviceClass, Method[] methods) {
+        try {
+            Method invokeMethod = RpcInvoker.class.getMethod("invoke", int.class, Object[].class);
+            DynamicType.Builder<?> builder = new ByteBuddy()
+                    .subclass(Object.class)
+                    .implement(serviceClass)
+                    .name(serviceClass.getName() + "$RpcStub")
+                    .defineField(INVOKER_FIELD, RpcInvoker.class, Visibility.PRIVATE)
+                    .defineConstructor(Visibility.PUBLIC)
+                    .withParameters(RpcInvoker.class)
+                    .intercept(MethodCall.invoke(Object.class.getConstructor())
+                            .andThen(FieldAccessor.ofField(INVOKER_FIELD).setsArgumentAt(0)));
+            for (int i = 0; i < methods.length; i++) {
+                builder = builder.method(ElementMatchers.is(methods[i]))
+                        .intercept(MethodCall.invoke(invokeMethod)
+                                .onField(INVOKER_FIELD)
+                                .with(i)
+                                .withArgumentArray()
+                                .withAssigner(Assigner.DEFAULT, Assigner.Typing.DYNAMIC));
+            }
+            Class<?> stubClass = builder.make()
+                    .load(serviceClass.getClassLoader(), ClassLoadingStrategy.Default.WRAPPER)
+                    .getLoaded();
+            return stubClass.getConstructor(RpcInvoker.class);
+        } catch (NoSuchMethodException e) {
+            throw new RuntimeException("生成服务桩类失败：" + serviceClass.getName(), e);
+        }
+    }
+
+    /**
+     * 桩类缓存键（方法列表及顺序）
+     */
+    private static class StubKey {
+
+        private final Method[] methods;
+
+        StubKey(Method[] methods) {
+            this.methods = methods.clone();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof StubKey && Arrays.equals(methods, ((StubKey) o).methods);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(methods);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.yupi.yurpc.proxy;
+
+import com.yupi.yurpc.annotation.RpcCacheable;
+import com.yupi.yurpc.annotation.RpcCoalesce;
+import com.yupi.yurpc.annotation.RpcPriority;
+import com.yupi.yurpc.fault.retry.RetryStrategyFactory;
+import com.yupi.yurpc.fault.tolerant.TolerantStrategyFactory;
+import com.yupi.yurpc.loadbalancer.LoadBalancerFactory;
+import com.yupi.yurpc.model.ServiceMetaInfo;
+import com.yupi.yurpc.protocol.ProtocolMessagePriorityEnum;
+import com.yupi.yurpc.registry.EtcdRegistry;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 方法调用描述（创建代理时为每个方法预先计算，调用时直接使用）
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航学习圈</a>
+ */
+class InvocationDescriptor {
+
+    /**
+     * 服务名称
+     */
+    final String serviceName;
+
+    /**
+     * 服务版本
+     */
+    final String serviceVersion;
+
+    /**
+     * 服务键名
+     */
+    final String serviceKey;
+
+    /**
+     * 方法名称
+     */
+    final String methodName;
+
+    /**
+     * 参数类型列表
+     */
+    final Class<?>[] parameterTypes;
+
+    /**
+     * 负载均衡参数（不可变，所有调用共用）
+     */
+    final Map<String, Object> requestParams;
+
+    /**
+     * 是否合并相同参数的并发调用
+     */
+    final boolean coalesce;
+
+    /**
+     * 响应缓存（方法标注了 @RpcCacheable 时创建，否则为 null）
+     */
+    final ResponseCache responseCache;
+
+    /**
+     * 是否由注册中心的缓存版本触发清空响应缓存
+     */
+    final boolean registryInvalidation;
+
+    /**
+     * 调用优先级
+     */
+    final ProtocolMessagePriorityEnum priority;
+
+    /**
+     * 节点调用策略缓存：服务节点键名 => 策略（注册中心为 Etcd 时使用），策略版本变化时整体清空
+     */
+    private final Map<String, NodeStrategies> nodeStrategiesMap = new ConcurrentHashMap<>();
+
+    /**
+     * 节点调用策略缓存对应的策略版本
+     */
+    private volatile long nodeStrategiesVersion = -1;
+
+    /**
+     * 最多缓存的节点数，超过时清空（避免已下线的节点一直占用）
+     */
+    private static final int MAX_CACHED_NODE_STRATEGIES = 1024;
+
+    InvocationDescriptor(Method method, String serviceVersion) {
+        this(method, serviceVersion, false, ProtocolMessagePriorityEnum.NORMAL);
+    }
+
+    InvocationDescriptor(Method method, String serviceVersion, boolean coalesce) {
+        this(method, serviceVersion, coalesce, ProtocolMessagePriorityEnum.NORMAL);
+    }
+
+    InvocationDescriptor(Method method, String serviceVersion, boolean coalesce,
+                         ProtocolMessagePriorityEnum defaultPriority) {
+        this.serviceName = method.getDeclaringClass().getName();
+        this.serviceVersion = serviceVersion;
+        ServiceMetaInfo serviceMetaInfo = new ServiceMetaInfo();
+        serviceMetaInfo.setServiceName(serviceName);
+        serviceMetaInfo.setServiceVersion(serviceVersion);
+        this.serviceKey = serviceMetaInfo.getServiceKey();
+        this.methodName = method.getName();
+        this.parameterTypes = method.getParameterTypes();
+        // 将调用方法名（请求路径）作为负载均衡参数
+        this.requestParams = Collections.singletonMap("methodName", methodName);
+        this.coalesce = coalesce || method.isAnnotationPresent(RpcCoalesce.class);
+        RpcCacheable rpcCacheable = method.getAnnotation(RpcCacheable.class);
+        this.responseCache = rpcCacheable == null ? null : new ResponseCache(serviceKey + "#" + methodName, rpcCacheable);
+        this.registryInvalidation = rpcCacheable != null && rpcCacheable.registryInvalidation();
+        RpcPriority rpcPriority = method.getAnnotation(RpcPriority.class);
+        this.priority = rpcPriority == null ? defaultPriority : rpcPriority.value();
+    }
+
+    /**
+     * 获取节点的调用策略，节点动态策略的版本不变时直接使用缓存，不再逐项查找和解析
+     *
+     * @param etcdRegistry      注册中心为 Etcd 时用于读取节点动态策略，否则为 null
+     * @param serviceMetaInfo   服务节点
+     * @param serviceNodeKey    服务节点键名
+     * @param defaultStrategies 服务引用的策略
+     * @return
+     */
+    NodeStrategies getNodeStrategies(EtcdRegistry etcdRegistry, ServiceMetaInfo serviceMetaInfo,
+                                     String serviceNodeKey, NodeStrategies defaultStrategies) {
+        if (etcdRegistry == null) {
+            return defaultStrategies;
+        }
+        // 先读取版本再读取策略，读到的策略不会比版本旧
+        long version = etcdRegistry.getNodeStrategyVersion();
+        if (version != nodeStrategiesVersion || nodeStrategiesMap.size() >= MAX_CACHED_NODE_STRATEGIES) {
+            nodeStrategiesMap.clear();
+            nodeStrategiesVersion = version;
+        }
+        NodeStrategies nodeStrategies = nodeStrategiesMap.get(serviceNodeKey);
+        if (nodeStrategies != null && nodeStrategies.version == version) {
+            return nodeStrategies;
+        }
+        String loadBalanceStrategy = getDynamicStrategy(etcdRegistry, serviceMetaInfo, "loadbalance");
+        String retryStrategy = getDynamicStrategy(etcdRegistry, serviceMetaInfo, "retry");
+        String tolerantStrategy = getDynamicStrategy(etcdRegistry, serviceMetaInfo, "tolerant");
+        nodeStrategies = new NodeStrategies(version,
+                loadBalanceStrategy == null
+                        ? defaultStrategies.loadBalancer : LoadBalancerFactory.getInstance(loadBalanceStrategy),
+                retryStrategy == null
+                        ? defaultStrategies.retryStrategy : RetryStrategyFactory.getInstance(retryStrategy),
+                tolerantStrategy == null
+                        ? defaultStrategies.tolerantStrategy : TolerantStrategyFactory.getInstance(tolerantStrategy));
+        nodeStrategiesMap.put(serviceNodeKey, nodeStrategies);
+        return nodeStrategies;
+    }
+
+    /**
+     * 获取动态策略配置
+     * 从 Etcd 获取（本地缓存，由监听保持最新），如果没有则返回 null，使用服务引用的配置
+     *
+     * @param etcdRegistry
+     * @param serviceMetaInfo 服务节点
+     * @param strategyType    策略类型
+     * @return 策略值
+     */
+    private String getDynamicStrategy(EtcdRegistry etcdRegistry, ServiceMetaInfo serviceMetaInfo,
+                                      String strategyType) {
+        try {
+            return etcdRegistry.getCachedNodeStrategy(serviceKey, serviceMetaInfo.getServiceHost(),
+                    serviceMetaInfo.getServicePort(), strategyType);
+        } catch (Exception e) {
+            System.err.println("Failed to get dynamic strategy, using default. Error: " + e.getMessage());
+            return null;
+        }
+    }
+}
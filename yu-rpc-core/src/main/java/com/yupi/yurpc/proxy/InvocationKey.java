@@ -0,0 +1,50 @@
+package com.yupi.yurpc.proxy;
+
+import com.yupi.yurpc.RpcContext;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * 调用键：方法调用描述（同一代理内每个方法唯一）+ 参数（按内容比较）+ 当前线程 RpcContext 中的附件
+ * 用于请求合并和响应缓存，附件不同的调用（如不同租户）不会共用结果
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航学习圈</a>
+ */
+class InvocationKey {
+
+    private final InvocationDescriptor descriptor;
+
+    private final Object[] args;
+
+    private final Map<String, String> attachments;
+
+    private final int hash;
+
+    InvocationKey(InvocationDescriptor descriptor, Object[] args) {
+        this.descriptor = descriptor;
+        // 复制参数数组，调用方之后修改数组不影响键
+        this.args = args == null ? new Object[0] : args.clone();
+        // 上下文中的附件整体替换、不会原地修改，直接引用
+        this.attachments = RpcContext.getAttachments();
+        this.hash = 31 * (31 * System.identityHashCode(descriptor) + Arrays.deepHashCode(this.args))
+                + attachments.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof InvocationKey)) {
+            return false;
+        }
+        InvocationKey other = (InvocationKey) o;
+        return descriptor == other.descriptor && hash == other.hash && Arrays.deepEquals(args, other.args)
+                && attachments.equals(other.attachments);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
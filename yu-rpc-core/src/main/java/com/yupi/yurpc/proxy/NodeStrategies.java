@@ -0,0 +1,35 @@
+package com.yupi.yurpc.proxy;
+
+import com.yupi.yurpc.fault.retry.RetryStrategy;
+import com.yupi.yurpc.fault.tolerant.TolerantStrategy;
+import com.yupi.yurpc.loadbalancer.LoadBalancer;
+
+/**
+ * 服务节点的调用策略（负载均衡、重试、容错）
+ * 节点在 Etcd 中配置了动态策略时使用动态策略，否则使用服务引用的策略；解析后按策略版本缓存在方法调用描述中
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航学习圈</a>
+ */
+class NodeStrategies {
+
+    /**
+     * 解析时的节点动态策略版本
+     */
+    final long version;
+
+    final LoadBalancer loadBalancer;
+
+    final RetryStrategy retryStrategy;
+
+    final TolerantStrategy tolerantStrategy;
+
+    NodeStrategies(long version, LoadBalancer loadBalancer, RetryStrategy retryStrategy,
+                   TolerantStrategy tolerantStrategy) {
+        this.version = version;
+        this.loadBalancer = loadBalancer;
+        this.retryStrategy = retryStrategy;
+        this.tolerantStrategy = tolerantStrategy;
+    }
+}
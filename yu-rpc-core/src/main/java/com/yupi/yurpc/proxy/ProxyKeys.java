@@ -0,0 +1,22 @@
+package com.yupi.yurpc.proxy;
+
+/**
+ * 服务代理类型键名常量
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航学习圈</a>
+ */
+public interface ProxyKeys {
+
+    /**
+     * JDK 动态代理
+     */
+    String JDK = "jdk";
+
+    /**
+     * ByteBuddy 生成的服务桩类（需要引入 byte-buddy 依赖）
+     */
+    String BYTE_BUDDY = "bytebuddy";
+
+}
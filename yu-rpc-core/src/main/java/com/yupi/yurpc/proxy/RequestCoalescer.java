@@ -0,0 +1,70 @@
+package com.yupi.yurpc.proxy;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * 请求合并器（single-flight）
+ * 方法和参数相同的并发调用共享同一次进行中的调用，调用结束后立即移除，不缓存结果
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航学习圈</a>
+ */
+class RequestCoalescer {
+
+    /**
+     * 进行中的调用：调用键 => 结果
+     */
+    private final Map<InvocationKey, CompletableFuture<Object>> inFlightMap = new ConcurrentHashMap<>();
+
+    /**
+     * 执行调用，已有相同的调用在进行中时等待它的结果
+     *
+     * @param key  调用键
+     * @param call 实际调用
+     * @return
+     * @throws Throwable 实际调用抛出的异常（所有等待者收到同一个异常）
+     */
+    Object call(InvocationKey key, RemoteCall call) throws Throwable {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> inFlight = inFlightMap.putIfAbsent(key, future);
+        if (inFlight != null) {
+            try {
+                return inFlight.get();
+            } catch (ExecutionException e) {
+                throw e.getCause();
+            }
+        }
+        try {
+            Object result = call.call();
+            future.complete(result);
+            return result;
+        } catch (Throwable t) {
+            future.completeExceptionally(t);
+            throw t;
+        } finally {
+            inFlightMap.remove(key, future);
+        }
+    }
+
+    /**
+     * 进行中的调用数
+     *
+     * @return
+     */
+    int inFlightCount() {
+        return inFlightMap.size();
+    }
+
+    /**
+     * 实际调用
+     */
+    @FunctionalInterface
+    interface RemoteCall {
+
+        Object call() throws Throwable;
+    }
+}
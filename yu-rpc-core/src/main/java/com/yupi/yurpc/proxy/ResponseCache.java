@@ -0,0 +1,133 @@
+package com.yupi.yurpc.proxy;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.yupi.yurpc.annotation.RpcCacheable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 消费端响应缓存（每个服务引用的每个 @RpcCacheable 方法一个，基于 Caffeine）
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航学习圈</a>
+ */
+public class ResponseCache {
+
+    /**
+     * 所有响应缓存，用于汇总统计（弱引用，代理被回收后缓存随之回收）
+     */
+    private static final Set<ResponseCache> RESPONSE_CACHE_SET =
+            Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
+    /**
+     * 缓存名称：服务键名#方法名
+     */
+    private final String name;
+
+    private final Cache<InvocationKey, Object> cache;
+
+    /**
+     * 缓存版本，每次清空加一
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    ResponseCache(String name, RpcCacheable rpcCacheable) {
+        this.name = name;
+        this.cache = Caffeine.newBuilder()
+                .expireAfterWrite(rpcCacheable.ttl(), TimeUnit.MILLISECONDS)
+                .maximumSize(rpcCacheable.maximumSize())
+                .recordStats()
+                .build();
+        RESPONSE_CACHE_SET.add(this);
+    }
+
+    Object get(InvocationKey key) {
+        return cache.getIfPresent(key);
+    }
+
+    void put(InvocationKey key, Object value) {
+        cache.put(key, value);
+    }
+
+    /**
+     * 写入调用结果，调用开始后缓存被清空过时不写入
+     *
+     * @param key
+     * @param value
+     * @param expectedGeneration 调用开始前的缓存版本
+     */
+    void put(InvocationKey key, Object value, long expectedGeneration) {
+        if (generation.get() != expectedGeneration) {
+            return;
+        }
+        cache.put(key, value);
+        // 写入的同时被清空，撤销本次写入
+        if (generation.get() != expectedGeneration) {
+            cache.asMap().remove(key, value);
+        }
+    }
+
+    /**
+     * 清空缓存
+     */
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+    /**
+     * 获取缓存版本（调用开始前记录，写入时比较）
+     *
+     * @return
+     */
+    long getGeneration() {
+        return generation.get();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 获取统计信息
+     *
+     * @return
+     */
+    public ResponseCacheStats getStats() {
+        return ResponseCacheStats.of(name, cache.stats(), cache.estimatedSize());
+    }
+
+    /**
+     * 获取所有响应缓存的统计信息，同名缓存（同一服务的多个引用）合并
+     *
+     * @return 缓存名称 => 统计信息
+     */
+    public static Map<String, ResponseCacheStats> getAllStats() {
+        Map<String, CacheStats> statsMap = new TreeMap<>();
+        Map<String, Long> sizeMap = new TreeMap<>();
+        List<ResponseCache> responseCacheList;
+        synchronized (RESPONSE_CACHE_SET) {
+            responseCacheList = new ArrayList<>(RESPONSE_CACHE_SET);
+        }
+        for (ResponseCache responseCache : responseCacheList) {
+            statsMap.merge(responseCache.name, responseCache.cache.stats(), CacheStats::plus);
+            sizeMap.merge(responseCache.name, responseCache.cache.estimatedSize(), Long::sum);
+        }
+        Map<String, ResponseCacheStats> result = new TreeMap<>();
+        for (Map.Entry<String, CacheStats> entry : statsMap.entrySet()) {
+            result.put(entry.getKey(), ResponseCacheStats.of(entry.getKey(), entry.getValue(), sizeMap.get(entry.getKey())));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,56 @@
+package com.yupi.yurpc.proxy;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import lombok.Data;
+
+/**
+ * 响应缓存统计信息
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航学习圈</a>
+ */
+@Data
+public class ResponseCacheStats {
+
+    /**
+     * 缓存名称：服务键名#方法名
+     */
+    private String name;
+
+    /**
+     * 命中次数
+     */
+    private long hitCount;
+
+    /**
+     * 未命中次数
+     */
+    private long missCount;
+
+    /**
+     * 命中率
+     */
+    private double hitRate;
+
+    /**
+     * 因容量或过期被淘汰的条数
+     */
+    private long evictionCount;
+
+    /**
+     * 当前缓存条数（近似值，用于估算内存占用）
+     */
+    private long size;
+
+    static ResponseCacheStats of(String name, CacheStats cacheStats, long size) {
+        ResponseCacheStats responseCacheStats = new ResponseCacheStats();
+        responseCacheStats.setName(name);
+        responseCacheStats.setHitCount(cacheStats.hitCount());
+        responseCacheStats.setMissCount(cacheStats.missCount());
+        responseCacheStats.setHitRate(cacheStats.hitRate());
+        responseCacheStats.setEvictionCount(cacheStats.evictionCount());
+        responseCacheStats.setSize(size);
+        return responseCacheStats;
+    }
+}
@@ -0,0 +1,21 @@
+package com.yupi.yurpc.proxy;
+
+/**
+ * 远程调用入口（供生成的服务桩类直接调用）
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航学习圈</a>
+ */
+public interface RpcInvoker {
+
+    /**
+     * 调用
+     *
+     * @param methodIndex 方法下标（创建桩类时的方法顺序）
+     * @param args        参数
+     * @return 返回值
+     * @throws Throwable
+     */
+    Object invoke(int methodIndex, Object[] args) throws Throwable;
+}
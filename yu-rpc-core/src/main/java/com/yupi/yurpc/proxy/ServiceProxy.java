@@ -1,114 +1,156 @@
 package com.yupi.yurpc.proxy;
 
 import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.util.StrUtil;
 import cn.hutool.http.HttpRequest;
 import cn.hutool.http.HttpResponse;
 import com.yupi.yurpc.RpcApplication;
+import com.yupi.yurpc.config.ReferenceConfig;
 import com.yupi.yurpc.config.RpcConfig;
-import com.yupi.yurpc.constant.RpcConstant;
-import com.yupi.yurpc.fault.retry.RetryStrategy;
+import com.yupi.yurpc.exception.ServiceOverloadedException;
 import com.yupi.yurpc.fault.retry.RetryStrategyFactory;
-import com.yupi.yurpc.fault.tolerant.TolerantStrategy;
 import com.yupi.yurpc.fault.tolerant.TolerantStrategyFactory;
 import com.yupi.yurpc.loadbalancer.LoadBalancer;
 import com.yupi.yurpc.loadbalancer.LoadBalancerFactory;
+import com.yupi.yurpc.loadbalancer.ServiceNodeStats;
 import com.yupi.yurpc.model.RpcRequest;
 import com.yupi.yurpc.model.RpcResponse;
 import com.yupi.yurpc.model.ServiceMetaInfo;
+import com.yupi.yurpc.protocol.ProtocolMessagePriorityEnum;
 import com.yupi.yurpc.registry.EtcdRegistry;
 import com.yupi.yurpc.registry.Registry;
 import com.yupi.yurpc.registry.RegistryFactory;
+import com.yupi.yurpc.router.SubsetRouter;
+import com.yupi.yurpc.router.ZoneAwareRouter;
 import com.yupi.yurpc.serializer.Serializer;
 import com.yupi.yurpc.serializer.SerializerFactory;
 import com.yupi.yurpc.server.tcp.VertxTcpClient;
+import com.yupi.yurpc.trace.Span;
+import com.yupi.yurpc.trace.TraceEventKeys;
+import com.yupi.yurpc.trace.Tracer;
 
 import java.io.IOException;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 /**
- * 服务代理（JDK 动态代理）
+ * 服务代理（JDK 动态代理，也作为生成的服务桩类的调用入口）
  *
  * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
  * @learn <a href="https://codefather.cn">编程宝典</a>
  * @from <a href="https://yupi.icu">编程导航知识星球</a>
  */
-public class ServiceProxy implements InvocationHandler {
+public class ServiceProxy implements InvocationHandler, RpcInvoker {
 
     /**
-     * 获取动态策略配置
-     * 优先从ETCD获取，如果没有则使用全局配置
-     *
-     * @param serviceName    服务名称
-     * @param serviceVersion 服务版本
-     * @param host           主机地址
-     * @param port           端口
-     * @param strategyType   策略类型
-     * @param defaultValue   默认值
-     * @return 策略值
-     */
-    private String getDynamicStrategy(String serviceName, String serviceVersion, String host, int port,
-                                    String strategyType, String defaultValue) {
-        try {
-            RpcConfig rpcConfig = RpcApplication.getRpcConfig();
-            Registry registry = RegistryFactory.getInstance(rpcConfig.getRegistryConfig().getRegistry());
-
-            // 如果是ETCD注册中心，尝试获取动态策略
-            if (registry instanceof EtcdRegistry) {
-                EtcdRegistry etcdRegistry = (EtcdRegistry) registry;
-                String strategy = etcdRegistry.getNodeStrategy(serviceName, serviceVersion, host, port, strategyType);
-                if (strategy != null && !strategy.trim().isEmpty()) {
-                    System.out.println("Using dynamic strategy from ETCD - " + strategyType + ": " + strategy);
-                    return strategy;
-                }
+     * 确定性子集路由
+     */
+    private static final SubsetRouter SUBSET_ROUTER = new SubsetRouter();
+
+    /**
+     * 同区域优先路由
+     */
+    private static final ZoneAwareRouter ZONE_AWARE_ROUTER = new ZoneAwareRouter();
+
+    /**
+     * 以下调用设置在创建代理时一次性解析（服务引用配置 > 全局配置），调用时不再查找工厂
+     */
+    final Registry registry;
+
+    /**
+     * 注册中心为 Etcd 时用于动态策略和调用指标，否则为 null
+     */
+    private final EtcdRegistry etcdRegistry;
+
+    /**
+     * 服务引用的负载均衡、重试、容错策略（节点没有配置动态策略时使用）
+     */
+    final NodeStrategies defaultStrategies;
+
+    final String serviceVersion;
+
+    /**
+     * 服务引用的默认调用优先级
+     */
+    final ProtocolMessagePriorityEnum priority;
+
+    /**
+     * 方法调用描述：方法 => 描述
+     */
+    private final Map<Method, InvocationDescriptor> invocationDescriptorMap = new ConcurrentHashMap<>();
+
+    /**
+     * 需要远程调用的方法及其调用描述（下标一一对应，服务桩类按下标调用）
+     */
+    private final Method[] methods;
+
+    private final InvocationDescriptor[] invocationDescriptors;
+
+    /**
+     * 请求合并器（只用于开启了请求合并的方法）
+     */
+    private final RequestCoalescer requestCoalescer = new RequestCoalescer();
+
+    public ServiceProxy(Class<?> serviceClass) {
+        this(serviceClass, new ReferenceConfig());
+    }
+
+    public ServiceProxy(Class<?> serviceClass, ReferenceConfig referenceConfig) {
+        RpcConfig rpcConfig = RpcApplication.getRpcConfig();
+        this.registry = StrUtil.isNotBlank(referenceConfig.getDirectUrl())
+                ? RegistryFactory.getDirectInstance(referenceConfig.getDirectUrl())
+                : RegistryFactory.getInstance(rpcConfig.getRegistryConfig().getRegistry());
+        this.etcdRegistry = registry instanceof EtcdRegistry ? (EtcdRegistry) registry : null;
+        this.serviceVersion = referenceConfig.getServiceVersion();
+        this.defaultStrategies = new NodeStrategies(0,
+                LoadBalancerFactory.getInstance(
+                        StrUtil.blankToDefault(referenceConfig.getLoadBalancer(), rpcConfig.getLoadBalancer())),
+                RetryStrategyFactory.getInstance(
+                        StrUtil.blankToDefault(referenceConfig.getRetryStrategy(), rpcConfig.getRetryStrategy())),
+                TolerantStrategyFactory.getInstance(
+                        StrUtil.blankToDefault(referenceConfig.getTolerantStrategy(), rpcConfig.getTolerantStrategy())));
+        if (StrUtil.isBlank(referenceConfig.getPriority())) {
+            this.priority = ProtocolMessagePriorityEnum.NORMAL;
+        } else {
+            this.priority = ProtocolMessagePriorityEnum.getEnumByText(referenceConfig.getPriority());
+            if (this.priority == null) {
+                throw new RuntimeException("调用优先级不存在：" + referenceConfig.getPriority());
+            }
+        }
+        List<Method> methodList = new ArrayList<>();
+        for (Method method : serviceClass.getMethods()) {
+            if (method.getDeclaringClass() != Object.class) {
+                methodList.add(method);
+            }
+        }
+        this.methods = methodList.toArray(new Method[0]);
+        this.invocationDescriptors = new InvocationDescriptor[methods.length];
+        for (int i = 0; i < methods.length; i++) {
+            invocationDescriptors[i] = new InvocationDescriptor(methods[i], serviceVersion,
+                    referenceConfig.getCoalesceMethods().contains(methods[i].getName()), priority);
+            invocationDescriptorMap.put(methods[i], invocationDescriptors[i]);
+            // 服务提供者更新缓存版本时清空响应缓存
+            ResponseCache responseCache = invocationDescriptors[i].responseCache;
+            if (responseCache != null && invocationDescriptors[i].registryInvalidation && etcdRegistry != null) {
+                etcdRegistry.watchCacheVersion(invocationDescriptors[i].serviceKey, responseCache,
+                        ResponseCache::invalidateAll);
             }
-        } catch (Exception e) {
-            System.err.println("Failed to get dynamic strategy, using default. Error: " + e.getMessage());
         }
-        return defaultValue;
     }
 
     /**
-     * 记录调用指标到ETCD
+     * 需要远程调用的方法，下标即 {@link #invoke(int, Object[])} 的方法下标
      *
-     * @param serviceName    服务名称
-     * @param serviceVersion 服务版本
-     * @param host           主机地址
-     * @param port           端口
-     * @param duration       调用耗时
-     * @param success        是否成功
-     */
-    private void recordCallMetrics(String serviceName, String serviceVersion, String host, int port,
-                                  long duration, boolean success) {
-        try {
-            RpcConfig rpcConfig = RpcApplication.getRpcConfig();
-            Registry registry = RegistryFactory.getInstance(rpcConfig.getRegistryConfig().getRegistry());
-
-            // 如果是ETCD注册中心，记录监控指标
-            if (registry instanceof EtcdRegistry) {
-                EtcdRegistry etcdRegistry = (EtcdRegistry) registry;
-
-                // 增加调用次数
-                etcdRegistry.incrementMetrics(serviceName, serviceVersion, host, port, "calls", 1);
-
-                if (success) {
-                    // 增加成功次数
-                    etcdRegistry.incrementMetrics(serviceName, serviceVersion, host, port, "success", 1);
-                } else {
-                    // 增加失败次数
-                    etcdRegistry.incrementMetrics(serviceName, serviceVersion, host, port, "failure", 1);
-                }
-
-                // 更新平均耗时（简单移动平均）
-                etcdRegistry.recordMetrics(serviceName, serviceVersion, host, port, "avg_time", String.valueOf(duration));
-            }
-        } catch (Exception e) {
-            // 监控记录失败不应该影响主业务流程
-            System.err.println("Failed to record call metrics: " + e.getMessage());
-        }
+     * @return
+     */
+    Method[] getMethods() {
+        return methods.clone();
     }
 
     /**
@@ -119,73 +161,242 @@ public class ServiceProxy implements InvocationHandler {
      */
     @Override
     public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        // Object 的方法在本地处理，不发起远程调用
+        if (method.getDeclaringClass() == Object.class) {
+            return invokeObjectMethod(proxy, method, args);
+        }
+        InvocationDescriptor descriptor = invocationDescriptorMap.get(method);
+        if (descriptor == null) {
+            descriptor = invocationDescriptorMap.computeIfAbsent(method,
+                    key -> new InvocationDescriptor(key, serviceVersion, false, priority));
+        }
+        return doInvoke(descriptor, args);
+    }
+
+    /**
+     * 服务桩类调用入口，按方法下标直接取调用描述
+     *
+     * @param methodIndex 方法下标
+     * @param args        参数
+     * @return
+     * @throws Throwable
+     */
+    @Override
+    public Object invoke(int methodIndex, Object[] args) throws Throwable {
+        return doInvoke(invocationDescriptors[methodIndex], args);
+    }
+
+    /**
+     * 发起调用：先查响应缓存，开启请求合并的方法再合并相同参数的并发调用，最后发起远程调用
+     *
+     * @param descriptor 方法调用描述
+     * @param args       参数
+     * @return
+     * @throws Throwable
+     */
+    private Object doInvoke(InvocationDescriptor descriptor, Object[] args) throws Throwable {
+        if (descriptor.responseCache == null && !descriptor.coalesce) {
+            return doRemoteInvoke(descriptor, args, null);
+        }
+        InvocationKey key = new InvocationKey(descriptor, args);
+        if (descriptor.responseCache != null) {
+            Object cached = descriptor.responseCache.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        if (descriptor.coalesce) {
+            return requestCoalescer.call(key, () -> doRemoteInvoke(descriptor, args, key));
+        }
+        return doRemoteInvoke(descriptor, args, key);
+    }
+
+    /**
+     * 发起远程调用
+     *
+     * @param descriptor 方法调用描述
+     * @param args       参数
+     * @param key        调用键（用于写入响应缓存，不需要时为 null）
+     * @return
+     * @throws Throwable
+     */
+    private Object doRemoteInvoke(InvocationDescriptor descriptor, Object[] args, InvocationKey key) throws Throwable {
+        Span span = Tracer.startClientSpan(descriptor.serviceName, descriptor.methodName);
+        // 调用期间作为当前跨度，请求头中带上链路上下文（不采样时带上不采样标记，下游跟随）
+        Span previousSpan = Tracer.setCurrent(span);
+        try {
+            return doRemoteInvoke(descriptor, args, key, span.isRecording() ? span : null);
+        } catch (Throwable t) {
+            span.recordException(t);
+            throw t;
+        } finally {
+            Tracer.setCurrent(previousSpan);
+            span.end();
+        }
+    }
+
+    /**
+     * 发起远程调用，记录各阶段的跨度事件
+     *
+     * @param descriptor 方法调用描述
+     * @param args       参数
+     * @param key        调用键（用于写入响应缓存，不需要时为 null）
+     * @param span       消费端跨度，不采样时为 null
+     * @return
+     * @throws Throwable
+     */
+    private Object doRemoteInvoke(InvocationDescriptor descriptor, Object[] args, InvocationKey key, Span span)
+            throws Throwable {
+        // 调用前记下缓存的版本，调用期间缓存被清空时不写入（旧的结果）
+        long cacheGeneration = descriptor.responseCache == null ? 0 : descriptor.responseCache.getGeneration();
         // 构造请求
         // fixme https://github.com/liyupi/yu-rpc/issues/7
-        String serviceName = method.getDeclaringClass().getName();
         RpcRequest rpcRequest = RpcRequest.builder()
-                .serviceName(serviceName)
-                .methodName(method.getName())
-                .parameterTypes(method.getParameterTypes())
+                .serviceName(descriptor.serviceName)
+                .methodName(descriptor.methodName)
+                .serviceVersion(descriptor.serviceVersion)
+                .parameterTypes(descriptor.parameterTypes)
                 .args(args)
                 .build();
 
         // 从注册中心获取服务提供者请求地址
-        RpcConfig rpcConfig = RpcApplication.getRpcConfig();
-        Registry registry = RegistryFactory.getInstance(rpcConfig.getRegistryConfig().getRegistry());
-        ServiceMetaInfo serviceMetaInfo = new ServiceMetaInfo();
-        serviceMetaInfo.setServiceName(serviceName);
-        serviceMetaInfo.setServiceVersion(RpcConstant.DEFAULT_SERVICE_VERSION);
-        List<ServiceMetaInfo> serviceMetaInfoList = registry.serviceDiscovery(serviceMetaInfo.getServiceKey());
+        String serviceKey = descriptor.serviceKey;
+        List<ServiceMetaInfo> serviceMetaInfoList = registry.serviceDiscovery(serviceKey);
         if (CollUtil.isEmpty(serviceMetaInfoList)) {
             throw new RuntimeException("暂无服务地址");
         }
+        // 同区域优先路由 + 确定性子集，缩小负载均衡的候选范围（在选中的区域层级内取子集）
+        serviceMetaInfoList = ZONE_AWARE_ROUTER.route(serviceKey, serviceMetaInfoList);
+        serviceMetaInfoList = SUBSET_ROUTER.route(serviceKey, serviceMetaInfoList);
+        if (span != null) {
+            span.addEvent(TraceEventKeys.DISCOVERY);
+        }
 
-        // 负载均衡 - 使用动态策略
-        ServiceMetaInfo selectedServiceMetaInfo = serviceMetaInfoList.get(0); // 先选择第一个服务获取地址信息
-        String serviceNameStr = serviceMetaInfo.getServiceName();
-        String serviceVersionStr = serviceMetaInfo.getServiceVersion();
+        // 负载均衡 - 使用动态策略（按第一个节点的配置）
+        ServiceMetaInfo firstServiceMetaInfo = serviceMetaInfoList.get(0);
+        LoadBalancer loadBalancer = descriptor.getNodeStrategies(etcdRegistry, firstServiceMetaInfo,
+                firstServiceMetaInfo.getServiceNodeKey(), defaultStrategies).loadBalancer;
+        ServiceMetaInfo selectedServiceMetaInfo = loadBalancer.select(descriptor.requestParams, serviceMetaInfoList);
         String host = selectedServiceMetaInfo.getServiceHost();
         int port = selectedServiceMetaInfo.getServicePort();
+        if (span != null) {
+            span.addEvent(TraceEventKeys.LOAD_BALANCE);
+            span.setAttribute("net.peer.name", host);
+            span.setAttribute("net.peer.port", port);
+        }
 
-        // 从ETCD获取动态负载均衡策略
-        String loadBalanceStrategy = getDynamicStrategy(serviceNameStr, serviceVersionStr, host, port,
-                "loadbalance", rpcConfig.getLoadBalancer());
-        LoadBalancer loadBalancer = LoadBalancerFactory.getInstance(loadBalanceStrategy);
-
-        // 将调用方法名（请求路径）作为负载均衡参数
-        Map<String, Object> requestParams = new HashMap<>();
-        requestParams.put("methodName", rpcRequest.getMethodName());
-        ServiceMetaInfo finalSelectedServiceMetaInfo = loadBalancer.select(requestParams, serviceMetaInfoList);
-
-        // rpc 请求 - 使用动态重试和容错策略
+        // rpc 请求 - 使用动态重试和容错策略（按选中节点的配置）
+        String selectedServiceNodeKey = selectedServiceMetaInfo.getServiceNodeKey();
+        NodeStrategies nodeStrategies = descriptor.getNodeStrategies(etcdRegistry, selectedServiceMetaInfo,
+                selectedServiceNodeKey, defaultStrategies);
         RpcResponse rpcResponse;
-        long startTime = System.currentTimeMillis();
         boolean success = false;
-
+        List<ServiceMetaInfo> candidateList = serviceMetaInfoList;
         try {
-            // 从ETCD获取动态重试策略
-            String retryStrategy = getDynamicStrategy(serviceNameStr, serviceVersionStr, host, port,
-                    "retry", rpcConfig.getRetryStrategy());
-            RetryStrategy retryStrategyInstance = RetryStrategyFactory.getInstance(retryStrategy);
-
-            rpcResponse = retryStrategyInstance.doRetry(() ->
-                    VertxTcpClient.doRequest(rpcRequest, finalSelectedServiceMetaInfo)
-            );
+            rpcResponse = nodeStrategies.retryStrategy.doRetry(() -> {
+                try {
+                    return doNodeRequest(rpcRequest, descriptor.priority, selectedServiceMetaInfo,
+                            selectedServiceNodeKey);
+                } catch (ExecutionException e) {
+                    // 服务端过载拒绝的请求没有被处理，立即转移到其他节点，不等待重试间隔
+                    ServiceMetaInfo failoverServiceMetaInfo = e.getCause() instanceof ServiceOverloadedException
+                            ? selectFailoverNode(loadBalancer, descriptor, candidateList, selectedServiceMetaInfo) : null;
+                    if (failoverServiceMetaInfo == null) {
+                        throw e;
+                    }
+                    return doNodeRequest(rpcRequest, descriptor.priority, failoverServiceMetaInfo,
+                            failoverServiceMetaInfo.getServiceNodeKey());
+                }
+            });
             success = true;
         } catch (Exception e) {
-            // 从ETCD获取动态容错策略
-            String tolerantStrategy = getDynamicStrategy(serviceNameStr, serviceVersionStr, host, port,
-                    "tolerant", rpcConfig.getTolerantStrategy());
-            TolerantStrategy tolerantStrategyInstance = TolerantStrategyFactory.getInstance(tolerantStrategy);
+            rpcResponse = nodeStrategies.tolerantStrategy.doTolerant(null, e);
+            // 容错策略降级后调用不抛出异常，跨度仍记录原始错误
+            if (span != null) {
+                span.recordException(e);
+            }
+        }
 
-            rpcResponse = tolerantStrategyInstance.doTolerant(null, e);
+        // 只缓存调用成功的结果，不缓存容错策略的降级结果
+        Object data = rpcResponse.getData();
+        if (success && descriptor.responseCache != null && key != null
+                && rpcResponse.getException() == null && data != null) {
+            descriptor.responseCache.put(key, data, cacheGeneration);
+        }
+        return data;
+    }
+
+    /**
+     * 向指定节点发送请求，记录节点的并发数和延迟样本（供负载均衡器使用）以及调用指标
+     *
+     * @param rpcRequest      请求
+     * @param priority        调用优先级
+     * @param serviceMetaInfo 服务节点
+     * @param serviceNodeKey  服务节点键名（统计和指标共用，只计算一次）
+     * @return
+     * @throws InterruptedException
+     * @throws ExecutionException
+     */
+    private RpcResponse doNodeRequest(RpcRequest rpcRequest, ProtocolMessagePriorityEnum priority,
+                                      ServiceMetaInfo serviceMetaInfo, String serviceNodeKey)
+            throws InterruptedException, ExecutionException {
+        ServiceNodeStats serviceNodeStats = ServiceNodeStats.of(serviceNodeKey);
+        long startTime = serviceNodeStats.begin();
+        boolean success = false;
+        try {
+            RpcResponse rpcResponse = VertxTcpClient.doRequest(rpcRequest, serviceMetaInfo, priority);
+            success = true;
+            return rpcResponse;
         } finally {
-            // 记录调用指标
-            long duration = System.currentTimeMillis() - startTime;
-            recordCallMetrics(serviceNameStr, serviceVersionStr, host, port, duration, success);
+            serviceNodeStats.end(startTime, success);
+            // 记录调用指标（内存聚合，定期写入 Etcd）
+            if (etcdRegistry != null) {
+                long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+                etcdRegistry.recordCallMetrics(serviceNodeKey, serviceMetaInfo, duration, success);
+            }
+        }
+    }
+
+    /**
+     * 选择过载转移的节点（排除过载的节点后重新负载均衡）
+     *
+     * @param loadBalancer
+     * @param descriptor
+     * @param serviceMetaInfoList   候选节点
+     * @param overloadedServiceMetaInfo 过载的节点
+     * @return 没有其他节点时返回 null
+     */
+    private ServiceMetaInfo selectFailoverNode(LoadBalancer loadBalancer, InvocationDescriptor descriptor,
+                                               List<ServiceMetaInfo> serviceMetaInfoList,
+                                               ServiceMetaInfo overloadedServiceMetaInfo) {
+        List<ServiceMetaInfo> otherList = new ArrayList<>(serviceMetaInfoList.size());
+        for (ServiceMetaInfo serviceMetaInfo : serviceMetaInfoList) {
+            if (!serviceMetaInfo.equals(overloadedServiceMetaInfo)) {
+                otherList.add(serviceMetaInfo);
+            }
         }
+        return otherList.isEmpty() ? null : loadBalancer.select(descriptor.requestParams, otherList);
+    }
 
-        return rpcResponse.getData();
+    /**
+     * 本地处理 Object 的方法
+     *
+     * @param proxy
+     * @param method
+     * @param args
+     * @return
+     */
+    private Object invokeObjectMethod(Object proxy, Method method, Object[] args) {
+        switch (method.getName()) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return proxy.getClass().getInterfaces()[0].getName() + "@" + Integer.toHexString(System.identityHashCode(proxy));
+            default:
+                throw new UnsupportedOperationException(method.getName());
+        }
     }
 
     /**
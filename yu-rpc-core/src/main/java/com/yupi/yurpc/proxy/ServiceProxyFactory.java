@@ -1,6 +1,8 @@
 package com.yupi.yurpc.proxy;
 
 import com.yupi.yurpc.RpcApplication;
+import com.yupi.yurpc.config.ReferenceConfig;
+import lombok.extern.slf4j.Slf4j;
 
 import java.lang.reflect.Proxy;
 
@@ -11,8 +13,14 @@ import java.lang.reflect.Proxy;
  * @learn <a href="https://codefather.cn">编程宝典</a>
  * @from <a href="https://yupi.icu">编程导航知识星球</a>
  */
+@Slf4j
 public class ServiceProxyFactory {
 
+    /**
+     * 是否运行在 GraalVM native image 中（无法在运行时生成字节码，只能使用构建时登记的 JDK 动态代理）
+     */
+    private static final boolean NATIVE_IMAGE = System.getProperty("org.graalvm.nativeimage.imagecode") != null;
+
     /**
      * 根据服务类获取代理对象
      *
@@ -21,14 +29,35 @@ public class ServiceProxyFactory {
      * @return
      */
     public static <T> T getProxy(Class<T> serviceClass) {
-        if (RpcApplication.getRpcConfig().isMock()) {
+        return getProxy(serviceClass, new ReferenceConfig());
+    }
+
+    /**
+     * 根据服务类和服务引用配置获取代理对象
+     *
+     * @param serviceClass
+     * @param referenceConfig 服务引用配置（版本、负载均衡、重试、容错、直连地址等）
+     * @param <T>
+     * @return
+     */
+    public static <T> T getProxy(Class<T> serviceClass, ReferenceConfig referenceConfig) {
+        if (RpcApplication.getRpcConfig().isMock() || referenceConfig.isMock()) {
             return getMockProxy(serviceClass);
         }
 
+        ServiceProxy serviceProxy = new ServiceProxy(serviceClass, referenceConfig);
+        if (ProxyKeys.BYTE_BUDDY.equals(RpcApplication.getRpcConfig().getProxy()) && !NATIVE_IMAGE) {
+            try {
+                return ByteBuddyStubFactory.newStub(serviceClass, serviceProxy.getMethods(), serviceProxy);
+            } catch (NoClassDefFoundError e) {
+                // 未引入 byte-buddy 依赖，退回 JDK 动态代理
+                log.warn("byte-buddy not found, fallback to jdk proxy for {}", serviceClass.getName());
+            }
+        }
         return (T) Proxy.newProxyInstance(
                 serviceClass.getClassLoader(),
                 new Class[]{serviceClass},
-                new ServiceProxy());
+                serviceProxy);
     }
 
     /**
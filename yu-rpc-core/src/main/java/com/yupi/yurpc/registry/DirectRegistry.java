@@ -0,0 +1,233 @@
+package com.yupi.yurpc.registry;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.io.watch.WatchMonitor;
+import cn.hutool.core.io.watch.SimpleWatcher;
+import cn.hutool.core.io.watch.Watcher;
+import cn.hutool.core.io.watch.watchers.DelayWatcher;
+import cn.hutool.core.util.StrUtil;
+import com.yupi.yurpc.config.RegistryConfig;
+import com.yupi.yurpc.loadbalancer.ServiceNodeStats;
+import com.yupi.yurpc.model.ServiceMetaInfo;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 直连注册中心（消费端）
+ * 不访问任何注册中心，直接使用静态配置的提供者地址，负载均衡和容错照常生效。
+ * 地址格式：
+ * 1. host:port,host:port —— 直接列出提供者地址
+ * 2. file:/path/to/providers —— 从本地文件读取地址（逗号或换行分隔，# 开头为注释），文件修改后自动重新加载
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航学习圈</a>
+ */
+@Slf4j
+public class DirectRegistry implements Registry {
+
+    /**
+     * 文件地址前缀
+     */
+    public static final String FILE_PREFIX = "file:";
+
+    /**
+     * 文件修改后延迟加载的时间（毫秒），合并编辑器保存时的多次修改事件
+     */
+    private static final long RELOAD_DELAY = 500;
+
+    /**
+     * 提供者地址列表（host:port）
+     */
+    private volatile List<String> providerAddressList = Collections.emptyList();
+
+    /**
+     * 服务节点缓存：服务键名 => 节点列表，地址变化时整体替换
+     */
+    private volatile Map<String, List<ServiceMetaInfo>> serviceCache = new ConcurrentHashMap<>();
+
+    private WatchMonitor watchMonitor;
+
+    @Override
+    public void init(RegistryConfig registryConfig) {
+        String address = registryConfig.getAddress();
+        if (StrUtil.startWith(address, FILE_PREFIX)) {
+            File providerFile = FileUtil.file(StrUtil.removePrefix(address, FILE_PREFIX));
+            loadProviderFile(providerFile);
+            watchProviderFile(providerFile);
+        } else {
+            updateProviderAddressList(parseProviderAddressList(address));
+        }
+    }
+
+    @Override
+    public void register(ServiceMetaInfo serviceMetaInfo) {
+        // 直连模式不需要注册
+    }
+
+    @Override
+    public void unRegister(ServiceMetaInfo serviceMetaInfo) {
+        // 直连模式不需要注册
+    }
+
+    @Override
+    public List<ServiceMetaInfo> serviceDiscovery(String serviceKey) {
+        Map<String, List<ServiceMetaInfo>> currentServiceCache = serviceCache;
+        List<ServiceMetaInfo> serviceMetaInfoList = currentServiceCache.get(serviceKey);
+        if (serviceMetaInfoList != null) {
+            return serviceMetaInfoList;
+        }
+        return currentServiceCache.computeIfAbsent(serviceKey, this::buildServiceMetaInfoList);
+    }
+
+    /**
+     * 按配置的地址构造服务节点
+     *
+     * @param serviceKey 服务键名（服务名:版本）
+     * @return
+     */
+    private List<ServiceMetaInfo> buildServiceMetaInfoList(String serviceKey) {
+        List<ServiceMetaInfo> serviceMetaInfoList = new ArrayList<>();
+        for (String providerAddress : providerAddressList) {
+            ServiceMetaInfo serviceMetaInfo = new ServiceMetaInfo();
+            serviceMetaInfo.setServiceName(StrUtil.subBefore(serviceKey, ":", true));
+            serviceMetaInfo.setServiceVersion(StrUtil.subAfter(serviceKey, ":", true));
+            serviceMetaInfo.setServiceHost(StrUtil.subBefore(providerAddress, ":", true));
+            serviceMetaInfo.setServicePort(Integer.parseInt(StrUtil.subAfter(providerAddress, ":", true)));
+            serviceMetaInfoList.add(serviceMetaInfo);
+        }
+        return Collections.unmodifiableList(serviceMetaInfoList);
+    }
+
+    @Override
+    public void heartBeat() {
+        // 直连模式没有租约
+    }
+
+    @Override
+    public void watch(String serviceKey) {
+        // 地址来自配置，文件模式下由文件监听负责更新
+    }
+
+    @Override
+    public void destroy() {
+        if (watchMonitor != null) {
+            watchMonitor.close();
+        }
+    }
+
+    /**
+     * 解析提供者地址，逗号或换行分隔，忽略空行和 # 开头的注释
+     * 任意一个地址格式有误（或没有地址）时整体失败，不使用部分地址
+     *
+     * @param content
+     * @return
+     */
+    static List<String> parseProviderAddressList(String content) {
+        List<String> providerAddressList = new ArrayList<>();
+        for (String line : StrUtil.split(StrUtil.nullToEmpty(content), '\n')) {
+            line = StrUtil.trim(line);
+            if (StrUtil.isEmpty(line) || line.startsWith("#")) {
+                continue;
+            }
+            for (String providerAddress : StrUtil.split(line, ',', true, true)) {
+                providerAddressList.add(checkProviderAddress(providerAddress));
+            }
+        }
+        if (providerAddressList.isEmpty()) {
+            throw new RuntimeException("没有配置直连地址");
+        }
+        return providerAddressList;
+    }
+
+    /**
+     * 校验单个地址：host 非空且不含空白，port 为 1 ~ 65535 的整数
+     *
+     * @param providerAddress
+     * @return
+     */
+    private static String checkProviderAddress(String providerAddress) {
+        int index = providerAddress.lastIndexOf(':');
+        String host = index > 0 ? providerAddress.substring(0, index) : "";
+        String port = index > 0 ? providerAddress.substring(index + 1) : "";
+        if (StrUtil.isBlank(host) || StrUtil.containsBlank(host) || !StrUtil.isNumeric(port)
+                || port.length() > 5 || Integer.parseInt(port) < 1 || Integer.parseInt(port) > 65535) {
+            throw new RuntimeException("直连地址格式错误，应为 host:port：" + providerAddress);
+        }
+        return providerAddress;
+    }
+
+    /**
+     * 更新地址列表，服务节点缓存整体替换
+     *
+     * @param newProviderAddressList
+     */
+    private void updateProviderAddressList(List<String> newProviderAddressList) {
+        Map<String, List<ServiceMetaInfo>> oldServiceCache = serviceCache;
+        providerAddressList = Collections.unmodifiableList(newProviderAddressList);
+        serviceCache = new ConcurrentHashMap<>();
+        // 移除已删除地址的调用统计
+        for (List<ServiceMetaInfo> serviceMetaInfoList : oldServiceCache.values()) {
+            for (ServiceMetaInfo serviceMetaInfo : serviceMetaInfoList) {
+                String providerAddress = serviceMetaInfo.getServiceHost() + ":" + serviceMetaInfo.getServicePort();
+                if (!newProviderAddressList.contains(providerAddress)) {
+                    ServiceNodeStats.remove(serviceMetaInfo.getServiceNodeKey());
+                }
+            }
+        }
+    }
+
+    /**
+     * 从文件加载地址
+     *
+     * @param providerFile
+     */
+    private void loadProviderFile(File providerFile) {
+        if (!providerFile.isFile()) {
+            throw new RuntimeException("直连地址文件不存在：" + providerFile.getAbsolutePath());
+        }
+        updateProviderAddressList(parseProviderAddressList(FileUtil.readString(providerFile, StandardCharsets.UTF_8)));
+        log.info("direct registry loaded {} providers from {}", providerAddressList.size(), providerFile);
+    }
+
+    /**
+     * 监听地址文件的修改，自动重新加载
+     *
+     * @param providerFile
+     */
+    private void watchProviderFile(File providerFile) {
+        Watcher watcher = new SimpleWatcher() {
+            @Override
+            public void onCreate(WatchEvent<?> event, Path currentPath) {
+                reload();
+            }
+
+            @Override
+            public void onModify(WatchEvent<?> event, Path currentPath) {
+                reload();
+            }
+
+            private void reload() {
+                try {
+                    loadProviderFile(providerFile);
+                } catch (Exception e) {
+                    // 文件内容有误时保留上一次的地址
+                    log.error("reload direct provider file {} failed", providerFile, e);
+                }
+            }
+        };
+        watchMonitor = WatchMonitor.create(providerFile, WatchMonitor.ENTRY_CREATE, WatchMonitor.ENTRY_MODIFY);
+        watchMonitor.setWatcher(new DelayWatcher(watcher, RELOAD_DELAY));
+        watchMonitor.setDaemon(true);
+        watchMonitor.start();
+    }
+}
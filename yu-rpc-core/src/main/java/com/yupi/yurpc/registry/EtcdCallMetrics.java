@@ -0,0 +1,58 @@
+package com.yupi.yurpc.registry;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 某个服务节点的调用指标（内存聚合，定期写入 Etcd）
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航学习圈</a>
+ */
+class EtcdCallMetrics {
+
+    final String serviceName;
+
+    final String serviceVersion;
+
+    final String host;
+
+    final int port;
+
+    private final LongAdder calls = new LongAdder();
+
+    private final LongAdder success = new LongAdder();
+
+    private final LongAdder failure = new LongAdder();
+
+    /**
+     * 总耗时（毫秒）
+     */
+    private final LongAdder totalTime = new LongAdder();
+
+    EtcdCallMetrics(String serviceName, String serviceVersion, String host, int port) {
+        this.serviceName = serviceName;
+        this.serviceVersion = serviceVersion;
+        this.host = host;
+        this.port = port;
+    }
+
+    void record(long duration, boolean succeeded) {
+        calls.increment();
+        if (succeeded) {
+            success.increment();
+        } else {
+            failure.increment();
+        }
+        totalTime.add(duration);
+    }
+
+    /**
+     * 取出上次以来的增量并清零
+     *
+     * @return 调用次数、成功次数、失败次数、总耗时
+     */
+    long[] drain() {
+        return new long[]{calls.sumThenReset(), success.sumThenReset(), failure.sumThenReset(), totalTime.sumThenReset()};
+    }
+}
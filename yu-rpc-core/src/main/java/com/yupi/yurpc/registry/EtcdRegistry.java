@@ -1,24 +1,40 @@
 package com.yupi.yurpc.registry;
 
-import cn.hutool.core.collection.CollUtil;
 import cn.hutool.core.collection.ConcurrentHashSet;
-import cn.hutool.cron.CronUtil;
-import cn.hutool.cron.task.Task;
+import cn.hutool.core.util.StrUtil;
 import cn.hutool.json.JSONUtil;
 import com.yupi.yurpc.config.RegistryConfig;
 import com.yupi.yurpc.model.ServiceMetaInfo;
 import io.etcd.jetcd.*;
 import io.etcd.jetcd.kv.GetResponse;
 import io.etcd.jetcd.kv.PutResponse;
+import io.etcd.jetcd.lease.LeaseKeepAliveResponse;
+import io.etcd.jetcd.op.Op;
 import io.etcd.jetcd.options.GetOption;
 import io.etcd.jetcd.options.PutOption;
+import io.etcd.jetcd.options.WatchOption;
+import io.etcd.jetcd.support.CloseableClient;
 import io.etcd.jetcd.watch.WatchEvent;
+import io.grpc.stub.StreamObserver;
+import lombok.extern.slf4j.Slf4j;
 
+import java.lang.ref.WeakReference;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
@@ -28,16 +44,39 @@ import java.util.stream.Collectors;
  * @from <a href="https://yupi.icu">编程导航学习圈</a>
  * @learn <a href="https://codefather.cn">yupi 的编程宝典</a>
  */
+@Slf4j
 public class EtcdRegistry implements Registry {
 
     private Client client;
 
     private KV kvClient;
 
+    private Lease leaseClient;
+
+    /**
+     * 本机注册的节点：key => value（租约丢失后用于重新注册）
+     */
+    private final Map<String, String> localRegisterNodeMap = new ConcurrentHashMap<>();
+
+    /**
+     * 本进程唯一的租约 ID，所有注册的 key 都挂在这个租约上（0 表示还没有租约）
+     */
+    private volatile long leaseId;
+
+    /**
+     * 租约续期流
+     */
+    private CloseableClient keepAliveClient;
+
     /**
-     * 本机注册的节点 key 集合（用于维护续期）
+     * 租约相关操作的锁
      */
-    private final Set<String> localRegisterNodeKeySet = new HashSet<>();
+    private final Object leaseLock = new Object();
+
+    /**
+     * 是否已销毁
+     */
+    private volatile boolean destroyed;
 
     /**
      * 注册中心服务缓存（只支持单个服务缓存，已废弃，请使用下方的 RegistryServiceMultiCache）
@@ -51,51 +90,207 @@ public class EtcdRegistry implements Registry {
     private final RegistryServiceMultiCache registryServiceMultiCache = new RegistryServiceMultiCache();
 
     /**
-     * 正在监听的 key 集合
+     * 正在监听的服务键名集合
      */
     private final Set<String> watchingKeySet = new ConcurrentHashSet<>();
 
+    /**
+     * 过期缓存下次允许重新同步的时间：服务键名 => 时间戳（毫秒）
+     */
+    private final Map<String, Long> nextRefreshTimeMap = new ConcurrentHashMap<>();
+
+    /**
+     * 进行中的全量查询：服务键名 => 查询结果，同一服务的并发缓存未命中共用一次查询
+     */
+    private final Map<String, CompletableFuture<List<ServiceMetaInfo>>> loadingFutureMap = new ConcurrentHashMap<>();
+
+    /**
+     * 服务缓存的本地快照（未配置快照文件时为 null）
+     */
+    private RegistryServiceSnapshot registryServiceSnapshot;
+
+    private RegistryConfig registryConfig;
+
+    /**
+     * 节点动态策略本地缓存：服务键名 => (host:port/策略类型 => 策略值)，由监听保持最新
+     */
+    private final Map<String, Map<String, String>> nodeStrategyCache = new ConcurrentHashMap<>();
+
+    /**
+     * 是否正在监听节点动态策略
+     */
+    private volatile boolean nodeStrategyWatching;
+
+    /**
+     * 下次允许加载节点动态策略的时间（毫秒），加载失败后避免每次调用都访问 Etcd
+     */
+    private volatile long nextNodeStrategyLoadTime;
+
+    /**
+     * 节点动态策略版本，策略缓存每次变化后加一
+     */
+    private final AtomicLong nodeStrategyVersion = new AtomicLong();
+
+    /**
+     * 响应缓存失效监听器：服务键名 => 监听器列表（弱引用监听对象，对象被回收后自动移除）
+     */
+    private final Map<String, List<CacheVersionListener<?>>> cacheVersionListenerMap = new ConcurrentHashMap<>();
+
+    /**
+     * 调用指标：服务节点键名 => 指标，内存聚合后定期写入，一个周期内没有调用的节点（如已下线）写入后移除
+     */
+    final Map<String, EtcdCallMetrics> callMetricsMap = new ConcurrentHashMap<>();
+
+    /**
+     * 调用指标定期写入
+     */
+    private volatile ScheduledExecutorService metricsFlushExecutor;
+
     /**
      * 根节点
      */
     private static final String ETCD_ROOT_PATH = "/rpc/";
 
+    /**
+     * 租约时长（秒）
+     */
+    private static final long LEASE_TTL = 30;
+
+    /**
+     * 租约丢失后重新注册失败的重试间隔（秒）
+     */
+    private static final long REREGISTER_RETRY_DELAY = 3;
+
+    /**
+     * 单个事务最多包含的操作数（etcd 默认 --max-txn-ops=128）
+     */
+    private static final int MAX_TXN_OPS = 128;
+
+    /**
+     * 过期缓存重新同步失败后的重试间隔（毫秒）
+     */
+    private static final long REFRESH_RETRY_INTERVAL = 3000;
+
+    /**
+     * 节点动态策略根节点
+     */
+    private static final String STRATEGY_ROOT_PATH = "/rpc/strategy/";
+
+    /**
+     * 响应缓存版本根路径，服务提供者更新后消费端清空对应服务的响应缓存
+     */
+    private static final String CACHE_VERSION_ROOT_PATH = "/rpc/cache/";
+
+    /**
+     * 调用指标写入间隔（毫秒）
+     */
+    private static final long METRICS_FLUSH_INTERVAL = 5000;
+
     @Override
     public void init(RegistryConfig registryConfig) {
+        this.registryConfig = registryConfig;
         client = Client.builder()
                 .endpoints(registryConfig.getAddress())
                 .connectTimeout(Duration.ofMillis(registryConfig.getTimeout()))
                 .build();
         kvClient = client.getKVClient();
-        heartBeat();
+        leaseClient = client.getLeaseClient();
+        // 先从本地快照恢复服务缓存，首次调用不用等待注册中心
+        if (StrUtil.isNotBlank(registryConfig.getSnapshotFile())) {
+            registryServiceSnapshot = new RegistryServiceSnapshot(registryConfig.getSnapshotFile(), registryServiceMultiCache);
+            registryServiceSnapshot.load();
+            registryServiceSnapshot.start(registryConfig.getSnapshotInterval());
+        }
     }
 
     @Override
     public void register(ServiceMetaInfo serviceMetaInfo) throws Exception {
-        // 创建 Lease 和 KV 客户端
-        Lease leaseClient = client.getLeaseClient();
-
-        // 创建一个 30 秒的租约
-        long leaseId = leaseClient.grant(30).get().getID();
-
         // 设置要存储的键值对
         String registerKey = ETCD_ROOT_PATH + serviceMetaInfo.getServiceNodeKey();
-        ByteSequence key = ByteSequence.from(registerKey, StandardCharsets.UTF_8);
-        ByteSequence value = ByteSequence.from(JSONUtil.toJsonStr(serviceMetaInfo), StandardCharsets.UTF_8);
+        String registerValue = JSONUtil.toJsonStr(serviceMetaInfo);
 
-        // 将键值对与租约关联起来，并设置过期时间
-        PutOption putOption = PutOption.builder().withLeaseId(leaseId).build();
-        kvClient.put(key, value, putOption).get();
-        // 添加节点信息到本地缓存
-        localRegisterNodeKeySet.add(registerKey);
+        synchronized (leaseLock) {
+            // 将键值对与本进程的租约关联起来，租约过期时所有 key 一起删除
+            putNodes(Collections.singletonMap(registerKey, registerValue), getOrGrantLease());
+            // 添加节点信息到本地缓存
+            localRegisterNodeMap.put(registerKey, registerValue);
+        }
     }
 
     @Override
     public void unRegister(ServiceMetaInfo serviceMetaInfo) {
         String registerKey = ETCD_ROOT_PATH + serviceMetaInfo.getServiceNodeKey();
-        kvClient.delete(ByteSequence.from(registerKey, StandardCharsets.UTF_8));
-        // 也要从本地缓存移除
-        localRegisterNodeKeySet.remove(registerKey);
+        // 和重新注册互斥并等待删除完成，避免删除后又被写到新租约上
+        synchronized (leaseLock) {
+            // 先从本地缓存移除，删除失败时之后也不会再重新注册
+            localRegisterNodeMap.remove(registerKey);
+            try {
+                deleteNode(registerKey);
+            } catch (Exception e) {
+                throw new RuntimeException(registerKey + "节点下线失败", e);
+            }
+        }
+    }
+
+    /**
+     * 删除节点
+     *
+     * @param registerKey
+     * @throws Exception
+     */
+    void deleteNode(String registerKey) throws Exception {
+        kvClient.delete(ByteSequence.from(registerKey, StandardCharsets.UTF_8)).get();
+    }
+
+    /**
+     * 获取本进程的租约，没有时创建并开始续期（需持有 leaseLock）
+     * 创建新租约时（包括租约丢失后）先把本机已注册的所有节点写到新租约上，
+     * 不依赖后台的重新注册，避免先到的注册请求只写入自己的节点
+     *
+     * @return
+     * @throws Exception
+     */
+    private long getOrGrantLease() throws Exception {
+        if (leaseId == 0) {
+            long newLeaseId = grantLease();
+            putNodes(localRegisterNodeMap, newLeaseId);
+            leaseId = newLeaseId;
+            heartBeat();
+            if (!localRegisterNodeMap.isEmpty()) {
+                log.info("etcd re-registered {} keys with lease {}", localRegisterNodeMap.size(), newLeaseId);
+            }
+        }
+        return leaseId;
+    }
+
+    /**
+     * 创建租约
+     *
+     * @return 租约 ID
+     * @throws Exception
+     */
+    long grantLease() throws Exception {
+        return leaseClient.grant(LEASE_TTL).get().getID();
+    }
+
+    /**
+     * 把节点写到指定租约上，分批在事务中写入
+     *
+     * @param nodeMap 节点：key => value
+     * @param leaseId 租约 ID
+     * @throws Exception
+     */
+    void putNodes(Map<String, String> nodeMap, long leaseId) throws Exception {
+        PutOption putOption = PutOption.builder().withLeaseId(leaseId).build();
+        List<Op> putOps = new ArrayList<>(nodeMap.size());
+        for (Map.Entry<String, String> entry : nodeMap.entrySet()) {
+            putOps.add(Op.put(ByteSequence.from(entry.getKey(), StandardCharsets.UTF_8),
+                    ByteSequence.from(entry.getValue(), StandardCharsets.UTF_8), putOption));
+        }
+        for (int i = 0; i < putOps.size(); i += MAX_TXN_OPS) {
+            List<Op> batchOps = putOps.subList(i, Math.min(i + MAX_TXN_OPS, putOps.size()));
+            kvClient.txn().Then(batchOps.toArray(new Op[0])).commit().get();
+        }
     }
 
     @Override
@@ -106,26 +301,74 @@ public class EtcdRegistry implements Registry {
         // 优化后的代码，支持多个服务同时缓存
         List<ServiceMetaInfo> cachedServiceMetaInfoList = registryServiceMultiCache.readCache(serviceKey);
         if (cachedServiceMetaInfoList != null) {
+            // 缓存来自本地快照或监听已失效，后台和注册中心重新同步，同步完成前先使用旧数据
+            if (registryServiceMultiCache.isStale(serviceKey)) {
+                refreshAsync(serviceKey);
+            }
+            return cachedServiceMetaInfoList;
+        }
+        // 缓存未命中时同一服务只有一个全量查询，其他调用等待它的结果；查询不持有锁，不阻塞其他服务
+        // 写入缓存时按注册中心版本比较，并发的查询不会用旧数据覆盖已被监听更新过的缓存
+        CompletableFuture<List<ServiceMetaInfo>> loadingFuture = new CompletableFuture<>();
+        CompletableFuture<List<ServiceMetaInfo>> existingFuture = loadingFutureMap.putIfAbsent(serviceKey, loadingFuture);
+        if (existingFuture != null) {
+            return awaitLoading(existingFuture);
+        }
+        try {
+            cachedServiceMetaInfoList = registryServiceMultiCache.readCache(serviceKey);
+            if (cachedServiceMetaInfoList == null) {
+                cachedServiceMetaInfoList = loadServiceMetaInfoList(serviceKey);
+            }
+            loadingFuture.complete(cachedServiceMetaInfoList);
             return cachedServiceMetaInfoList;
+        } catch (RuntimeException e) {
+            loadingFuture.completeExceptionally(e);
+            throw e;
+        } finally {
+            loadingFutureMap.remove(serviceKey, loadingFuture);
+        }
+    }
+
+    /**
+     * 等待同一服务进行中的全量查询
+     *
+     * @param loadingFuture
+     * @return
+     */
+    private List<ServiceMetaInfo> awaitLoading(CompletableFuture<List<ServiceMetaInfo>> loadingFuture) {
+        try {
+            return loadingFuture.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException("获取服务列表失败", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("获取服务列表失败", e);
         }
+    }
 
+    /**
+     * 全量查询某服务的所有节点，写入缓存并开始监听
+     *
+     * @param serviceKey 服务键名
+     * @return
+     */
+    private List<ServiceMetaInfo> loadServiceMetaInfoList(String serviceKey) {
         // 前缀搜索，结尾一定要加 '/'
         String searchPrefix = ETCD_ROOT_PATH + serviceKey + "/";
 
         try {
             // 前缀查询
             GetOption getOption = GetOption.builder().isPrefix(true).build();
-            List<KeyValue> keyValues = kvClient.get(
+            GetResponse getResponse = kvClient.get(
                             ByteSequence.from(searchPrefix, StandardCharsets.UTF_8),
                             getOption)
-                    .get()
-                    .getKvs();
+                    .get(registryConfig.getTimeout(), TimeUnit.MILLISECONDS);
             // 解析服务信息
-            List<ServiceMetaInfo> serviceMetaInfoList = keyValues.stream()
+            List<ServiceMetaInfo> serviceMetaInfoList = getResponse.getKvs().stream()
                     .map(keyValue -> {
-                        String key = keyValue.getKey().toString(StandardCharsets.UTF_8);
-                        // 监听 key 的变化
-                        watch(key);
                         String value = keyValue.getValue().toString(StandardCharsets.UTF_8);
                         return JSONUtil.toBean(value, ServiceMetaInfo.class);
                     })
@@ -134,91 +377,224 @@ public class EtcdRegistry implements Registry {
             // 原教程代码，不支持多个服务同时缓存
             // registryServiceCache.writeCache(serviceMetaInfoList);
             // 优化后的代码，支持多个服务同时缓存
-            registryServiceMultiCache.writeCache(serviceKey, serviceMetaInfoList);
-            return serviceMetaInfoList;
+            long revision = getResponse.getHeader().getRevision();
+            registryServiceMultiCache.writeCache(serviceKey, serviceMetaInfoList, revision);
+            // 从查询时的版本之后开始监听整个服务前缀，不会漏掉查询与监听之间的变更
+            watch(serviceKey, revision + 1);
+            return registryServiceMultiCache.readCache(serviceKey);
         } catch (Exception e) {
             throw new RuntimeException("获取服务列表失败", e);
         }
     }
 
+    /**
+     * 后台重新同步过期的服务缓存，同一服务同时只有一个同步任务，失败后间隔一段时间再重试
+     *
+     * @param serviceKey 服务键名
+     */
+    private void refreshAsync(String serviceKey) {
+        long now = System.currentTimeMillis();
+        Long nextRefreshTime = nextRefreshTimeMap.get(serviceKey);
+        if (nextRefreshTime != null && now < nextRefreshTime) {
+            return;
+        }
+        long newNextRefreshTime = now + REFRESH_RETRY_INTERVAL;
+        boolean acquired = nextRefreshTime == null
+                ? nextRefreshTimeMap.putIfAbsent(serviceKey, newNextRefreshTime) == null
+                : nextRefreshTimeMap.replace(serviceKey, nextRefreshTime, newNextRefreshTime);
+        if (!acquired) {
+            return;
+        }
+        CompletableFuture.runAsync(() -> {
+            try {
+                // 查询期间不持有锁，结果按注册中心版本写入缓存
+                if (registryServiceMultiCache.isStale(serviceKey)) {
+                    loadServiceMetaInfoList(serviceKey);
+                }
+            } catch (Exception e) {
+                log.warn("refresh service {} failed, using stale cache", serviceKey, e);
+            }
+        });
+    }
+
+    /**
+     * 心跳检测（服务端）
+     * 通过 gRPC keepAlive 流为本进程唯一的租约续期，心跳开销与注册的服务数量无关
+     */
     @Override
     public void heartBeat() {
-        // 10 秒续签一次
-        CronUtil.schedule("*/10 * * * * *", new Task() {
-            @Override
-            public void execute() {
-                // 遍历本节点所有的 key
-                for (String key : localRegisterNodeKeySet) {
-                    try {
-                        List<KeyValue> keyValues = kvClient.get(ByteSequence.from(key, StandardCharsets.UTF_8))
-                                .get()
-                                .getKvs();
-                        // 该节点已过期（需要重启节点才能重新注册）
-                        if (CollUtil.isEmpty(keyValues)) {
-                            continue;
-                        }
-                        // 节点未过期，重新注册（相当于续签）
-                        KeyValue keyValue = keyValues.get(0);
-                        String value = keyValue.getValue().toString(StandardCharsets.UTF_8);
-                        ServiceMetaInfo serviceMetaInfo = JSONUtil.toBean(value, ServiceMetaInfo.class);
-                        register(serviceMetaInfo);
-                    } catch (Exception e) {
-                        throw new RuntimeException(key + "续签失败", e);
+        synchronized (leaseLock) {
+            long currentLeaseId = leaseId;
+            if (currentLeaseId == 0 || destroyed) {
+                return;
+            }
+            if (keepAliveClient != null) {
+                keepAliveClient.close();
+            }
+            keepAliveClient = leaseClient.keepAlive(currentLeaseId, new StreamObserver<LeaseKeepAliveResponse>() {
+                @Override
+                public void onNext(LeaseKeepAliveResponse response) {
+                    if (response.getTTL() <= 0) {
+                        onLeaseLost(currentLeaseId, null);
                     }
                 }
+
+                @Override
+                public void onError(Throwable throwable) {
+                    onLeaseLost(currentLeaseId, throwable);
+                }
+
+                @Override
+                public void onCompleted() {
+                    onLeaseLost(currentLeaseId, null);
+                }
+            });
+        }
+    }
+
+    /**
+     * 租约丢失（过期或续期流中断），重新创建租约并注册所有节点
+     *
+     * @param lostLeaseId 丢失的租约 ID
+     * @param throwable   异常信息
+     */
+    void onLeaseLost(long lostLeaseId, Throwable throwable) {
+        synchronized (leaseLock) {
+            // 已经处理过（或已销毁），忽略
+            if (leaseId != lostLeaseId || destroyed) {
+                return;
             }
-        });
+            log.warn("etcd lease {} lost, re-registering {} keys", lostLeaseId, localRegisterNodeMap.size(), throwable);
+            leaseId = 0;
+            if (keepAliveClient != null) {
+                keepAliveClient.close();
+                keepAliveClient = null;
+            }
+        }
+        // 不在 gRPC 回调线程中阻塞
+        scheduleReRegister();
+    }
 
-        // 支持秒级别定时任务
-        CronUtil.setMatchSecond(true);
-        CronUtil.start();
+    /**
+     * 在后台重新注册
+     */
+    void scheduleReRegister() {
+        CompletableFuture.runAsync(this::reRegister);
+    }
+
+    /**
+     * 使用新租约重新注册本机所有节点，失败时延迟重试
+     * 期间已有注册请求创建了新租约时（同样会写入所有节点）不再重复
+     */
+    void reRegister() {
+        synchronized (leaseLock) {
+            if (leaseId != 0 || destroyed) {
+                return;
+            }
+            try {
+                getOrGrantLease();
+            } catch (Exception e) {
+                log.error("etcd re-register failed, retry in {}s", REREGISTER_RETRY_DELAY, e);
+                CompletableFuture.delayedExecutor(REREGISTER_RETRY_DELAY, TimeUnit.SECONDS).execute(this::reRegister);
+            }
+        }
     }
 
     /**
      * 监听（消费端）
      *
-     * @param serviceNodeKey
+     * @param serviceKey 服务键名
      */
     @Override
-    public void watch(String serviceNodeKey) {
+    public void watch(String serviceKey) {
+        watch(serviceKey, 0);
+    }
+
+    /**
+     * 监听某服务前缀下所有节点的变化，增量更新服务缓存
+     *
+     * @param serviceKey    服务键名
+     * @param startRevision 开始监听的版本（小于等于 0 表示从当前版本开始）
+     */
+    private void watch(String serviceKey, long startRevision) {
+        // 之前未被监听，开启监听（每个服务只有一个前缀监听）
+        boolean newWatch = watchingKeySet.add(serviceKey);
+        if (!newWatch) {
+            return;
+        }
         Watch watchClient = client.getWatchClient();
-        // 之前未被监听，开启监听
-        boolean newWatch = watchingKeySet.add(serviceNodeKey);
-        if (newWatch) {
-            watchClient.watch(ByteSequence.from(serviceNodeKey, StandardCharsets.UTF_8), response -> {
-                for (WatchEvent event : response.getEvents()) {
-                    switch (event.getEventType()) {
-                        // key 删除时触发
-                        case DELETE:
-                            // 清理注册服务缓存
-                            // 原教程代码，不支持多个服务同时缓存
-                            // registryServiceCache.clearCache();
-                            // 优化后的代码，支持多个服务同时缓存
-                            // fixme 这里需要改为 serviceKey，而不是 serviceNodeKey
-                            registryServiceMultiCache.clearCache(serviceNodeKey);
-                            break;
-                        case PUT:
-                        default:
-                            break;
-                    }
-                }
-            });
+        String watchPrefix = ETCD_ROOT_PATH + serviceKey + "/";
+        WatchOption.Builder watchOptionBuilder = WatchOption.builder().isPrefix(true);
+        if (startRevision > 0) {
+            watchOptionBuilder.withRevision(startRevision);
         }
+        watchClient.watch(ByteSequence.from(watchPrefix, StandardCharsets.UTF_8), watchOptionBuilder.build(),
+                response -> {
+                    // 同一批事件（如大规模集群滚动发布）只生成一次新快照，按事件顺序应用
+                    List<RegistryServiceMultiCache.NodeChange> nodeChanges = new ArrayList<>(response.getEvents().size());
+                    for (WatchEvent event : response.getEvents()) {
+                        KeyValue keyValue = event.getKeyValue();
+                        String serviceNodeKey = keyValue.getKey().toString(StandardCharsets.UTF_8)
+                                .substring(ETCD_ROOT_PATH.length());
+                        switch (event.getEventType()) {
+                            // key 新增或更新时触发
+                            case PUT:
+                                String value = keyValue.getValue().toString(StandardCharsets.UTF_8);
+                                nodeChanges.add(RegistryServiceMultiCache.NodeChange.put(
+                                        JSONUtil.toBean(value, ServiceMetaInfo.class)));
+                                break;
+                            // key 删除时触发
+                            case DELETE:
+                                nodeChanges.add(RegistryServiceMultiCache.NodeChange.delete(serviceNodeKey));
+                                break;
+                            default:
+                                break;
+                        }
+                    }
+                    registryServiceMultiCache.updateCache(serviceKey, nodeChanges,
+                            response.getHeader().getRevision());
+                },
+                throwable -> {
+                    // 监听失效（如版本已被压缩、注册中心不可用），缓存标记为过期但保留作为兜底，
+                    // 下次服务发现时在后台重新全量加载并监听
+                    log.error("watch service {} error", serviceKey, throwable);
+                    watchingKeySet.remove(serviceKey);
+                    registryServiceMultiCache.markStale(serviceKey);
+                });
     }
 
     @Override
     public void destroy() {
         System.out.println("当前节点下线");
-        // 下线节点
-        // 遍历本节点所有的 key
-        for (String key : localRegisterNodeKeySet) {
-            try {
-                kvClient.delete(ByteSequence.from(key, StandardCharsets.UTF_8)).get();
-            } catch (Exception e) {
-                throw new RuntimeException(key + "节点下线失败");
+        // 下线节点：撤销租约，本节点所有的 key 随之一起删除
+        synchronized (leaseLock) {
+            destroyed = true;
+            if (keepAliveClient != null) {
+                keepAliveClient.close();
+                keepAliveClient = null;
+            }
+            if (leaseId != 0) {
+                try {
+                    leaseClient.revoke(leaseId).get();
+                } catch (Exception e) {
+                    throw new RuntimeException(leaseId + "租约撤销失败", e);
+                } finally {
+                    leaseId = 0;
+                }
             }
         }
 
+        // 写入剩余的调用指标
+        if (metricsFlushExecutor != null) {
+            metricsFlushExecutor.shutdownNow();
+            flushCallMetrics();
+        }
+
+        // 保存最后一次本地快照
+        if (registryServiceSnapshot != null) {
+            registryServiceSnapshot.stop();
+        }
+
         // 释放资源
         if (kvClient != null) {
             kvClient.close();
@@ -255,6 +631,317 @@ public class EtcdRegistry implements Registry {
         }
     }
 
+    /**
+     * 获取节点动态策略的版本（调用链路使用），策略缓存每次变化后加一
+     * 首次使用时全量加载所有节点策略并开始监听；先读取版本再读取策略，版本不变时之前读到的策略仍然有效
+     *
+     * @return
+     */
+    public long getNodeStrategyVersion() {
+        if (!nodeStrategyWatching && System.currentTimeMillis() >= nextNodeStrategyLoadTime) {
+            loadNodeStrategies();
+        }
+        return nodeStrategyVersion.get();
+    }
+
+    /**
+     * 从本地缓存获取节点策略配置（调用链路使用，不访问 Etcd）
+     * 首次使用时全量加载所有节点策略并开始监听，之后由监听增量更新
+     *
+     * @param serviceKey   服务键名
+     * @param host         主机地址
+     * @param port         端口
+     * @param strategyType 策略类型 (loadbalance, retry, tolerant, weight)
+     * @return 策略配置值，没有配置时返回 null
+     */
+    public String getCachedNodeStrategy(String serviceKey, String host, int port, String strategyType) {
+        if (!nodeStrategyWatching && System.currentTimeMillis() >= nextNodeStrategyLoadTime) {
+            loadNodeStrategies();
+        }
+        Map<String, String> serviceStrategyMap = nodeStrategyCache.get(serviceKey);
+        if (serviceStrategyMap == null) {
+            return null;
+        }
+        return serviceStrategyMap.get(host + ":" + port + "/" + strategyType);
+    }
+
+    /**
+     * 全量加载节点策略并从加载时的版本之后开始监听
+     */
+    private synchronized void loadNodeStrategies() {
+        long now = System.currentTimeMillis();
+        if (nodeStrategyWatching || now < nextNodeStrategyLoadTime) {
+            return;
+        }
+        nextNodeStrategyLoadTime = now + REFRESH_RETRY_INTERVAL;
+        ByteSequence strategyPrefix = ByteSequence.from(STRATEGY_ROOT_PATH, StandardCharsets.UTF_8);
+        try {
+            GetResponse getResponse = kvClient.get(strategyPrefix, GetOption.builder().isPrefix(true).build())
+                    .get(registryConfig.getTimeout(), TimeUnit.MILLISECONDS);
+            nodeStrategyCache.clear();
+            for (KeyValue keyValue : getResponse.getKvs()) {
+                updateNodeStrategyCache(keyValue.getKey().toString(StandardCharsets.UTF_8),
+                        keyValue.getValue().toString(StandardCharsets.UTF_8));
+            }
+            nodeStrategyVersion.incrementAndGet();
+            WatchOption watchOption = WatchOption.builder().isPrefix(true)
+                    .withRevision(getResponse.getHeader().getRevision() + 1).build();
+            client.getWatchClient().watch(strategyPrefix, watchOption, response -> {
+                for (WatchEvent event : response.getEvents()) {
+                    KeyValue keyValue = event.getKeyValue();
+                    String key = keyValue.getKey().toString(StandardCharsets.UTF_8);
+                    String value = event.getEventType() == WatchEvent.EventType.PUT
+                            ? keyValue.getValue().toString(StandardCharsets.UTF_8) : null;
+                    updateNodeStrategyCache(key, value);
+                }
+            }, throwable -> {
+                // 监听失效，保留当前缓存，下次获取时重新加载
+                log.error("watch node strategy error", throwable);
+                nodeStrategyWatching = false;
+            });
+            nodeStrategyWatching = true;
+        } catch (Exception e) {
+            log.warn("load node strategies failed, using static strategies", e);
+        }
+    }
+
+    /**
+     * 更新节点策略缓存
+     *
+     * @param key   /rpc/strategy/服务键名/host:port/策略类型
+     * @param value 策略值，为空表示删除
+     */
+    private void updateNodeStrategyCache(String key, String value) {
+        String path = key.substring(STRATEGY_ROOT_PATH.length());
+        int index = path.indexOf('/');
+        if (index <= 0) {
+            return;
+        }
+        String serviceKey = path.substring(0, index);
+        String nodeStrategyKey = path.substring(index + 1);
+        if (StrUtil.isBlank(value)) {
+            Map<String, String> serviceStrategyMap = nodeStrategyCache.get(serviceKey);
+            if (serviceStrategyMap != null) {
+                serviceStrategyMap.remove(nodeStrategyKey);
+            }
+        } else {
+            nodeStrategyCache.computeIfAbsent(serviceKey, k -> new ConcurrentHashMap<>())
+                    .put(nodeStrategyKey, value.trim());
+        }
+        nodeStrategyVersion.incrementAndGet();
+    }
+
+    /**
+     * 更新服务的响应缓存版本（服务提供者在数据变更后调用），监听该服务的消费端会清空响应缓存
+     *
+     * @param serviceKey 服务键名
+     */
+    public void bumpCacheVersion(String serviceKey) {
+        String key = CACHE_VERSION_ROOT_PATH + serviceKey;
+        try {
+            kvClient.put(ByteSequence.from(key, StandardCharsets.UTF_8),
+                            ByteSequence.from(String.valueOf(System.currentTimeMillis()), StandardCharsets.UTF_8))
+                    .get(registryConfig.getTimeout(), TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            throw new RuntimeException("更新响应缓存版本失败：" + serviceKey, e);
+        }
+    }
+
+    /**
+     * 监听服务的响应缓存版本，版本变化（或监听中断）时调用监听器
+     * 只弱引用监听对象（如响应缓存），不阻止其被回收；监听器本身不要引用监听对象
+     *
+     * @param serviceKey 服务键名
+     * @param target     监听对象
+     * @param listener   监听器（通常为清空响应缓存）
+     */
+    public <T> void watchCacheVersion(String serviceKey, T target, Consumer<T> listener) {
+        boolean[] first = new boolean[1];
+        List<CacheVersionListener<?>> listeners = cacheVersionListenerMap.computeIfAbsent(serviceKey, key -> {
+            first[0] = true;
+            return new CopyOnWriteArrayList<>();
+        });
+        listeners.removeIf(CacheVersionListener::isCleared);
+        listeners.add(new CacheVersionListener<>(target, listener));
+        if (first[0]) {
+            watchCacheVersion(serviceKey);
+        }
+    }
+
+    private void watchCacheVersion(String serviceKey) {
+        if (destroyed) {
+            return;
+        }
+        ByteSequence key = ByteSequence.from(CACHE_VERSION_ROOT_PATH + serviceKey, StandardCharsets.UTF_8);
+        try {
+            GetResponse getResponse = kvClient.get(key).get(registryConfig.getTimeout(), TimeUnit.MILLISECONDS);
+            WatchOption watchOption = WatchOption.builder()
+                    .withRevision(getResponse.getHeader().getRevision() + 1).build();
+            client.getWatchClient().watch(key, watchOption,
+                    response -> notifyCacheVersionListeners(serviceKey),
+                    throwable -> {
+                        // 监听中断期间可能错过版本变化，清空缓存后重新监听
+                        log.warn("watch cache version error, serviceKey: {}", serviceKey, throwable);
+                        notifyCacheVersionListeners(serviceKey);
+                        retryWatchCacheVersion(serviceKey);
+                    });
+        } catch (Exception e) {
+            log.warn("watch cache version failed, serviceKey: {}", serviceKey, e);
+            retryWatchCacheVersion(serviceKey);
+        }
+    }
+
+    private void retryWatchCacheVersion(String serviceKey) {
+        CompletableFuture.runAsync(() -> watchCacheVersion(serviceKey),
+                CompletableFuture.delayedExecutor(REFRESH_RETRY_INTERVAL, TimeUnit.MILLISECONDS));
+    }
+
+    private void notifyCacheVersionListeners(String serviceKey) {
+        List<CacheVersionListener<?>> listeners = cacheVersionListenerMap.get(serviceKey);
+        if (listeners == null) {
+            return;
+        }
+        for (CacheVersionListener<?> listener : listeners) {
+            try {
+                if (!listener.notifyTarget()) {
+                    listeners.remove(listener);
+                }
+            } catch (Exception e) {
+                log.error("cache version listener error", e);
+            }
+        }
+    }
+
+    /**
+     * 响应缓存失效监听器，弱引用监听对象
+     *
+     * @param <T> 监听对象类型
+     */
+    private static class CacheVersionListener<T> {
+
+        private final WeakReference<T> targetReference;
+
+        private final Consumer<T> listener;
+
+        private CacheVersionListener(T target, Consumer<T> listener) {
+            this.targetReference = new WeakReference<>(target);
+            this.listener = listener;
+        }
+
+        /**
+         * 通知监听对象
+         *
+         * @return 监听对象已被回收时返回 false
+         */
+        private boolean notifyTarget() {
+            T target = targetReference.get();
+            if (target == null) {
+                return false;
+            }
+            listener.accept(target);
+            return true;
+        }
+
+        private boolean isCleared() {
+            return targetReference.get() == null;
+        }
+    }
+
+    /**
+     * 记录一次调用的指标（调用链路使用，只做内存累加，定期写入 Etcd）
+     *
+     * @param serviceMetaInfo 被调用的服务节点
+     * @param duration        调用耗时（毫秒）
+     * @param success         是否成功
+     */
+    public void recordCallMetrics(ServiceMetaInfo serviceMetaInfo, long duration, boolean success) {
+        recordCallMetrics(serviceMetaInfo.getServiceNodeKey(), serviceMetaInfo, duration, success);
+    }
+
+    /**
+     * 记录一次调用的指标（调用方已计算出服务节点键名）
+     *
+     * @param serviceNodeKey  服务节点键名
+     * @param serviceMetaInfo 被调用的服务节点
+     * @param duration        调用耗时（毫秒）
+     * @param success         是否成功
+     */
+    public void recordCallMetrics(String serviceNodeKey, ServiceMetaInfo serviceMetaInfo, long duration,
+                                  boolean success) {
+        EtcdCallMetrics callMetrics = callMetricsMap.get(serviceNodeKey);
+        if (callMetrics == null) {
+            callMetrics = callMetricsMap.computeIfAbsent(serviceNodeKey, key -> new EtcdCallMetrics(
+                    serviceMetaInfo.getServiceName(), serviceMetaInfo.getServiceVersion(),
+                    serviceMetaInfo.getServiceHost(), serviceMetaInfo.getServicePort()));
+            startMetricsFlush();
+        }
+        callMetrics.record(duration, success);
+    }
+
+    /**
+     * 启动调用指标定期写入（守护线程）
+     */
+    private void startMetricsFlush() {
+        if (metricsFlushExecutor != null) {
+            return;
+        }
+        synchronized (callMetricsMap) {
+            if (metricsFlushExecutor != null || destroyed) {
+                return;
+            }
+            ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "yu-rpc-etcd-metrics-flush");
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.scheduleWithFixedDelay(this::flushCallMetrics,
+                    METRICS_FLUSH_INTERVAL, METRICS_FLUSH_INTERVAL, TimeUnit.MILLISECONDS);
+            metricsFlushExecutor = executor;
+        }
+    }
+
+    /**
+     * 把内存中聚合的调用指标增量写入 Etcd
+     */
+    void flushCallMetrics() {
+        for (Map.Entry<String, EtcdCallMetrics> entry : callMetricsMap.entrySet()) {
+            EtcdCallMetrics callMetrics = entry.getValue();
+            long[] delta = callMetrics.drain();
+            if (delta[0] == 0) {
+                // 整个周期没有调用，移除；移除前并发记录的数据再取一次一起写入
+                callMetricsMap.remove(entry.getKey(), callMetrics);
+                delta = callMetrics.drain();
+                if (delta[0] == 0) {
+                    continue;
+                }
+            }
+            writeCallMetrics(callMetrics, delta);
+        }
+    }
+
+    /**
+     * 写入一个节点的指标增量
+     *
+     * @param callMetrics
+     * @param delta       调用次数、成功次数、失败次数、总耗时
+     */
+    void writeCallMetrics(EtcdCallMetrics callMetrics, long[] delta) {
+        long calls = delta[0];
+        String serviceName = callMetrics.serviceName;
+        String version = callMetrics.serviceVersion;
+        String host = callMetrics.host;
+        int port = callMetrics.port;
+        incrementMetrics(serviceName, version, host, port, "calls", calls);
+        if (delta[1] > 0) {
+            incrementMetrics(serviceName, version, host, port, "success", delta[1]);
+        }
+        if (delta[2] > 0) {
+            incrementMetrics(serviceName, version, host, port, "failure", delta[2]);
+        }
+        // 本周期内的平均耗时
+        recordMetrics(serviceName, version, host, port, "avg_time", String.valueOf(delta[3] / calls));
+    }
+
     /**
      * 发布节点策略配置
      *
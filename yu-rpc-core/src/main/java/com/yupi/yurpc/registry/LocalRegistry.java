@@ -1,5 +1,8 @@
 package com.yupi.yurpc.registry;
 
+import com.yupi.yurpc.skeleton.RpcSkeleton;
+import com.yupi.yurpc.skeleton.RpcSkeletons;
+
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -18,13 +21,38 @@ public class LocalRegistry {
     private static final Map<String, Class<?>> map = new ConcurrentHashMap<>();
 
     /**
-     * 注册服务
+     * 服务实现对象（如 Spring Bean）
+     */
+    private static final Map<String, Object> instanceMap = new ConcurrentHashMap<>();
+
+    /**
+     * 服务骨架，首次调用时创建，之后所有请求共用
+     */
+    private static final Map<String, RpcSkeleton> skeletonMap = new ConcurrentHashMap<>();
+
+    /**
+     * 注册服务（首次调用时创建一个实现类实例，所有请求共用）
      *
      * @param serviceName
      * @param implClass
      */
     public static void register(String serviceName, Class<?> implClass) {
         map.put(serviceName, implClass);
+        instanceMap.remove(serviceName);
+        skeletonMap.remove(serviceName);
+    }
+
+    /**
+     * 注册服务及其实现对象
+     *
+     * @param serviceName
+     * @param implClass
+     * @param instance
+     */
+    public static void register(String serviceName, Class<?> implClass, Object instance) {
+        map.put(serviceName, implClass);
+        instanceMap.put(serviceName, instance);
+        skeletonMap.remove(serviceName);
     }
 
     /**
@@ -37,6 +65,34 @@ public class LocalRegistry {
         return map.get(serviceName);
     }
 
+    /**
+     * 获取服务骨架
+     *
+     * @param serviceName
+     * @return 未注册时返回 null
+     */
+    public static RpcSkeleton getSkeleton(String serviceName) {
+        RpcSkeleton skeleton = skeletonMap.get(serviceName);
+        if (skeleton != null) {
+            return skeleton;
+        }
+        Class<?> implClass = map.get(serviceName);
+        if (implClass == null) {
+            return null;
+        }
+        return skeletonMap.computeIfAbsent(serviceName, key -> {
+            Object instance = instanceMap.get(key);
+            if (instance == null) {
+                try {
+                    instance = implClass.getDeclaredConstructor().newInstance();
+                } catch (Exception e) {
+                    throw new RuntimeException("创建服务实现对象失败：" + implClass.getName(), e);
+                }
+            }
+            return RpcSkeletons.create(instance);
+        });
+    }
+
     /**
      * 删除服务
      *
@@ -44,5 +100,7 @@ public class LocalRegistry {
      */
     public static void remove(String serviceName) {
         map.remove(serviceName);
+        instanceMap.remove(serviceName);
+        skeletonMap.remove(serviceName);
     }
 }
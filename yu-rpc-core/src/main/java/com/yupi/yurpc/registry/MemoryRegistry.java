@@ -0,0 +1,212 @@
+package com.yupi.yurpc.registry;
+
+import cn.hutool.json.JSONUtil;
+import com.yupi.yurpc.config.RegistryConfig;
+import com.yupi.yurpc.model.ServiceMetaInfo;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 内存注册中心（进程内）
+ * 同一个 JVM 内的提供者和消费者共享一份存储，注册、服务发现、监听和租约的语义与 Etcd 注册中心一致，
+ * 不依赖外部组件，适合单元测试、压测基准和单机部署
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航学习圈</a>
+ */
+@Slf4j
+public class MemoryRegistry implements Registry {
+
+    /**
+     * 进程内共享的存储
+     */
+    static final MemoryRegistryStore STORE = new MemoryRegistryStore();
+
+    /**
+     * 根节点
+     */
+    private static final String ROOT_PATH = "/rpc/";
+
+    /**
+     * 租约时长（毫秒）
+     */
+    private static final long LEASE_TTL = 30 * 1000;
+
+    /**
+     * 本机注册的节点：key => value（租约过期后用于重新注册）
+     */
+    private final Map<String, String> localRegisterNodeMap = new ConcurrentHashMap<>();
+
+    /**
+     * 本实例唯一的租约 ID（0 表示还没有租约）
+     */
+    private long leaseId;
+
+    /**
+     * 租约相关操作的锁
+     */
+    private final Object leaseLock = new Object();
+
+    /**
+     * 租约续期
+     */
+    private ScheduledExecutorService keepAliveExecutor;
+
+    /**
+     * 注册中心服务缓存
+     */
+    private final RegistryServiceMultiCache registryServiceMultiCache = new RegistryServiceMultiCache();
+
+    /**
+     * 正在监听的服务：服务键名 => 取消监听
+     */
+    private final Map<String, Runnable> watchingCancelMap = new ConcurrentHashMap<>();
+
+    @Override
+    public void init(RegistryConfig registryConfig) {
+        // 进程内存储，无需连接
+    }
+
+    @Override
+    public void register(ServiceMetaInfo serviceMetaInfo) throws Exception {
+        String registerKey = ROOT_PATH + serviceMetaInfo.getServiceNodeKey();
+        String registerValue = JSONUtil.toJsonStr(serviceMetaInfo);
+        synchronized (leaseLock) {
+            STORE.put(registerKey, registerValue, getOrGrantLease());
+            localRegisterNodeMap.put(registerKey, registerValue);
+        }
+    }
+
+    @Override
+    public void unRegister(ServiceMetaInfo serviceMetaInfo) {
+        String registerKey = ROOT_PATH + serviceMetaInfo.getServiceNodeKey();
+        STORE.delete(registerKey);
+        localRegisterNodeMap.remove(registerKey);
+    }
+
+    /**
+     * 获取本实例的租约，没有时创建并开始续期，已过期时重新注册（需持有 leaseLock）
+     *
+     * @return
+     */
+    private long getOrGrantLease() {
+        if (leaseId == 0) {
+            leaseId = STORE.grant(LEASE_TTL);
+            heartBeat();
+        } else {
+            keepAlive();
+        }
+        return leaseId;
+    }
+
+    @Override
+    public List<ServiceMetaInfo> serviceDiscovery(String serviceKey) {
+        List<ServiceMetaInfo> cachedServiceMetaInfoList = registryServiceMultiCache.readCache(serviceKey);
+        if (cachedServiceMetaInfoList != null) {
+            return cachedServiceMetaInfoList;
+        }
+        synchronized (this) {
+            cachedServiceMetaInfoList = registryServiceMultiCache.readCache(serviceKey);
+            if (cachedServiceMetaInfoList != null) {
+                return cachedServiceMetaInfoList;
+            }
+            // 持有存储的锁完成查询、写缓存和开始监听，期间不会有变更，之后的变更都通过监听增量更新
+            synchronized (STORE) {
+                MemoryRegistryStore.StoreRange storeRange = STORE.getPrefix(ROOT_PATH + serviceKey + "/");
+                List<ServiceMetaInfo> serviceMetaInfoList = storeRange.values.stream()
+                        .map(value -> JSONUtil.toBean(value, ServiceMetaInfo.class))
+                        .collect(Collectors.toList());
+                registryServiceMultiCache.writeCache(serviceKey, serviceMetaInfoList, storeRange.revision);
+                watch(serviceKey);
+            }
+            return registryServiceMultiCache.readCache(serviceKey);
+        }
+    }
+
+    /**
+     * 心跳检测（服务端）
+     * 定期为本实例唯一的租约续期，租约已过期时重新创建租约并注册所有节点
+     */
+    @Override
+    public void heartBeat() {
+        synchronized (leaseLock) {
+            if (keepAliveExecutor != null) {
+                return;
+            }
+            keepAliveExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "yu-rpc-memory-registry-keepalive");
+                thread.setDaemon(true);
+                return thread;
+            });
+            keepAliveExecutor.scheduleWithFixedDelay(this::keepAlive, LEASE_TTL / 3, LEASE_TTL / 3, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 续期，租约丢失时使用新租约重新注册
+     */
+    void keepAlive() {
+        synchronized (leaseLock) {
+            if (leaseId == 0 || STORE.keepAlive(leaseId)) {
+                return;
+            }
+            log.warn("memory registry lease {} lost, re-registering {} keys", leaseId, localRegisterNodeMap.size());
+            leaseId = STORE.grant(LEASE_TTL);
+            for (Map.Entry<String, String> entry : localRegisterNodeMap.entrySet()) {
+                STORE.put(entry.getKey(), entry.getValue(), leaseId);
+            }
+        }
+    }
+
+    /**
+     * 监听（消费端）
+     *
+     * @param serviceKey 服务键名
+     */
+    @Override
+    public void watch(String serviceKey) {
+        watchingCancelMap.computeIfAbsent(serviceKey, key -> STORE.watch(ROOT_PATH + key + "/", storeEvent -> {
+            String serviceNodeKey = storeEvent.key.substring(ROOT_PATH.length());
+            if (storeEvent.value != null) {
+                ServiceMetaInfo serviceMetaInfo = JSONUtil.toBean(storeEvent.value, ServiceMetaInfo.class);
+                registryServiceMultiCache.updateCache(key,
+                        Collections.singletonList(RegistryServiceMultiCache.NodeChange.put(serviceMetaInfo)),
+                        storeEvent.revision);
+            } else {
+                registryServiceMultiCache.updateCache(key,
+                        Collections.singletonList(RegistryServiceMultiCache.NodeChange.delete(serviceNodeKey)),
+                        storeEvent.revision);
+            }
+        }));
+    }
+
+    @Override
+    public void destroy() {
+        log.info("当前节点下线");
+        // 下线节点：撤销租约，本实例所有的 key 随之一起删除
+        synchronized (leaseLock) {
+            if (keepAliveExecutor != null) {
+                keepAliveExecutor.shutdownNow();
+                keepAliveExecutor = null;
+            }
+            if (leaseId != 0) {
+                STORE.revoke(leaseId);
+                leaseId = 0;
+            }
+            localRegisterNodeMap.clear();
+        }
+        for (Runnable cancel : watchingCancelMap.values()) {
+            cancel.run();
+        }
+        watchingCancelMap.clear();
+    }
+}
@@ -0,0 +1,291 @@
+package com.yupi.yurpc.registry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 内存注册中心的键值存储（进程内共享）
+ * 按 etcd 的语义实现：全局递增的版本号、带 TTL 的租约（过期时挂在租约上的 key 一起删除）、前缀查询和前缀监听。
+ * 所有修改串行执行，监听回调在修改线程中按版本顺序同步触发，结果可复现
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航学习圈</a>
+ */
+class MemoryRegistryStore {
+
+    /**
+     * 租约过期检查间隔（毫秒）
+     */
+    private static final long EXPIRE_CHECK_INTERVAL = 1000;
+
+    /**
+     * 键值对：key => 值
+     */
+    private final NavigableMap<String, StoreValue> keyValueMap = new TreeMap<>();
+
+    /**
+     * 租约：租约 ID => 租约
+     */
+    private final Map<Long, StoreLease> leaseMap = new TreeMap<>();
+
+    /**
+     * 监听器
+     */
+    private final List<StoreWatcher> watchers = new CopyOnWriteArrayList<>();
+
+    /**
+     * 当前版本
+     */
+    private long revision;
+
+    private long nextLeaseId = 1;
+
+    private ScheduledExecutorService expireExecutor;
+
+    /**
+     * 创建租约
+     *
+     * @param ttl 租约时长（毫秒）
+     * @return 租约 ID
+     */
+    synchronized long grant(long ttl) {
+        long leaseId = nextLeaseId++;
+        leaseMap.put(leaseId, new StoreLease(ttl, System.currentTimeMillis() + ttl));
+        startExpireCheck();
+        return leaseId;
+    }
+
+    /**
+     * 租约续期
+     *
+     * @param leaseId
+     * @return 租约已过期或不存在时返回 false
+     */
+    synchronized boolean keepAlive(long leaseId) {
+        StoreLease storeLease = leaseMap.get(leaseId);
+        if (storeLease == null) {
+            return false;
+        }
+        storeLease.expireTime = System.currentTimeMillis() + storeLease.ttl;
+        return true;
+    }
+
+    /**
+     * 撤销租约，挂在租约上的 key 一起删除
+     *
+     * @param leaseId
+     */
+    synchronized void revoke(long leaseId) {
+        StoreLease storeLease = leaseMap.remove(leaseId);
+        if (storeLease == null) {
+            return;
+        }
+        for (String key : new ArrayList<>(storeLease.keys)) {
+            delete(key);
+        }
+    }
+
+    /**
+     * 删除所有在指定时间之前过期的租约
+     *
+     * @param now 当前时间（毫秒）
+     */
+    synchronized void expireLeases(long now) {
+        List<Long> expiredLeaseIds = new ArrayList<>();
+        for (Map.Entry<Long, StoreLease> entry : leaseMap.entrySet()) {
+            if (entry.getValue().expireTime <= now) {
+                expiredLeaseIds.add(entry.getKey());
+            }
+        }
+        for (Long leaseId : expiredLeaseIds) {
+            revoke(leaseId);
+        }
+    }
+
+    /**
+     * 写入键值对
+     *
+     * @param key
+     * @param value
+     * @param leaseId 关联的租约 ID（0 表示不关联）
+     */
+    synchronized void put(String key, String value, long leaseId) {
+        StoreLease storeLease = null;
+        if (leaseId != 0) {
+            storeLease = leaseMap.get(leaseId);
+            if (storeLease == null) {
+                throw new RuntimeException("租约 " + leaseId + " 不存在或已过期");
+            }
+        }
+        StoreValue oldValue = keyValueMap.get(key);
+        if (oldValue != null && oldValue.leaseId != 0 && oldValue.leaseId != leaseId) {
+            StoreLease oldLease = leaseMap.get(oldValue.leaseId);
+            if (oldLease != null) {
+                oldLease.keys.remove(key);
+            }
+        }
+        if (storeLease != null) {
+            storeLease.keys.add(key);
+        }
+        revision++;
+        keyValueMap.put(key, new StoreValue(value, leaseId));
+        notifyWatchers(new StoreEvent(key, value, revision));
+    }
+
+    /**
+     * 删除键值对
+     *
+     * @param key
+     */
+    synchronized void delete(String key) {
+        StoreValue oldValue = keyValueMap.remove(key);
+        if (oldValue == null) {
+            return;
+        }
+        if (oldValue.leaseId != 0) {
+            StoreLease storeLease = leaseMap.get(oldValue.leaseId);
+            if (storeLease != null) {
+                storeLease.keys.remove(key);
+            }
+        }
+        revision++;
+        notifyWatchers(new StoreEvent(key, null, revision));
+    }
+
+    /**
+     * 前缀查询
+     *
+     * @param prefix
+     * @return
+     */
+    synchronized StoreRange getPrefix(String prefix) {
+        List<String> values = new ArrayList<>();
+        for (Map.Entry<String, StoreValue> entry : keyValueMap.tailMap(prefix, true).entrySet()) {
+            if (!entry.getKey().startsWith(prefix)) {
+                break;
+            }
+            values.add(entry.getValue().value);
+        }
+        return new StoreRange(values, revision);
+    }
+
+    /**
+     * 前缀监听
+     *
+     * @param prefix   key 前缀
+     * @param listener 监听回调
+     * @return 用于取消监听
+     */
+    Runnable watch(String prefix, Consumer<StoreEvent> listener) {
+        StoreWatcher storeWatcher = new StoreWatcher(prefix, listener);
+        watchers.add(storeWatcher);
+        return () -> watchers.remove(storeWatcher);
+    }
+
+    private void notifyWatchers(StoreEvent storeEvent) {
+        for (StoreWatcher storeWatcher : watchers) {
+            if (storeEvent.key.startsWith(storeWatcher.prefix)) {
+                storeWatcher.listener.accept(storeEvent);
+            }
+        }
+    }
+
+    /**
+     * 启动租约过期检查（守护线程）
+     */
+    private void startExpireCheck() {
+        if (expireExecutor != null) {
+            return;
+        }
+        expireExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "yu-rpc-memory-registry-expire");
+            thread.setDaemon(true);
+            return thread;
+        });
+        expireExecutor.scheduleWithFixedDelay(() -> expireLeases(System.currentTimeMillis()),
+                EXPIRE_CHECK_INTERVAL, EXPIRE_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 监听事件，value 为 null 表示删除
+     */
+    static class StoreEvent {
+
+        final String key;
+
+        final String value;
+
+        final long revision;
+
+        StoreEvent(String key, String value, long revision) {
+            this.key = key;
+            this.value = value;
+            this.revision = revision;
+        }
+    }
+
+    /**
+     * 前缀查询结果
+     */
+    static class StoreRange {
+
+        final List<String> values;
+
+        final long revision;
+
+        StoreRange(List<String> values, long revision) {
+            this.values = Collections.unmodifiableList(values);
+            this.revision = revision;
+        }
+    }
+
+    private static class StoreValue {
+
+        private final String value;
+
+        private final long leaseId;
+
+        StoreValue(String value, long leaseId) {
+            this.value = value;
+            this.leaseId = leaseId;
+        }
+    }
+
+    private static class StoreLease {
+
+        private final long ttl;
+
+        private long expireTime;
+
+        private final Set<String> keys = new HashSet<>();
+
+        StoreLease(long ttl, long expireTime) {
+            this.ttl = ttl;
+            this.expireTime = expireTime;
+        }
+    }
+
+    private static class StoreWatcher {
+
+        private final String prefix;
+
+        private final Consumer<StoreEvent> listener;
+
+        StoreWatcher(String prefix, Consumer<StoreEvent> listener) {
+            this.prefix = prefix;
+            this.listener = listener;
+        }
+    }
+}
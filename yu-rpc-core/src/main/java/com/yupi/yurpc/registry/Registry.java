@@ -49,11 +49,11 @@ public interface Registry {
     void heartBeat();
 
     /**
-     * 监听（消费端）
+     * 监听某服务所有节点的变化（消费端）
      *
-     * @param serviceNodeKey
+     * @param serviceKey 服务键名
      */
-    void watch(String serviceNodeKey);
+    void watch(String serviceKey);
 
     /**
      * 服务销毁
@@ -1,7 +1,11 @@
 package com.yupi.yurpc.registry;
 
+import com.yupi.yurpc.config.RegistryConfig;
 import com.yupi.yurpc.spi.SpiLoader;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * 注册中心工厂（用于获取注册中心对象）
  *
@@ -11,15 +15,10 @@ import com.yupi.yurpc.spi.SpiLoader;
  */
 public class RegistryFactory {
 
-    // SPI 动态加载
-    static {
-        SpiLoader.load(Registry.class);
-    }
-
     /**
-     * 默认注册中心
+     * 直连注册中心：直连地址 => 注册中心，相同地址的服务引用共用一个
      */
-    private static final Registry DEFAULT_REGISTRY = new EtcdRegistry();
+    private static final Map<String, Registry> DIRECT_REGISTRY_MAP = new ConcurrentHashMap<>();
 
     /**
      * 获取实例
@@ -31,4 +30,21 @@ public class RegistryFactory {
         return SpiLoader.getInstance(Registry.class, key);
     }
 
+    /**
+     * 获取直连注册中心实例（用于单个服务引用绕过全局注册中心）
+     *
+     * @param directUrl 直连地址，host:port,host:port 或 file:/path/to/providers
+     * @return
+     */
+    public static Registry getDirectInstance(String directUrl) {
+        return DIRECT_REGISTRY_MAP.computeIfAbsent(directUrl, key -> {
+            RegistryConfig registryConfig = new RegistryConfig();
+            registryConfig.setRegistry(RegistryKeys.DIRECT);
+            registryConfig.setAddress(key);
+            Registry registry = new DirectRegistry();
+            registry.init(registryConfig);
+            return registry;
+        });
+    }
+
 }
@@ -13,4 +13,8 @@ public interface RegistryKeys {
 
     String ZOOKEEPER = "zookeeper";
 
+    String MEMORY = "memory";
+
+    String DIRECT = "direct";
+
 }
@@ -1,13 +1,21 @@
 package com.yupi.yurpc.registry;
 
+import com.yupi.yurpc.loadbalancer.ServiceNodeStats;
 import com.yupi.yurpc.model.ServiceMetaInfo;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 注册中心服务本地缓存（支持多个服务）
+ * 读取的是不可变快照，无锁；写入时基于节点表复制出新快照再整体替换（写时复制）
+ * 节点下线时同时移除该节点的调用统计
  *
  * @author <a href="https://github.com/liyupi">coder_yupi</a>
  * @from <a href="https://yupi.icu">编程导航学习圈</a>
@@ -16,19 +24,120 @@ import java.util.concurrent.ConcurrentHashMap;
 public class RegistryServiceMultiCache {
 
     /**
-     * 服务缓存
+     * 服务缓存（不可变快照）
      */
     Map<String, List<ServiceMetaInfo>> serviceCache = new ConcurrentHashMap<>();
 
     /**
-     * 写缓存
+     * 服务节点表：服务键名 => (服务节点键名 => 节点信息)，只在写入时使用
+     */
+    private final Map<String, Map<String, ServiceMetaInfo>> serviceNodeCache = new ConcurrentHashMap<>();
+
+    /**
+     * 服务缓存对应的注册中心版本：服务键名 => 版本
+     */
+    private final Map<String, Long> serviceRevisionMap = new ConcurrentHashMap<>();
+
+    /**
+     * 过期的服务键名（从本地快照恢复或监听失效，还没有和注册中心重新同步）
+     */
+    private final Set<String> staleServiceKeySet = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 缓存修改次数，用于判断是否需要重新保存本地快照
+     */
+    private volatile long modCount;
+
+    /**
+     * 写缓存（全量）
      *
      * @param serviceKey 服务键名
      * @param newServiceCache 更新后的缓存列表
      * @return
      */
     void writeCache(String serviceKey, List<ServiceMetaInfo> newServiceCache) {
-        this.serviceCache.put(serviceKey, newServiceCache);
+        writeCache(serviceKey, newServiceCache, 0);
+    }
+
+    /**
+     * 写缓存（全量），过期的缓存总是被替换，否则忽略比当前缓存更旧的版本
+     *
+     * @param serviceKey      服务键名
+     * @param newServiceCache 更新后的缓存列表
+     * @param revision        数据对应的注册中心版本
+     */
+    synchronized void writeCache(String serviceKey, List<ServiceMetaInfo> newServiceCache, long revision) {
+        Long currentRevision = serviceRevisionMap.get(serviceKey);
+        if (currentRevision != null && revision < currentRevision && !staleServiceKeySet.contains(serviceKey)) {
+            return;
+        }
+        Map<String, ServiceMetaInfo> serviceNodeMap = new LinkedHashMap<>();
+        for (ServiceMetaInfo serviceMetaInfo : newServiceCache) {
+            serviceNodeMap.put(serviceMetaInfo.getServiceNodeKey(), serviceMetaInfo);
+        }
+        Map<String, ServiceMetaInfo> oldServiceNodeMap = serviceNodeCache.put(serviceKey, serviceNodeMap);
+        if (oldServiceNodeMap != null) {
+            for (String serviceNodeKey : oldServiceNodeMap.keySet()) {
+                if (!serviceNodeMap.containsKey(serviceNodeKey)) {
+                    ServiceNodeStats.remove(serviceNodeKey);
+                }
+            }
+        }
+        serviceRevisionMap.put(serviceKey, revision);
+        staleServiceKeySet.remove(serviceKey);
+        publish(serviceKey, serviceNodeMap);
+    }
+
+    /**
+     * 增量更新缓存，一批变更只生成一次新快照
+     * 未缓存的服务直接忽略，下次服务发现时会全量加载
+     *
+     * @param serviceKey  服务键名
+     * @param nodeChanges 按发生顺序排列的节点变更
+     */
+    void updateCache(String serviceKey, List<NodeChange> nodeChanges) {
+        updateCache(serviceKey, nodeChanges, 0);
+    }
+
+    /**
+     * 增量更新缓存，并记录变更对应的注册中心版本
+     * 变更按顺序应用，同一批中先新增后删除的节点不会被重新加回
+     *
+     * @param serviceKey  服务键名
+     * @param nodeChanges 按发生顺序（注册中心版本）排列的节点变更
+     * @param revision    变更对应的注册中心版本
+     */
+    synchronized void updateCache(String serviceKey, List<NodeChange> nodeChanges, long revision) {
+        Map<String, ServiceMetaInfo> serviceNodeMap = serviceNodeCache.get(serviceKey);
+        if (serviceNodeMap == null) {
+            return;
+        }
+        for (NodeChange nodeChange : nodeChanges) {
+            if (nodeChange.serviceMetaInfo == null) {
+                if (serviceNodeMap.remove(nodeChange.serviceNodeKey) != null) {
+                    ServiceNodeStats.remove(nodeChange.serviceNodeKey);
+                }
+            } else {
+                serviceNodeMap.put(nodeChange.serviceNodeKey, nodeChange.serviceMetaInfo);
+            }
+        }
+        serviceRevisionMap.merge(serviceKey, revision, Math::max);
+        publish(serviceKey, serviceNodeMap);
+    }
+
+    /**
+     * 从本地快照恢复缓存，只恢复还没有缓存的服务，并标记为过期
+     *
+     * @param serviceKey          服务键名
+     * @param serviceMetaInfoList 快照中的节点列表
+     * @param revision            快照中的注册中心版本
+     */
+    synchronized void restoreCache(String serviceKey, List<ServiceMetaInfo> serviceMetaInfoList, long revision) {
+        if (serviceNodeCache.containsKey(serviceKey)) {
+            return;
+        }
+        writeCache(serviceKey, serviceMetaInfoList, revision);
+        staleServiceKeySet.add(serviceKey);
     }
 
     /**
@@ -41,10 +150,101 @@ public class RegistryServiceMultiCache {
         return this.serviceCache.get(serviceKey);
     }
 
+    /**
+     * 读取缓存对应的注册中心版本
+     *
+     * @param serviceKey
+     * @return 未缓存时返回 0
+     */
+    long readRevision(String serviceKey) {
+        return serviceRevisionMap.getOrDefault(serviceKey, 0L);
+    }
+
+    /**
+     * 缓存是否过期（需要和注册中心重新同步）
+     *
+     * @param serviceKey
+     * @return
+     */
+    boolean isStale(String serviceKey) {
+        return staleServiceKeySet.contains(serviceKey);
+    }
+
+    /**
+     * 标记缓存过期，数据保留作为注册中心不可用时的兜底
+     *
+     * @param serviceKey
+     */
+    synchronized void markStale(String serviceKey) {
+        if (serviceNodeCache.containsKey(serviceKey)) {
+            staleServiceKeySet.add(serviceKey);
+        }
+    }
+
     /**
      * 清空缓存
      */
-    void clearCache(String serviceKey) {
+    synchronized void clearCache(String serviceKey) {
+        Map<String, ServiceMetaInfo> serviceNodeMap = this.serviceNodeCache.remove(serviceKey);
+        if (serviceNodeMap != null) {
+            serviceNodeMap.keySet().forEach(ServiceNodeStats::remove);
+        }
         this.serviceCache.remove(serviceKey);
+        this.serviceRevisionMap.remove(serviceKey);
+        this.staleServiceKeySet.remove(serviceKey);
+        modCount++;
+    }
+
+    /**
+     * 缓存修改次数
+     *
+     * @return
+     */
+    long getModCount() {
+        return modCount;
+    }
+
+    /**
+     * 获取全部服务缓存（不可变快照），用于保存本地快照
+     *
+     * @return 服务键名 => 节点列表
+     */
+    Map<String, List<ServiceMetaInfo>> getAllCache() {
+        return new HashMap<>(serviceCache);
+    }
+
+    /**
+     * 基于节点表生成新的不可变快照
+     *
+     * @param serviceKey
+     * @param serviceNodeMap
+     */
+    private void publish(String serviceKey, Map<String, ServiceMetaInfo> serviceNodeMap) {
+        List<ServiceMetaInfo> snapshot = Collections.unmodifiableList(new ArrayList<>(serviceNodeMap.values()));
+        this.serviceCache.put(serviceKey, snapshot);
+        modCount++;
+    }
+
+    /**
+     * 节点变更：新增或更新时带有节点信息，删除时节点信息为 null
+     */
+    static class NodeChange {
+
+        final String serviceNodeKey;
+
+        final ServiceMetaInfo serviceMetaInfo;
+
+        private NodeChange(String serviceNodeKey, ServiceMetaInfo serviceMetaInfo) {
+            this.serviceNodeKey = serviceNodeKey;
+            this.serviceMetaInfo = serviceMetaInfo;
+        }
+
+        static NodeChange put(ServiceMetaInfo serviceMetaInfo) {
+            return new NodeChange(serviceMetaInfo.getServiceNodeKey(), serviceMetaInfo);
+        }
+
+        static NodeChange delete(String serviceNodeKey) {
+            return new NodeChange(serviceNodeKey, null);
+        }
     }
 }
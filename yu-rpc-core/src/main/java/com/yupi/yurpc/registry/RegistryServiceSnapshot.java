@@ -0,0 +1,135 @@
+package com.yupi.yurpc.registry;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.json.JSONArray;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.yupi.yurpc.model.ServiceMetaInfo;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 注册中心服务缓存的本地快照
+ * 定期把服务发现结果（带注册中心版本）保存到本地文件，启动时先从文件恢复，
+ * 注册中心较慢或不可用时也能立即完成服务发现；和注册中心重新同步后以最新数据为准
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航学习圈</a>
+ */
+@Slf4j
+public class RegistryServiceSnapshot {
+
+    /**
+     * 快照格式版本
+     */
+    private static final int SNAPSHOT_VERSION = 1;
+
+    private final File snapshotFile;
+
+    private final RegistryServiceMultiCache registryServiceMultiCache;
+
+    private ScheduledExecutorService scheduledExecutorService;
+
+    /**
+     * 上次保存时缓存的修改次数
+     */
+    private long savedModCount = -1;
+
+    public RegistryServiceSnapshot(String snapshotFile, RegistryServiceMultiCache registryServiceMultiCache) {
+        this.snapshotFile = FileUtil.file(snapshotFile);
+        this.registryServiceMultiCache = registryServiceMultiCache;
+    }
+
+    /**
+     * 从本地快照恢复服务缓存，恢复的缓存会被标记为过期
+     */
+    public void load() {
+        if (!snapshotFile.isFile()) {
+            return;
+        }
+        try {
+            JSONObject snapshot = JSONUtil.parseObj(FileUtil.readString(snapshotFile, StandardCharsets.UTF_8));
+            if (snapshot.getInt("version", 0) != SNAPSHOT_VERSION) {
+                return;
+            }
+            JSONObject services = snapshot.getJSONObject("services");
+            if (services == null) {
+                return;
+            }
+            for (String serviceKey : services.keySet()) {
+                JSONObject service = services.getJSONObject(serviceKey);
+                List<ServiceMetaInfo> serviceMetaInfoList = service.getJSONArray("nodes").toList(ServiceMetaInfo.class);
+                registryServiceMultiCache.restoreCache(serviceKey, serviceMetaInfoList, service.getLong("revision", 0L));
+            }
+            savedModCount = registryServiceMultiCache.getModCount();
+            log.info("registry snapshot loaded, {} services from {}", services.size(), snapshotFile);
+        } catch (Exception e) {
+            // 快照损坏不影响启动，直接走注册中心
+            log.warn("load registry snapshot {} failed", snapshotFile, e);
+        }
+    }
+
+    /**
+     * 保存本地快照（缓存没有变化时跳过），先写临时文件再原子替换，避免进程中途退出留下损坏的快照
+     */
+    public synchronized void save() {
+        long modCount = registryServiceMultiCache.getModCount();
+        if (modCount == savedModCount) {
+            return;
+        }
+        JSONObject services = JSONUtil.createObj();
+        for (Map.Entry<String, List<ServiceMetaInfo>> entry : registryServiceMultiCache.getAllCache().entrySet()) {
+            String serviceKey = entry.getKey();
+            JSONObject service = JSONUtil.createObj()
+                    .set("revision", registryServiceMultiCache.readRevision(serviceKey))
+                    .set("nodes", new JSONArray(entry.getValue()));
+            services.set(serviceKey, service);
+        }
+        JSONObject snapshot = JSONUtil.createObj()
+                .set("version", SNAPSHOT_VERSION)
+                .set("services", services);
+        try {
+            File tempFile = FileUtil.file(snapshotFile.getAbsolutePath() + ".tmp");
+            FileUtil.writeString(snapshot.toString(), tempFile, StandardCharsets.UTF_8);
+            Files.move(tempFile.toPath(), snapshotFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            savedModCount = modCount;
+        } catch (Exception e) {
+            log.warn("save registry snapshot {} failed", snapshotFile, e);
+        }
+    }
+
+    /**
+     * 开始定期保存
+     *
+     * @param interval 保存间隔（毫秒）
+     */
+    public void start(long interval) {
+        scheduledExecutorService = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "yu-rpc-registry-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduledExecutorService.scheduleWithFixedDelay(this::save, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 停止定期保存，并保存最后一次
+     */
+    public void stop() {
+        if (scheduledExecutorService != null) {
+            scheduledExecutorService.shutdownNow();
+        }
+        save();
+    }
+}
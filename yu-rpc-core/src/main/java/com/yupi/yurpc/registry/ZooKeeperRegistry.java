@@ -1,11 +1,11 @@
 package com.yupi.yurpc.registry;
 
-import cn.hutool.core.collection.ConcurrentHashSet;
 import com.yupi.yurpc.config.RegistryConfig;
 import com.yupi.yurpc.model.ServiceMetaInfo;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.curator.framework.CuratorFramework;
 import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.framework.recipes.cache.ChildData;
 import org.apache.curator.framework.recipes.cache.CuratorCache;
 import org.apache.curator.framework.recipes.cache.CuratorCacheListener;
 import org.apache.curator.retry.ExponentialBackoffRetry;
@@ -14,10 +14,17 @@ import org.apache.curator.x.discovery.ServiceDiscoveryBuilder;
 import org.apache.curator.x.discovery.ServiceInstance;
 import org.apache.curator.x.discovery.details.JsonInstanceSerializer;
 
-import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
 /**
@@ -43,14 +50,29 @@ public class ZooKeeperRegistry implements Registry {
     private final Set<String> localRegisterNodeKeySet = new HashSet<>();
 
     /**
-     * 注册中心服务缓存
+     * 注册中心服务缓存（支持多个服务键）
      */
-    private final RegistryServiceCache registryServiceCache = new RegistryServiceCache();
+    private final RegistryServiceMultiCache registryServiceMultiCache = new RegistryServiceMultiCache();
 
     /**
-     * 正在监听的 key 集合
+     * 正在监听的服务：服务键名 => 该服务路径的 CuratorCache
      */
-    private final Set<String> watchingKeySet = new ConcurrentHashSet<>();
+    private final Map<String, CuratorCache> watchingCacheMap = new ConcurrentHashMap<>();
+
+    /**
+     * 服务缓存初始化结果：服务键名 => CuratorCache 初始化完成后写入缓存的节点列表
+     */
+    private final Map<String, CompletableFuture<List<ServiceMetaInfo>>> initializedFutureMap = new ConcurrentHashMap<>();
+
+    /**
+     * 等待服务缓存初始化的超时时间（毫秒）
+     */
+    private long timeout;
+
+    /**
+     * 服务实例序列化器
+     */
+    private final JsonInstanceSerializer<ServiceMetaInfo> instanceSerializer = new JsonInstanceSerializer<>(ServiceMetaInfo.class);
 
     /**
      * 根节点
@@ -60,6 +82,7 @@ public class ZooKeeperRegistry implements Registry {
 
     @Override
     public void init(RegistryConfig registryConfig) {
+        timeout = registryConfig.getTimeout();
         // 构建 client 实例
         client = CuratorFrameworkFactory
                 .builder()
@@ -71,7 +94,7 @@ public class ZooKeeperRegistry implements Registry {
         serviceDiscovery = ServiceDiscoveryBuilder.builder(ServiceMetaInfo.class)
                 .client(client)
                 .basePath(ZK_ROOT_PATH)
-                .serializer(new JsonInstanceSerializer<>(ServiceMetaInfo.class))
+                .serializer(instanceSerializer)
                 .build();
 
         try {
@@ -107,25 +130,22 @@ public class ZooKeeperRegistry implements Registry {
 
     @Override
     public List<ServiceMetaInfo> serviceDiscovery(String serviceKey) {
-        // 优先从缓存获取服务
-        List<ServiceMetaInfo> cachedServiceMetaInfoList = registryServiceCache.readCache();
+        // 优先从缓存获取服务（无锁读取不可变快照）
+        List<ServiceMetaInfo> cachedServiceMetaInfoList = registryServiceMultiCache.readCache(serviceKey);
         if (cachedServiceMetaInfoList != null) {
             return cachedServiceMetaInfoList;
         }
-
+        // 缓存未命中时开始监听，由 CuratorCache 初始化完成后的全量数据写入缓存
+        // 不单独查询，避免查询和监听之间删除的节点一直留在缓存中
+        watch(serviceKey);
         try {
-            // 查询服务信息
-            Collection<ServiceInstance<ServiceMetaInfo>> serviceInstanceList = serviceDiscovery.queryForInstances(serviceKey);
-
-            // 解析服务信息
-            List<ServiceMetaInfo> serviceMetaInfoList = serviceInstanceList.stream()
-                    .map(ServiceInstance::getPayload)
-                    .collect(Collectors.toList());
-
-            // 写入服务缓存
-            registryServiceCache.writeCache(serviceMetaInfoList);
-            return serviceMetaInfoList;
-        } catch (Exception e) {
+            return initializedFutureMap.get(serviceKey).get(timeout, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("获取服务列表失败", e.getCause());
+        } catch (TimeoutException e) {
+            throw new RuntimeException("获取服务列表超时", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
             throw new RuntimeException("获取服务列表失败", e);
         }
     }
@@ -137,24 +157,127 @@ public class ZooKeeperRegistry implements Registry {
 
     /**
      * 监听（消费端）
+     * 每个服务路径一个 CuratorCache，初始化完成时全量写入服务缓存，之后子节点的新增、更新、删除增量写入
      *
-     * @param serviceNodeKey 服务节点 key
+     * @param serviceKey 服务键名
      */
     @Override
-    public void watch(String serviceNodeKey) {
-        String watchKey = ZK_ROOT_PATH + "/" + serviceNodeKey;
-        boolean newWatch = watchingKeySet.add(watchKey);
-        if (newWatch) {
-            CuratorCache curatorCache = CuratorCache.build(client, watchKey);
-            curatorCache.start();
-            curatorCache.listenable().addListener(
-                    CuratorCacheListener
-                            .builder()
-                            .forDeletes(childData -> registryServiceCache.clearCache())
-                            .forChanges(((oldNode, node) -> registryServiceCache.clearCache()))
-                            .build()
-            );
+    public void watch(String serviceKey) {
+        if (initializedFutureMap.containsKey(serviceKey)) {
+            return;
+        }
+        // 先登记初始化结果，并发的服务发现总能拿到它等待
+        CompletableFuture<List<ServiceMetaInfo>> initializedFuture = new CompletableFuture<>();
+        if (initializedFutureMap.putIfAbsent(serviceKey, initializedFuture) != null) {
+            return;
+        }
+        String servicePath = ZK_ROOT_PATH + "/" + serviceKey;
+        CuratorCache curatorCache = CuratorCache.build(client, servicePath);
+        watchingCacheMap.put(serviceKey, curatorCache);
+        // 初始化完成前服务还没有缓存，增量变更会被忽略，初始化时的全量数据已包含这些变更
+        curatorCache.listenable().addListener(
+                CuratorCacheListener
+                        .builder()
+                        .forCreates(childData -> onNodeChanged(serviceKey, servicePath, childData))
+                        .forChanges((oldNode, node) -> onNodeChanged(serviceKey, servicePath, node))
+                        .forDeletes(childData -> onNodeDeleted(serviceKey, servicePath, childData))
+                        .forInitialized(() -> onInitialized(serviceKey, servicePath, curatorCache, initializedFuture))
+                        .build()
+        );
+        curatorCache.start();
+    }
+
+    /**
+     * 服务缓存初始化完成，用 CuratorCache 中的全量节点写入服务缓存
+     *
+     * @param serviceKey
+     * @param servicePath
+     * @param curatorCache
+     * @param initializedFuture
+     */
+    private void onInitialized(String serviceKey, String servicePath, CuratorCache curatorCache,
+                               CompletableFuture<List<ServiceMetaInfo>> initializedFuture) {
+        try {
+            List<ServiceMetaInfo> serviceMetaInfoList = curatorCache.stream()
+                    .filter(childData -> getInstanceId(servicePath, childData) != null)
+                    .map(this::parseServiceMetaInfo)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList());
+            registryServiceMultiCache.writeCache(serviceKey, serviceMetaInfoList);
+            initializedFuture.complete(registryServiceMultiCache.readCache(serviceKey));
+        } catch (Exception e) {
+            initializedFuture.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * 服务节点新增或更新
+     *
+     * @param serviceKey
+     * @param servicePath
+     * @param childData
+     */
+    private void onNodeChanged(String serviceKey, String servicePath, ChildData childData) {
+        if (getInstanceId(servicePath, childData) == null) {
+            return;
+        }
+        ServiceMetaInfo serviceMetaInfo = parseServiceMetaInfo(childData);
+        if (serviceMetaInfo != null) {
+            registryServiceMultiCache.updateCache(serviceKey,
+                    Collections.singletonList(RegistryServiceMultiCache.NodeChange.put(serviceMetaInfo)));
+        }
+    }
+
+    /**
+     * 解析服务节点数据，没有数据或解析失败时返回 null
+     *
+     * @param childData
+     * @return
+     */
+    private ServiceMetaInfo parseServiceMetaInfo(ChildData childData) {
+        if (childData.getData() == null) {
+            return null;
+        }
+        try {
+            return instanceSerializer.deserialize(childData.getData()).getPayload();
+        } catch (Exception e) {
+            log.error("zookeeper node {} parse error", childData.getPath(), e);
+            return null;
+        }
+    }
+
+    /**
+     * 服务节点删除
+     *
+     * @param serviceKey
+     * @param servicePath
+     * @param childData
+     */
+    private void onNodeDeleted(String serviceKey, String servicePath, ChildData childData) {
+        String instanceId = getInstanceId(servicePath, childData);
+        if (instanceId == null) {
+            return;
+        }
+        // 实例 ID 即 host:port，与服务节点键名的后缀一致
+        String serviceNodeKey = serviceKey + "/" + instanceId;
+        registryServiceMultiCache.updateCache(serviceKey,
+                Collections.singletonList(RegistryServiceMultiCache.NodeChange.delete(serviceNodeKey)));
+    }
+
+    /**
+     * 获取服务路径下直接子节点的实例 ID，不是直接子节点时返回 null
+     *
+     * @param servicePath
+     * @param childData
+     * @return
+     */
+    private String getInstanceId(String servicePath, ChildData childData) {
+        String path = childData.getPath();
+        if (!path.startsWith(servicePath + "/")) {
+            return null;
         }
+        String instanceId = path.substring(servicePath.length() + 1);
+        return instanceId.contains("/") ? null : instanceId;
     }
 
     @Override
@@ -170,6 +293,9 @@ public class ZooKeeperRegistry implements Registry {
         }
 
         // 释放资源
+        watchingCacheMap.values().forEach(CuratorCache::close);
+        watchingCacheMap.clear();
+        initializedFutureMap.clear();
         if (client != null) {
             client.close();
         }
@@ -0,0 +1,140 @@
+package com.yupi.yurpc.router;
+
+import cn.hutool.core.lang.hash.MurmurHash;
+import cn.hutool.core.net.NetUtil;
+import cn.hutool.core.util.RuntimeUtil;
+import cn.hutool.core.util.StrUtil;
+import com.yupi.yurpc.RpcApplication;
+import com.yupi.yurpc.config.RpcConfig;
+import com.yupi.yurpc.model.ServiceMetaInfo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 确定性子集路由（消费端，位于负载均衡之前）
+ * 大规模集群下每个消费端只使用固定大小的提供者子集，限制两端的连接数。
+ * 采用最高随机权重（Rendezvous）哈希：每个节点按 hash(消费端 ID, 节点地址) 打分，取分数最高的 K 个，
+ * 同一消费端的子集是确定的，节点上下线只影响它自己所在的位置，不会整体重新洗牌。
+ * 位于同区域优先路由之后，在选中的区域层级内取子集，子集中的节点都满足区域要求
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航学习圈</a>
+ */
+public class SubsetRouter {
+
+    /**
+     * 每个服务缓存的子集结果数（同区域路由的可用区、地域、全部节点三个层级各一个）
+     */
+    private static final int MAX_SNAPSHOTS_PER_SERVICE = 3;
+
+    /**
+     * 子集缓存：服务键名 => 最近使用的子集结果（不可变，整体替换）
+     */
+    private final Map<String, List<SubsetSnapshot>> subsetSnapshotMap = new ConcurrentHashMap<>();
+
+    /**
+     * 默认消费端 ID（未配置时使用本机地址 + 进程号）
+     */
+    private volatile String defaultClientId;
+
+    /**
+     * 获取子集
+     *
+     * @param serviceKey          服务键名
+     * @param serviceMetaInfoList 候选节点列表（同区域路由的结果）
+     * @return
+     */
+    public List<ServiceMetaInfo> route(String serviceKey, List<ServiceMetaInfo> serviceMetaInfoList) {
+        RpcConfig rpcConfig = RpcApplication.getRpcConfig();
+        int subsetSize = rpcConfig.getSubsetSize();
+        // 未开启子集或节点数不超过子集大小
+        if (subsetSize <= 0 || serviceMetaInfoList.size() <= subsetSize) {
+            return serviceMetaInfoList;
+        }
+        List<SubsetSnapshot> subsetSnapshots = subsetSnapshotMap.getOrDefault(serviceKey, Collections.emptyList());
+        for (SubsetSnapshot subsetSnapshot : subsetSnapshots) {
+            if (subsetSnapshot.source == serviceMetaInfoList && subsetSnapshot.subsetSize == subsetSize) {
+                return subsetSnapshot.subset;
+            }
+        }
+        // 候选列表变化（列表对象不同）时重新计算，区域层级切换回来时复用之前的结果
+        List<ServiceMetaInfo> subset = selectSubset(getClientId(rpcConfig), serviceMetaInfoList, subsetSize);
+        List<SubsetSnapshot> newSubsetSnapshots = new ArrayList<>(MAX_SNAPSHOTS_PER_SERVICE);
+        newSubsetSnapshots.add(new SubsetSnapshot(serviceMetaInfoList, subsetSize, subset));
+        for (int i = 0; i < subsetSnapshots.size() && newSubsetSnapshots.size() < MAX_SNAPSHOTS_PER_SERVICE; i++) {
+            newSubsetSnapshots.add(subsetSnapshots.get(i));
+        }
+        subsetSnapshotMap.put(serviceKey, newSubsetSnapshots);
+        return subset;
+    }
+
+    /**
+     * 选出分数最高的 subsetSize 个节点
+     *
+     * @param clientId
+     * @param serviceMetaInfoList
+     * @param subsetSize
+     * @return
+     */
+    static List<ServiceMetaInfo> selectSubset(String clientId, List<ServiceMetaInfo> serviceMetaInfoList, int subsetSize) {
+        List<ScoredNode> scoredNodes = new ArrayList<>(serviceMetaInfoList.size());
+        for (ServiceMetaInfo serviceMetaInfo : serviceMetaInfoList) {
+            String nodeAddress = serviceMetaInfo.getServiceHost() + ":" + serviceMetaInfo.getServicePort();
+            long score = MurmurHash.hash64(clientId + "#" + nodeAddress);
+            scoredNodes.add(new ScoredNode(serviceMetaInfo, score));
+        }
+        scoredNodes.sort(Comparator.comparingLong((ScoredNode scoredNode) -> scoredNode.score).reversed());
+        List<ServiceMetaInfo> subset = new ArrayList<>(subsetSize);
+        for (int i = 0; i < subsetSize; i++) {
+            subset.add(scoredNodes.get(i).serviceMetaInfo);
+        }
+        return Collections.unmodifiableList(subset);
+    }
+
+    private String getClientId(RpcConfig rpcConfig) {
+        String clientId = rpcConfig.getSubsetClientId();
+        if (StrUtil.isNotBlank(clientId)) {
+            return clientId;
+        }
+        if (defaultClientId == null) {
+            defaultClientId = NetUtil.getLocalhostStr() + ":" + RuntimeUtil.getPid();
+        }
+        return defaultClientId;
+    }
+
+    /**
+     * 某个服务发现快照的子集结果
+     */
+    private static class SubsetSnapshot {
+
+        private final List<ServiceMetaInfo> source;
+
+        private final int subsetSize;
+
+        private final List<ServiceMetaInfo> subset;
+
+        SubsetSnapshot(List<ServiceMetaInfo> source, int subsetSize, List<ServiceMetaInfo> subset) {
+            this.source = source;
+            this.subsetSize = subsetSize;
+            this.subset = subset;
+        }
+    }
+
+    private static class ScoredNode {
+
+        private final ServiceMetaInfo serviceMetaInfo;
+
+        private final long score;
+
+        ScoredNode(ServiceMetaInfo serviceMetaInfo, long score) {
+            this.serviceMetaInfo = serviceMetaInfo;
+            this.score = score;
+        }
+    }
+}
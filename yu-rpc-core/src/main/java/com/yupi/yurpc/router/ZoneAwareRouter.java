@@ -0,0 +1,160 @@
+package com.yupi.yurpc.router;
+
+import cn.hutool.core.util.StrUtil;
+import com.yupi.yurpc.RpcApplication;
+import com.yupi.yurpc.config.RpcConfig;
+import com.yupi.yurpc.loadbalancer.ServiceNodeStats;
+import com.yupi.yurpc.model.ServiceMetaInfo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 同区域优先路由（消费端，位于负载均衡之前）
+ * 依次尝试同可用区、同地域的节点，容量或健康度不足时才溢出到更大的范围。
+ * 每个服务发现快照只做一次分区，快照不变时直接复用缓存的候选列表
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航学习圈</a>
+ */
+public class ZoneAwareRouter {
+
+    /**
+     * 分区缓存：服务键名 => 分区结果
+     */
+    private final Map<String, RouteSnapshot> routeSnapshotMap = new ConcurrentHashMap<>();
+
+    /**
+     * 路由，返回供负载均衡选择的候选节点列表
+     *
+     * @param serviceKey          服务键名
+     * @param serviceMetaInfoList 服务发现得到的节点列表
+     * @return
+     */
+    public List<ServiceMetaInfo> route(String serviceKey, List<ServiceMetaInfo> serviceMetaInfoList) {
+        RpcConfig rpcConfig = RpcApplication.getRpcConfig();
+        String zone = rpcConfig.getZone();
+        String region = rpcConfig.getRegion();
+        // 未配置位置信息，不做路由
+        if (StrUtil.isAllBlank(zone, region) || serviceMetaInfoList.size() <= 1) {
+            return serviceMetaInfoList;
+        }
+        RouteSnapshot routeSnapshot = routeSnapshotMap.get(serviceKey);
+        // 服务发现快照变化（列表对象不同）时重新分区
+        if (routeSnapshot == null || routeSnapshot.source != serviceMetaInfoList) {
+            routeSnapshot = new RouteSnapshot(serviceMetaInfoList, zone, region);
+            routeSnapshotMap.put(serviceKey, routeSnapshot);
+        }
+        double minHealthyRatio = rpcConfig.getZoneMinHealthyRatio();
+        double minCapacityRatio = rpcConfig.getZoneMinCapacityRatio();
+        if (routeSnapshot.zoneTier.isAvailable(routeSnapshot.totalWeight, minHealthyRatio, minCapacityRatio)) {
+            return routeSnapshot.zoneTier.serviceMetaInfoList;
+        }
+        if (routeSnapshot.regionTier.isAvailable(routeSnapshot.totalWeight, minHealthyRatio, minCapacityRatio)) {
+            return routeSnapshot.regionTier.serviceMetaInfoList;
+        }
+        return serviceMetaInfoList;
+    }
+
+    /**
+     * 某个服务发现快照的分区结果
+     */
+    private static class RouteSnapshot {
+
+        /**
+         * 分区所依据的服务发现快照
+         */
+        private final List<ServiceMetaInfo> source;
+
+        /**
+         * 同可用区节点
+         */
+        private final RouteTier zoneTier;
+
+        /**
+         * 同地域节点
+         */
+        private final RouteTier regionTier;
+
+        /**
+         * 全部节点的权重之和
+         */
+        private final long totalWeight;
+
+        RouteSnapshot(List<ServiceMetaInfo> source, String zone, String region) {
+            this.source = source;
+            List<ServiceMetaInfo> zoneList = new ArrayList<>();
+            List<ServiceMetaInfo> regionList = new ArrayList<>();
+            long weightSum = 0;
+            for (ServiceMetaInfo serviceMetaInfo : source) {
+                weightSum += getWeight(serviceMetaInfo);
+                boolean sameZone = StrUtil.isNotBlank(zone) && zone.equals(serviceMetaInfo.getZone());
+                boolean sameRegion = StrUtil.isNotBlank(region) && region.equals(serviceMetaInfo.getRegion());
+                if (sameZone) {
+                    zoneList.add(serviceMetaInfo);
+                }
+                if (sameZone || sameRegion) {
+                    regionList.add(serviceMetaInfo);
+                }
+            }
+            this.totalWeight = weightSum;
+            this.zoneTier = new RouteTier(zoneList);
+            this.regionTier = new RouteTier(regionList);
+        }
+    }
+
+    /**
+     * 某一路由层级的候选节点
+     */
+    private static class RouteTier {
+
+        private final List<ServiceMetaInfo> serviceMetaInfoList;
+
+        /**
+         * 预先解析好的节点统计，避免每次调用查表
+         */
+        private final ServiceNodeStats[] nodeStats;
+
+        private final long weight;
+
+        RouteTier(List<ServiceMetaInfo> serviceMetaInfoList) {
+            this.serviceMetaInfoList = Collections.unmodifiableList(serviceMetaInfoList);
+            this.nodeStats = new ServiceNodeStats[serviceMetaInfoList.size()];
+            long weightSum = 0;
+            for (int i = 0; i < nodeStats.length; i++) {
+                ServiceMetaInfo serviceMetaInfo = serviceMetaInfoList.get(i);
+                nodeStats[i] = ServiceNodeStats.of(serviceMetaInfo);
+                weightSum += getWeight(serviceMetaInfo);
+            }
+            this.weight = weightSum;
+        }
+
+        /**
+         * 该层级的容量和健康度是否足以承接流量
+         */
+        boolean isAvailable(long totalWeight, double minHealthyRatio, double minCapacityRatio) {
+            if (nodeStats.length == 0) {
+                return false;
+            }
+            if (totalWeight > 0 && weight < totalWeight * minCapacityRatio) {
+                return false;
+            }
+            int healthy = 0;
+            for (ServiceNodeStats stats : nodeStats) {
+                if (stats.isHealthy()) {
+                    healthy++;
+                }
+            }
+            return healthy > 0 && healthy >= nodeStats.length * minHealthyRatio;
+        }
+    }
+
+    private static int getWeight(ServiceMetaInfo serviceMetaInfo) {
+        Integer weight = serviceMetaInfo.getWeight();
+        return weight == null ? 0 : Math.max(weight, 0);
+    }
+}
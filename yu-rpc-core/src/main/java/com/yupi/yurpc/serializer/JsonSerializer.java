@@ -30,6 +30,17 @@ public class JsonSerializer implements Serializer {
         if (obj instanceof RpcResponse) {
             return handleResponse((RpcResponse) obj, classType);
         }
+        // 批量请求和响应逐个处理
+        if (obj instanceof RpcRequest[]) {
+            for (RpcRequest rpcRequest : (RpcRequest[]) obj) {
+                handleRequest(rpcRequest, RpcRequest.class);
+            }
+        }
+        if (obj instanceof RpcResponse[]) {
+            for (RpcResponse rpcResponse : (RpcResponse[]) obj) {
+                handleResponse(rpcResponse, RpcResponse.class);
+            }
+        }
         return obj;
     }
 
@@ -49,7 +60,7 @@ public class JsonSerializer implements Serializer {
         for (int i = 0; i < parameterTypes.length; i++) {
             Class<?> clazz = parameterTypes[i];
             // 如果类型不同，则重新处理一下类型
-            if (!clazz.isAssignableFrom(args[i].getClass())) {
+            if (args[i] != null && !clazz.isAssignableFrom(args[i].getClass())) {
                 byte[] argBytes = OBJECT_MAPPER.writeValueAsBytes(args[i]);
                 args[i] = OBJECT_MAPPER.readValue(argBytes, clazz);
             }
@@ -66,7 +77,10 @@ public class JsonSerializer implements Serializer {
      * @throws IOException IO异常
      */
     private <T> T handleResponse(RpcResponse rpcResponse, Class<T> type) throws IOException {
-        // 处理响应数据
+        // 处理响应数据（异常响应没有数据类型）
+        if (rpcResponse.getDataType() == null) {
+            return type.cast(rpcResponse);
+        }
         byte[] dataBytes = OBJECT_MAPPER.writeValueAsBytes(rpcResponse.getData());
         rpcResponse.setData(OBJECT_MAPPER.readValue(dataBytes, rpcResponse.getDataType()));
         return type.cast(rpcResponse);
@@ -11,15 +11,6 @@ import com.yupi.yurpc.spi.SpiLoader;
  */
 public class SerializerFactory {
 
-    static {
-        SpiLoader.load(Serializer.class);
-    }
-
-    /**
-     * 默认序列化器
-     */
-    private static final Serializer DEFAULT_SERIALIZER = new JdkSerializer();
-
     /**
      * 获取实例
      *
@@ -6,13 +6,13 @@ import com.yupi.yurpc.model.RpcResponse;
 import com.yupi.yurpc.registry.LocalRegistry;
 import com.yupi.yurpc.serializer.Serializer;
 import com.yupi.yurpc.serializer.SerializerFactory;
+import com.yupi.yurpc.skeleton.RpcSkeleton;
 import io.vertx.core.Handler;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.core.http.HttpServerRequest;
 import io.vertx.core.http.HttpServerResponse;
 
 import java.io.IOException;
-import java.lang.reflect.Method;
 
 /**
  * HTTP 请求处理器
@@ -52,16 +52,23 @@ public class HttpServerHandler implements Handler<HttpServerRequest> {
             }
 
             try {
-                // 获取要调用的服务实现类，通过反射调用
-                Class<?> implClass = LocalRegistry.get(rpcRequest.getServiceName());
-                Method method = implClass.getMethod(rpcRequest.getMethodName(), rpcRequest.getParameterTypes());
-                Object result = method.invoke(implClass.newInstance(), rpcRequest.getArgs());
+                // 获取要调用的服务骨架，按方法 ID 直接调用实现对象
+                RpcSkeleton skeleton = LocalRegistry.getSkeleton(rpcRequest.getServiceName());
+                if (skeleton == null) {
+                    throw new RuntimeException("服务未注册：" + rpcRequest.getServiceName());
+                }
+                int methodId = skeleton.getMethodId(rpcRequest.getMethodName(), rpcRequest.getParameterTypes());
+                if (methodId < 0) {
+                    throw new RuntimeException("服务方法不存在：" + rpcRequest.getServiceName() + "." + rpcRequest.getMethodName());
+                }
+                Object result = skeleton.invoke(methodId, rpcRequest.getArgs());
                 // 封装返回结果
                 rpcResponse.setData(result);
-                rpcResponse.setDataType(method.getReturnType());
+                rpcResponse.setDataType(skeleton.getReturnType(methodId));
                 rpcResponse.setMessage("ok");
-            } catch (Exception e) {
-                e.printStackTrace();
+            } catch (Throwable t) {
+                t.printStackTrace();
+                Exception e = t instanceof Exception ? (Exception) t : new RuntimeException(t);
                 rpcResponse.setMessage(e.getMessage());
                 rpcResponse.setException(e);
             }
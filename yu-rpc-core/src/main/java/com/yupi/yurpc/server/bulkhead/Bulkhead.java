@@ -0,0 +1,310 @@
+package com.yupi.yurpc.server.bulkhead;
+
+import com.yupi.yurpc.RpcApplication;
+import com.yupi.yurpc.annotation.RpcBulkhead;
+import com.yupi.yurpc.config.BulkheadConfig;
+import com.yupi.yurpc.protocol.ProtocolMessagePriorityEnum;
+import com.yupi.yurpc.registry.LocalRegistry;
+import com.yupi.yurpc.server.scheduler.PriorityExecutor;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 舱壁（服务端使用，按服务或方法隔离处理能力）
+ * 线程池隔离：独立的有界线程池和队列；信号量隔离：在公共业务线程池中按请求优先级处理，只限制并发数
+ * 配置来源按优先级：全局配置 rpc.bulkheads（服务名#方法名 > 服务名）、方法上的 @RpcBulkhead、
+ * 注册服务时声明的配置（如 @RpcService）、服务实现类上的 @RpcBulkhead
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航学习圈</a>
+ */
+public class Bulkhead {
+
+    /**
+     * 舱壁表：舱壁名（服务名或 服务名#方法名）=> 舱壁
+     */
+    private static final Map<String, Bulkhead> BULKHEAD_MAP = new ConcurrentHashMap<>();
+
+    /**
+     * 注册服务时声明的配置：服务名 => 配置
+     */
+    private static final Map<String, BulkheadConfig> REGISTERED_CONFIG_MAP = new ConcurrentHashMap<>();
+
+    /**
+     * 方法使用的舱壁：服务名#方法名 => 舱壁（没有舱壁时为 empty）
+     */
+    private static final Map<String, Optional<Bulkhead>> RESOLVED_MAP = new ConcurrentHashMap<>();
+
+    private final String name;
+
+    private final String type;
+
+    private final int maxConcurrency;
+
+    private final int queueSize;
+
+    /**
+     * 线程池隔离的线程池，信号量隔离时为 null
+     */
+    private final ThreadPoolExecutor threadPoolExecutor;
+
+    /**
+     * 信号量隔离的许可，线程池隔离时为 null
+     */
+    private final Semaphore semaphore;
+
+    private final AtomicInteger semaphoreActiveCount = new AtomicInteger();
+
+    private final LongAdder completedCount = new LongAdder();
+
+    private final LongAdder rejectedCount = new LongAdder();
+
+    Bulkhead(String name, BulkheadConfig bulkheadConfig) {
+        this.name = name;
+        this.type = bulkheadConfig.getType();
+        this.maxConcurrency = Math.max(1, bulkheadConfig.getMaxConcurrency());
+        if (BulkheadKeys.SEMAPHORE.equals(type)) {
+            this.queueSize = 0;
+            this.semaphore = new Semaphore(maxConcurrency);
+            this.threadPoolExecutor = null;
+            return;
+        }
+        if (!BulkheadKeys.THREAD_POOL.equals(type)) {
+            throw new RuntimeException("舱壁隔离方式不存在：" + type);
+        }
+        this.queueSize = Math.max(0, bulkheadConfig.getQueueSize());
+        this.semaphore = null;
+        BlockingQueue<Runnable> queue = queueSize > 0 ? new ArrayBlockingQueue<>(queueSize) : new SynchronousQueue<>();
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.threadPoolExecutor = new ThreadPoolExecutor(maxConcurrency, maxConcurrency, 60, TimeUnit.SECONDS, queue,
+                runnable -> {
+                    Thread thread = new Thread(runnable, "yu-rpc-bulkhead-" + name + "-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, createRejectionHandler(bulkheadConfig.getRejectionPolicy()));
+        this.threadPoolExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 注册服务声明的舱壁配置
+     *
+     * @param serviceName
+     * @param bulkheadConfig
+     */
+    public static void register(String serviceName, BulkheadConfig bulkheadConfig) {
+        REGISTERED_CONFIG_MAP.put(serviceName, bulkheadConfig);
+        RESOLVED_MAP.clear();
+    }
+
+    /**
+     * 获取方法使用的舱壁
+     *
+     * @param serviceName
+     * @param methodName
+     * @return 没有配置舱壁时返回 null
+     */
+    public static Bulkhead get(String serviceName, String methodName) {
+        String methodKey = serviceName + "#" + methodName;
+        Optional<Bulkhead> bulkhead = RESOLVED_MAP.get(methodKey);
+        if (bulkhead == null) {
+            bulkhead = RESOLVED_MAP.computeIfAbsent(methodKey,
+                    key -> Optional.ofNullable(resolve(serviceName, methodName, key)));
+        }
+        return bulkhead.orElse(null);
+    }
+
+    private static Bulkhead resolve(String serviceName, String methodName, String methodKey) {
+        Map<String, BulkheadConfig> configMap = RpcApplication.getRpcConfig().getBulkheads();
+        Class<?> implClass = LocalRegistry.get(serviceName);
+        // 方法级
+        BulkheadConfig bulkheadConfig = configMap.get(methodKey);
+        if (bulkheadConfig == null && implClass != null) {
+            bulkheadConfig = findMethodConfig(implClass, methodName);
+        }
+        if (bulkheadConfig != null) {
+            BulkheadConfig methodConfig = bulkheadConfig;
+            return BULKHEAD_MAP.computeIfAbsent(methodKey, key -> new Bulkhead(key, methodConfig));
+        }
+        // 服务级
+        bulkheadConfig = configMap.get(serviceName);
+        if (bulkheadConfig == null) {
+            bulkheadConfig = REGISTERED_CONFIG_MAP.get(serviceName);
+        }
+        if (bulkheadConfig == null && implClass != null) {
+            bulkheadConfig = findClassConfig(implClass);
+        }
+        if (bulkheadConfig != null) {
+            BulkheadConfig serviceConfig = bulkheadConfig;
+            return BULKHEAD_MAP.computeIfAbsent(serviceName, key -> new Bulkhead(key, serviceConfig));
+        }
+        return null;
+    }
+
+    /**
+     * 查找实现类（包括父类，兼容 Spring 生成的代理子类）方法上的注解
+     *
+     * @param implClass
+     * @param methodName
+     * @return
+     */
+    private static BulkheadConfig findMethodConfig(Class<?> implClass, String methodName) {
+        for (Class<?> current = implClass; current != null && current != Object.class; current = current.getSuperclass()) {
+            for (Method method : current.getDeclaredMethods()) {
+                RpcBulkhead rpcBulkhead = method.getAnnotation(RpcBulkhead.class);
+                if (rpcBulkhead != null && method.getName().equals(methodName)) {
+                    return BulkheadConfig.of(rpcBulkhead);
+                }
+            }
+        }
+        return null;
+    }
+
+    private static BulkheadConfig findClassConfig(Class<?> implClass) {
+        for (Class<?> current = implClass; current != null && current != Object.class; current = current.getSuperclass()) {
+            RpcBulkhead rpcBulkhead = current.getAnnotation(RpcBulkhead.class);
+            if (rpcBulkhead != null) {
+                return BulkheadConfig.of(rpcBulkhead);
+            }
+        }
+        return null;
+    }
+
+    private RejectedExecutionHandler createRejectionHandler(String rejectionPolicy) {
+        if (BulkheadKeys.DISCARD_OLDEST.equals(rejectionPolicy)) {
+            return (runnable, executor) -> {
+                Runnable oldest = executor.getQueue().poll();
+                if (oldest != null) {
+                    reject(oldest);
+                }
+                if (!executor.getQueue().offer(runnable)) {
+                    reject(runnable);
+                }
+            };
+        }
+        if (!BulkheadKeys.ABORT.equals(rejectionPolicy)) {
+            throw new RuntimeException("舱壁拒绝策略不存在：" + rejectionPolicy);
+        }
+        return (runnable, executor) -> reject(runnable);
+    }
+
+    private void reject(Runnable runnable) {
+        rejectedCount.increment();
+        ((BulkheadTask) runnable).onReject.run();
+    }
+
+    /**
+     * 在舱壁中执行任务
+     *
+     * @param task           任务
+     * @param priority       请求优先级（信号量隔离时按优先级在公共线程池中排队，排队过多时先丢弃低优先级的任务）
+     * @param onReject       任务被拒绝时的回调（丢弃最旧策略或被更高优先级的任务挤掉时可能在之后调用）
+     * @param sharedExecutor 信号量隔离时执行任务的公共线程池（只在信号量隔离时获取）
+     */
+    public void execute(Runnable task, ProtocolMessagePriorityEnum priority, Runnable onReject,
+                        Supplier<PriorityExecutor> sharedExecutor) {
+        if (threadPoolExecutor != null) {
+            threadPoolExecutor.execute(new BulkheadTask(task, onReject));
+            return;
+        }
+        if (!semaphore.tryAcquire()) {
+            rejectedCount.increment();
+            onReject.run();
+            return;
+        }
+        semaphoreActiveCount.incrementAndGet();
+        // 在公共线程池中被丢弃时归还许可
+        Runnable onShed = () -> {
+            semaphoreActiveCount.decrementAndGet();
+            semaphore.release();
+            rejectedCount.increment();
+            onReject.run();
+        };
+        boolean accepted = sharedExecutor.get().execute(() -> {
+            try {
+                task.run();
+            } finally {
+                semaphoreActiveCount.decrementAndGet();
+                semaphore.release();
+                completedCount.increment();
+            }
+        }, priority, onShed);
+        if (!accepted) {
+            onShed.run();
+        }
+    }
+
+    /**
+     * 获取统计信息
+     *
+     * @return
+     */
+    public BulkheadStats getStats() {
+        BulkheadStats bulkheadStats = new BulkheadStats();
+        bulkheadStats.setName(name);
+        bulkheadStats.setType(type);
+        bulkheadStats.setMaxConcurrency(maxConcurrency);
+        bulkheadStats.setQueueSize(queueSize);
+        if (threadPoolExecutor != null) {
+            bulkheadStats.setActiveCount(threadPoolExecutor.getActiveCount());
+            bulkheadStats.setQueuedCount(threadPoolExecutor.getQueue().size());
+        } else {
+            bulkheadStats.setActiveCount(semaphoreActiveCount.get());
+        }
+        bulkheadStats.setCompletedCount(completedCount.sum());
+        bulkheadStats.setRejectedCount(rejectedCount.sum());
+        return bulkheadStats;
+    }
+
+    /**
+     * 获取所有舱壁的统计信息
+     *
+     * @return
+     */
+    public static List<BulkheadStats> getAllStats() {
+        List<BulkheadStats> statsList = new ArrayList<>(BULKHEAD_MAP.size());
+        for (Bulkhead bulkhead : BULKHEAD_MAP.values()) {
+            statsList.add(bulkhead.getStats());
+        }
+        return statsList;
+    }
+
+    /**
+     * 线程池中的任务，带有被拒绝时的回调
+     */
+    private class BulkheadTask implements Runnable {
+
+        private final Runnable task;
+
+        private final Runnable onReject;
+
+        BulkheadTask(Runnable task, Runnable onReject) {
+            this.task = task;
+            this.onReject = onReject;
+        }
+
+        @Override
+        public void run() {
+            try {
+                task.run();
+            } finally {
+                completedCount.increment();
+            }
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.yupi.yurpc.server.bulkhead;
+
+/**
+ * 舱壁隔离键名常量
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航学习圈</a>
+ */
+public interface BulkheadKeys {
+
+    /**
+     * 独立的有界线程池（最大并发数即线程数，超出的请求进入有界队列）
+     */
+    String THREAD_POOL = "threadPool";
+
+    /**
+     * 信号量（在公共业务线程池中处理，只限制并发数，没有排队）
+     */
+    String SEMAPHORE = "semaphore";
+
+    /**
+     * 拒绝策略：拒绝新到达的请求
+     */
+    String ABORT = "abort";
+
+    /**
+     * 拒绝策略：拒绝队列中等待最久的请求，接收新请求（仅线程池）
+     */
+    String DISCARD_OLDEST = "discardOldest";
+
+}
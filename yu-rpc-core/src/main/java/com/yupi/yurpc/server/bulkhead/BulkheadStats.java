@@ -0,0 +1,54 @@
+package com.yupi.yurpc.server.bulkhead;
+
+import lombok.Data;
+
+/**
+ * 舱壁统计信息
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航学习圈</a>
+ */
+@Data
+public class BulkheadStats {
+
+    /**
+     * 舱壁名：服务名或 服务名#方法名
+     */
+    private String name;
+
+    /**
+     * 隔离方式
+     */
+    private String type;
+
+    /**
+     * 最大并发数
+     */
+    private int maxConcurrency;
+
+    /**
+     * 等待队列长度
+     */
+    private int queueSize;
+
+    /**
+     * 正在处理的请求数
+     */
+    private int activeCount;
+
+    /**
+     * 排队中的请求数
+     */
+    private int queuedCount;
+
+    /**
+     * 已处理完成的请求数
+     */
+    private long completedCount;
+
+    /**
+     * 被拒绝的请求数
+     */
+    private long rejectedCount;
+}
@@ -0,0 +1,169 @@
+package com.yupi.yurpc.server.limiter;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 自适应并发限制（服务端使用，每个服务一个）
+ * 采用 TCP Vegas 的思路：以观测到的最小延迟作为无排队延迟，按 limit * (1 - 最小延迟 / 当前延迟) 估算排队的请求数，
+ * 排队少时提高并发上限，排队多时降低，超过上限的请求直接拒绝，避免请求在服务端排队直到全部超时
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航学习圈</a>
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    /**
+     * 限制器表：服务名 => 限制器
+     */
+    private static final Map<String, AdaptiveConcurrencyLimiter> LIMITER_MAP = new ConcurrentHashMap<>();
+
+    /**
+     * 最小并发上限
+     */
+    private static final int MIN_LIMIT = 1;
+
+    /**
+     * 每 limit * PROBE_MULTIPLIER 个样本重新测量一次最小延迟，适应服务自身延迟的变化
+     */
+    private static final int PROBE_MULTIPLIER = 30;
+
+    private final int maxLimit;
+
+    /**
+     * 当前并发上限
+     */
+    private volatile int limit;
+
+    /**
+     * 当前并发数
+     */
+    private final AtomicInteger inflight = new AtomicInteger();
+
+    /**
+     * 被拒绝的请求数
+     */
+    private final LongAdder rejectedCount = new LongAdder();
+
+    /**
+     * 无排队时的延迟（观测到的最小延迟，纳秒），0 表示还没有样本
+     */
+    private long rttNoLoad;
+
+    /**
+     * 距离下次重新测量最小延迟的样本数
+     */
+    private long probeCountdown;
+
+    AdaptiveConcurrencyLimiter(int initialLimit, int maxLimit) {
+        this.maxLimit = Math.max(MIN_LIMIT, maxLimit);
+        this.limit = Math.min(Math.max(MIN_LIMIT, initialLimit), this.maxLimit);
+        resetProbeCountdown();
+    }
+
+    /**
+     * 获取服务的并发限制器
+     *
+     * @param serviceName  服务名
+     * @param initialLimit 初始并发上限
+     * @param maxLimit     最大并发上限
+     * @return
+     */
+    public static AdaptiveConcurrencyLimiter of(String serviceName, int initialLimit, int maxLimit) {
+        // 先无锁读取，命中时不走 computeIfAbsent
+        AdaptiveConcurrencyLimiter limiter = LIMITER_MAP.get(serviceName);
+        if (limiter == null) {
+            limiter = LIMITER_MAP.computeIfAbsent(serviceName, key -> new AdaptiveConcurrencyLimiter(initialLimit, maxLimit));
+        }
+        return limiter;
+    }
+
+    /**
+     * 尝试占用一个并发名额
+     *
+     * @return 是否成功，失败时应立即拒绝请求
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inflight.get();
+            if (current >= limit) {
+                rejectedCount.increment();
+                return false;
+            }
+            if (inflight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 归还名额，不记录样本（占用后请求没有被处理）
+     */
+    public void cancel() {
+        inflight.decrementAndGet();
+    }
+
+    /**
+     * 请求处理完成，归还名额并记录延迟样本
+     *
+     * @param startNanos 占用名额的时间（纳秒），延迟包含在线程池中排队的时间
+     */
+    public void release(long startNanos) {
+        long rtt = System.nanoTime() - startNanos;
+        int currentInflight = inflight.getAndDecrement();
+        onSample(Math.max(1, rtt), currentInflight);
+    }
+
+    private synchronized void onSample(long rtt, int currentInflight) {
+        if (--probeCountdown <= 0) {
+            // 以当前样本作为新的基准，避免服务延迟整体上升后一直按过去的最小延迟压低并发
+            resetProbeCountdown();
+            rttNoLoad = rtt;
+            return;
+        }
+        if (rttNoLoad == 0 || rtt < rttNoLoad) {
+            rttNoLoad = rtt;
+            return;
+        }
+        int currentLimit = limit;
+        // 并发远未用满时延迟不反映上限是否合适，不调整
+        if (currentInflight * 2 < currentLimit) {
+            return;
+        }
+        int queueSize = (int) Math.ceil(currentLimit * (1 - (double) rttNoLoad / rtt));
+        int log10 = Math.max(1, (int) Math.log10(currentLimit));
+        int alpha = 3 * log10;
+        int beta = 6 * log10;
+        int newLimit;
+        if (queueSize <= log10) {
+            newLimit = currentLimit + beta;
+        } else if (queueSize < alpha) {
+            newLimit = currentLimit + log10;
+        } else if (queueSize > beta) {
+            newLimit = currentLimit - log10;
+        } else {
+            return;
+        }
+        limit = Math.min(Math.max(MIN_LIMIT, newLimit), maxLimit);
+    }
+
+    private void resetProbeCountdown() {
+        probeCountdown = (long) limit * PROBE_MULTIPLIER + ThreadLocalRandom.current().nextInt(limit + 1);
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInflight() {
+        return inflight.get();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+}
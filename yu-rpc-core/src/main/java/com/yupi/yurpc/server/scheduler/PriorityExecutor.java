@@ -0,0 +1,208 @@
+package com.yupi.yurpc.server.scheduler;
+
+import com.yupi.yurpc.protocol.ProtocolMessagePriorityEnum;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按优先级调度的业务线程池（服务端使用）
+ * 每个优先级一个无锁队列，工作线程总是先取高优先级队列中的任务；排队总数接近容量时按优先级从低到高丢弃：
+ * 批处理请求在排队数达到容量的一半时开始拒绝，普通请求在 80% 时拒绝，交互请求在队列满时挤掉排队中的批处理请求
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航学习圈</a>
+ */
+@Slf4j
+public class PriorityExecutor implements Executor {
+
+    /**
+     * 各优先级开始拒绝时的排队数占容量的比例（下标为优先级的值）
+     */
+    private static final double[] SHED_RATIOS = {1.0, 0.8, 0.5};
+
+    private static final int LEVELS = SHED_RATIOS.length;
+
+    /**
+     * 各优先级的任务队列
+     */
+    private final Queue<PriorityTask>[] queues;
+
+    /**
+     * 各优先级的拒绝次数
+     */
+    private final LongAdder[] shedCounts;
+
+    /**
+     * 各优先级允许的最大排队数
+     */
+    private final int[] levelCapacities;
+
+    /**
+     * 排队中的任务总数
+     */
+    private final AtomicInteger queuedCount = new AtomicInteger();
+
+    /**
+     * 可取的任务数（工作线程空闲时在这里等待）
+     */
+    private final Semaphore available = new Semaphore(0);
+
+    @SuppressWarnings("unchecked")
+    public PriorityExecutor(String name, int threads, int capacity) {
+        this.queues = new Queue[LEVELS];
+        this.shedCounts = new LongAdder[LEVELS];
+        this.levelCapacities = new int[LEVELS];
+        for (int i = 0; i < LEVELS; i++) {
+            queues[i] = new ConcurrentLinkedQueue<>();
+            shedCounts[i] = new LongAdder();
+            levelCapacities[i] = Math.max(1, (int) (capacity * SHED_RATIOS[i]));
+        }
+        for (int i = 0; i < Math.max(1, threads); i++) {
+            Thread thread = new Thread(this::runWorker, name + "-" + (i + 1));
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * 按普通优先级执行，不受容量限制（用于已经在别处限流的任务）
+     *
+     * @param task
+     */
+    @Override
+    public void execute(Runnable task) {
+        queuedCount.incrementAndGet();
+        enqueue(new PriorityTask(task, null), ProtocolMessagePriorityEnum.NORMAL.getValue());
+    }
+
+    /**
+     * 按优先级执行
+     *
+     * @param task     任务
+     * @param priority 优先级
+     * @param onShed   任务被丢弃时的回调（可能在之后有更高优先级的任务到达时调用）
+     * @return 是否接收，false 时任务已被丢弃（不会再调用 onShed）
+     */
+    public boolean execute(Runnable task, ProtocolMessagePriorityEnum priority, Runnable onShed) {
+        int level = priority.getValue();
+        if (!tryReserve(levelCapacities[level])
+                && !(priority == ProtocolMessagePriorityEnum.INTERACTIVE && evictBatch())) {
+            shedCounts[level].increment();
+            return false;
+        }
+        enqueue(new PriorityTask(task, onShed), level);
+        return true;
+    }
+
+    /**
+     * 占用一个排队名额
+     *
+     * @param levelCapacity 当前优先级允许的最大排队数
+     * @return
+     */
+    private boolean tryReserve(int levelCapacity) {
+        while (true) {
+            int current = queuedCount.get();
+            if (current >= levelCapacity) {
+                return false;
+            }
+            if (queuedCount.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 丢弃一个排队中的批处理任务，把它的名额让给交互任务
+     *
+     * @return 是否腾出了名额
+     */
+    private boolean evictBatch() {
+        int batchLevel = ProtocolMessagePriorityEnum.BATCH.getValue();
+        PriorityTask evicted = queues[batchLevel].poll();
+        if (evicted == null) {
+            return false;
+        }
+        // 名额直接转给新任务，排队总数不变
+        shedCounts[batchLevel].increment();
+        evicted.onShed.run();
+        return true;
+    }
+
+    private void enqueue(PriorityTask priorityTask, int level) {
+        queues[level].offer(priorityTask);
+        available.release();
+    }
+
+    private void runWorker() {
+        while (true) {
+            try {
+                available.acquire();
+            } catch (InterruptedException e) {
+                return;
+            }
+            PriorityTask priorityTask = poll();
+            if (priorityTask == null) {
+                // 对应的任务已被更高优先级的任务挤掉
+                continue;
+            }
+            try {
+                priorityTask.task.run();
+            } catch (Throwable t) {
+                log.error("priority task error", t);
+            }
+        }
+    }
+
+    private PriorityTask poll() {
+        for (Queue<PriorityTask> queue : queues) {
+            PriorityTask priorityTask = queue.poll();
+            if (priorityTask != null) {
+                queuedCount.decrementAndGet();
+                return priorityTask;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 排队中的任务总数
+     *
+     * @return
+     */
+    public int getQueuedCount() {
+        return queuedCount.get();
+    }
+
+    /**
+     * 某个优先级被丢弃的任务数
+     *
+     * @param priority
+     * @return
+     */
+    public long getShedCount(ProtocolMessagePriorityEnum priority) {
+        return shedCounts[priority.getValue()].sum();
+    }
+
+    /**
+     * 排队中的任务
+     */
+    private static class PriorityTask {
+
+        final Runnable task;
+
+        final Runnable onShed;
+
+        PriorityTask(Runnable task, Runnable onShed) {
+            this.task = task;
+            this.onShed = onShed;
+        }
+    }
+}
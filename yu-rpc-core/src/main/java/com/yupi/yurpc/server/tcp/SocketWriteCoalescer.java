@@ -0,0 +1,127 @@
+package com.yupi.yurpc.server.tcp;
+
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.vertx.core.Context;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.net.NetSocket;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 套接字写入合并
+ * 同一事件循环轮次内（包括其他线程）写往同一连接的消息先排队，在连接的事件循环上组合成一个缓冲区写出，
+ * 只触发一次 flush，消息头和消息体由 Netty 聚集写（gathering write）一次发出
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航学习圈</a>
+ */
+public class SocketWriteCoalescer {
+
+    /**
+     * 每次写出最多合并的消息数（每条消息含消息头和消息体两段，需低于系统 IOV_MAX）
+     */
+    private static final int MAX_MESSAGES_PER_FLUSH = 256;
+
+    /**
+     * 累计写出的消息数
+     */
+    private static final LongAdder MESSAGE_COUNT = new LongAdder();
+
+    /**
+     * 累计的套接字写出（flush）次数
+     */
+    private static final LongAdder FLUSH_COUNT = new LongAdder();
+
+    private final NetSocket socket;
+
+    private final Context context;
+
+    /**
+     * 是否合并写入，关闭时每条消息单独写出
+     */
+    private final boolean coalesce;
+
+    private final Queue<Buffer> pendingQueue = new ConcurrentLinkedQueue<>();
+
+    /**
+     * 是否已安排写出
+     */
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    SocketWriteCoalescer(NetSocket socket, Context context, boolean coalesce) {
+        this.socket = socket;
+        this.context = context;
+        this.coalesce = coalesce;
+    }
+
+    /**
+     * 写入一条消息，可在任意线程调用
+     *
+     * @param buffer
+     */
+    void write(Buffer buffer) {
+        MESSAGE_COUNT.increment();
+        if (!coalesce) {
+            FLUSH_COUNT.increment();
+            socket.write(buffer);
+            return;
+        }
+        pendingQueue.offer(buffer);
+        if (flushScheduled.compareAndSet(false, true)) {
+            // 在连接的事件循环上执行完当前已排队的任务后写出，期间到达的消息都合并到同一次写出
+            context.runOnContext(v -> flush());
+        }
+    }
+
+    private void flush() {
+        flushScheduled.set(false);
+        while (true) {
+            Buffer first = pendingQueue.poll();
+            if (first == null) {
+                return;
+            }
+            Buffer next = pendingQueue.poll();
+            FLUSH_COUNT.increment();
+            if (next == null) {
+                socket.write(first);
+                return;
+            }
+            CompositeByteBuf composite = Unpooled.compositeBuffer(MAX_MESSAGES_PER_FLUSH * 2);
+            composite.addComponent(true, first.getByteBuf());
+            int messages = 1;
+            do {
+                composite.addComponent(true, next.getByteBuf());
+                messages++;
+            } while (messages < MAX_MESSAGES_PER_FLUSH && (next = pendingQueue.poll()) != null);
+            socket.write(Buffer.buffer(composite));
+        }
+    }
+
+    /**
+     * 获取写出统计信息
+     *
+     * @return
+     */
+    public static SocketWriteStats getStats() {
+        SocketWriteStats socketWriteStats = new SocketWriteStats();
+        long messageCount = MESSAGE_COUNT.sum();
+        long flushCount = FLUSH_COUNT.sum();
+        socketWriteStats.setMessageCount(messageCount);
+        socketWriteStats.setFlushCount(flushCount);
+        socketWriteStats.setFlushesPerMessage(messageCount == 0 ? 0 : (double) flushCount / messageCount);
+        return socketWriteStats;
+    }
+
+    /**
+     * 清空统计信息
+     */
+    public static void resetStats() {
+        MESSAGE_COUNT.reset();
+        FLUSH_COUNT.reset();
+    }
+}
@@ -0,0 +1,29 @@
+package com.yupi.yurpc.server.tcp;
+
+import lombok.Data;
+
+/**
+ * 套接字写出统计信息（客户端和服务端合计）
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航学习圈</a>
+ */
+@Data
+public class SocketWriteStats {
+
+    /**
+     * 写出的消息数
+     */
+    private long messageCount;
+
+    /**
+     * 套接字写出（flush）次数，每次对应一次 write/writev 系统调用（发送缓冲区满时除外）
+     */
+    private long flushCount;
+
+    /**
+     * 平均每条消息的写出次数
+     */
+    private double flushesPerMessage;
+}
@@ -0,0 +1,465 @@
+package com.yupi.yurpc.server.tcp;
+
+import cn.hutool.core.util.IdUtil;
+import com.yupi.yurpc.exception.ServiceOverloadedException;
+import com.yupi.yurpc.model.RpcRequest;
+import com.yupi.yurpc.model.RpcResponse;
+import com.yupi.yurpc.protocol.*;
+import com.yupi.yurpc.trace.Span;
+import com.yupi.yurpc.trace.TraceEventKeys;
+import com.yupi.yurpc.trace.Tracer;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.net.NetClient;
+import io.vertx.core.net.NetSocket;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * TCP 客户端连接
+ * 同一服务节点的所有请求复用一个连接，按请求 ID 匹配响应；开启批量发送时，
+ * 短时间内发往该连接的请求合并为一个批量请求帧
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航学习圈</a>
+ */
+@Slf4j
+class TcpClientConnection {
+
+    private final Vertx vertx;
+
+    /**
+     * 服务节点地址 host:port
+     */
+    private final String address;
+
+    /**
+     * 连接关闭时的回调（从连接池中移除）
+     */
+    private final Runnable closeCallback;
+
+    /**
+     * 是否合并写入
+     */
+    private final boolean writeCoalesce;
+
+    private final CompletableFuture<NetSocket> socketFuture = new CompletableFuture<>();
+
+    /**
+     * 连接的写入合并器，连接建立后设置
+     */
+    private volatile SocketWriteCoalescer writer;
+
+    /**
+     * 连接所在的事件循环上下文，连接建立后设置
+     */
+    private volatile Context context;
+
+    private volatile boolean closed;
+
+    /**
+     * 等待响应的请求：请求 ID => 请求
+     */
+    private final Map<Long, BatchEntry> pendingMap = new ConcurrentHashMap<>();
+
+    /**
+     * 等待响应的批量请求：批量请求 ID => 按顺序排列的请求
+     */
+    private final Map<Long, List<BatchEntry>> pendingBatchMap = new ConcurrentHashMap<>();
+
+    /**
+     * 等待批量发送的请求
+     */
+    private final Queue<BatchEntry> batchQueue = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger batchQueueSize = new AtomicInteger();
+
+    /**
+     * 是否已安排发送批量请求
+     */
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    TcpClientConnection(Vertx vertx, NetClient netClient, String host, int port, boolean writeCoalesce,
+                        Runnable closeCallback) {
+        this.vertx = vertx;
+        this.writeCoalesce = writeCoalesce;
+        this.address = host + ":" + port;
+        this.closeCallback = closeCallback;
+        netClient.connect(port, host, result -> {
+            if (!result.succeeded()) {
+                close(new IOException("连接服务节点失败：" + address, result.cause()));
+                return;
+            }
+            NetSocket socket = result.result();
+            context = Vertx.currentContext();
+            writer = new SocketWriteCoalescer(socket, context, this.writeCoalesce);
+            socket.handler(new TcpBufferHandlerWrapper(this::handleResponse));
+            socket.closeHandler(v -> close(new IOException("连接已关闭：" + address)));
+            socket.exceptionHandler(e -> log.warn("tcp connection error, address: {}", address, e));
+            socketFuture.complete(socket);
+        });
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * 发送请求
+     *
+     * @param rpcRequest 请求
+     * @param serializer 序列化器编号
+     * @param priority   优先级
+     * @param attachments 消息头附件（只读）
+     * @param batchOptions 批量发送配置，为 null 时立即单独发送
+     * @return 响应
+     */
+    CompletableFuture<RpcResponse> send(RpcRequest rpcRequest, byte serializer, ProtocolMessagePriorityEnum priority,
+                                        Map<String, String> attachments, BatchOptions batchOptions) {
+        CompletableFuture<RpcResponse> responseFuture = new CompletableFuture<>();
+        BatchEntry batchEntry = new BatchEntry(rpcRequest, serializer, priority, attachments, responseFuture);
+        if (batchOptions == null) {
+            sendSingle(batchEntry);
+            return responseFuture;
+        }
+        batchQueue.offer(batchEntry);
+        if (batchQueueSize.incrementAndGet() >= batchOptions.maxSize) {
+            // 已凑满一批，直接在当前线程发送
+            flush(batchOptions.maxSize);
+        } else if (flushScheduled.compareAndSet(false, true)) {
+            socketFuture.thenRun(() -> scheduleFlush(batchOptions));
+        }
+        if (closed) {
+            failAll(new IOException("连接已关闭：" + address));
+        }
+        return responseFuture;
+    }
+
+    /**
+     * 安排发送：延迟为 0 时在连接的事件循环执行完当前已排队的任务后发送，期间到达的请求都进入同一批
+     *
+     * @param batchOptions
+     */
+    private void scheduleFlush(BatchOptions batchOptions) {
+        if (batchOptions.maxDelay > 0) {
+            vertx.setTimer(batchOptions.maxDelay, id -> {
+                flushScheduled.set(false);
+                flush(batchOptions.maxSize);
+            });
+        } else {
+            context.runOnContext(v -> {
+                flushScheduled.set(false);
+                flush(batchOptions.maxSize);
+            });
+        }
+    }
+
+    /**
+     * 发送队列中的请求，每次最多取 maxSize 个，按序列化器、优先级和附件分组发送（同一帧只有一个消息头）
+     *
+     * @param maxSize
+     */
+    private void flush(int maxSize) {
+        while (true) {
+            List<BatchEntry> entries = new ArrayList<>(Math.min(maxSize, batchQueueSize.get()));
+            BatchEntry entry;
+            int polled = 0;
+            while (polled < maxSize && (entry = batchQueue.poll()) != null) {
+                batchQueueSize.decrementAndGet();
+                polled++;
+                // 等待凑批期间已超时的请求不再发送
+                if (!entry.responseFuture.isDone()) {
+                    entries.add(entry);
+                }
+            }
+            if (polled == 0) {
+                return;
+            }
+            if (entries.isEmpty()) {
+                continue;
+            }
+            Map<List<Object>, List<BatchEntry>> groupMap = new LinkedHashMap<>();
+            for (BatchEntry batchEntry : entries) {
+                groupMap.computeIfAbsent(Arrays.asList(batchEntry.serializer, batchEntry.priority,
+                        groupAttachments(batchEntry.attachments)), key -> new ArrayList<>()).add(batchEntry);
+            }
+            for (List<BatchEntry> group : groupMap.values()) {
+                if (group.size() == 1) {
+                    sendSingle(group.get(0));
+                } else {
+                    sendBatch(group);
+                }
+            }
+        }
+    }
+
+    /**
+     * 分组用的附件：不采样的链路上下文不参与分组，同一批共用第一个请求的链路上下文
+     * （服务端不记录不采样的跨度，只向下游继续传播不采样标记）
+     *
+     * @param attachments
+     * @return
+     */
+    private static Map<String, String> groupAttachments(Map<String, String> attachments) {
+        String traceparent = attachments.get(Tracer.TRACEPARENT);
+        if (traceparent == null || Tracer.isSampled(traceparent)) {
+            return attachments;
+        }
+        return Tracer.withoutTraceContext(attachments);
+    }
+
+    private void sendSingle(BatchEntry batchEntry) {
+        CompletableFuture<RpcResponse> responseFuture = batchEntry.responseFuture;
+        long requestId = IdUtil.getSnowflakeNextId();
+        pendingMap.put(requestId, batchEntry);
+        // 请求超时等异常结束时移除等待项，迟到的响应直接忽略
+        responseFuture.whenComplete((rpcResponse, e) -> {
+            if (e != null) {
+                pendingMap.remove(requestId, batchEntry);
+            }
+        });
+        if (closed) {
+            pendingMap.remove(requestId);
+            responseFuture.completeExceptionally(new IOException("连接已关闭：" + address));
+            return;
+        }
+        Buffer buffer;
+        try {
+            buffer = encode(ProtocolMessageTypeEnum.REQUEST, batchEntry, requestId, batchEntry.rpcRequest);
+        } catch (Exception e) {
+            pendingMap.remove(requestId);
+            responseFuture.completeExceptionally(e);
+            return;
+        }
+        batchEntry.addEvent(TraceEventKeys.REQUEST_ENCODED, Tracer.nowEpochNanos());
+        write(buffer);
+    }
+
+    private void sendBatch(List<BatchEntry> entries) {
+        long batchId = IdUtil.getSnowflakeNextId();
+        RpcRequest[] rpcRequests = new RpcRequest[entries.size()];
+        for (int i = 0; i < entries.size(); i++) {
+            rpcRequests[i] = entries.get(i).rpcRequest;
+        }
+        pendingBatchMap.put(batchId, entries);
+        // 批量中的请求都已结束（超时）时移除等待项
+        for (BatchEntry entry : entries) {
+            entry.responseFuture.whenComplete((rpcResponse, e) -> {
+                if (e != null && entries.stream().allMatch(pending -> pending.responseFuture.isDone())) {
+                    pendingBatchMap.remove(batchId, entries);
+                }
+            });
+        }
+        Buffer buffer;
+        try {
+            buffer = encode(ProtocolMessageTypeEnum.BATCH_REQUEST, entries.get(0), batchId, rpcRequests);
+        } catch (Exception e) {
+            pendingBatchMap.remove(batchId);
+            entries.forEach(entry -> entry.responseFuture.completeExceptionally(e));
+            return;
+        }
+        long encodedEpochNanos = Tracer.nowEpochNanos();
+        entries.forEach(entry -> entry.addEvent(TraceEventKeys.REQUEST_ENCODED, encodedEpochNanos));
+        write(buffer);
+    }
+
+    private void write(Buffer buffer) {
+        socketFuture.thenRun(() -> writer.write(buffer));
+    }
+
+    /**
+     * 编码请求帧，消息头取自 batchEntry（同一帧的请求消息头相同）
+     *
+     * @param type
+     * @param batchEntry
+     * @param requestId
+     * @param body
+     * @return
+     * @throws IOException
+     */
+    private Buffer encode(ProtocolMessageTypeEnum type, BatchEntry batchEntry, long requestId, Object body)
+            throws IOException {
+        ProtocolMessage.Header header = new ProtocolMessage.Header();
+        header.setMagic(ProtocolConstant.PROTOCOL_MAGIC);
+        // 普通优先级且没有附件时不需要扩展头，仍按版本 1 发送
+        if (batchEntry.priority == ProtocolMessagePriorityEnum.NORMAL && batchEntry.attachments.isEmpty()) {
+            header.setVersion(ProtocolConstant.PROTOCOL_VERSION);
+        } else {
+            header.setVersion(ProtocolConstant.PROTOCOL_VERSION_EXTENDED);
+            header.setPriority((byte) batchEntry.priority.getValue());
+            header.setAttachments(batchEntry.attachments);
+        }
+        header.setSerializer(batchEntry.serializer);
+        header.setType((byte) type.getKey());
+        header.setRequestId(requestId);
+        return ProtocolMessageEncoder.encode(new ProtocolMessage<>(header, body));
+    }
+
+    /**
+     * 处理响应帧
+     *
+     * @param buffer
+     */
+    private void handleResponse(Buffer buffer) {
+        long receivedEpochNanos = Tracer.nowEpochNanos();
+        ProtocolMessage<?> protocolMessage;
+        try {
+            protocolMessage = ProtocolMessageDecoder.decode(buffer);
+        } catch (Exception e) {
+            // 无法确定响应对应的请求，关闭连接，所有等待中的请求以异常结束
+            log.error("协议消息解码错误, address: {}", address, e);
+            close(new IOException("响应解码错误：" + address, e));
+            return;
+        }
+        long decodedEpochNanos = Tracer.nowEpochNanos();
+        ProtocolMessage.Header header = protocolMessage.getHeader();
+        // 服务端过载拒绝，请求未被处理
+        boolean overloaded = header.getStatus() == ProtocolMessageStatusEnum.OVERLOADED.getValue();
+        if (header.getType() == ProtocolMessageTypeEnum.BATCH_RESPONSE.getKey()) {
+            List<BatchEntry> entries = pendingBatchMap.remove(header.getRequestId());
+            if (entries == null) {
+                return;
+            }
+            for (BatchEntry entry : entries) {
+                entry.addEvent(TraceEventKeys.RESPONSE_RECEIVED, receivedEpochNanos);
+                entry.addEvent(TraceEventKeys.RESPONSE_DECODED, decodedEpochNanos);
+            }
+            List<CompletableFuture<RpcResponse>> responseFutures = new ArrayList<>(entries.size());
+            entries.forEach(entry -> responseFutures.add(entry.responseFuture));
+            if (overloaded) {
+                ServiceOverloadedException e = new ServiceOverloadedException("服务过载：" + address);
+                responseFutures.forEach(future -> future.completeExceptionally(e));
+                return;
+            }
+            RpcResponse[] rpcResponses = (RpcResponse[]) protocolMessage.getBody();
+            for (int i = 0; i < responseFutures.size(); i++) {
+                if (rpcResponses != null && i < rpcResponses.length
+                        && rpcResponses[i].getException() instanceof ServiceOverloadedException) {
+                    // 批量中单个请求被服务端的并发限制或舱壁拒绝
+                    responseFutures.get(i).completeExceptionally(rpcResponses[i].getException());
+                } else if (rpcResponses != null && i < rpcResponses.length) {
+                    responseFutures.get(i).complete(rpcResponses[i]);
+                } else {
+                    responseFutures.get(i).completeExceptionally(new IOException("批量响应缺少第 " + i + " 个结果"));
+                }
+            }
+            return;
+        }
+        BatchEntry batchEntry = pendingMap.remove(header.getRequestId());
+        if (batchEntry == null) {
+            return;
+        }
+        batchEntry.addEvent(TraceEventKeys.RESPONSE_RECEIVED, receivedEpochNanos);
+        batchEntry.addEvent(TraceEventKeys.RESPONSE_DECODED, decodedEpochNanos);
+        CompletableFuture<RpcResponse> responseFuture = batchEntry.responseFuture;
+        if (overloaded) {
+            responseFuture.completeExceptionally(new ServiceOverloadedException("服务过载：" + address));
+            return;
+        }
+        responseFuture.complete((RpcResponse) protocolMessage.getBody());
+    }
+
+    /**
+     * 关闭连接，所有未完成的请求以异常结束
+     *
+     * @param cause
+     */
+    void close(Throwable cause) {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        closeCallback.run();
+        if (!socketFuture.completeExceptionally(cause)) {
+            socketFuture.thenAccept(NetSocket::close);
+        }
+        failAll(cause);
+    }
+
+    private void failAll(Throwable cause) {
+        BatchEntry entry;
+        while ((entry = batchQueue.poll()) != null) {
+            batchQueueSize.decrementAndGet();
+            entry.responseFuture.completeExceptionally(cause);
+        }
+        for (Long requestId : pendingMap.keySet()) {
+            BatchEntry batchEntry = pendingMap.remove(requestId);
+            if (batchEntry != null) {
+                batchEntry.responseFuture.completeExceptionally(cause);
+            }
+        }
+        for (Long batchId : pendingBatchMap.keySet()) {
+            List<BatchEntry> entries = pendingBatchMap.remove(batchId);
+            if (entries != null) {
+                entries.forEach(pending -> pending.responseFuture.completeExceptionally(cause));
+            }
+        }
+    }
+
+    /**
+     * 批量发送配置
+     */
+    static class BatchOptions {
+
+        final int maxSize;
+
+        final long maxDelay;
+
+        BatchOptions(int maxSize, long maxDelay) {
+            this.maxSize = Math.max(1, maxSize);
+            this.maxDelay = Math.max(0, maxDelay);
+        }
+    }
+
+    /**
+     * 待发送（或等待响应）的请求
+     */
+    private static class BatchEntry {
+
+        final RpcRequest rpcRequest;
+
+        final byte serializer;
+
+        final ProtocolMessagePriorityEnum priority;
+
+        final Map<String, String> attachments;
+
+        final CompletableFuture<RpcResponse> responseFuture;
+
+        /**
+         * 发送请求的线程当前的跨度，没有时为 null
+         */
+        final Span span;
+
+        BatchEntry(RpcRequest rpcRequest, byte serializer, ProtocolMessagePriorityEnum priority,
+                   Map<String, String> attachments, CompletableFuture<RpcResponse> responseFuture) {
+            this.rpcRequest = rpcRequest;
+            this.serializer = serializer;
+            this.priority = priority;
+            this.attachments = attachments == null ? Collections.emptyMap() : attachments;
+            this.responseFuture = responseFuture;
+            this.span = Tracer.current();
+        }
+
+        void addEvent(String name, long epochNanos) {
+            if (span != null) {
+                span.addEvent(name, epochNanos, null);
+            }
+        }
+    }
+}
@@ -1,15 +1,31 @@
 package com.yupi.yurpc.server.tcp;
 
+import com.yupi.yurpc.RpcApplication;
+import com.yupi.yurpc.RpcContext;
+import com.yupi.yurpc.config.RpcConfig;
+import com.yupi.yurpc.exception.ServiceOverloadedException;
 import com.yupi.yurpc.model.RpcRequest;
 import com.yupi.yurpc.model.RpcResponse;
 import com.yupi.yurpc.protocol.*;
 import com.yupi.yurpc.registry.LocalRegistry;
+import com.yupi.yurpc.server.bulkhead.Bulkhead;
+import com.yupi.yurpc.server.limiter.AdaptiveConcurrencyLimiter;
+import com.yupi.yurpc.server.scheduler.PriorityExecutor;
+import com.yupi.yurpc.skeleton.RpcSkeleton;
+import com.yupi.yurpc.trace.Span;
+import com.yupi.yurpc.trace.TraceEventKeys;
+import com.yupi.yurpc.trace.Tracer;
 import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.core.net.NetSocket;
+import lombok.extern.slf4j.Slf4j;
 
 import java.io.IOException;
-import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
 
 /**
  * TCP 请求处理器
@@ -18,8 +34,34 @@ import java.lang.reflect.Method;
  * @learn <a href="https://codefather.cn">编程宝典</a>
  * @from <a href="https://yupi.icu">编程导航知识星球</a>
  */
+@Slf4j
 public class TcpServerHandler implements Handler<NetSocket> {
 
+    /**
+     * 公共业务线程池，按优先级调度（批量请求并行处理；开启并发限制或优先级调度时没有舱壁的请求都在这里处理，排队时间计入延迟）
+     */
+    private volatile PriorityExecutor workerExecutor;
+
+    /**
+     * 获取公共业务线程池，第一次使用时创建（只在事件循环中处理的服务端不创建工作线程）
+     *
+     * @return
+     */
+    private PriorityExecutor getWorkerExecutor() {
+        PriorityExecutor executor = workerExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                executor = workerExecutor;
+                if (executor == null) {
+                    executor = new PriorityExecutor("yu-rpc-worker", Runtime.getRuntime().availableProcessors() * 2,
+                            RpcApplication.getRpcConfig().getWorkerQueueCapacity());
+                    workerExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
     /**
      * 处理请求
      *
@@ -27,47 +69,225 @@ public class TcpServerHandler implements Handler<NetSocket> {
      */
     @Override
     public void handle(NetSocket socket) {
+        RpcConfig rpcConfig = RpcApplication.getRpcConfig();
+        SocketWriteCoalescer writer = new SocketWriteCoalescer(socket, Vertx.currentContext(), rpcConfig.isWriteCoalesce());
         TcpBufferHandlerWrapper bufferHandlerWrapper = new TcpBufferHandlerWrapper(buffer -> {
+            long receivedEpochNanos = Tracer.nowEpochNanos();
             // 接受请求，解码
-            ProtocolMessage<RpcRequest> protocolMessage;
+            ProtocolMessage<?> protocolMessage;
             try {
-                protocolMessage = (ProtocolMessage<RpcRequest>) ProtocolMessageDecoder.decode(buffer);
-            } catch (IOException e) {
-                throw new RuntimeException("协议消息解码错误");
+                protocolMessage = ProtocolMessageDecoder.decode(buffer);
+            } catch (Exception e) {
+                // 无法回复请求，关闭连接，客户端所有等待中的请求以异常结束
+                log.error("协议消息解码错误, address: {}", socket.remoteAddress(), e);
+                socket.close();
+                return;
             }
-            RpcRequest rpcRequest = protocolMessage.getBody();
             ProtocolMessage.Header header = protocolMessage.getHeader();
 
-            // 处理请求
-            // 构造响应结果对象
-            RpcResponse rpcResponse = new RpcResponse();
-            try {
-                // 获取要调用的服务实现类，通过反射调用
-                Class<?> implClass = LocalRegistry.get(rpcRequest.getServiceName());
-                Method method = implClass.getMethod(rpcRequest.getMethodName(), rpcRequest.getParameterTypes());
-                Object result = method.invoke(implClass.newInstance(), rpcRequest.getArgs());
-                // 封装返回结果
-                rpcResponse.setData(result);
-                rpcResponse.setDataType(method.getReturnType());
-                rpcResponse.setMessage("ok");
-            } catch (Exception e) {
-                e.printStackTrace();
-                rpcResponse.setMessage(e.getMessage());
-                rpcResponse.setException(e);
+            // 批量请求：并行处理，全部完成后按原顺序返回一个批量响应
+            if (header.getType() == ProtocolMessageTypeEnum.BATCH_REQUEST.getKey()) {
+                handleBatch(writer, header, (RpcRequest[]) protocolMessage.getBody(), rpcConfig, receivedEpochNanos);
+                return;
             }
 
-            // 发送响应，编码
-            header.setType((byte) ProtocolMessageTypeEnum.RESPONSE.getKey());
-            header.setStatus((byte) ProtocolMessageStatusEnum.OK.getValue());
-            ProtocolMessage<RpcResponse> responseProtocolMessage = new ProtocolMessage<>(header, rpcResponse);
-            try {
-                Buffer encode = ProtocolMessageEncoder.encode(responseProtocolMessage);
-                socket.write(encode);
-            } catch (IOException e) {
-                throw new RuntimeException("协议消息编码错误");
-            }
+            RpcRequest rpcRequest = (RpcRequest) protocolMessage.getBody();
+            Span span = startServerSpan(rpcRequest, header, receivedEpochNanos);
+            dispatch(rpcRequest, header, span, rpcConfig, false, (rpcResponse, overloaded) -> {
+                doResponse(writer, header, ProtocolMessageTypeEnum.RESPONSE,
+                        overloaded ? ProtocolMessageStatusEnum.OVERLOADED : ProtocolMessageStatusEnum.OK, rpcResponse);
+                span.end();
+            });
         });
         socket.handler(bufferHandlerWrapper);
     }
 
+    /**
+     * 处理批量请求，每个请求单独经过并发限制和舱壁，被拒绝的请求在批量响应中带有过载异常
+     *
+     * @param writer
+     * @param header
+     * @param rpcRequests
+     * @param rpcConfig
+     * @param receivedEpochNanos 收到请求帧的时间
+     */
+    private void handleBatch(SocketWriteCoalescer writer, ProtocolMessage.Header header, RpcRequest[] rpcRequests,
+                             RpcConfig rpcConfig, long receivedEpochNanos) {
+        RpcResponse[] rpcResponses = new RpcResponse[rpcRequests.length];
+        // 每个请求一个服务端跨度，批量响应发出后一起结束
+        Span[] spans = new Span[rpcRequests.length];
+        for (int i = 0; i < rpcRequests.length; i++) {
+            spans[i] = startServerSpan(rpcRequests[i], header, receivedEpochNanos);
+        }
+        AtomicInteger remaining = new AtomicInteger(rpcRequests.length);
+        for (int i = 0; i < rpcRequests.length; i++) {
+            int index = i;
+            dispatch(rpcRequests[i], header, spans[i], rpcConfig, true, (rpcResponse, overloaded) -> {
+                rpcResponses[index] = rpcResponse;
+                if (remaining.decrementAndGet() == 0) {
+                    doResponse(writer, header, ProtocolMessageTypeEnum.BATCH_RESPONSE, ProtocolMessageStatusEnum.OK,
+                            rpcResponses);
+                    for (Span span : spans) {
+                        span.end();
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * 开始服务端跨度，父跨度来自请求附件中的链路上下文
+     *
+     * @param rpcRequest
+     * @param header
+     * @param receivedEpochNanos 收到请求帧的时间
+     * @return 服务端跨度（不采样时不记录事件，只向下游传播链路上下文）
+     */
+    private static Span startServerSpan(RpcRequest rpcRequest, ProtocolMessage.Header header, long receivedEpochNanos) {
+        Span span = Tracer.startServerSpan(rpcRequest.getServiceName(), rpcRequest.getMethodName(),
+                header.getAttachments().get(Tracer.TRACEPARENT), receivedEpochNanos);
+        span.addEvent(TraceEventKeys.REQUEST_DECODED);
+        return span;
+    }
+
+    /**
+     * 调度请求：先经过服务的并发限制，再进入方法或服务的舱壁，超出时立即拒绝
+     * 没有舱壁的请求在公共业务线程池中按优先级处理；未开启并发限制和优先级调度的单个请求直接在事件循环中处理
+     *
+     * @param rpcRequest
+     * @param header     请求头（优先级）
+     * @param span       服务端跨度（处理期间作为当前跨度，下游调用跟随它的采样决定）
+     * @param rpcConfig
+     * @param async      是否必须异步处理（批量请求并行处理）
+     * @param callback   处理完成或被拒绝时回调：响应、是否因过载被拒绝
+     */
+    private void dispatch(RpcRequest rpcRequest, ProtocolMessage.Header header, Span span, RpcConfig rpcConfig,
+                          boolean async, BiConsumer<RpcResponse, Boolean> callback) {
+        // 超过服务的并发上限时立即拒绝，不进入线程池排队
+        AdaptiveConcurrencyLimiter limiter = null;
+        if (rpcConfig.isConcurrencyLimitEnabled()) {
+            limiter = AdaptiveConcurrencyLimiter.of(rpcRequest.getServiceName(),
+                    rpcConfig.getConcurrencyLimitInitial(), rpcConfig.getConcurrencyLimitMax());
+            if (!limiter.tryAcquire()) {
+                span.setError("overloaded");
+                callback.accept(overloadedResponse(rpcRequest), true);
+                return;
+            }
+        }
+        AdaptiveConcurrencyLimiter acquiredLimiter = limiter;
+        long startNanos = System.nanoTime();
+        Map<String, String> attachments = Tracer.withoutTraceContext(header.getAttachments());
+        Runnable task = () -> {
+            RpcResponse rpcResponse;
+            // 处理期间在上下文中提供请求附件和服务端跨度
+            Map<String, String> previousAttachments = RpcContext.setAttachments(attachments);
+            span.addEvent(TraceEventKeys.EXECUTION_START);
+            Span previousSpan = Tracer.setCurrent(span);
+            try {
+                rpcResponse = doHandle(rpcRequest);
+            } finally {
+                RpcContext.setAttachments(previousAttachments);
+                Tracer.setCurrent(previousSpan);
+                span.addEvent(TraceEventKeys.EXECUTION_END);
+                if (acquiredLimiter != null) {
+                    acquiredLimiter.release(startNanos);
+                }
+            }
+            if (rpcResponse.getException() != null) {
+                span.recordException(rpcResponse.getException());
+            }
+            callback.accept(rpcResponse, false);
+        };
+        Runnable onReject = () -> {
+            if (acquiredLimiter != null) {
+                acquiredLimiter.cancel();
+            }
+            span.setError("overloaded");
+            callback.accept(overloadedResponse(rpcRequest), true);
+        };
+        ProtocolMessagePriorityEnum priority = ProtocolMessagePriorityEnum.getEnumByValue(header.getPriority());
+        Bulkhead bulkhead = Bulkhead.get(rpcRequest.getServiceName(), rpcRequest.getMethodName());
+        if (bulkhead != null) {
+            span.addEvent(TraceEventKeys.QUEUED);
+            bulkhead.execute(task, priority, onReject, this::getWorkerExecutor);
+        } else if (async || acquiredLimiter != null || rpcConfig.isPrioritySchedulingEnabled()) {
+            span.addEvent(TraceEventKeys.QUEUED);
+            if (!getWorkerExecutor().execute(task, priority, onReject)) {
+                onReject.run();
+            }
+        } else {
+            task.run();
+        }
+    }
+
+    /**
+     * 过载拒绝的响应（批量响应中靠异常区分）
+     *
+     * @param rpcRequest
+     * @return
+     */
+    private static RpcResponse overloadedResponse(RpcRequest rpcRequest) {
+        String message = "服务过载：" + rpcRequest.getServiceName() + "." + rpcRequest.getMethodName();
+        RpcResponse rpcResponse = new RpcResponse();
+        rpcResponse.setMessage(message);
+        rpcResponse.setException(new ServiceOverloadedException(message));
+        return rpcResponse;
+    }
+
+    /**
+     * 处理请求
+     *
+     * @param rpcRequest
+     * @return 响应结果
+     */
+    private RpcResponse doHandle(RpcRequest rpcRequest) {
+        // 构造响应结果对象
+        RpcResponse rpcResponse = new RpcResponse();
+        try {
+            // 获取要调用的服务骨架，按方法 ID 直接调用实现对象
+            RpcSkeleton skeleton = LocalRegistry.getSkeleton(rpcRequest.getServiceName());
+            if (skeleton == null) {
+                throw new RuntimeException("服务未注册：" + rpcRequest.getServiceName());
+            }
+            int methodId = skeleton.getMethodId(rpcRequest.getMethodName(), rpcRequest.getParameterTypes());
+            if (methodId < 0) {
+                throw new RuntimeException("服务方法不存在：" + rpcRequest.getServiceName() + "." + rpcRequest.getMethodName());
+            }
+            Object result = skeleton.invoke(methodId, rpcRequest.getArgs());
+            // 封装返回结果
+            rpcResponse.setData(result);
+            rpcResponse.setDataType(skeleton.getReturnType(methodId));
+            rpcResponse.setMessage("ok");
+        } catch (Throwable t) {
+            t.printStackTrace();
+            Exception e = t instanceof Exception ? (Exception) t : new RuntimeException(t);
+            rpcResponse.setMessage(e.getMessage());
+            rpcResponse.setException(e);
+        }
+        return rpcResponse;
+    }
+
+    /**
+     * 发送响应，编码
+     *
+     * @param writer 连接的写入合并器
+     * @param header 请求头（沿用请求 ID 和序列化器，附件不回传）
+     * @param type   响应类型
+     * @param status 响应状态
+     * @param body   响应体
+     */
+    private void doResponse(SocketWriteCoalescer writer, ProtocolMessage.Header header, ProtocolMessageTypeEnum type,
+                            ProtocolMessageStatusEnum status, Object body) {
+        header.setType((byte) type.getKey());
+        header.setStatus((byte) status.getValue());
+        header.setAttachments(Collections.emptyMap());
+        ProtocolMessage<Object> responseProtocolMessage = new ProtocolMessage<>(header, body);
+        try {
+            Buffer encode = ProtocolMessageEncoder.encode(responseProtocolMessage);
+            writer.write(encode);
+        } catch (IOException e) {
+            throw new RuntimeException("协议消息编码错误");
+        }
+    }
+
 }
@@ -1,22 +1,29 @@
 package com.yupi.yurpc.server.tcp;
 
-import cn.hutool.core.util.IdUtil;
 import com.yupi.yurpc.RpcApplication;
+import com.yupi.yurpc.RpcContext;
+import com.yupi.yurpc.config.RpcConfig;
 import com.yupi.yurpc.model.RpcRequest;
 import com.yupi.yurpc.model.RpcResponse;
 import com.yupi.yurpc.model.ServiceMetaInfo;
-import com.yupi.yurpc.protocol.*;
+import com.yupi.yurpc.protocol.ProtocolMessagePriorityEnum;
+import com.yupi.yurpc.protocol.ProtocolMessageSerializerEnum;
+import com.yupi.yurpc.trace.Tracer;
 import io.vertx.core.Vertx;
-import io.vertx.core.buffer.Buffer;
 import io.vertx.core.net.NetClient;
-import io.vertx.core.net.NetSocket;
 
 import java.io.IOException;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Vertx TCP 请求客户端
+ * 所有请求共用一个 Vertx 实例，每个服务节点复用一个长连接
+ * 事件循环线程会阻止进程在 main 结束后自然退出：JVM 退出时由关闭钩子释放，需要自然退出的消费端可以主动调用 destroy
  *
  * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
  * @learn <a href="https://codefather.cn">程序员鱼皮的编程宝典</a>
@@ -24,6 +31,20 @@ import java.util.concurrent.ExecutionException;
  */
 public class VertxTcpClient {
 
+    /**
+     * 服务节点连接：host:port => 连接
+     */
+    private static final Map<String, TcpClientConnection> CONNECTION_MAP = new ConcurrentHashMap<>();
+
+    private static Vertx vertx;
+
+    private static NetClient netClient;
+
+    /**
+     * 是否已注册关闭钩子
+     */
+    private static boolean shutdownHookRegistered;
+
     /**
      * 发送请求
      *
@@ -35,58 +56,103 @@ public class VertxTcpClient {
      */
     public static RpcResponse doRequest(RpcRequest rpcRequest, ServiceMetaInfo serviceMetaInfo)
             throws InterruptedException, ExecutionException {
-        // 发送 TCP 请求
-        Vertx vertx = Vertx.vertx();
-        NetClient netClient = vertx.createNetClient();
-        CompletableFuture<RpcResponse> responseFuture = new CompletableFuture<>();
-
-        netClient.connect(serviceMetaInfo.getServicePort(), serviceMetaInfo.getServiceHost(),
-                result -> {
-                    if (!result.succeeded()) {
-                        System.err.println("Failed to connect to TCP server: " + result.cause().getMessage());
-                        return;
-                    }
-                    NetSocket socket = result.result();
-                    // 构造协议消息
-                    ProtocolMessage<RpcRequest> protocolMessage = new ProtocolMessage<>();
-                    ProtocolMessage.Header header = new ProtocolMessage.Header();
-                    header.setMagic(ProtocolConstant.PROTOCOL_MAGIC);
-                    header.setVersion(ProtocolConstant.PROTOCOL_VERSION);
-                    header.setSerializer((byte) ProtocolMessageSerializerEnum.getEnumByValue(
-                            RpcApplication.getRpcConfig().getSerializer()).getKey());
-                    header.setType((byte) ProtocolMessageTypeEnum.REQUEST.getKey());
-                    // 生成全局请求 ID
-                    header.setRequestId(IdUtil.getSnowflakeNextId());
-                    protocolMessage.setHeader(header);
-                    protocolMessage.setBody(rpcRequest);
+        return doRequest(rpcRequest, serviceMetaInfo, ProtocolMessagePriorityEnum.NORMAL);
+    }
 
-                    // 编码并发送
-                    try {
-                        Buffer encodeBuffer = ProtocolMessageEncoder.encode(protocolMessage);
-                        socket.write(encodeBuffer);
-                    } catch (IOException e) {
-                        throw new RuntimeException("协议消息编码错误", e);
-                    }
+    /**
+     * 按优先级发送请求
+     *
+     * @param rpcRequest      RPC请求
+     * @param serviceMetaInfo 服务元信息
+     * @param priority        优先级（非普通优先级、当前线程 RpcContext 中的附件和链路上下文通过 v2 消息头扩展传给服务提供者）
+     * @return RPC响应
+     * @throws InterruptedException 中断异常
+     * @throws ExecutionException  执行异常（超过请求超时时间时原因为 TimeoutException）
+     */
+    public static RpcResponse doRequest(RpcRequest rpcRequest, ServiceMetaInfo serviceMetaInfo,
+                                        ProtocolMessagePriorityEnum priority)
+            throws InterruptedException, ExecutionException {
+        RpcConfig rpcConfig = RpcApplication.getRpcConfig();
+        byte serializer = (byte) ProtocolMessageSerializerEnum.getEnumByValue(rpcConfig.getSerializer()).getKey();
+        TcpClientConnection.BatchOptions batchOptions = rpcConfig.isBatchEnabled()
+                ? new TcpClientConnection.BatchOptions(rpcConfig.getBatchMaxSize(), rpcConfig.getBatchMaxDelay())
+                : null;
+        CompletableFuture<RpcResponse> responseFuture = getConnection(serviceMetaInfo.getServiceHost(),
+                serviceMetaInfo.getServicePort(), rpcConfig.isWriteCoalesce())
+                .send(rpcRequest, serializer, priority, Tracer.inject(RpcContext.getAttachments()), batchOptions);
+        try {
+            return responseFuture.get(rpcConfig.getRequestTimeout(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // 结束请求，连接移除等待项，之后到达的响应直接忽略
+            TimeoutException timeoutException = new TimeoutException("请求超时：" + serviceMetaInfo.getServiceHost()
+                    + ":" + serviceMetaInfo.getServicePort());
+            responseFuture.completeExceptionally(timeoutException);
+            throw new ExecutionException(timeoutException);
+        }
+    }
 
-                    // 接收响应
-                    TcpBufferHandlerWrapper bufferHandlerWrapper = new TcpBufferHandlerWrapper(
-                            buffer -> {
-                                try {
-                                    ProtocolMessage<RpcResponse> rpcResponseProtocolMessage =
-                                            (ProtocolMessage<RpcResponse>) ProtocolMessageDecoder.decode(buffer);
-                                    responseFuture.complete(rpcResponseProtocolMessage.getBody());
-                                } catch (IOException e) {
-                                    System.err.println("协议消息解码错误: " + e.getMessage());
-                                }
-                            }
-                    );
+    /**
+     * 获取服务节点的连接，没有或已关闭时新建
+     *
+     * @param host
+     * @param port
+     * @param writeCoalesce 是否合并写入
+     * @return
+     */
+    private static TcpClientConnection getConnection(String host, int port, boolean writeCoalesce) {
+        String address = host + ":" + port;
+        TcpClientConnection connection = CONNECTION_MAP.get(address);
+        if (connection != null && !connection.isClosed()) {
+            return connection;
+        }
+        return CONNECTION_MAP.compute(address, (key, oldConnection) -> {
+            if (oldConnection != null && !oldConnection.isClosed()) {
+                return oldConnection;
+            }
+            TcpClientConnection[] holder = new TcpClientConnection[1];
+            // 和 destroy 互斥，不会用已关闭的 Vertx 建立连接
+            synchronized (VertxTcpClient.class) {
+                init();
+                holder[0] = new TcpClientConnection(vertx, netClient, host, port, writeCoalesce,
+                        () -> CONNECTION_MAP.remove(key, holder[0]));
+            }
+            return holder[0];
+        });
+    }
 
-                    socket.handler(bufferHandlerWrapper);
-                });
+    /**
+     * 创建客户端 Vertx，第一次创建时注册关闭钩子（需持有类锁）
+     */
+    private static void init() {
+        if (netClient != null) {
+            return;
+        }
+        if (!shutdownHookRegistered) {
+            Runtime.getRuntime().addShutdownHook(new Thread(VertxTcpClient::destroy));
+            shutdownHookRegistered = true;
+        }
+        vertx = Vertx.vertx();
+        netClient = vertx.createNetClient();
+    }
 
-        RpcResponse rpcResponse = responseFuture.get();
-        netClient.close();
-        vertx.close();
-        return rpcResponse;
+    /**
+     * 关闭所有连接并释放 Vertx，未完成的请求以异常结束；之后的请求会重新创建
+     */
+    public static void destroy() {
+        Vertx closingVertx;
+        synchronized (VertxTcpClient.class) {
+            closingVertx = vertx;
+            if (closingVertx == null) {
+                return;
+            }
+            netClient = null;
+            vertx = null;
+        }
+        // 不持有锁关闭连接（连接关闭时从连接表中移除自己）
+        IOException cause = new IOException("客户端已关闭");
+        for (TcpClientConnection connection : CONNECTION_MAP.values()) {
+            connection.close(cause);
+        }
+        closingVertx.close();
     }
 }
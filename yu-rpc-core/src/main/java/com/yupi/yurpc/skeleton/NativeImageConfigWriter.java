@@ -0,0 +1,216 @@
+package com.yupi.yurpc.skeleton;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * GraalVM native image 配置生成（由 RpcSkeletonProcessor 调用）
+ * 框架自身需要的配置在 META-INF/native-image/com.yupi/yu-rpc-core 下，这里只补充业务相关的部分：
+ * 服务引用接口的 JDK 动态代理、服务实现类的构造器、服务方法参数和返回值中业务类型的反射与序列化
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航学习圈</a>
+ */
+class NativeImageConfigWriter {
+
+    static final String CONFIG_DIR = "META-INF/native-image/yu-rpc-generated/";
+
+    private static final Pattern NAME_PATTERN = Pattern.compile("\"name\": \"([^\"]+)\"");
+
+    private static final Pattern INTERFACES_PATTERN = Pattern.compile("\"interfaces\": \\[\"([^\"]+)\"]");
+
+    private final ProcessingEnvironment processingEnv;
+
+    /**
+     * 需要 JDK 动态代理的服务接口
+     */
+    private final Set<String> proxyInterfaces = new TreeSet<>();
+
+    /**
+     * 只需要无参构造器的类（服务实现类）
+     */
+    private final Set<String> constructorTypes = new TreeSet<>();
+
+    /**
+     * 需要完整反射和序列化的业务类型（序列化器按字段和 getter/setter 读写）
+     */
+    private final Set<String> beanTypes = new TreeSet<>();
+
+    NativeImageConfigWriter(ProcessingEnvironment processingEnv) {
+        this.processingEnv = processingEnv;
+    }
+
+    boolean isEmpty() {
+        return proxyInterfaces.isEmpty() && constructorTypes.isEmpty() && beanTypes.isEmpty();
+    }
+
+    void addProxyInterface(TypeElement interfaceElement) {
+        proxyInterfaces.add(getBinaryName(interfaceElement));
+    }
+
+    void addConstructorType(TypeElement typeElement) {
+        constructorTypes.add(getBinaryName(typeElement));
+    }
+
+    /**
+     * 登记服务接口方法参数和返回值中出现的业务类型
+     *
+     * @param interfaceElement
+     */
+    void addServiceInterface(TypeElement interfaceElement) {
+        for (ExecutableElement method : ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(interfaceElement))) {
+            if (method.getModifiers().contains(Modifier.STATIC)) {
+                continue;
+            }
+            addType(method.getReturnType());
+            for (VariableElement parameter : method.getParameters()) {
+                addType(parameter.asType());
+            }
+        }
+    }
+
+    /**
+     * 登记类型，JDK 类型只展开泛型参数，业务类再递归登记字段类型和父类
+     *
+     * @param type
+     */
+    private void addType(TypeMirror type) {
+        if (type.getKind() == TypeKind.ARRAY) {
+            addType(((ArrayType) type).getComponentType());
+            return;
+        }
+        if (type.getKind() != TypeKind.DECLARED) {
+            return;
+        }
+        DeclaredType declaredType = (DeclaredType) type;
+        for (TypeMirror typeArgument : declaredType.getTypeArguments()) {
+            addType(typeArgument);
+        }
+        TypeElement typeElement = (TypeElement) declaredType.asElement();
+        String name = typeElement.getQualifiedName().toString();
+        if (name.startsWith("java.") || name.startsWith("javax.") || name.startsWith("jdk.")
+                || typeElement.getKind() == ElementKind.INTERFACE
+                || !beanTypes.add(getBinaryName(typeElement))) {
+            return;
+        }
+        for (VariableElement field : ElementFilter.fieldsIn(typeElement.getEnclosedElements())) {
+            if (!field.getModifiers().contains(Modifier.STATIC)) {
+                addType(field.asType());
+            }
+        }
+        addType(typeElement.getSuperclass());
+    }
+
+    /**
+     * 写入 reflect-config.json、serialization-config.json、proxy-config.json，合并之前编译已经生成的条目
+     *
+     * @param originatingElements
+     */
+    void write(Element... originatingElements) {
+        Set<String> allConstructorTypes = new TreeSet<>(constructorTypes);
+        Set<String> allBeanTypes = new TreeSet<>(beanTypes);
+        Set<String> allProxyInterfaces = new TreeSet<>(proxyInterfaces);
+        readExisting("reflect-config.json", NAME_PATTERN, allBeanTypes, allConstructorTypes);
+        readExisting("proxy-config.json", INTERFACES_PATTERN, allProxyInterfaces, null);
+        allConstructorTypes.removeAll(allBeanTypes);
+
+        List<String> reflectEntries = new ArrayList<>();
+        for (String beanType : allBeanTypes) {
+            reflectEntries.add("  {\n    \"name\": \"" + beanType + "\",\n"
+                    + "    \"allDeclaredConstructors\": true,\n"
+                    + "    \"allDeclaredFields\": true,\n"
+                    + "    \"allDeclaredMethods\": true,\n"
+                    + "    \"allPublicMethods\": true,\n"
+                    + "    \"unsafeAllocated\": true\n  }");
+        }
+        for (String constructorType : allConstructorTypes) {
+            reflectEntries.add("  {\n    \"name\": \"" + constructorType + "\",\n"
+                    + "    \"methods\": [{\"name\": \"<init>\", \"parameterTypes\": []}]\n  }");
+        }
+        List<String> serializationEntries = new ArrayList<>();
+        for (String beanType : allBeanTypes) {
+            serializationEntries.add("  {\"name\": \"" + beanType + "\"}");
+        }
+        List<String> proxyEntries = new ArrayList<>();
+        for (String proxyInterface : allProxyInterfaces) {
+            proxyEntries.add("  {\"interfaces\": [\"" + proxyInterface + "\"]}");
+        }
+        writeJsonArray("reflect-config.json", reflectEntries, originatingElements);
+        writeJsonArray("serialization-config.json", serializationEntries, originatingElements);
+        writeJsonArray("proxy-config.json", proxyEntries, originatingElements);
+    }
+
+    /**
+     * 读取之前生成的配置（增量编译时只处理部分源文件）
+     *
+     * @param fileName
+     * @param pattern
+     * @param beanTarget        完整反射条目
+     * @param constructorTarget 只有构造器的条目，为 null 时不区分
+     */
+    private void readExisting(String fileName, Pattern pattern, Set<String> beanTarget, Set<String> constructorTarget) {
+        String content;
+        try {
+            FileObject existingFile = processingEnv.getFiler()
+                    .getResource(StandardLocation.CLASS_OUTPUT, "", CONFIG_DIR + fileName);
+            try (InputStream inputStream = existingFile.openInputStream()) {
+                content = new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+            }
+        } catch (IOException e) {
+            // 之前没有生成过
+            return;
+        }
+        for (String entry : content.split("\n  \\{")) {
+            Matcher matcher = pattern.matcher(entry);
+            if (!matcher.find()) {
+                continue;
+            }
+            if (constructorTarget != null && entry.contains("\"<init>\"")) {
+                constructorTarget.add(matcher.group(1));
+            } else {
+                beanTarget.add(matcher.group(1));
+            }
+        }
+    }
+
+    private void writeJsonArray(String fileName, List<String> entries, Element... originatingElements) {
+        try {
+            FileObject configFile = processingEnv.getFiler()
+                    .createResource(StandardLocation.CLASS_OUTPUT, "", CONFIG_DIR + fileName, originatingElements);
+            try (Writer writer = configFile.openWriter()) {
+                writer.write(entries.isEmpty() ? "[]\n" : "[\n" + String.join(",\n", entries) + "\n]\n");
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "写入 " + CONFIG_DIR + fileName + " 失败：" + e.getMessage());
+        }
+    }
+
+    private String getBinaryName(TypeElement typeElement) {
+        return processingEnv.getElementUtils().getBinaryName(typeElement).toString();
+    }
+}
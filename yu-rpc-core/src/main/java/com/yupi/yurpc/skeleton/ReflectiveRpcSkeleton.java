@@ -0,0 +1,82 @@
+package com.yupi.yurpc.skeleton;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 基于反射的服务骨架（没有生成骨架类时使用）
+ * 方法查找结果按方法签名缓存，调用时只剩 Method.invoke
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航学习圈</a>
+ */
+public class ReflectiveRpcSkeleton implements RpcSkeleton {
+
+    private final Object service;
+
+    /**
+     * 方法签名 => 方法 ID
+     */
+    private final Map<List<Object>, Integer> methodIdMap = new ConcurrentHashMap<>();
+
+    /**
+     * 方法 ID => 方法
+     */
+    private final List<Method> methodList = new ArrayList<>();
+
+    public ReflectiveRpcSkeleton(Object service) {
+        this.service = service;
+    }
+
+    @Override
+    public int getMethodId(String methodName, Class<?>[] parameterTypes) {
+        List<Object> signature = new ArrayList<>(parameterTypes.length + 1);
+        signature.add(methodName);
+        signature.addAll(Arrays.asList(parameterTypes));
+        Integer methodId = methodIdMap.get(signature);
+        if (methodId != null) {
+            return methodId;
+        }
+        synchronized (methodList) {
+            methodId = methodIdMap.get(signature);
+            if (methodId != null) {
+                return methodId;
+            }
+            try {
+                Method method = service.getClass().getMethod(methodName, parameterTypes);
+                methodList.add(method);
+                methodId = methodList.size() - 1;
+                methodIdMap.put(signature, methodId);
+                return methodId;
+            } catch (NoSuchMethodException e) {
+                return -1;
+            }
+        }
+    }
+
+    @Override
+    public Class<?> getReturnType(int methodId) {
+        return getMethod(methodId).getReturnType();
+    }
+
+    @Override
+    public Object invoke(int methodId, Object[] args) throws Throwable {
+        try {
+            return getMethod(methodId).invoke(service, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    private Method getMethod(int methodId) {
+        synchronized (methodList) {
+            return methodList.get(methodId);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.yupi.yurpc.skeleton;
+
+/**
+ * 服务骨架（服务端方法分派）
+ * 编译期由 RpcSkeletonProcessor 为 @RpcService 实现类生成，按方法 ID 直接调用实现类，不使用反射
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航学习圈</a>
+ */
+public interface RpcSkeleton {
+
+    /**
+     * 获取方法 ID
+     *
+     * @param methodName     方法名称
+     * @param parameterTypes 参数类型列表
+     * @return 方法不存在时返回 -1
+     */
+    int getMethodId(String methodName, Class<?>[] parameterTypes);
+
+    /**
+     * 获取方法返回值类型
+     *
+     * @param methodId 方法 ID
+     * @return
+     */
+    Class<?> getReturnType(int methodId);
+
+    /**
+     * 调用方法
+     *
+     * @param methodId 方法 ID
+     * @param args     参数
+     * @return 返回值
+     * @throws Throwable 实现类抛出的异常（不包装）
+     */
+    Object invoke(int methodId, Object[] args) throws Throwable;
+}
@@ -0,0 +1,351 @@
+package com.yupi.yurpc.skeleton;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.ExecutableType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * 服务骨架注解处理器
+ * 为 @RpcService 标注的实现类生成 <实现类>_RpcSkeleton：按方法名和参数类型得到方法 ID，
+ * 按方法 ID 用精确的静态类型取出参数并直接调用实现类，并注册到 META-INF/services 供运行时加载；
+ * 同时为 @RpcService 和 @RpcReference 涉及的类型生成 GraalVM native image 配置
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航学习圈</a>
+ */
+@SupportedAnnotationTypes({RpcSkeletonProcessor.RPC_SERVICE_ANNOTATION, RpcSkeletonProcessor.RPC_REFERENCE_ANNOTATION})
+public class RpcSkeletonProcessor extends AbstractProcessor {
+
+    /**
+     * 服务提供者注解（位于 starter 中，按全限定名匹配）
+     */
+    static final String RPC_SERVICE_ANNOTATION = "com.yupi.yurpc.springboot.starter.annotation.RpcService";
+
+    /**
+     * 服务消费者注解（位于 starter 中，按全限定名匹配）
+     */
+    static final String RPC_REFERENCE_ANNOTATION = "com.yupi.yurpc.springboot.starter.annotation.RpcReference";
+
+    /**
+     * 生成的骨架类名后缀
+     */
+    public static final String SKELETON_SUFFIX = "_RpcSkeleton";
+
+    private static final String PROVIDER_SERVICE_FILE = "META-INF/services/" + RpcSkeletonProvider.class.getName();
+
+    /**
+     * 本次编译生成的骨架提供者
+     */
+    private final Set<String> providerNames = new TreeSet<>();
+
+    private NativeImageConfigWriter nativeImageConfigWriter;
+
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnv) {
+        super.init(processingEnv);
+        nativeImageConfigWriter = new NativeImageConfigWriter(processingEnv);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (TypeElement annotation : annotations) {
+            if (annotation.getQualifiedName().contentEquals(RPC_REFERENCE_ANNOTATION)) {
+                processReferences(roundEnv.getElementsAnnotatedWith(annotation));
+                continue;
+            }
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() != ElementKind.CLASS) {
+                    continue;
+                }
+                TypeElement implElement = (TypeElement) element;
+                if (implElement.getModifiers().contains(Modifier.PRIVATE)
+                        || implElement.getModifiers().contains(Modifier.ABSTRACT)) {
+                    processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                            "RpcService 实现类不能是 private 或 abstract，跳过生成服务骨架", implElement);
+                    continue;
+                }
+                TypeElement interfaceElement = getInterfaceElement(implElement);
+                if (interfaceElement == null) {
+                    continue;
+                }
+                nativeImageConfigWriter.addConstructorType(implElement);
+                nativeImageConfigWriter.addServiceInterface(interfaceElement);
+                try {
+                    generateSkeleton(implElement, interfaceElement);
+                } catch (IOException e) {
+                    processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                            "生成服务骨架失败：" + e.getMessage(), implElement);
+                }
+            }
+        }
+        if (roundEnv.processingOver()) {
+            if (!providerNames.isEmpty()) {
+                writeProviderServiceFile();
+            }
+            if (!nativeImageConfigWriter.isEmpty()) {
+                nativeImageConfigWriter.write();
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 处理 @RpcReference 字段：服务接口需要 JDK 动态代理
+     *
+     * @param elements
+     */
+    private void processReferences(Set<? extends Element> elements) {
+        for (Element element : elements) {
+            if (element.getKind() != ElementKind.FIELD || element.asType().getKind() != TypeKind.DECLARED) {
+                continue;
+            }
+            TypeElement interfaceElement = (TypeElement) ((DeclaredType) element.asType()).asElement();
+            if (interfaceElement.getKind() != ElementKind.INTERFACE) {
+                continue;
+            }
+            nativeImageConfigWriter.addProxyInterface(interfaceElement);
+            nativeImageConfigWriter.addServiceInterface(interfaceElement);
+        }
+    }
+
+    /**
+     * 获取服务接口：注解的 interfaceClass，未指定时取实现类的第一个接口
+     *
+     * @param implElement
+     * @return
+     */
+    private TypeElement getInterfaceElement(TypeElement implElement) {
+        for (AnnotationMirror annotationMirror : implElement.getAnnotationMirrors()) {
+            TypeElement annotationElement = (TypeElement) annotationMirror.getAnnotationType().asElement();
+            if (!annotationElement.getQualifiedName().contentEquals(RPC_SERVICE_ANNOTATION)) {
+                continue;
+            }
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
+                    : annotationMirror.getElementValues().entrySet()) {
+                if (entry.getKey().getSimpleName().contentEquals("interfaceClass")) {
+                    TypeMirror interfaceType = (TypeMirror) entry.getValue().getValue();
+                    if (interfaceType.getKind() == TypeKind.DECLARED) {
+                        return (TypeElement) ((DeclaredType) interfaceType).asElement();
+                    }
+                }
+            }
+        }
+        List<? extends TypeMirror> interfaces = implElement.getInterfaces();
+        if (interfaces.isEmpty()) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                    "RpcService 实现类没有服务接口，跳过生成服务骨架", implElement);
+            return null;
+        }
+        return (TypeElement) ((DeclaredType) interfaces.get(0)).asElement();
+    }
+
+    /**
+     * 生成骨架类源码
+     *
+     * @param implElement      实现类
+     * @param interfaceElement 服务接口
+     * @throws IOException
+     */
+    private void generateSkeleton(TypeElement implElement, TypeElement interfaceElement) throws IOException {
+        Types types = processingEnv.getTypeUtils();
+        PackageElement packageElement = processingEnv.getElementUtils().getPackageOf(implElement);
+        String packageName = packageElement.getQualifiedName().toString();
+        String binaryName = processingEnv.getElementUtils().getBinaryName(implElement).toString();
+        String skeletonSimpleName = getSkeletonSimpleName(binaryName, packageName);
+        String implName = implElement.getQualifiedName().toString();
+        DeclaredType implType = (DeclaredType) types.erasure(implElement.asType());
+
+        List<ExecutableElement> methods = new ArrayList<>();
+        for (ExecutableElement method : ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(interfaceElement))) {
+            TypeElement declaringElement = (TypeElement) method.getEnclosingElement();
+            if (method.getModifiers().contains(Modifier.STATIC)
+                    || !method.getModifiers().contains(Modifier.PUBLIC)
+                    || declaringElement.getQualifiedName().contentEquals("java.lang.Object")) {
+                continue;
+            }
+            methods.add(method);
+        }
+
+        StringBuilder methodIdCode = new StringBuilder();
+        StringBuilder returnTypeCode = new StringBuilder();
+        StringBuilder invokeCode = new StringBuilder();
+        for (int methodId = 0; methodId < methods.size(); methodId++) {
+            ExecutableElement method = methods.get(methodId);
+            // 匹配用声明处的擦除类型（与消费端 Method.getParameterTypes() 一致），调用用实现类上的实际类型
+            ExecutableType memberType = (ExecutableType) types.asMemberOf(implType, method);
+            List<? extends TypeMirror> parameterTypes = memberType.getParameterTypes();
+
+            methodIdCode.append("        if (\"").append(method.getSimpleName()).append("\".equals(methodName)")
+                    .append(" && parameterTypes.length == ").append(method.getParameters().size());
+            for (int i = 0; i < method.getParameters().size(); i++) {
+                methodIdCode.append("\n                && parameterTypes[").append(i).append("] == ")
+                        .append(types.erasure(method.getParameters().get(i).asType())).append(".class");
+            }
+            methodIdCode.append(") {\n            return ").append(methodId).append(";\n        }\n");
+
+            TypeMirror returnType = types.erasure(memberType.getReturnType());
+            returnTypeCode.append("            case ").append(methodId).append(":\n                return ")
+                    .append(returnType).append(".class;\n");
+
+            StringBuilder call = new StringBuilder("service.").append(method.getSimpleName()).append("(");
+            for (int i = 0; i < parameterTypes.size(); i++) {
+                if (i > 0) {
+                    call.append(", ");
+                }
+                call.append("(").append(getCastType(parameterTypes.get(i))).append(") args[").append(i).append("]");
+            }
+            call.append(")");
+            invokeCode.append("            case ").append(methodId).append(":\n");
+            if (returnType.getKind() == TypeKind.VOID) {
+                invokeCode.append("                ").append(call).append(";\n                return null;\n");
+            } else {
+                invokeCode.append("                return ").append(call).append(";\n");
+            }
+        }
+
+        String code = "package " + packageName + ";\n\n"
+                + "/**\n * " + implName + " 的服务骨架（由 RpcSkeletonProcessor 生成，请勿修改）\n */\n"
+                + "@SuppressWarnings({\"unchecked\", \"rawtypes\"})\n"
+                + "public final class " + skeletonSimpleName + " implements com.yupi.yurpc.skeleton.RpcSkeleton {\n\n"
+                + "    private final " + implName + " service;\n\n"
+                + "    public " + skeletonSimpleName + "(" + implName + " service) {\n"
+                + "        this.service = service;\n"
+                + "    }\n\n"
+                + "    @Override\n"
+                + "    public int getMethodId(String methodName, Class<?>[] parameterTypes) {\n"
+                + methodIdCode
+                + "        return -1;\n"
+                + "    }\n\n"
+                + "    @Override\n"
+                + "    public Class<?> getReturnType(int methodId) {\n"
+                + "        switch (methodId) {\n"
+                + returnTypeCode
+                + "            default:\n"
+                + "                throw new IllegalArgumentException(\"unknown method id: \" + methodId);\n"
+                + "        }\n"
+                + "    }\n\n"
+                + "    @Override\n"
+                + "    public Object invoke(int methodId, Object[] args) throws Throwable {\n"
+                + "        switch (methodId) {\n"
+                + invokeCode
+                + "            default:\n"
+                + "                throw new IllegalArgumentException(\"unknown method id: \" + methodId);\n"
+                + "        }\n"
+                + "    }\n\n"
+                + "    public static final class Provider implements com.yupi.yurpc.skeleton.RpcSkeletonProvider {\n\n"
+                + "        @Override\n"
+                + "        public Class<?> getImplClass() {\n"
+                + "            return " + implName + ".class;\n"
+                + "        }\n\n"
+                + "        @Override\n"
+                + "        public com.yupi.yurpc.skeleton.RpcSkeleton create(Object service) {\n"
+                + "            return new " + skeletonSimpleName + "((" + implName + ") service);\n"
+                + "        }\n"
+                + "    }\n"
+                + "}\n";
+
+        String skeletonName = packageName.isEmpty() ? skeletonSimpleName : packageName + "." + skeletonSimpleName;
+        JavaFileObject sourceFile = processingEnv.getFiler().createSourceFile(skeletonName, implElement);
+        try (Writer writer = sourceFile.openWriter()) {
+            writer.write(code);
+        }
+        providerNames.add(skeletonName + "$Provider");
+    }
+
+    /**
+     * 骨架类名：实现类去掉包名后的二进制名（内部类的 $ 替换为 _）+ 后缀
+     *
+     * @param binaryName
+     * @param packageName
+     * @return
+     */
+    static String getSkeletonSimpleName(String binaryName, String packageName) {
+        String simpleBinaryName = packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1);
+        return simpleBinaryName.replace('$', '_') + SKELETON_SUFFIX;
+    }
+
+    /**
+     * 参数强制转换的类型，基本类型转换为包装类型后自动拆箱
+     *
+     * @param type
+     * @return
+     */
+    private String getCastType(TypeMirror type) {
+        Types types = processingEnv.getTypeUtils();
+        if (type.getKind().isPrimitive()) {
+            return types.boxedClass(types.getPrimitiveType(type.getKind())).getQualifiedName().toString();
+        }
+        return types.erasure(type).toString();
+    }
+
+    /**
+     * 写入 META-INF/services，合并之前编译（增量编译）已经生成的提供者
+     */
+    private void writeProviderServiceFile() {
+        Set<String> allProviderNames = new TreeSet<>(providerNames);
+        try {
+            FileObject existingFile = processingEnv.getFiler()
+                    .getResource(StandardLocation.CLASS_OUTPUT, "", PROVIDER_SERVICE_FILE);
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(existingFile.openInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.trim().isEmpty()) {
+                        allProviderNames.add(line.trim());
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // 之前没有生成过
+        }
+        try {
+            FileObject serviceFile = processingEnv.getFiler()
+                    .createResource(StandardLocation.CLASS_OUTPUT, "", PROVIDER_SERVICE_FILE);
+            try (Writer writer = serviceFile.openWriter()) {
+                for (String providerName : allProviderNames) {
+                    writer.write(providerName);
+                    writer.write("\n");
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "写入 " + PROVIDER_SERVICE_FILE + " 失败：" + e.getMessage());
+        }
+    }
+}
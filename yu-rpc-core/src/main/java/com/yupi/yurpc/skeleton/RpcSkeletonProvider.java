@@ -0,0 +1,26 @@
+package com.yupi.yurpc.skeleton;
+
+/**
+ * 服务骨架提供者（生成的骨架类通过 META-INF/services 注册，原生镜像中也无需反射配置）
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航学习圈</a>
+ */
+public interface RpcSkeletonProvider {
+
+    /**
+     * 骨架对应的服务实现类
+     *
+     * @return
+     */
+    Class<?> getImplClass();
+
+    /**
+     * 为服务实现对象创建骨架
+     *
+     * @param service 服务实现对象
+     * @return
+     */
+    RpcSkeleton create(Object service);
+}
@@ -0,0 +1,57 @@
+package com.yupi.yurpc.skeleton;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.ServiceLoader;
+
+/**
+ * 服务骨架工具类
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航学习圈</a>
+ */
+@Slf4j
+public class RpcSkeletons {
+
+    /**
+     * 生成的骨架提供者：实现类 => 提供者
+     */
+    private static volatile Map<Class<?>, RpcSkeletonProvider> providerMap;
+
+    /**
+     * 为服务实现对象创建骨架，优先使用编译期生成的骨架，没有时退回反射
+     *
+     * @param service 服务实现对象
+     * @return
+     */
+    public static RpcSkeleton create(Object service) {
+        Map<Class<?>, RpcSkeletonProvider> providers = getProviderMap();
+        // 实现类可能被子类化（如 Spring 的 CGLIB 代理），向上查找
+        for (Class<?> clazz = service.getClass(); clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
+            RpcSkeletonProvider provider = providers.get(clazz);
+            if (provider != null) {
+                return provider.create(service);
+            }
+        }
+        log.info("no generated skeleton for {}, using reflection", service.getClass().getName());
+        return new ReflectiveRpcSkeleton(service);
+    }
+
+    private static Map<Class<?>, RpcSkeletonProvider> getProviderMap() {
+        if (providerMap == null) {
+            synchronized (RpcSkeletons.class) {
+                if (providerMap == null) {
+                    Map<Class<?>, RpcSkeletonProvider> map = new HashMap<>();
+                    for (RpcSkeletonProvider provider : ServiceLoader.load(RpcSkeletonProvider.class)) {
+                        map.put(provider.getImplClass(), provider);
+                    }
+                    providerMap = map;
+                }
+            }
+        }
+        return providerMap;
+    }
+}
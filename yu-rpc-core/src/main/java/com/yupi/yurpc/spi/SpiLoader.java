@@ -8,7 +8,9 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -26,9 +28,9 @@ import java.util.concurrent.ConcurrentHashMap;
 public class SpiLoader {
 
     /**
-     * 存储已加载的类：接口名 =>（key => 实现类）
+     * SPI 索引：接口名 =>（key => 实现类名），只读取配置文件，不加载实现类
      */
-    private static final Map<String, Map<String, Class<?>>> loaderMap = new ConcurrentHashMap<>();
+    private static final Map<String, Map<String, String>> loaderMap = new ConcurrentHashMap<>();
 
     /**
      * 对象实例缓存（避免重复 new），类路径 => 对象实例，单例模式
@@ -56,7 +58,7 @@ public class SpiLoader {
     private static final List<Class<?>> LOAD_CLASS_LIST = Arrays.asList(Serializer.class);
 
     /**
-     * 加载所有类型
+     * 加载所有类型的索引（可选，getInstance 首次使用某个类型时会自动加载）
      */
     public static void loadAll() {
         log.info("Loading all SPI");
@@ -66,7 +68,7 @@ public class SpiLoader {
     }
 
     /**
-     * 获取某个接口的实例
+     * 获取某个接口的实例，实现类在第一次获取时才加载和实例化
      *
      * @param tClass
      * @param key
@@ -75,52 +77,52 @@ public class SpiLoader {
      */
     public static <T> T getInstance(Class<?> tClass, String key) {
         String tClassName = tClass.getName();
-        Map<String, Class<?>> keyClassMap = loaderMap.get(tClassName);
-        if (keyClassMap == null) {
-            throw new RuntimeException(String.format("SpiLoader 未加载 %s 类型", tClassName));
-        }
-        if (!keyClassMap.containsKey(key)) {
+        Map<String, String> keyClassNameMap = loaderMap.computeIfAbsent(tClassName, name -> scan(tClass));
+        // 获取到要加载的实现类名
+        String implClassName = keyClassNameMap.get(key);
+        if (implClassName == null) {
             throw new RuntimeException(String.format("SpiLoader 的 %s 不存在 key=%s 的类型", tClassName, key));
         }
-        // 获取到要加载的实现类型
-        Class<?> implClass = keyClassMap.get(key);
-        // 从实例缓存中加载指定类型的实例
-        String implClassName = implClass.getName();
-        if (!instanceCache.containsKey(implClassName)) {
-            try {
-                instanceCache.put(implClassName, implClass.newInstance());
-            } catch (InstantiationException | IllegalAccessException e) {
-                String errorMsg = String.format("%s 类实例化失败", implClassName);
-                throw new RuntimeException(errorMsg, e);
-            }
+        // 从实例缓存中加载指定类型的实例，并发首次获取时只创建一个实例
+        Object instance = instanceCache.get(implClassName);
+        if (instance == null) {
+            instance = instanceCache.computeIfAbsent(implClassName, SpiLoader::newInstance);
         }
-        return (T) instanceCache.get(implClassName);
+        return (T) instance;
+    }
+
+    /**
+     * 加载某个类型的索引（重新扫描配置文件）
+     *
+     * @param loadClass
+     * @return key => 实现类名
+     */
+    public static Map<String, String> load(Class<?> loadClass) {
+        Map<String, String> keyClassNameMap = scan(loadClass);
+        loaderMap.put(loadClass.getName(), keyClassNameMap);
+        return keyClassNameMap;
     }
 
     /**
-     * 加载某个类型
+     * 扫描某个类型的配置文件，用户自定义的 SPI 优先级高于系统 SPI
      *
      * @param loadClass
-     * @throws IOException
+     * @return key => 实现类名
      */
-    public static Map<String, Class<?>> load(Class<?> loadClass) {
+    private static Map<String, String> scan(Class<?> loadClass) {
         log.info("Loading SPI for type: {}", loadClass.getName());
-        // 扫描路径，用户自定义的 SPI 优先级高于系统 SPI
-        Map<String, Class<?>> keyClassMap = new HashMap<>();
+        Map<String, String> keyClassNameMap = new HashMap<>();
         for (String scanDir : SCAN_DIRS) {
             List<URL> resources = ResourceUtil.getResources(scanDir + loadClass.getName());
             // 读取每个资源文件
             for (URL resource : resources) {
-                try {
-                    InputStreamReader inputStreamReader = new InputStreamReader(resource.openStream());
-                    BufferedReader bufferedReader = new BufferedReader(inputStreamReader);
+                try (BufferedReader bufferedReader = new BufferedReader(
+                        new InputStreamReader(resource.openStream(), StandardCharsets.UTF_8))) {
                     String line;
                     while ((line = bufferedReader.readLine()) != null) {
                         String[] strArray = line.split("=");
                         if (strArray.length > 1) {
-                            String key = strArray[0];
-                            String className = strArray[1];
-                            keyClassMap.put(key, Class.forName(className));
+                            keyClassNameMap.put(strArray[0].trim(), strArray[1].trim());
                         }
                     }
                 } catch (Exception e) {
@@ -128,8 +130,22 @@ public class SpiLoader {
                 }
             }
         }
-        loaderMap.put(loadClass.getName(), keyClassMap);
-        return keyClassMap;
+        return Collections.unmodifiableMap(keyClassNameMap);
+    }
+
+    /**
+     * 加载并实例化实现类
+     *
+     * @param implClassName
+     * @return
+     */
+    private static Object newInstance(String implClassName) {
+        try {
+            return Class.forName(implClassName).getDeclaredConstructor().newInstance();
+        } catch (Exception e) {
+            String errorMsg = String.format("%s 类实例化失败", implClassName);
+            throw new RuntimeException(errorMsg, e);
+        }
     }
 
     public static void main(String[] args) throws IOException, ClassNotFoundException {
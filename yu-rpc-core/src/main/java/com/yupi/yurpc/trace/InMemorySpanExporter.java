@@ -0,0 +1,52 @@
+package com.yupi.yurpc.trace;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 内存跨度导出器，只保留最近的跨度，用于离线测试和调试
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航学习圈</a>
+ */
+public class InMemorySpanExporter implements SpanExporter {
+
+    /**
+     * 最多保留的跨度数，超出时丢弃最旧的
+     */
+    private static final int MAX_SPANS = 10000;
+
+    private final Queue<Span> spans = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger size = new AtomicInteger();
+
+    @Override
+    public void export(Span span) {
+        spans.offer(span);
+        if (size.incrementAndGet() > MAX_SPANS && spans.poll() != null) {
+            size.decrementAndGet();
+        }
+    }
+
+    /**
+     * 获取已导出的跨度（按结束顺序）
+     *
+     * @return
+     */
+    public List<Span> getFinishedSpans() {
+        return new ArrayList<>(spans);
+    }
+
+    /**
+     * 清空已导出的跨度
+     */
+    public void reset() {
+        while (spans.poll() != null) {
+            size.decrementAndGet();
+        }
+    }
+}
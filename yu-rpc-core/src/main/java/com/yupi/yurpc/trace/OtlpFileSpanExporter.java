@@ -0,0 +1,313 @@
+package com.yupi.yurpc.trace;
+
+import cn.hutool.json.JSONArray;
+import cn.hutool.json.JSONObject;
+import com.yupi.yurpc.RpcApplication;
+import com.yupi.yurpc.config.RpcConfig;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * OTLP JSON 文件跨度导出器
+ * 每个跨度写一行 OTLP/JSON 格式的 ExportTraceServiceRequest（与 OpenTelemetry Collector 的 file 导出格式相同），
+ * 可以用 Collector 的 otlpjsonfile 接收器导入，也可以离线直接分析
+ * 导出时只入队，由后台线程批量写入并按批刷新
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航学习圈</a>
+ */
+@Slf4j
+public class OtlpFileSpanExporter implements SpanExporter {
+
+    /**
+     * OTLP 状态码：正常 / 出错
+     */
+    private static final int STATUS_CODE_OK = 1;
+
+    private static final int STATUS_CODE_ERROR = 2;
+
+    /**
+     * 待写入队列容量，写入跟不上时丢弃新的跨度
+     */
+    private static final int QUEUE_CAPACITY = 8192;
+
+    /**
+     * 每批最多写入的跨度数（每批刷新一次文件）
+     */
+    private static final int MAX_BATCH_SIZE = 512;
+
+    /**
+     * 等待写入完成的最长时间
+     */
+    private static final long FLUSH_TIMEOUT_MILLIS = 5000;
+
+    /**
+     * 待写入的跨度（PendingSpan）或刷新标记（CountDownLatch）
+     */
+    private final BlockingQueue<Object> queue = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+
+    /**
+     * 队列满被丢弃的跨度数
+     */
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    private volatile Thread writerThread;
+
+    /**
+     * 当前写入的文件（只在写入线程中访问）
+     */
+    private Path path;
+
+    private BufferedWriter writer;
+
+    /**
+     * 只入队，由后台线程批量写文件，不在事件循环或业务线程中做文件 I/O
+     *
+     * @param span
+     */
+    @Override
+    public void export(Span span) {
+        RpcConfig rpcConfig = RpcApplication.getRpcConfig();
+        if (!queue.offer(new PendingSpan(span, rpcConfig.getName(), rpcConfig.getTraceExportFile()))) {
+            long dropped = droppedCount.incrementAndGet();
+            if (dropped % 1024 == 1) {
+                log.warn("span export queue is full, dropped {} spans", dropped);
+            }
+        }
+        ensureWriterStarted();
+    }
+
+    /**
+     * 等待已导出的跨度全部写入文件
+     */
+    public void flush() {
+        ensureWriterStarted();
+        CountDownLatch latch = new CountDownLatch(1);
+        try {
+            if (!queue.offer(latch, FLUSH_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)
+                    || !latch.await(FLUSH_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                log.warn("flush span file timeout");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 第一次导出时启动写入线程，进程退出前写完剩余的跨度
+     */
+    private void ensureWriterStarted() {
+        if (writerThread != null) {
+            return;
+        }
+        synchronized (this) {
+            if (writerThread != null) {
+                return;
+            }
+            Thread thread = new Thread(this::writeLoop, "yu-rpc-span-exporter");
+            thread.setDaemon(true);
+            thread.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(this::flush));
+            writerThread = thread;
+        }
+    }
+
+    private void writeLoop() {
+        List<Object> batch = new ArrayList<>(MAX_BATCH_SIZE);
+        while (true) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+            writeBatch(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * 写入一批跨度，整批只刷新一次；遇到刷新标记时先刷新再通知等待方
+     *
+     * @param batch
+     */
+    private void writeBatch(List<Object> batch) {
+        for (Object item : batch) {
+            if (item instanceof CountDownLatch) {
+                flushWriter();
+                ((CountDownLatch) item).countDown();
+                continue;
+            }
+            PendingSpan pendingSpan = (PendingSpan) item;
+            try {
+                BufferedWriter currentWriter = getWriter(Paths.get(pendingSpan.file));
+                currentWriter.write(toJson(pendingSpan.span, pendingSpan.serviceName).toString());
+                currentWriter.newLine();
+            } catch (Exception e) {
+                log.warn("write span file error: {}", pendingSpan.file, e);
+                closeWriter();
+            }
+        }
+        flushWriter();
+    }
+
+    private void flushWriter() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            log.warn("flush span file error: {}", path, e);
+            closeWriter();
+        }
+    }
+
+    private void closeWriter() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException ignored) {
+            }
+        }
+        writer = null;
+        path = null;
+    }
+
+    /**
+     * 获取文件的写入器，配置的文件变化时切换
+     *
+     * @param targetPath
+     * @return
+     * @throws IOException
+     */
+    private BufferedWriter getWriter(Path targetPath) throws IOException {
+        if (writer != null && targetPath.equals(path)) {
+            return writer;
+        }
+        if (writer != null) {
+            writer.flush();
+            closeWriter();
+        }
+        Path parent = targetPath.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        writer = Files.newBufferedWriter(targetPath, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        path = targetPath;
+        return writer;
+    }
+
+    /**
+     * 待写入的跨度，入队时记下当时的配置
+     */
+    private static class PendingSpan {
+
+        private final Span span;
+
+        private final String serviceName;
+
+        private final String file;
+
+        private PendingSpan(Span span, String serviceName, String file) {
+            this.span = span;
+            this.serviceName = serviceName;
+            this.file = file;
+        }
+    }
+
+    /**
+     * 转为 OTLP/JSON：resourceSpans -> scopeSpans -> spans
+     *
+     * @param span
+     * @param serviceName 资源的 service.name
+     * @return
+     */
+    static JSONObject toJson(Span span, String serviceName) {
+        JSONObject spanJson = new JSONObject();
+        spanJson.set("traceId", span.getTraceId());
+        spanJson.set("spanId", span.getSpanId());
+        if (span.getParentSpanId() != null) {
+            spanJson.set("parentSpanId", span.getParentSpanId());
+        }
+        spanJson.set("name", span.getName());
+        spanJson.set("kind", span.getKind().getValue());
+        // 64 位整数按 OTLP/JSON 的约定写为字符串
+        spanJson.set("startTimeUnixNano", String.valueOf(span.getStartEpochNanos()));
+        spanJson.set("endTimeUnixNano", String.valueOf(span.getEndEpochNanos()));
+        spanJson.set("attributes", toAttributes(span.getAttributes()));
+        JSONArray eventsJson = new JSONArray();
+        for (SpanEvent spanEvent : span.getEvents()) {
+            JSONObject eventJson = new JSONObject();
+            eventJson.set("timeUnixNano", String.valueOf(spanEvent.getEpochNanos()));
+            eventJson.set("name", spanEvent.getName());
+            if (spanEvent.getAttributes() != null) {
+                eventJson.set("attributes", toAttributes(spanEvent.getAttributes()));
+            }
+            eventsJson.add(eventJson);
+        }
+        spanJson.set("events", eventsJson);
+        JSONObject statusJson = new JSONObject();
+        statusJson.set("code", span.isError() ? STATUS_CODE_ERROR : STATUS_CODE_OK);
+        if (span.getStatusMessage() != null) {
+            statusJson.set("message", span.getStatusMessage());
+        }
+        spanJson.set("status", statusJson);
+
+        JSONObject scopeJson = new JSONObject();
+        scopeJson.set("name", "yu-rpc");
+        JSONObject scopeSpansJson = new JSONObject();
+        scopeSpansJson.set("scope", scopeJson);
+        scopeSpansJson.set("spans", new JSONArray().set(spanJson));
+        JSONObject resourceJson = new JSONObject();
+        resourceJson.set("attributes", new JSONArray().set(toAttribute("service.name", serviceName)));
+        JSONObject resourceSpansJson = new JSONObject();
+        resourceSpansJson.set("resource", resourceJson);
+        resourceSpansJson.set("scopeSpans", new JSONArray().set(scopeSpansJson));
+        JSONObject requestJson = new JSONObject();
+        requestJson.set("resourceSpans", new JSONArray().set(resourceSpansJson));
+        return requestJson;
+    }
+
+    private static JSONArray toAttributes(Map<String, Object> attributes) {
+        JSONArray attributesJson = new JSONArray();
+        for (Map.Entry<String, Object> entry : attributes.entrySet()) {
+            attributesJson.add(toAttribute(entry.getKey(), entry.getValue()));
+        }
+        return attributesJson;
+    }
+
+    private static JSONObject toAttribute(String key, Object value) {
+        JSONObject valueJson = new JSONObject();
+        if (value instanceof Boolean) {
+            valueJson.set("boolValue", value);
+        } else if (value instanceof Integer || value instanceof Long) {
+            valueJson.set("intValue", String.valueOf(value));
+        } else if (value instanceof Number) {
+            valueJson.set("doubleValue", value);
+        } else {
+            valueJson.set("stringValue", String.valueOf(value));
+        }
+        JSONObject attributeJson = new JSONObject();
+        attributeJson.set("key", key);
+        attributeJson.set("value", valueJson);
+        return attributeJson;
+    }
+}
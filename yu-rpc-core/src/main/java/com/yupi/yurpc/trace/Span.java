@@ -0,0 +1,174 @@
+package com.yupi.yurpc.trace;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 跨度：一次 RPC 调用在消费端或服务端的耗时记录，各阶段以事件表示
+ * 同一个跨度的事件可能来自调用线程和事件循环线程，修改和读取都需要加锁
+ * 不采样的跨度只保留链路 ID 和跨度 ID 用于向下游传播采样决定，不记录属性和事件，也不导出
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航学习圈</a>
+ */
+@Getter
+public class Span {
+
+    /**
+     * 链路 ID（32 位十六进制）
+     */
+    private final String traceId;
+
+    /**
+     * 跨度 ID（16 位十六进制）
+     */
+    private final String spanId;
+
+    /**
+     * 父跨度 ID，根跨度为 null
+     */
+    private final String parentSpanId;
+
+    /**
+     * 跨度名：服务名/方法名
+     */
+    private final String name;
+
+    private final SpanKindEnum kind;
+
+    /**
+     * 开始时间（Unix 纪元纳秒）
+     */
+    private final long startEpochNanos;
+
+    /**
+     * 是否采样（记录并导出）
+     */
+    private final boolean recording;
+
+    /**
+     * 结束时间（Unix 纪元纳秒），未结束时为 0
+     */
+    private volatile long endEpochNanos;
+
+    /**
+     * 是否出错
+     */
+    private volatile boolean error;
+
+    /**
+     * 出错信息
+     */
+    private volatile String statusMessage;
+
+    private final Map<String, Object> attributes = new LinkedHashMap<>();
+
+    private final List<SpanEvent> events = new ArrayList<>();
+
+    Span(String traceId, String spanId, String parentSpanId, String name, SpanKindEnum kind, long startEpochNanos,
+         boolean recording) {
+        this.traceId = traceId;
+        this.spanId = spanId;
+        this.parentSpanId = parentSpanId;
+        this.name = name;
+        this.kind = kind;
+        this.startEpochNanos = startEpochNanos;
+        this.recording = recording;
+    }
+
+    public synchronized Span setAttribute(String key, Object value) {
+        if (recording) {
+            attributes.put(key, value);
+        }
+        return this;
+    }
+
+    /**
+     * 记录当前时间发生的事件
+     *
+     * @param name
+     */
+    public void addEvent(String name) {
+        addEvent(name, Tracer.nowEpochNanos(), null);
+    }
+
+    /**
+     * 记录事件
+     *
+     * @param name
+     * @param epochNanos 发生时间（Unix 纪元纳秒）
+     * @param attributes 属性，可以为 null
+     */
+    public synchronized void addEvent(String name, long epochNanos, Map<String, Object> attributes) {
+        if (recording) {
+            events.add(new SpanEvent(name, epochNanos, attributes));
+        }
+    }
+
+    /**
+     * 记录异常，跨度标记为出错
+     *
+     * @param t
+     */
+    public void recordException(Throwable t) {
+        if (!recording) {
+            return;
+        }
+        Map<String, Object> eventAttributes = new LinkedHashMap<>();
+        eventAttributes.put("exception.type", t.getClass().getName());
+        eventAttributes.put("exception.message", t.getMessage());
+        addEvent(TraceEventKeys.EXCEPTION, Tracer.nowEpochNanos(), eventAttributes);
+        setError(t.toString());
+    }
+
+    /**
+     * 标记为出错
+     *
+     * @param message
+     */
+    public void setError(String message) {
+        if (!recording) {
+            return;
+        }
+        this.statusMessage = message;
+        this.error = true;
+    }
+
+    /**
+     * 结束跨度并导出（不采样时只记录结束时间），重复调用时忽略
+     */
+    public void end() {
+        synchronized (this) {
+            if (endEpochNanos != 0) {
+                return;
+            }
+            endEpochNanos = Tracer.nowEpochNanos();
+        }
+        if (recording) {
+            Tracer.export(this);
+        }
+    }
+
+    public synchronized Map<String, Object> getAttributes() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(attributes));
+    }
+
+    public synchronized List<SpanEvent> getEvents() {
+        return Collections.unmodifiableList(new ArrayList<>(events));
+    }
+
+    /**
+     * W3C Trace Context 格式的传播头：版本-链路 ID-跨度 ID-采样标记（01 采样，00 不采样）
+     *
+     * @return
+     */
+    public String toTraceparent() {
+        return "00-" + traceId + "-" + spanId + (recording ? "-01" : "-00");
+    }
+}
@@ -0,0 +1,35 @@
+package com.yupi.yurpc.trace;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * 跨度事件（调用过程中的一个时间点，如编码完成、开始执行）
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航学习圈</a>
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class SpanEvent {
+
+    /**
+     * 事件名
+     */
+    private String name;
+
+    /**
+     * 发生时间（Unix 纪元纳秒）
+     */
+    private long epochNanos;
+
+    /**
+     * 属性，没有时为 null
+     */
+    private Map<String, Object> attributes;
+}
@@ -0,0 +1,18 @@
+package com.yupi.yurpc.trace;
+
+/**
+ * 跨度导出器
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航学习圈</a>
+ */
+public interface SpanExporter {
+
+    /**
+     * 导出已结束的跨度（在结束跨度的线程中调用，不要阻塞太久）
+     *
+     * @param span
+     */
+    void export(Span span);
+}
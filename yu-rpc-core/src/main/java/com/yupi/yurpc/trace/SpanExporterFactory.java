@@ -0,0 +1,24 @@
+package com.yupi.yurpc.trace;
+
+import com.yupi.yurpc.spi.SpiLoader;
+
+/**
+ * 跨度导出器工厂（工厂模式，用于获取跨度导出器对象）
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航学习圈</a>
+ */
+public class SpanExporterFactory {
+
+    /**
+     * 获取实例
+     *
+     * @param key
+     * @return
+     */
+    public static SpanExporter getInstance(String key) {
+        return SpiLoader.getInstance(SpanExporter.class, key);
+    }
+
+}
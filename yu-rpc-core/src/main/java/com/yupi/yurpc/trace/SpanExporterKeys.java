@@ -0,0 +1,21 @@
+package com.yupi.yurpc.trace;
+
+/**
+ * 跨度导出器键名常量
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航学习圈</a>
+ */
+public interface SpanExporterKeys {
+
+    /**
+     * 进程内存（保留最近的跨度，用于测试和调试）
+     */
+    String MEMORY = "memory";
+
+    /**
+     * OTLP JSON 文件（每行一个 ExportTraceServiceRequest）
+     */
+    String OTLP_FILE = "otlpFile";
+}
@@ -0,0 +1,26 @@
+package com.yupi.yurpc.trace;
+
+import lombok.Getter;
+
+/**
+ * 跨度类型枚举（值与 OTLP 的 SpanKind 一致）
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航学习圈</a>
+ */
+@Getter
+public enum SpanKindEnum {
+
+    SERVER("server", 2),
+    CLIENT("client", 3);
+
+    private final String text;
+
+    private final int value;
+
+    SpanKindEnum(String text, int value) {
+        this.text = text;
+        this.value = value;
+    }
+}
@@ -0,0 +1,61 @@
+package com.yupi.yurpc.trace;
+
+/**
+ * 跨度事件名常量，相邻两个事件之间即为一个阶段的耗时
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航学习圈</a>
+ */
+public interface TraceEventKeys {
+
+    /**
+     * 消费端：服务发现和路由完成
+     */
+    String DISCOVERY = "discovery";
+
+    /**
+     * 消费端：负载均衡选出节点
+     */
+    String LOAD_BALANCE = "loadBalance";
+
+    /**
+     * 消费端：请求编码完成，之后到收到响应为网络和服务端耗时
+     */
+    String REQUEST_ENCODED = "request.encoded";
+
+    /**
+     * 消费端：收到响应帧（解码前）
+     */
+    String RESPONSE_RECEIVED = "response.received";
+
+    /**
+     * 消费端：响应解码完成
+     */
+    String RESPONSE_DECODED = "response.decoded";
+
+    /**
+     * 服务端：请求解码完成（跨度开始于收到请求帧）
+     */
+    String REQUEST_DECODED = "request.decoded";
+
+    /**
+     * 服务端：进入线程池或舱壁排队
+     */
+    String QUEUED = "queued";
+
+    /**
+     * 服务端：开始执行服务方法
+     */
+    String EXECUTION_START = "execution.start";
+
+    /**
+     * 服务端：服务方法执行完成
+     */
+    String EXECUTION_END = "execution.end";
+
+    /**
+     * 异常
+     */
+    String EXCEPTION = "exception";
+}
@@ -0,0 +1,211 @@
+package com.yupi.yurpc.trace;
+
+import com.yupi.yurpc.RpcApplication;
+import com.yupi.yurpc.config.RpcConfig;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 链路追踪
+ * 消费端和服务端的每次调用各对应一个跨度，链路上下文按 W3C Trace Context 格式放在协议消息头的附件中传播。
+ * 采用跟随父跨度的采样：收到链路上下文时沿用上游的采样决定，否则按采样率决定新链路是否采样；
+ * 不采样的调用也有一个不记录事件、不导出的跨度，以不采样标记把链路传给下游，下游不会再按自己的采样率开始孤立的链路
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航学习圈</a>
+ */
+@Slf4j
+public class Tracer {
+
+    /**
+     * 链路上下文在消息头附件中的键
+     */
+    public static final String TRACEPARENT = "traceparent";
+
+    /**
+     * 当前线程正在进行的跨度（服务端执行服务方法期间为服务端跨度，发起的下游调用以它为父跨度）
+     */
+    private static final ThreadLocal<Span> CURRENT = new ThreadLocal<>();
+
+    /**
+     * System.nanoTime() 到 Unix 纪元纳秒的偏移
+     */
+    private static final long EPOCH_NANOS_OFFSET = System.currentTimeMillis() * 1_000_000L - System.nanoTime();
+
+    /**
+     * 当前时间（Unix 纪元纳秒，基于单调时钟，同一进程内的先后顺序可靠）
+     *
+     * @return
+     */
+    public static long nowEpochNanos() {
+        return EPOCH_NANOS_OFFSET + System.nanoTime();
+    }
+
+    /**
+     * 获取当前线程的跨度
+     *
+     * @return 没有时返回 null
+     */
+    public static Span current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 设置当前线程的跨度
+     *
+     * @param span 为 null 时清除
+     * @return 之前的跨度
+     */
+    public static Span setCurrent(Span span) {
+        Span previous = CURRENT.get();
+        if (span == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(span);
+        }
+        return previous;
+    }
+
+    /**
+     * 开始消费端跨度，父跨度为当前线程的跨度
+     *
+     * @param serviceName
+     * @param methodName
+     * @return 跨度，没有父跨度时按采样率决定是否采样，否则跟随父跨度
+     */
+    public static Span startClientSpan(String serviceName, String methodName) {
+        Span parent = CURRENT.get();
+        if (parent == null) {
+            return newSpan(newTraceId(), null, serviceName, methodName, SpanKindEnum.CLIENT, nowEpochNanos(),
+                    sample());
+        }
+        return newSpan(parent.getTraceId(), parent.getSpanId(), serviceName, methodName, SpanKindEnum.CLIENT,
+                nowEpochNanos(), parent.isRecording());
+    }
+
+    /**
+     * 开始服务端跨度
+     *
+     * @param serviceName
+     * @param methodName
+     * @param traceparent     请求携带的链路上下文，可以为 null
+     * @param startEpochNanos 开始时间（收到请求帧的时间）
+     * @return 跨度，请求带有链路上下文时跟随上游的采样标记，否则按采样率决定是否采样
+     */
+    public static Span startServerSpan(String serviceName, String methodName, String traceparent,
+                                       long startEpochNanos) {
+        // 格式：00-32 位链路 ID-16 位父跨度 ID-2 位标记
+        if (traceparent != null && traceparent.length() == 55 && traceparent.charAt(2) == '-'
+                && traceparent.charAt(35) == '-' && traceparent.charAt(52) == '-') {
+            // 上游未采样时不记录，但继续传播同一链路
+            return newSpan(traceparent.substring(3, 35), traceparent.substring(36, 52), serviceName, methodName,
+                    SpanKindEnum.SERVER, startEpochNanos, isSampled(traceparent));
+        }
+        return newSpan(newTraceId(), null, serviceName, methodName, SpanKindEnum.SERVER, startEpochNanos, sample());
+    }
+
+    /**
+     * 链路上下文是否带有采样标记
+     *
+     * @param traceparent W3C Trace Context 格式的链路上下文
+     * @return
+     */
+    public static boolean isSampled(String traceparent) {
+        return (Character.digit(traceparent.charAt(traceparent.length() - 1), 16) & 1) == 1;
+    }
+
+    /**
+     * 把当前线程的链路上下文（包括采样标记）加入消息头附件
+     *
+     * @param attachments 只读的附件
+     * @return 没有当前跨度时原样返回
+     */
+    public static Map<String, String> inject(Map<String, String> attachments) {
+        Span span = CURRENT.get();
+        if (span == null) {
+            return attachments;
+        }
+        Map<String, String> injected = new LinkedHashMap<>(attachments);
+        injected.put(TRACEPARENT, span.toTraceparent());
+        return Collections.unmodifiableMap(injected);
+    }
+
+    /**
+     * 去掉附件中的链路上下文，服务端放入 RpcContext 的业务附件不包含它
+     * （链路上下文每次调用都不同，保留会使按附件区分的响应缓存和请求合并失效；下游调用会重新注入）
+     *
+     * @param attachments 只读的附件
+     * @return 不包含链路上下文时原样返回
+     */
+    public static Map<String, String> withoutTraceContext(Map<String, String> attachments) {
+        if (!attachments.containsKey(TRACEPARENT)) {
+            return attachments;
+        }
+        Map<String, String> stripped = new LinkedHashMap<>(attachments);
+        stripped.remove(TRACEPARENT);
+        return stripped.isEmpty() ? Collections.emptyMap() : Collections.unmodifiableMap(stripped);
+    }
+
+    /**
+     * 导出已结束的跨度，导出失败不影响调用
+     *
+     * @param span
+     */
+    static void export(Span span) {
+        try {
+            SpanExporterFactory.getInstance(RpcApplication.getRpcConfig().getTraceExporter()).export(span);
+        } catch (Exception e) {
+            log.warn("export span error, name: {}", span.getName(), e);
+        }
+    }
+
+    private static boolean sample() {
+        RpcConfig rpcConfig = RpcApplication.getRpcConfig();
+        double ratio = rpcConfig.getTraceSampleRatio();
+        return ratio > 0 && (ratio >= 1 || ThreadLocalRandom.current().nextDouble() < ratio);
+    }
+
+    private static Span newSpan(String traceId, String parentSpanId, String serviceName, String methodName,
+                                SpanKindEnum kind, long startEpochNanos, boolean recording) {
+        Span span = new Span(traceId, newSpanId(), parentSpanId, serviceName + "/" + methodName, kind,
+                startEpochNanos, recording);
+        if (!recording) {
+            return span;
+        }
+        span.setAttribute("rpc.system", "yu-rpc");
+        span.setAttribute("rpc.service", serviceName);
+        span.setAttribute("rpc.method", methodName);
+        return span;
+    }
+
+    private static String newTraceId() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long high;
+        long low;
+        // 全 0 的链路 ID 无效
+        do {
+            high = random.nextLong();
+            low = random.nextLong();
+        } while (high == 0 && low == 0);
+        return toHex(high) + toHex(low);
+    }
+
+    private static String newSpanId() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long id;
+        do {
+            id = random.nextLong();
+        } while (id == 0);
+        return toHex(id);
+    }
+
+    private static String toHex(long value) {
+        String hex = Long.toHexString(value);
+        return hex.length() == 16 ? hex : "0000000000000000".substring(hex.length()) + hex;
+    }
+}
@@ -0,0 +1,46 @@
+package com.yupi.yurpc.utils;
+
+import com.yupi.yurpc.constant.RpcConstant;
+import com.yupi.yurpc.model.ServiceMetaInfo;
+
+/**
+ * 服务权重工具类
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">程序员鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航知识星球</a>
+ */
+public class WeightUtils {
+
+    /**
+     * 获取考虑预热后的有效权重
+     * 节点注册后的预热时长内，权重按运行时长线性增长，最小为 1
+     *
+     * @param serviceMetaInfo 服务节点
+     * @param now             当前时间戳（毫秒）
+     * @return
+     */
+    public static int getWarmupWeight(ServiceMetaInfo serviceMetaInfo, long now) {
+        Integer weight = serviceMetaInfo.getWeight();
+        if (weight == null) {
+            weight = RpcConstant.DEFAULT_SERVICE_WEIGHT;
+        }
+        if (weight <= 0) {
+            return 0;
+        }
+        Long registerTime = serviceMetaInfo.getRegisterTime();
+        Long warmup = serviceMetaInfo.getWarmup();
+        if (registerTime == null || warmup == null || warmup <= 0) {
+            return weight;
+        }
+        long uptime = now - registerTime;
+        if (uptime >= warmup) {
+            return weight;
+        }
+        if (uptime <= 0) {
+            return 1;
+        }
+        int warmupWeight = (int) (uptime * weight / warmup);
+        return Math.max(warmupWeight, 1);
+    }
+}
@@ -48,4 +48,52 @@ public class LoadBalancerTest {
         System.out.println(serviceMetaInfo);
         Assert.assertNotNull(serviceMetaInfo);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void selectP2cEwma() {
+        LoadBalancer p2cEwmaLoadBalancer = new P2cEwmaLoadBalancer();
+        // 服务列表
+        ServiceMetaInfo fastServiceMetaInfo = new ServiceMetaInfo();
+        fastServiceMetaInfo.setServiceName("p2cService");
+        fastServiceMetaInfo.setServiceHost("localhost");
+        fastServiceMetaInfo.setServicePort(1234);
+        ServiceMetaInfo slowServiceMetaInfo = new ServiceMetaInfo();
+        slowServiceMetaInfo.setServiceName("p2cService");
+        slowServiceMetaInfo.setServiceHost("localhost");
+        slowServiceMetaInfo.setServicePort(1235);
+        List<ServiceMetaInfo> serviceMetaInfoList = Arrays.asList(fastServiceMetaInfo, slowServiceMetaInfo);
+        // 模拟延迟样本：快节点 1 毫秒，慢节点 500 毫秒
+        ServiceNodeStats fastStats = ServiceNodeStats.of(fastServiceMetaInfo);
+        fastStats.end(fastStats.begin() - 1_000_000L, true);
+        ServiceNodeStats slowStats = ServiceNodeStats.of(slowServiceMetaInfo);
+        slowStats.end(slowStats.begin() - 500_000_000L, true);
+        for (int i = 0; i < 10; i++) {
+            Assert.assertEquals(fastServiceMetaInfo, p2cEwmaLoadBalancer.select(new HashMap<>(), serviceMetaInfoList));
+        }
+    }
+
+    @Test
+    public void selectWeightedRoundRobin() {
+        LoadBalancer weightedRoundRobinLoadBalancer = new WeightedRoundRobinLoadBalancer();
+        // 服务列表，权重 5:1:1
+        List<ServiceMetaInfo> serviceMetaInfoList = Arrays.asList(
+                buildWeightedServiceMetaInfo(1234, 5),
+                buildWeightedServiceMetaInfo(1235, 1),
+                buildWeightedServiceMetaInfo(1236, 1));
+        // 平滑加权轮询的选择序列应为 a a b a c a a
+        int[] expectedPorts = {1234, 1234, 1235, 1234, 1236, 1234, 1234};
+        for (int expectedPort : expectedPorts) {
+            ServiceMetaInfo serviceMetaInfo = weightedRoundRobinLoadBalancer.select(new HashMap<>(), serviceMetaInfoList);
+            Assert.assertEquals(expectedPort, serviceMetaInfo.getServicePort().intValue());
+        }
+    }
+
+    private ServiceMetaInfo buildWeightedServiceMetaInfo(int port, int weight) {
+        ServiceMetaInfo serviceMetaInfo = new ServiceMetaInfo();
+        serviceMetaInfo.setServiceName("weightedService");
+        serviceMetaInfo.setServiceHost("localhost");
+        serviceMetaInfo.setServicePort(port);
+        serviceMetaInfo.setWeight(weight);
+        return serviceMetaInfo;
+    }
+}
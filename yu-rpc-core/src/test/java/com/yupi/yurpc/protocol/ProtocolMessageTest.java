@@ -8,6 +8,8 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * 自定义协议消息测试
@@ -44,4 +46,60 @@ public class ProtocolMessageTest {
         Assert.assertNotNull(message);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testEncodeAndDecodeExtended() throws IOException {
+        ProtocolMessage<RpcRequest> protocolMessage = new ProtocolMessage<>();
+        ProtocolMessage.Header header = new ProtocolMessage.Header();
+        header.setMagic(ProtocolConstant.PROTOCOL_MAGIC);
+        header.setVersion(ProtocolConstant.PROTOCOL_VERSION_EXTENDED);
+        header.setSerializer((byte) ProtocolMessageSerializerEnum.JDK.getKey());
+        header.setType((byte) ProtocolMessageTypeEnum.REQUEST.getKey());
+        header.setStatus((byte) ProtocolMessageStatusEnum.OK.getValue());
+        header.setRequestId(IdUtil.getSnowflakeNextId());
+        header.setPriority((byte) ProtocolMessagePriorityEnum.BATCH.getValue());
+        RpcRequest rpcRequest = new RpcRequest();
+        rpcRequest.setServiceName("myService");
+        rpcRequest.setMethodName("myMethod");
+        protocolMessage.setHeader(header);
+        protocolMessage.setBody(rpcRequest);
+
+        Buffer encodeBuffer = ProtocolMessageEncoder.encode(protocolMessage);
+        // 消息体长度包含扩展头
+        Assert.assertEquals(encodeBuffer.length() - ProtocolConstant.MESSAGE_HEADER_LENGTH, encodeBuffer.getInt(13));
+        ProtocolMessage<?> message = ProtocolMessageDecoder.decode(encodeBuffer);
+        Assert.assertEquals(ProtocolMessagePriorityEnum.BATCH.getValue(), message.getHeader().getPriority());
+        Assert.assertEquals("myMethod", ((RpcRequest) message.getBody()).getMethodName());
+    }
+
+    @Test
+    public void testAttachments() throws IOException {
+        ProtocolMessage<RpcRequest> protocolMessage = new ProtocolMessage<>();
+        ProtocolMessage.Header header = new ProtocolMessage.Header();
+        header.setMagic(ProtocolConstant.PROTOCOL_MAGIC);
+        header.setVersion(ProtocolConstant.PROTOCOL_VERSION_EXTENDED);
+        header.setSerializer((byte) ProtocolMessageSerializerEnum.JDK.getKey());
+        header.setType((byte) ProtocolMessageTypeEnum.REQUEST.getKey());
+        header.setRequestId(IdUtil.getSnowflakeNextId());
+        Map<String, String> attachments = new LinkedHashMap<>();
+        attachments.put("tenant", "租户A");
+        attachments.put("empty", "");
+        header.setAttachments(attachments);
+        RpcRequest rpcRequest = new RpcRequest();
+        rpcRequest.setMethodName("myMethod");
+        protocolMessage.setHeader(header);
+        protocolMessage.setBody(rpcRequest);
+
+        Buffer encodeBuffer = ProtocolMessageEncoder.encode(protocolMessage);
+        ProtocolMessage<?> message = ProtocolMessageDecoder.decode(encodeBuffer);
+        Assert.assertEquals(attachments, message.getHeader().getAttachments());
+        Assert.assertEquals(ProtocolMessagePriorityEnum.NORMAL.getValue(), message.getHeader().getPriority());
+        Assert.assertEquals("myMethod", ((RpcRequest) message.getBody()).getMethodName());
+
+        // 只读消息头时不解析消息体，消息体损坏也能读到附件
+        Buffer corrupted = encodeBuffer.copy();
+        corrupted.setByte(corrupted.length() - 1, (byte) 0x7F);
+        ProtocolMessage.Header decodedHeader = ProtocolMessageDecoder.decodeHeader(corrupted);
+        Assert.assertEquals("租户A", decodedHeader.getAttachments().get("tenant"));
+    }
+
+}
@@ -0,0 +1,52 @@
+package com.yupi.yurpc.proxy;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+/**
+ * 服务桩类测试
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">程序员鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航知识星球</a>
+ */
+public class ByteBuddyStubFactoryTest {
+
+    public interface CalcService {
+
+        int add(int a, int b);
+
+        String echo(String message);
+
+        void ping();
+    }
+
+    @Test
+    public void newStub() {
+        Method[] methods = CalcService.class.getMethods();
+        CalcService calcService = ByteBuddyStubFactory.newStub(CalcService.class, methods, (methodIndex, args) -> {
+            switch (methods[methodIndex].getName()) {
+                case "add":
+                    return (int) args[0] + (int) args[1];
+                case "echo":
+                    return args[0];
+                default:
+                    Assert.assertArrayEquals(new Object[0], args);
+                    return null;
+            }
+        });
+        Assert.assertEquals(3, calcService.add(1, 2));
+        Assert.assertEquals("hello", calcService.echo("hello"));
+        calcService.ping();
+        // Object 的方法不走远程调用
+        Assert.assertEquals(calcService, calcService);
+        Assert.assertNotNull(calcService.toString());
+        // 同一接口和方法列表复用桩类
+        CalcService another = ByteBuddyStubFactory.newStub(CalcService.class, methods, (methodIndex, args) -> 0);
+        Assert.assertSame(calcService.getClass(), another.getClass());
+        Assert.assertTrue(Arrays.asList(calcService.getClass().getInterfaces()).contains(CalcService.class));
+    }
+}
@@ -0,0 +1,145 @@
+package com.yupi.yurpc.proxy;
+
+import com.yupi.yurpc.annotation.RpcPriority;
+import com.yupi.yurpc.fault.retry.RetryStrategyFactory;
+import com.yupi.yurpc.fault.retry.RetryStrategyKeys;
+import com.yupi.yurpc.fault.tolerant.TolerantStrategyFactory;
+import com.yupi.yurpc.fault.tolerant.TolerantStrategyKeys;
+import com.yupi.yurpc.loadbalancer.LoadBalancerFactory;
+import com.yupi.yurpc.loadbalancer.LoadBalancerKeys;
+import com.yupi.yurpc.model.ServiceMetaInfo;
+import com.yupi.yurpc.protocol.ProtocolMessagePriorityEnum;
+import com.yupi.yurpc.registry.EtcdRegistry;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 方法调用描述测试
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">程序员鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航知识星球</a>
+ */
+public class InvocationDescriptorTest {
+
+    public interface OrderService {
+
+        String getOrder(long id, String field);
+
+        @RpcPriority(ProtocolMessagePriorityEnum.BATCH)
+        void exportOrders();
+    }
+
+    private static final NodeStrategies DEFAULT_STRATEGIES = new NodeStrategies(0,
+            LoadBalancerFactory.getInstance(LoadBalancerKeys.ROUND_ROBIN),
+            RetryStrategyFactory.getInstance(RetryStrategyKeys.NO),
+            TolerantStrategyFactory.getInstance(TolerantStrategyKeys.FAIL_FAST));
+
+    @Test
+    public void describeMethod() throws Exception {
+        InvocationDescriptor descriptor = new InvocationDescriptor(
+                OrderService.class.getMethod("getOrder", long.class, String.class), "2.0", true,
+                ProtocolMessagePriorityEnum.INTERACTIVE);
+        Assert.assertEquals(OrderService.class.getName(), descriptor.serviceName);
+        Assert.assertEquals(OrderService.class.getName() + ":2.0", descriptor.serviceKey);
+        Assert.assertEquals("getOrder", descriptor.methodName);
+        Assert.assertArrayEquals(new Class[]{long.class, String.class}, descriptor.parameterTypes);
+        Assert.assertEquals("getOrder", descriptor.requestParams.get("methodName"));
+        Assert.assertTrue(descriptor.coalesce);
+        Assert.assertNull(descriptor.responseCache);
+        // 服务引用的默认优先级
+        Assert.assertEquals(ProtocolMessagePriorityEnum.INTERACTIVE, descriptor.priority);
+
+        // 方法上的注解优先
+        InvocationDescriptor exportDescriptor = new InvocationDescriptor(
+                OrderService.class.getMethod("exportOrders"), "2.0", false, ProtocolMessagePriorityEnum.INTERACTIVE);
+        Assert.assertEquals(ProtocolMessagePriorityEnum.BATCH, exportDescriptor.priority);
+        Assert.assertFalse(exportDescriptor.coalesce);
+    }
+
+    @Test
+    public void defaultStrategiesWithoutEtcd() throws Exception {
+        InvocationDescriptor descriptor = new InvocationDescriptor(
+                OrderService.class.getMethod("exportOrders"), "1.0");
+        ServiceMetaInfo serviceMetaInfo = buildServiceMetaInfo(1234);
+        Assert.assertSame(DEFAULT_STRATEGIES, descriptor.getNodeStrategies(null, serviceMetaInfo,
+                serviceMetaInfo.getServiceNodeKey(), DEFAULT_STRATEGIES));
+    }
+
+    @Test
+    public void cacheNodeStrategiesByVersion() throws Exception {
+        InvocationDescriptor descriptor = new InvocationDescriptor(
+                OrderService.class.getMethod("exportOrders"), "1.0");
+        FakeEtcdRegistry etcdRegistry = new FakeEtcdRegistry();
+        ServiceMetaInfo first = buildServiceMetaInfo(1234);
+        ServiceMetaInfo second = buildServiceMetaInfo(1235);
+        etcdRegistry.strategyMap.put("localhost:1234/retry", RetryStrategyKeys.FIXED_INTERVAL);
+
+        NodeStrategies firstStrategies = descriptor.getNodeStrategies(etcdRegistry, first,
+                first.getServiceNodeKey(), DEFAULT_STRATEGIES);
+        Assert.assertSame(RetryStrategyFactory.getInstance(RetryStrategyKeys.FIXED_INTERVAL),
+                firstStrategies.retryStrategy);
+        // 没有配置的策略使用服务引用的策略
+        Assert.assertSame(DEFAULT_STRATEGIES.loadBalancer, firstStrategies.loadBalancer);
+        Assert.assertSame(DEFAULT_STRATEGIES.tolerantStrategy, firstStrategies.tolerantStrategy);
+        Assert.assertEquals(3, etcdRegistry.lookupCount.get());
+
+        // 版本不变时直接使用缓存，不再查找
+        Assert.assertSame(firstStrategies, descriptor.getNodeStrategies(etcdRegistry, first,
+                first.getServiceNodeKey(), DEFAULT_STRATEGIES));
+        Assert.assertEquals(3, etcdRegistry.lookupCount.get());
+        NodeStrategies secondStrategies = descriptor.getNodeStrategies(etcdRegistry, second,
+                second.getServiceNodeKey(), DEFAULT_STRATEGIES);
+        Assert.assertSame(DEFAULT_STRATEGIES.retryStrategy, secondStrategies.retryStrategy);
+        Assert.assertEquals(6, etcdRegistry.lookupCount.get());
+
+        // 策略变化后重新解析
+        etcdRegistry.strategyMap.put("localhost:1234/tolerant", TolerantStrategyKeys.FAIL_SAFE);
+        etcdRegistry.version.incrementAndGet();
+        NodeStrategies updatedStrategies = descriptor.getNodeStrategies(etcdRegistry, first,
+                first.getServiceNodeKey(), DEFAULT_STRATEGIES);
+        Assert.assertNotSame(firstStrategies, updatedStrategies);
+        Assert.assertSame(TolerantStrategyFactory.getInstance(TolerantStrategyKeys.FAIL_SAFE),
+                updatedStrategies.tolerantStrategy);
+        Assert.assertEquals(9, etcdRegistry.lookupCount.get());
+    }
+
+    private ServiceMetaInfo buildServiceMetaInfo(int port) {
+        ServiceMetaInfo serviceMetaInfo = new ServiceMetaInfo();
+        serviceMetaInfo.setServiceName(OrderService.class.getName());
+        serviceMetaInfo.setServiceVersion("1.0");
+        serviceMetaInfo.setServiceHost("localhost");
+        serviceMetaInfo.setServicePort(port);
+        return serviceMetaInfo;
+    }
+
+    /**
+     * 不连接 Etcd，节点动态策略来自内存
+     */
+    private static class FakeEtcdRegistry extends EtcdRegistry {
+
+        /**
+         * host:port/策略类型 => 策略值
+         */
+        private final Map<String, String> strategyMap = new HashMap<>();
+
+        private final AtomicInteger version = new AtomicInteger();
+
+        private final AtomicInteger lookupCount = new AtomicInteger();
+
+        @Override
+        public long getNodeStrategyVersion() {
+            return version.get();
+        }
+
+        @Override
+        public String getCachedNodeStrategy(String serviceKey, String host, int port, String strategyType) {
+            lookupCount.incrementAndGet();
+            return strategyMap.get(host + ":" + port + "/" + strategyType);
+        }
+    }
+}
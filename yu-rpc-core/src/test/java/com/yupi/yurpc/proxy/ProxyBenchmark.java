@@ -0,0 +1,57 @@
+package com.yupi.yurpc.proxy;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * JDK 动态代理与 ByteBuddy 服务桩类的调用分派开销对比（不含网络，直接运行 main 方法）
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">程序员鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航知识星球</a>
+ */
+public class ProxyBenchmark {
+
+    private static final int ITERATIONS = 20_000_000;
+
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+        Method[] methods = ByteBuddyStubFactoryTest.CalcService.class.getMethods();
+        RpcInvoker rpcInvoker = (methodIndex, methodArgs) -> methodArgs == null || methodArgs.length == 0 ? null : methodArgs[0];
+
+        // 与 ServiceProxy 相同的分派方式：Method 查表得到调用描述
+        Map<Method, Integer> methodIndexMap = new HashMap<>();
+        for (int i = 0; i < methods.length; i++) {
+            methodIndexMap.put(methods[i], i);
+        }
+        ByteBuddyStubFactoryTest.CalcService jdkProxy = (ByteBuddyStubFactoryTest.CalcService) Proxy.newProxyInstance(
+                ProxyBenchmark.class.getClassLoader(),
+                new Class[]{ByteBuddyStubFactoryTest.CalcService.class},
+                (proxy, method, methodArgs) -> rpcInvoker.invoke(methodIndexMap.get(method), methodArgs));
+        ByteBuddyStubFactoryTest.CalcService stub = ByteBuddyStubFactory.newStub(
+                ByteBuddyStubFactoryTest.CalcService.class, methods, rpcInvoker);
+
+        for (int round = 1; round <= ROUNDS; round++) {
+            long jdkNanos = run(jdkProxy);
+            long stubNanos = run(stub);
+            System.out.printf("round %d: jdk proxy %.2f ns/op, bytebuddy stub %.2f ns/op%n", round,
+                    (double) jdkNanos / ITERATIONS, (double) stubNanos / ITERATIONS);
+        }
+    }
+
+    private static long run(ByteBuddyStubFactoryTest.CalcService calcService) {
+        long sum = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            sum += calcService.add(i, 1);
+        }
+        long elapsed = System.nanoTime() - start;
+        if (sum == 42) {
+            System.out.println(sum);
+        }
+        return elapsed;
+    }
+}
@@ -0,0 +1,95 @@
+package com.yupi.yurpc.proxy;
+
+import com.yupi.yurpc.annotation.RpcCoalesce;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 请求合并测试
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">程序员鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航知识星球</a>
+ */
+public class RequestCoalescerTest {
+
+    public interface UserService {
+
+        @RpcCoalesce
+        String getUser(long id);
+    }
+
+    @Test
+    public void coalesceConcurrentCalls() throws Throwable {
+        InvocationDescriptor descriptor = new InvocationDescriptor(
+                UserService.class.getMethod("getUser", long.class), "1.0");
+        Assert.assertTrue(descriptor.coalesce);
+        RequestCoalescer requestCoalescer = new RequestCoalescer();
+        AtomicInteger remoteCalls = new AtomicInteger();
+        CountDownLatch releaseLatch = new CountDownLatch(1);
+
+        int threads = 8;
+        ExecutorService executorService = Executors.newFixedThreadPool(threads + 1);
+        List<Future<Object>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            futures.add(executorService.submit(() -> call(requestCoalescer, descriptor, 1L, () -> {
+                remoteCalls.incrementAndGet();
+                releaseLatch.await();
+                return "user-1";
+            })));
+        }
+        // 不同参数不合并
+        Future<Object> otherFuture = executorService.submit(() ->
+                call(requestCoalescer, descriptor, 2L, () -> {
+                    remoteCalls.incrementAndGet();
+                    return "user-2";
+                }));
+        Assert.assertEquals("user-2", otherFuture.get(5, TimeUnit.SECONDS));
+        // 等待其余线程都加入进行中的调用
+        Thread.sleep(200);
+        releaseLatch.countDown();
+        for (Future<Object> future : futures) {
+            Assert.assertEquals("user-1", future.get(5, TimeUnit.SECONDS));
+        }
+        Assert.assertEquals(2, remoteCalls.get());
+        Assert.assertEquals(0, requestCoalescer.inFlightCount());
+        executorService.shutdown();
+    }
+
+    @Test
+    public void shareFailure() throws Throwable {
+        InvocationDescriptor descriptor = new InvocationDescriptor(
+                UserService.class.getMethod("getUser", long.class), "1.0");
+        RequestCoalescer requestCoalescer = new RequestCoalescer();
+        try {
+            requestCoalescer.call(new InvocationKey(descriptor, new Object[]{1L}), () -> {
+                throw new IllegalStateException("down");
+            });
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("down", e.getMessage());
+        }
+        // 失败后不保留，下一次调用重新发起
+        Assert.assertEquals("ok", requestCoalescer.call(new InvocationKey(descriptor, new Object[]{1L}), () -> "ok"));
+    }
+
+    private static Object call(RequestCoalescer requestCoalescer, InvocationDescriptor descriptor, long id,
+                               RequestCoalescer.RemoteCall remoteCall) throws Exception {
+        try {
+            return requestCoalescer.call(new InvocationKey(descriptor, new Object[]{id}), remoteCall);
+        } catch (Exception e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new RuntimeException(t);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.yupi.yurpc.proxy;
+
+import com.yupi.yurpc.annotation.RpcCacheable;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * 响应缓存测试
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">程序员鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航知识星球</a>
+ */
+public class ResponseCacheTest {
+
+    public interface UserService {
+
+        @RpcCacheable(ttl = 200, maximumSize = 100)
+        String getUser(long id, String[] fields);
+
+        String updateUser(long id);
+    }
+
+    public interface OrderService {
+
+        @RpcCacheable
+        String getOrder(long id);
+    }
+
+    @Test
+    public void cacheByArgs() throws Exception {
+        InvocationDescriptor descriptor = new InvocationDescriptor(
+                UserService.class.getMethod("getUser", long.class, String[].class), "1.0");
+        ResponseCache responseCache = descriptor.responseCache;
+        Assert.assertNotNull(responseCache);
+        Assert.assertNull(new InvocationDescriptor(UserService.class.getMethod("updateUser", long.class), "1.0").responseCache);
+
+        String[] fields = new String[]{"name"};
+        Object[] args = new Object[]{1L, fields};
+        responseCache.put(new InvocationKey(descriptor, args), "user-1");
+        // 调用方之后替换参数数组中的元素不影响已缓存的键
+        args[1] = new String[]{"age"};
+        Assert.assertEquals("user-1", responseCache.get(new InvocationKey(descriptor, new Object[]{1L, new String[]{"name"}})));
+        Assert.assertNull(responseCache.get(new InvocationKey(descriptor, new Object[]{1L, new String[]{"age"}})));
+
+        ResponseCacheStats stats = responseCache.getStats();
+        Assert.assertEquals(1, stats.getHitCount());
+        Assert.assertEquals(1, stats.getMissCount());
+        Assert.assertEquals(1, stats.getSize());
+        Assert.assertTrue(ResponseCache.getAllStats().containsKey(responseCache.getName()));
+
+        // 过期
+        Thread.sleep(300);
+        Assert.assertNull(responseCache.get(new InvocationKey(descriptor, new Object[]{1L, new String[]{"name"}})));
+
+        responseCache.put(new InvocationKey(descriptor, new Object[]{2L, fields}), "user-2");
+        responseCache.invalidateAll();
+        Assert.assertNull(responseCache.get(new InvocationKey(descriptor, new Object[]{2L, fields})));
+    }
+
+    @Test
+    public void skipStaleResultAfterInvalidate() throws Exception {
+        InvocationDescriptor descriptor = new InvocationDescriptor(
+                UserService.class.getMethod("getUser", long.class, String[].class), "1.0");
+        ResponseCache responseCache = descriptor.responseCache;
+        InvocationKey key = new InvocationKey(descriptor, new Object[]{1L, null});
+
+        // 调用开始后缓存被清空，调用返回的旧结果不写入
+        long generation = responseCache.getGeneration();
+        responseCache.invalidateAll();
+        responseCache.put(key, "stale", generation);
+        Assert.assertNull(responseCache.get(key));
+
+        // 调用期间没有清空时正常写入
+        responseCache.put(key, "fresh", responseCache.getGeneration());
+        Assert.assertEquals("fresh", responseCache.get(key));
+    }
+
+    @Test
+    public void releaseUnreachableCache() throws Exception {
+        InvocationDescriptor descriptor = new InvocationDescriptor(
+                OrderService.class.getMethod("getOrder", long.class), "1.0");
+        String name = descriptor.responseCache.getName();
+        Assert.assertTrue(ResponseCache.getAllStats().containsKey(name));
+
+        // 代理（调用描述）不再使用后，统计中不再保留它的缓存
+        descriptor = null;
+        for (int i = 0; i < 50 && ResponseCache.getAllStats().containsKey(name); i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        Assert.assertFalse(ResponseCache.getAllStats().containsKey(name));
+    }
+}
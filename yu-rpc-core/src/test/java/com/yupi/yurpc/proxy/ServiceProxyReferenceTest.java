@@ -0,0 +1,114 @@
+package com.yupi.yurpc.proxy;
+
+import com.yupi.yurpc.RpcApplication;
+import com.yupi.yurpc.config.ReferenceConfig;
+import com.yupi.yurpc.config.RpcConfig;
+import com.yupi.yurpc.fault.retry.RetryStrategyFactory;
+import com.yupi.yurpc.fault.retry.RetryStrategyKeys;
+import com.yupi.yurpc.fault.tolerant.TolerantStrategyFactory;
+import com.yupi.yurpc.fault.tolerant.TolerantStrategyKeys;
+import com.yupi.yurpc.loadbalancer.LoadBalancerFactory;
+import com.yupi.yurpc.loadbalancer.LoadBalancerKeys;
+import com.yupi.yurpc.protocol.ProtocolMessagePriorityEnum;
+import com.yupi.yurpc.registry.DirectRegistry;
+import com.yupi.yurpc.registry.RegistryFactory;
+import com.yupi.yurpc.registry.RegistryKeys;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+
+/**
+ * 服务引用配置解析测试：同一接口的多个引用各自解析，未指定的设置继承全局配置
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">程序员鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航知识星球</a>
+ */
+public class ServiceProxyReferenceTest {
+
+    public interface GreetingService {
+
+        String greet(String name);
+    }
+
+    @BeforeClass
+    public static void initConfig() {
+        RpcConfig rpcConfig = new RpcConfig();
+        rpcConfig.getRegistryConfig().setRegistry(RegistryKeys.MEMORY);
+        RpcApplication.init(rpcConfig);
+    }
+
+    @Test
+    public void resolveReferencesIndependently() {
+        RpcConfig rpcConfig = RpcApplication.getRpcConfig();
+        ReferenceConfig customReferenceConfig = new ReferenceConfig();
+        customReferenceConfig.setServiceVersion("2.0");
+        customReferenceConfig.setLoadBalancer(LoadBalancerKeys.RANDOM);
+        customReferenceConfig.setRetryStrategy(RetryStrategyKeys.FIXED_INTERVAL);
+        customReferenceConfig.setTolerantStrategy(TolerantStrategyKeys.FAIL_SAFE);
+        customReferenceConfig.setDirectUrl("localhost:18081");
+        customReferenceConfig.setPriority(ProtocolMessagePriorityEnum.BATCH.getText());
+        ServiceProxy customProxy = new ServiceProxy(GreetingService.class, customReferenceConfig);
+        // 同一接口的另一个引用，不指定任何设置
+        ServiceProxy defaultProxy = new ServiceProxy(GreetingService.class, new ReferenceConfig());
+
+        Assert.assertEquals("2.0", customProxy.serviceVersion);
+        Assert.assertSame(LoadBalancerFactory.getInstance(LoadBalancerKeys.RANDOM),
+                customProxy.defaultStrategies.loadBalancer);
+        Assert.assertSame(RetryStrategyFactory.getInstance(RetryStrategyKeys.FIXED_INTERVAL),
+                customProxy.defaultStrategies.retryStrategy);
+        Assert.assertSame(TolerantStrategyFactory.getInstance(TolerantStrategyKeys.FAIL_SAFE),
+                customProxy.defaultStrategies.tolerantStrategy);
+        Assert.assertTrue(customProxy.registry instanceof DirectRegistry);
+        Assert.assertEquals(ProtocolMessagePriorityEnum.BATCH, customProxy.priority);
+
+        // 未指定的设置使用全局配置，不受另一个引用影响
+        Assert.assertEquals("1.0", defaultProxy.serviceVersion);
+        Assert.assertSame(LoadBalancerFactory.getInstance(rpcConfig.getLoadBalancer()),
+                defaultProxy.defaultStrategies.loadBalancer);
+        Assert.assertSame(RetryStrategyFactory.getInstance(rpcConfig.getRetryStrategy()),
+                defaultProxy.defaultStrategies.retryStrategy);
+        Assert.assertSame(TolerantStrategyFactory.getInstance(rpcConfig.getTolerantStrategy()),
+                defaultProxy.defaultStrategies.tolerantStrategy);
+        // 没有直连地址时使用全局注册中心
+        Assert.assertSame(RegistryFactory.getInstance(RegistryKeys.MEMORY), defaultProxy.registry);
+        Assert.assertEquals(ProtocolMessagePriorityEnum.NORMAL, defaultProxy.priority);
+    }
+
+    @Test
+    public void blankSettingsFallBackToGlobal() {
+        ReferenceConfig referenceConfig = new ReferenceConfig();
+        referenceConfig.setLoadBalancer("");
+        referenceConfig.setRetryStrategy(" ");
+        referenceConfig.setDirectUrl("");
+        ServiceProxy serviceProxy = new ServiceProxy(GreetingService.class, referenceConfig);
+        RpcConfig rpcConfig = RpcApplication.getRpcConfig();
+        Assert.assertSame(LoadBalancerFactory.getInstance(rpcConfig.getLoadBalancer()),
+                serviceProxy.defaultStrategies.loadBalancer);
+        Assert.assertSame(RetryStrategyFactory.getInstance(rpcConfig.getRetryStrategy()),
+                serviceProxy.defaultStrategies.retryStrategy);
+        Assert.assertSame(RegistryFactory.getInstance(RegistryKeys.MEMORY), serviceProxy.registry);
+    }
+
+    @Test
+    public void proxiesFromFactoryAreIndependent() {
+        ReferenceConfig referenceConfig = new ReferenceConfig();
+        referenceConfig.setServiceVersion("2.0");
+        GreetingService customService = ServiceProxyFactory.getProxy(GreetingService.class, referenceConfig);
+        GreetingService defaultService = ServiceProxyFactory.getProxy(GreetingService.class);
+        ServiceProxy customProxy = (ServiceProxy) Proxy.getInvocationHandler(customService);
+        ServiceProxy defaultProxy = (ServiceProxy) Proxy.getInvocationHandler(defaultService);
+        Assert.assertNotSame(customProxy, defaultProxy);
+        Assert.assertEquals("2.0", customProxy.serviceVersion);
+        Assert.assertEquals("1.0", defaultProxy.serviceVersion);
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void rejectUnknownPriority() {
+        ReferenceConfig referenceConfig = new ReferenceConfig();
+        referenceConfig.setPriority("urgent");
+        new ServiceProxy(GreetingService.class, referenceConfig);
+    }
+}
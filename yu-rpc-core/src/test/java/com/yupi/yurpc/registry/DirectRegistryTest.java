@@ -0,0 +1,80 @@
+package com.yupi.yurpc.registry;
+
+import cn.hutool.core.io.FileUtil;
+import com.yupi.yurpc.config.RegistryConfig;
+import com.yupi.yurpc.model.ServiceMetaInfo;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 直连注册中心测试
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">程序员鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航知识星球</a>
+ */
+public class DirectRegistryTest {
+
+    @Test
+    public void parseProviderAddressList() {
+        List<String> providerAddressList = DirectRegistry.parseProviderAddressList(
+                "# 提供者\nlocalhost:8080, 127.0.0.1:8081\n\n  192.168.0.1:8082  \n");
+        Assert.assertEquals(Arrays.asList("localhost:8080", "127.0.0.1:8081", "192.168.0.1:8082"), providerAddressList);
+    }
+
+    @Test
+    public void rejectInvalidAddress() {
+        for (String content : Arrays.asList("localhost", ":8080", "localhost:", "localhost:abc", "localhost:0",
+                "localhost:65536", "local host:8080", "localhost:8080,localhost", "# 只有注释", "")) {
+            try {
+                DirectRegistry.parseProviderAddressList(content);
+                Assert.fail("应拒绝：" + content);
+            } catch (RuntimeException e) {
+                // 预期
+            }
+        }
+    }
+
+    @Test
+    public void discoverAndReloadFile() throws Exception {
+        File providerFile = File.createTempFile("yu-rpc-providers", ".txt");
+        providerFile.deleteOnExit();
+        FileUtil.writeString("localhost:8080\n", providerFile, StandardCharsets.UTF_8);
+        RegistryConfig registryConfig = new RegistryConfig();
+        registryConfig.setAddress(DirectRegistry.FILE_PREFIX + providerFile.getAbsolutePath());
+        DirectRegistry directRegistry = new DirectRegistry();
+        directRegistry.init(registryConfig);
+        try {
+            List<ServiceMetaInfo> serviceMetaInfoList = directRegistry.serviceDiscovery("myService:1.0");
+            Assert.assertEquals(1, serviceMetaInfoList.size());
+            Assert.assertEquals("myService", serviceMetaInfoList.get(0).getServiceName());
+            Assert.assertEquals("1.0", serviceMetaInfoList.get(0).getServiceVersion());
+            Assert.assertEquals(8080, (int) serviceMetaInfoList.get(0).getServicePort());
+
+            // 文件修改后自动重新加载（等待后台线程开始监听）
+            Thread.sleep(500);
+            Files.write(providerFile.toPath(), "localhost:8080,localhost:8081\n".getBytes(StandardCharsets.UTF_8));
+            waitForProviderCount(directRegistry, 2);
+            Assert.assertEquals(2, directRegistry.serviceDiscovery("myService:1.0").size());
+
+            // 文件中有错误地址时整体不生效，保留上一次的地址
+            Files.write(providerFile.toPath(), "localhost:8082\nlocalhost\n".getBytes(StandardCharsets.UTF_8));
+            Thread.sleep(2000);
+            Assert.assertEquals(2, directRegistry.serviceDiscovery("myService:1.0").size());
+        } finally {
+            directRegistry.destroy();
+        }
+    }
+
+    private static void waitForProviderCount(DirectRegistry directRegistry, int count) throws InterruptedException {
+        for (int i = 0; i < 100 && directRegistry.serviceDiscovery("myService:1.0").size() != count; i++) {
+            Thread.sleep(50);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.yupi.yurpc.registry;
+
+import com.yupi.yurpc.model.ServiceMetaInfo;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Etcd 注册中心租约丢失后重新注册及下线测试（不连接 Etcd，替换租约和写入操作）
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">程序员鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航知识星球</a>
+ */
+public class EtcdRegistryLeaseTest {
+
+    @Test
+    public void registerBeforeReRegister() throws Exception {
+        FakeEtcdRegistry registry = new FakeEtcdRegistry();
+        registry.register(buildServiceMetaInfo(1234));
+        registry.register(buildServiceMetaInfo(1235));
+        Assert.assertEquals(1, registry.grantCount);
+
+        // 租约丢失，后台重新注册还没执行时新节点先注册
+        registry.onLeaseLost(1, null);
+        Assert.assertNotNull(registry.pendingReRegister);
+        registry.register(buildServiceMetaInfo(1236));
+        registry.pendingReRegister.run();
+
+        // 新租约上包含所有节点，且不会重复创建租约
+        Assert.assertEquals(2, registry.grantCount);
+        Assert.assertEquals(3, registry.store.size());
+        for (Long nodeLeaseId : registry.store.values()) {
+            Assert.assertEquals(2L, (long) nodeLeaseId);
+        }
+    }
+
+    @Test
+    public void reRegisterBeforeRegister() throws Exception {
+        FakeEtcdRegistry registry = new FakeEtcdRegistry();
+        registry.register(buildServiceMetaInfo(1234));
+        registry.register(buildServiceMetaInfo(1235));
+
+        registry.onLeaseLost(1, null);
+        registry.pendingReRegister.run();
+        registry.register(buildServiceMetaInfo(1236));
+
+        Assert.assertEquals(2, registry.grantCount);
+        Assert.assertEquals(3, registry.store.size());
+        for (Long nodeLeaseId : registry.store.values()) {
+            Assert.assertEquals(2L, (long) nodeLeaseId);
+        }
+    }
+
+    @Test
+    public void unRegisterDuringReRegister() throws Exception {
+        FakeEtcdRegistry registry = new FakeEtcdRegistry();
+        ServiceMetaInfo serviceMetaInfo = buildServiceMetaInfo(1234);
+        registry.register(serviceMetaInfo);
+        registry.register(buildServiceMetaInfo(1235));
+        registry.onLeaseLost(1, null);
+
+        // 重新注册正在写入新租约时下线节点
+        registry.putStarted = new CountDownLatch(1);
+        registry.putReleased = new CountDownLatch(1);
+        Thread reRegisterThread = new Thread(registry.pendingReRegister);
+        reRegisterThread.start();
+        Assert.assertTrue(registry.putStarted.await(5, TimeUnit.SECONDS));
+        Thread unRegisterThread = new Thread(() -> registry.unRegister(serviceMetaInfo));
+        unRegisterThread.start();
+        unRegisterThread.join(200);
+        // 下线等待重新注册完成，不会先删除再被写回
+        Assert.assertTrue(unRegisterThread.isAlive());
+        registry.putReleased.countDown();
+        reRegisterThread.join(5000);
+        unRegisterThread.join(5000);
+
+        Assert.assertEquals(1, registry.store.size());
+        Assert.assertFalse(registry.store.containsKey("/rpc/" + serviceMetaInfo.getServiceNodeKey()));
+    }
+
+    private ServiceMetaInfo buildServiceMetaInfo(int port) {
+        ServiceMetaInfo serviceMetaInfo = new ServiceMetaInfo();
+        serviceMetaInfo.setServiceName("myService");
+        serviceMetaInfo.setServiceVersion("1.0");
+        serviceMetaInfo.setServiceHost("localhost");
+        serviceMetaInfo.setServicePort(port);
+        return serviceMetaInfo;
+    }
+
+    /**
+     * 记录写入的 key 及其租约，后台重新注册改为手动触发
+     */
+    private static class FakeEtcdRegistry extends EtcdRegistry {
+
+        private final Map<String, Long> store = new ConcurrentHashMap<>();
+
+        /**
+         * 不为空时写入开始后通知，并等待放行
+         */
+        private volatile CountDownLatch putStarted;
+
+        private volatile CountDownLatch putReleased;
+
+        private int grantCount;
+
+        private Runnable pendingReRegister;
+
+        @Override
+        long grantLease() {
+            return ++grantCount;
+        }
+
+        @Override
+        void putNodes(Map<String, String> nodeMap, long leaseId) throws InterruptedException {
+            if (putStarted != null) {
+                putStarted.countDown();
+                putReleased.await();
+            }
+            for (String key : nodeMap.keySet()) {
+                store.put(key, leaseId);
+            }
+        }
+
+        @Override
+        void deleteNode(String registerKey) {
+            store.remove(registerKey);
+        }
+
+        @Override
+        public void heartBeat() {
+        }
+
+        @Override
+        void scheduleReRegister() {
+            pendingReRegister = this::reRegister;
+        }
+    }
+}
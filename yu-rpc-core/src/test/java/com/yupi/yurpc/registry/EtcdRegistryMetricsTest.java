@@ -0,0 +1,81 @@
+package com.yupi.yurpc.registry;
+
+import com.yupi.yurpc.model.ServiceMetaInfo;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Etcd 注册中心调用指标聚合测试（不连接 Etcd，记录写入的增量）
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">程序员鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航知识星球</a>
+ */
+public class EtcdRegistryMetricsTest {
+
+    @Test
+    public void flushAndEvictIdleNode() {
+        FakeEtcdRegistry registry = new FakeEtcdRegistry();
+        ServiceMetaInfo serviceMetaInfo = buildServiceMetaInfo(1234);
+        registry.recordCallMetrics(serviceMetaInfo, 10, true);
+        // 节点元信息变化仍按同一节点聚合
+        ServiceMetaInfo reweighted = buildServiceMetaInfo(1234);
+        reweighted.setWeight(50);
+        registry.recordCallMetrics(reweighted, 30, false);
+        registry.recordCallMetrics(buildServiceMetaInfo(1235), 5, true);
+
+        registry.flushCallMetrics();
+        Assert.assertEquals(2, registry.writtenList.size());
+        long[] delta = registry.findWritten(1234);
+        // 调用次数、成功次数、失败次数、总耗时
+        Assert.assertArrayEquals(new long[]{2, 1, 1, 40}, delta);
+
+        // 只有一个节点继续被调用，另一个节点空闲一个周期后移除
+        registry.writtenList.clear();
+        registry.recordCallMetrics(serviceMetaInfo, 20, true);
+        registry.flushCallMetrics();
+        Assert.assertEquals(1, registry.writtenList.size());
+        Assert.assertArrayEquals(new long[]{1, 1, 0, 20}, registry.findWritten(1234));
+        Assert.assertEquals(1, registry.callMetricsMap.size());
+
+        // 之后再被调用时重新聚合
+        registry.writtenList.clear();
+        registry.recordCallMetrics(buildServiceMetaInfo(1235), 7, true);
+        registry.flushCallMetrics();
+        Assert.assertArrayEquals(new long[]{1, 1, 0, 7}, registry.findWritten(1235));
+    }
+
+    private ServiceMetaInfo buildServiceMetaInfo(int port) {
+        ServiceMetaInfo serviceMetaInfo = new ServiceMetaInfo();
+        serviceMetaInfo.setServiceName("myService");
+        serviceMetaInfo.setServiceVersion("1.0");
+        serviceMetaInfo.setServiceHost("localhost");
+        serviceMetaInfo.setServicePort(port);
+        return serviceMetaInfo;
+    }
+
+    /**
+     * 不写入 Etcd，只记录写入的增量
+     */
+    private static class FakeEtcdRegistry extends EtcdRegistry {
+
+        private final List<Object[]> writtenList = new ArrayList<>();
+
+        @Override
+        void writeCallMetrics(EtcdCallMetrics callMetrics, long[] delta) {
+            writtenList.add(new Object[]{callMetrics, delta});
+        }
+
+        private long[] findWritten(int port) {
+            for (Object[] written : writtenList) {
+                if (((EtcdCallMetrics) written[0]).port == port) {
+                    return (long[]) written[1];
+                }
+            }
+            throw new AssertionError("没有写入节点指标：" + port);
+        }
+    }
+}
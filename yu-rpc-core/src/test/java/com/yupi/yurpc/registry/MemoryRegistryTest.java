@@ -0,0 +1,82 @@
+package com.yupi.yurpc.registry;
+
+import com.yupi.yurpc.config.RegistryConfig;
+import com.yupi.yurpc.model.ServiceMetaInfo;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+/**
+ * 内存注册中心测试
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">程序员鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航知识星球</a>
+ */
+public class MemoryRegistryTest {
+
+    final MemoryRegistry providerRegistry = new MemoryRegistry();
+
+    final MemoryRegistry consumerRegistry = new MemoryRegistry();
+
+    @Before
+    public void init() {
+        RegistryConfig registryConfig = new RegistryConfig();
+        registryConfig.setRegistry(RegistryKeys.MEMORY);
+        providerRegistry.init(registryConfig);
+        consumerRegistry.init(registryConfig);
+    }
+
+    @After
+    public void destroy() {
+        providerRegistry.destroy();
+        consumerRegistry.destroy();
+    }
+
+    @Test
+    public void registerAndWatch() throws Exception {
+        providerRegistry.register(buildServiceMetaInfo("watchService", 1234));
+        List<ServiceMetaInfo> serviceMetaInfoList = consumerRegistry.serviceDiscovery("watchService:1.0");
+        Assert.assertEquals(1, serviceMetaInfoList.size());
+
+        // 新节点上线，监听增量更新缓存
+        providerRegistry.register(buildServiceMetaInfo("watchService", 1235));
+        Assert.assertEquals(2, consumerRegistry.serviceDiscovery("watchService:1.0").size());
+
+        // 节点下线
+        providerRegistry.unRegister(buildServiceMetaInfo("watchService", 1234));
+        serviceMetaInfoList = consumerRegistry.serviceDiscovery("watchService:1.0");
+        Assert.assertEquals(1, serviceMetaInfoList.size());
+        Assert.assertEquals(1235, (int) serviceMetaInfoList.get(0).getServicePort());
+    }
+
+    @Test
+    public void leaseExpire() throws Exception {
+        providerRegistry.register(buildServiceMetaInfo("leaseService", 1234));
+        Assert.assertEquals(1, consumerRegistry.serviceDiscovery("leaseService:1.0").size());
+
+        // 租约过期，挂在租约上的节点一起删除
+        MemoryRegistry.STORE.expireLeases(System.currentTimeMillis() + 60 * 1000);
+        Assert.assertTrue(consumerRegistry.serviceDiscovery("leaseService:1.0").isEmpty());
+
+        // 续期时发现租约丢失，使用新租约重新注册
+        providerRegistry.keepAlive();
+        Assert.assertEquals(1, consumerRegistry.serviceDiscovery("leaseService:1.0").size());
+
+        // 下线时撤销租约
+        providerRegistry.destroy();
+        Assert.assertTrue(consumerRegistry.serviceDiscovery("leaseService:1.0").isEmpty());
+    }
+
+    private ServiceMetaInfo buildServiceMetaInfo(String serviceName, int port) {
+        ServiceMetaInfo serviceMetaInfo = new ServiceMetaInfo();
+        serviceMetaInfo.setServiceName(serviceName);
+        serviceMetaInfo.setServiceVersion("1.0");
+        serviceMetaInfo.setServiceHost("localhost");
+        serviceMetaInfo.setServicePort(port);
+        return serviceMetaInfo;
+    }
+}
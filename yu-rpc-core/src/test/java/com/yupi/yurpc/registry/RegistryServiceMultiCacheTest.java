@@ -0,0 +1,94 @@
+package com.yupi.yurpc.registry;
+
+import com.yupi.yurpc.loadbalancer.ServiceNodeStats;
+import com.yupi.yurpc.model.ServiceMetaInfo;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 注册中心服务本地缓存测试
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">程序员鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航知识星球</a>
+ */
+public class RegistryServiceMultiCacheTest {
+
+    private static final String SERVICE_KEY = "myService:1.0";
+
+    @Test
+    public void putThenDeleteInSameBatch() {
+        RegistryServiceMultiCache registryServiceMultiCache = new RegistryServiceMultiCache();
+        registryServiceMultiCache.writeCache(SERVICE_KEY, Collections.singletonList(buildServiceMetaInfo(1234)), 1);
+        ServiceMetaInfo serviceMetaInfo = buildServiceMetaInfo(1235);
+        // 同一批事件中节点先上线后下线，不能被重新加回
+        registryServiceMultiCache.updateCache(SERVICE_KEY, Arrays.asList(
+                RegistryServiceMultiCache.NodeChange.put(serviceMetaInfo),
+                RegistryServiceMultiCache.NodeChange.delete(serviceMetaInfo.getServiceNodeKey())), 2);
+        List<ServiceMetaInfo> serviceMetaInfoList = registryServiceMultiCache.readCache(SERVICE_KEY);
+        Assert.assertEquals(1, serviceMetaInfoList.size());
+        Assert.assertEquals(1234, (int) serviceMetaInfoList.get(0).getServicePort());
+        Assert.assertEquals(2, registryServiceMultiCache.readRevision(SERVICE_KEY));
+    }
+
+    @Test
+    public void deleteThenPutInSameBatch() {
+        RegistryServiceMultiCache registryServiceMultiCache = new RegistryServiceMultiCache();
+        ServiceMetaInfo serviceMetaInfo = buildServiceMetaInfo(1234);
+        registryServiceMultiCache.writeCache(SERVICE_KEY, Collections.singletonList(serviceMetaInfo), 1);
+        // 节点重启：先删除再重新注册，最终在线
+        ServiceMetaInfo restarted = buildServiceMetaInfo(1234);
+        restarted.setWeight(50);
+        registryServiceMultiCache.updateCache(SERVICE_KEY, Arrays.asList(
+                RegistryServiceMultiCache.NodeChange.delete(serviceMetaInfo.getServiceNodeKey()),
+                RegistryServiceMultiCache.NodeChange.put(restarted)), 2);
+        List<ServiceMetaInfo> serviceMetaInfoList = registryServiceMultiCache.readCache(SERVICE_KEY);
+        Assert.assertEquals(1, serviceMetaInfoList.size());
+        Assert.assertEquals(50, (int) serviceMetaInfoList.get(0).getWeight());
+    }
+
+    @Test
+    public void ignoreUncachedService() {
+        RegistryServiceMultiCache registryServiceMultiCache = new RegistryServiceMultiCache();
+        registryServiceMultiCache.updateCache(SERVICE_KEY,
+                Collections.singletonList(RegistryServiceMultiCache.NodeChange.put(buildServiceMetaInfo(1234))), 1);
+        Assert.assertNull(registryServiceMultiCache.readCache(SERVICE_KEY));
+    }
+
+    @Test
+    public void removeStatsOfOfflineNode() {
+        RegistryServiceMultiCache registryServiceMultiCache = new RegistryServiceMultiCache();
+        ServiceMetaInfo first = buildServiceMetaInfo(1234);
+        ServiceMetaInfo second = buildServiceMetaInfo(1235);
+        registryServiceMultiCache.writeCache(SERVICE_KEY, Arrays.asList(first, second), 1);
+        ServiceNodeStats firstStats = ServiceNodeStats.of(first);
+        ServiceNodeStats secondStats = ServiceNodeStats.of(second);
+        // 按节点键名统计，节点元信息变化时沿用原来的统计
+        ServiceMetaInfo reweighted = buildServiceMetaInfo(1234);
+        reweighted.setWeight(50);
+        Assert.assertSame(firstStats, ServiceNodeStats.of(reweighted));
+
+        // 增量下线
+        registryServiceMultiCache.updateCache(SERVICE_KEY,
+                Collections.singletonList(RegistryServiceMultiCache.NodeChange.delete(first.getServiceNodeKey())), 2);
+        Assert.assertNotSame(firstStats, ServiceNodeStats.of(first));
+        Assert.assertSame(secondStats, ServiceNodeStats.of(second));
+
+        // 全量加载时不在列表中的节点
+        registryServiceMultiCache.writeCache(SERVICE_KEY, Collections.singletonList(first), 3);
+        Assert.assertNotSame(secondStats, ServiceNodeStats.of(second));
+    }
+
+    private ServiceMetaInfo buildServiceMetaInfo(int port) {
+        ServiceMetaInfo serviceMetaInfo = new ServiceMetaInfo();
+        serviceMetaInfo.setServiceName("myService");
+        serviceMetaInfo.setServiceVersion("1.0");
+        serviceMetaInfo.setServiceHost("localhost");
+        serviceMetaInfo.setServicePort(port);
+        return serviceMetaInfo;
+    }
+}
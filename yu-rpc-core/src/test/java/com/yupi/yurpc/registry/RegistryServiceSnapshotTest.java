@@ -0,0 +1,60 @@
+package com.yupi.yurpc.registry;
+
+import cn.hutool.core.io.FileUtil;
+import com.yupi.yurpc.model.ServiceMetaInfo;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 服务缓存本地快照测试
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">程序员鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航知识星球</a>
+ */
+public class RegistryServiceSnapshotTest {
+
+    @Test
+    public void saveAndLoad() {
+        File snapshotFile = FileUtil.createTempFile("registry-snapshot", ".json", true);
+        try {
+            RegistryServiceMultiCache registryServiceMultiCache = new RegistryServiceMultiCache();
+            registryServiceMultiCache.writeCache("myService:1.0",
+                    Arrays.asList(buildServiceMetaInfo(1234), buildServiceMetaInfo(1235)), 10);
+            new RegistryServiceSnapshot(snapshotFile.getAbsolutePath(), registryServiceMultiCache).save();
+
+            // 重启后从快照恢复，恢复的缓存是过期的
+            RegistryServiceMultiCache restoredCache = new RegistryServiceMultiCache();
+            new RegistryServiceSnapshot(snapshotFile.getAbsolutePath(), restoredCache).load();
+            List<ServiceMetaInfo> serviceMetaInfoList = restoredCache.readCache("myService:1.0");
+            Assert.assertEquals(2, serviceMetaInfoList.size());
+            Assert.assertEquals("myService:1.0/localhost:1234", serviceMetaInfoList.get(0).getServiceNodeKey());
+            Assert.assertEquals(10, restoredCache.readRevision("myService:1.0"));
+            Assert.assertTrue(restoredCache.isStale("myService:1.0"));
+
+            // 和注册中心重新同步后以最新数据为准
+            restoredCache.writeCache("myService:1.0", Collections.singletonList(buildServiceMetaInfo(1236)), 5);
+            Assert.assertFalse(restoredCache.isStale("myService:1.0"));
+            Assert.assertEquals(1, restoredCache.readCache("myService:1.0").size());
+            // 比当前缓存更旧的数据被忽略
+            restoredCache.writeCache("myService:1.0", Collections.emptyList(), 4);
+            Assert.assertEquals(1, restoredCache.readCache("myService:1.0").size());
+        } finally {
+            FileUtil.del(snapshotFile);
+        }
+    }
+
+    private ServiceMetaInfo buildServiceMetaInfo(int port) {
+        ServiceMetaInfo serviceMetaInfo = new ServiceMetaInfo();
+        serviceMetaInfo.setServiceName("myService");
+        serviceMetaInfo.setServiceVersion("1.0");
+        serviceMetaInfo.setServiceHost("localhost");
+        serviceMetaInfo.setServicePort(port);
+        return serviceMetaInfo;
+    }
+}
@@ -70,7 +70,7 @@ public class RegistryTest {
 
     @Test
     public void heartBeat() throws Exception {
-        // init 方法中已经执行心跳检测了
+        // 注册时已经开始租约续期了
         register();
         // 阻塞 1 分钟
         Thread.sleep(60 * 1000L);
@@ -0,0 +1,73 @@
+package com.yupi.yurpc.router;
+
+import com.yupi.yurpc.model.ServiceMetaInfo;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 确定性子集路由测试
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">程序员鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航知识星球</a>
+ */
+public class SubsetRouterTest {
+
+    @Test
+    public void selectSubset() {
+        List<ServiceMetaInfo> serviceMetaInfoList = buildServiceMetaInfoList(100);
+        List<ServiceMetaInfo> subset = SubsetRouter.selectSubset("client-1", serviceMetaInfoList, 10);
+        Assert.assertEquals(10, subset.size());
+        // 同一消费端多次计算结果相同
+        Assert.assertEquals(subset, SubsetRouter.selectSubset("client-1", serviceMetaInfoList, 10));
+
+        // 下线一个不在子集中的节点，子集不变
+        List<ServiceMetaInfo> shrinkList = new ArrayList<>(serviceMetaInfoList);
+        for (ServiceMetaInfo serviceMetaInfo : serviceMetaInfoList) {
+            if (!subset.contains(serviceMetaInfo)) {
+                shrinkList.remove(serviceMetaInfo);
+                break;
+            }
+        }
+        Assert.assertEquals(subset, SubsetRouter.selectSubset("client-1", shrinkList, 10));
+
+        // 下线一个子集中的节点，只替换这一个
+        shrinkList = new ArrayList<>(serviceMetaInfoList);
+        shrinkList.remove(subset.get(0));
+        List<ServiceMetaInfo> newSubset = SubsetRouter.selectSubset("client-1", shrinkList, 10);
+        Assert.assertTrue(newSubset.containsAll(subset.subList(1, subset.size())));
+    }
+
+    @Test
+    public void subsetDistribution() {
+        List<ServiceMetaInfo> serviceMetaInfoList = buildServiceMetaInfoList(50);
+        Map<ServiceMetaInfo, Integer> connectionCountMap = new HashMap<>();
+        // 1000 个消费端，每个连接 10 个节点，平均每个节点 200 个连接
+        for (int i = 0; i < 1000; i++) {
+            for (ServiceMetaInfo serviceMetaInfo : SubsetRouter.selectSubset("client-" + i, serviceMetaInfoList, 10)) {
+                connectionCountMap.merge(serviceMetaInfo, 1, Integer::sum);
+            }
+        }
+        Assert.assertEquals(50, connectionCountMap.size());
+        for (int connectionCount : connectionCountMap.values()) {
+            Assert.assertTrue(connectionCount > 120 && connectionCount < 280);
+        }
+    }
+
+    private List<ServiceMetaInfo> buildServiceMetaInfoList(int size) {
+        List<ServiceMetaInfo> serviceMetaInfoList = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            ServiceMetaInfo serviceMetaInfo = new ServiceMetaInfo();
+            serviceMetaInfo.setServiceName("subsetService");
+            serviceMetaInfo.setServiceHost("10.0.0." + i);
+            serviceMetaInfo.setServicePort(8080);
+            serviceMetaInfoList.add(serviceMetaInfo);
+        }
+        return serviceMetaInfoList;
+    }
+}
@@ -0,0 +1,190 @@
+package com.yupi.yurpc.router;
+
+import com.yupi.yurpc.RpcApplication;
+import com.yupi.yurpc.config.RpcConfig;
+import com.yupi.yurpc.loadbalancer.ServiceNodeStats;
+import com.yupi.yurpc.model.ServiceMetaInfo;
+import com.yupi.yurpc.registry.RegistryKeys;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 同区域优先路由测试
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">程序员鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航知识星球</a>
+ */
+public class ZoneAwareRouterTest {
+
+    private final ZoneAwareRouter zoneAwareRouter = new ZoneAwareRouter();
+
+    @BeforeClass
+    public static void initConfig() {
+        RpcConfig rpcConfig = new RpcConfig();
+        rpcConfig.getRegistryConfig().setRegistry(RegistryKeys.MEMORY);
+        RpcApplication.init(rpcConfig);
+    }
+
+    @Before
+    public void setLocation() {
+        RpcConfig rpcConfig = RpcApplication.getRpcConfig();
+        rpcConfig.setZone("zone-a");
+        rpcConfig.setRegion("region-1");
+        rpcConfig.setZoneMinHealthyRatio(0.7);
+        rpcConfig.setZoneMinCapacityRatio(0.1);
+    }
+
+    @After
+    public void clearLocation() {
+        // 其他测试共用全局配置，恢复为未配置位置
+        RpcApplication.getRpcConfig().setZone(null);
+        RpcApplication.getRpcConfig().setRegion(null);
+        RpcApplication.getRpcConfig().setSubsetSize(0);
+    }
+
+    @Test
+    public void preferSameZone() {
+        List<ServiceMetaInfo> serviceMetaInfoList = Arrays.asList(
+                buildServiceMetaInfo("sameZoneService", 1, "zone-a", "region-1"),
+                buildServiceMetaInfo("sameZoneService", 2, "zone-b", "region-1"),
+                buildServiceMetaInfo("sameZoneService", 3, "zone-a", "region-1"),
+                buildServiceMetaInfo("sameZoneService", 4, "zone-c", "region-2"));
+        List<ServiceMetaInfo> routed = zoneAwareRouter.route("sameZoneService:1.0", serviceMetaInfoList);
+        Assert.assertEquals(Arrays.asList(serviceMetaInfoList.get(0), serviceMetaInfoList.get(2)), routed);
+
+        // 没有同可用区节点时使用同地域节点
+        List<ServiceMetaInfo> otherZoneList = Arrays.asList(
+                buildServiceMetaInfo("sameZoneService", 2, "zone-b", "region-1"),
+                buildServiceMetaInfo("sameZoneService", 4, "zone-c", "region-2"));
+        Assert.assertEquals(otherZoneList.subList(0, 1), zoneAwareRouter.route("sameZoneService:1.0", otherZoneList));
+    }
+
+    @Test
+    public void spillOverOnCapacity() {
+        RpcApplication.getRpcConfig().setZoneMinCapacityRatio(0.5);
+        // 同可用区权重占 25%，同地域占 50%
+        List<ServiceMetaInfo> serviceMetaInfoList = Arrays.asList(
+                buildServiceMetaInfo("capacityService", 1, "zone-a", "region-1"),
+                buildServiceMetaInfo("capacityService", 2, "zone-b", "region-1"),
+                buildServiceMetaInfo("capacityService", 3, "zone-c", "region-2"),
+                buildServiceMetaInfo("capacityService", 4, "zone-d", "region-2"));
+        Assert.assertEquals(serviceMetaInfoList.subList(0, 2),
+                zoneAwareRouter.route("capacityService:1.0", serviceMetaInfoList));
+
+        // 同地域也不足时使用全部节点
+        RpcApplication.getRpcConfig().setZoneMinCapacityRatio(0.8);
+        Assert.assertSame(serviceMetaInfoList, zoneAwareRouter.route("capacityService:1.0", serviceMetaInfoList));
+    }
+
+    @Test
+    public void spillOverOnHealth() {
+        RpcApplication.getRpcConfig().setZoneMinHealthyRatio(0.5);
+        List<ServiceMetaInfo> serviceMetaInfoList = Arrays.asList(
+                buildServiceMetaInfo("healthService", 1, "zone-a", "region-1"),
+                buildServiceMetaInfo("healthService", 2, "zone-b", "region-1"),
+                buildServiceMetaInfo("healthService", 3, "zone-c", "region-2"));
+        Assert.assertEquals(serviceMetaInfoList.subList(0, 1),
+                zoneAwareRouter.route("healthService:1.0", serviceMetaInfoList));
+
+        // 同可用区唯一的节点连续失败，快照不变时也按当前健康度溢出到同地域
+        ServiceNodeStats serviceNodeStats = ServiceNodeStats.of(serviceMetaInfoList.get(0));
+        for (int i = 0; i < 3; i++) {
+            serviceNodeStats.end(serviceNodeStats.begin(), false);
+        }
+        Assert.assertEquals(serviceMetaInfoList.subList(0, 2),
+                zoneAwareRouter.route("healthService:1.0", serviceMetaInfoList));
+
+        // 恢复后重新只用同可用区
+        serviceNodeStats.end(serviceNodeStats.begin(), true);
+        Assert.assertEquals(serviceMetaInfoList.subList(0, 1),
+                zoneAwareRouter.route("healthService:1.0", serviceMetaInfoList));
+    }
+
+    @Test
+    public void cacheRouteSnapshot() {
+        List<ServiceMetaInfo> serviceMetaInfoList = new ArrayList<>(Arrays.asList(
+                buildServiceMetaInfo("snapshotService", 1, "zone-a", "region-1"),
+                buildServiceMetaInfo("snapshotService", 2, "zone-b", "region-1")));
+        List<ServiceMetaInfo> routed = zoneAwareRouter.route("snapshotService:1.0", serviceMetaInfoList);
+        // 同一服务发现快照复用分区结果
+        Assert.assertSame(routed, zoneAwareRouter.route("snapshotService:1.0", serviceMetaInfoList));
+
+        // 新的快照重新分区
+        List<ServiceMetaInfo> newServiceMetaInfoList = Arrays.asList(
+                buildServiceMetaInfo("snapshotService", 1, "zone-a", "region-1"),
+                buildServiceMetaInfo("snapshotService", 3, "zone-a", "region-1"),
+                buildServiceMetaInfo("snapshotService", 2, "zone-b", "region-1"));
+        List<ServiceMetaInfo> newRouted = zoneAwareRouter.route("snapshotService:1.0", newServiceMetaInfoList);
+        Assert.assertNotSame(routed, newRouted);
+        Assert.assertEquals(2, newRouted.size());
+    }
+
+    @Test
+    public void subsetWithinZone() {
+        RpcConfig rpcConfig = RpcApplication.getRpcConfig();
+        rpcConfig.setSubsetSize(4);
+        rpcConfig.setSubsetClientId("client-1");
+        SubsetRouter subsetRouter = new SubsetRouter();
+        // 3 个可用区各 6 个节点，zone-a、zone-b 在同一地域
+        List<ServiceMetaInfo> serviceMetaInfoList = new ArrayList<>();
+        for (int i = 0; i < 18; i++) {
+            String zone = "zone-" + (char) ('a' + i % 3);
+            serviceMetaInfoList.add(buildServiceMetaInfo("subsetZoneService", i, zone,
+                    i % 3 == 2 ? "region-2" : "region-1"));
+        }
+        // 先按区域路由，再在同可用区内取子集，子集中的节点都在同可用区
+        List<ServiceMetaInfo> subset = subsetRouter.route("subsetZoneService:1.0",
+                zoneAwareRouter.route("subsetZoneService:1.0", serviceMetaInfoList));
+        Assert.assertEquals(4, subset.size());
+        for (ServiceMetaInfo serviceMetaInfo : subset) {
+            Assert.assertEquals("zone-a", serviceMetaInfo.getZone());
+        }
+        Assert.assertSame(subset, subsetRouter.route("subsetZoneService:1.0",
+                zoneAwareRouter.route("subsetZoneService:1.0", serviceMetaInfoList)));
+
+        // 同可用区健康度不足时溢出到同地域，子集从同地域节点中选
+        // zone-a 的 6 个节点中 3 个连续失败
+        for (int index : new int[]{3, 6, 9}) {
+            ServiceNodeStats serviceNodeStats = ServiceNodeStats.of(serviceMetaInfoList.get(index));
+            for (int i = 0; i < 3; i++) {
+                serviceNodeStats.end(serviceNodeStats.begin(), false);
+            }
+        }
+        List<ServiceMetaInfo> regionSubset = subsetRouter.route("subsetZoneService:1.0",
+                zoneAwareRouter.route("subsetZoneService:1.0", serviceMetaInfoList));
+        Assert.assertEquals(4, regionSubset.size());
+        for (ServiceMetaInfo serviceMetaInfo : regionSubset) {
+            Assert.assertEquals("region-1", serviceMetaInfo.getRegion());
+        }
+    }
+
+    @Test
+    public void noLocationConfigured() {
+        RpcApplication.getRpcConfig().setZone(null);
+        RpcApplication.getRpcConfig().setRegion(null);
+        List<ServiceMetaInfo> serviceMetaInfoList = Arrays.asList(
+                buildServiceMetaInfo("noLocationService", 1, "zone-a", "region-1"),
+                buildServiceMetaInfo("noLocationService", 2, "zone-b", "region-1"));
+        Assert.assertSame(serviceMetaInfoList, zoneAwareRouter.route("noLocationService:1.0", serviceMetaInfoList));
+    }
+
+    private ServiceMetaInfo buildServiceMetaInfo(String serviceName, int index, String zone, String region) {
+        ServiceMetaInfo serviceMetaInfo = new ServiceMetaInfo();
+        serviceMetaInfo.setServiceName(serviceName);
+        serviceMetaInfo.setServiceVersion("1.0");
+        serviceMetaInfo.setServiceHost("10.0.0." + index);
+        serviceMetaInfo.setServicePort(8080);
+        serviceMetaInfo.setZone(zone);
+        serviceMetaInfo.setRegion(region);
+        serviceMetaInfo.setWeight(10);
+        return serviceMetaInfo;
+    }
+}
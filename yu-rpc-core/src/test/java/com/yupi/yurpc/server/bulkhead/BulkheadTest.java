@@ -0,0 +1,177 @@
+package com.yupi.yurpc.server.bulkhead;
+
+import com.yupi.yurpc.RpcApplication;
+import com.yupi.yurpc.annotation.RpcBulkhead;
+import com.yupi.yurpc.config.BulkheadConfig;
+import com.yupi.yurpc.config.RpcConfig;
+import com.yupi.yurpc.protocol.ProtocolMessagePriorityEnum;
+import com.yupi.yurpc.registry.LocalRegistry;
+import com.yupi.yurpc.registry.RegistryKeys;
+import com.yupi.yurpc.server.scheduler.PriorityExecutor;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 舱壁隔离测试
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">程序员鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航知识星球</a>
+ */
+public class BulkheadTest {
+
+    @RpcBulkhead(maxConcurrency = 4)
+    public static class OrderServiceImpl {
+
+        @RpcBulkhead(type = BulkheadKeys.SEMAPHORE, maxConcurrency = 2)
+        public String export() {
+            return "export";
+        }
+
+        public String get() {
+            return "get";
+        }
+    }
+
+    @Test
+    public void threadPoolAbort() throws Exception {
+        Bulkhead bulkhead = new Bulkhead("abort", config(BulkheadKeys.THREAD_POOL, 1, 1, BulkheadKeys.ABORT));
+        CountDownLatch releaseLatch = new CountDownLatch(1);
+        CountDownLatch doneLatch = new CountDownLatch(2);
+        List<String> rejected = new CopyOnWriteArrayList<>();
+        for (String name : new String[]{"a", "b", "c"}) {
+            bulkhead.execute(() -> {
+                await(releaseLatch);
+                doneLatch.countDown();
+            }, ProtocolMessagePriorityEnum.NORMAL, () -> rejected.add(name), null);
+        }
+        // a 在处理，b 排队，c 被拒绝
+        Assert.assertEquals(1, rejected.size());
+        Assert.assertEquals("c", rejected.get(0));
+        BulkheadStats bulkheadStats = bulkhead.getStats();
+        Assert.assertEquals(1, bulkheadStats.getQueuedCount());
+        Assert.assertEquals(1, bulkheadStats.getRejectedCount());
+        releaseLatch.countDown();
+        Assert.assertTrue(doneLatch.await(5, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        Assert.assertEquals(2, bulkhead.getStats().getCompletedCount());
+    }
+
+    @Test
+    public void threadPoolDiscardOldest() throws Exception {
+        Bulkhead bulkhead = new Bulkhead("discardOldest", config(BulkheadKeys.THREAD_POOL, 1, 1, BulkheadKeys.DISCARD_OLDEST));
+        CountDownLatch releaseLatch = new CountDownLatch(1);
+        List<String> rejected = new CopyOnWriteArrayList<>();
+        List<String> executed = new CopyOnWriteArrayList<>();
+        CountDownLatch doneLatch = new CountDownLatch(2);
+        for (String name : new String[]{"a", "b", "c"}) {
+            bulkhead.execute(() -> {
+                await(releaseLatch);
+                executed.add(name);
+                doneLatch.countDown();
+            }, ProtocolMessagePriorityEnum.NORMAL, () -> rejected.add(name), null);
+        }
+        // 排队最久的 b 被拒绝，新到达的 c 进入队列
+        Assert.assertEquals(1, rejected.size());
+        Assert.assertEquals("b", rejected.get(0));
+        releaseLatch.countDown();
+        Assert.assertTrue(doneLatch.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(executed.contains("a") && executed.contains("c"));
+    }
+
+    @Test
+    public void semaphore() throws Exception {
+        Bulkhead bulkhead = new Bulkhead("semaphore", config(BulkheadKeys.SEMAPHORE, 1, 100, BulkheadKeys.ABORT));
+        CountDownLatch releaseLatch = new CountDownLatch(1);
+        List<String> rejected = new CopyOnWriteArrayList<>();
+        PriorityExecutor priorityExecutor = new PriorityExecutor("bulkhead-test", 1, 100);
+        bulkhead.execute(() -> await(releaseLatch), ProtocolMessagePriorityEnum.NORMAL, () -> rejected.add("a"),
+                () -> priorityExecutor);
+        bulkhead.execute(() -> {
+        }, ProtocolMessagePriorityEnum.NORMAL, () -> rejected.add("b"), () -> priorityExecutor);
+        Assert.assertEquals(1, rejected.size());
+        Assert.assertEquals("b", rejected.get(0));
+        Assert.assertEquals(1, bulkhead.getStats().getActiveCount());
+        Assert.assertEquals(0, bulkhead.getStats().getQueueSize());
+        releaseLatch.countDown();
+    }
+
+    @Test
+    public void semaphoreShedByPriority() throws Exception {
+        Bulkhead bulkhead = new Bulkhead("semaphoreShed", config(BulkheadKeys.SEMAPHORE, 10, 0, BulkheadKeys.ABORT));
+        // 一个工作线程，批处理请求最多排队 2 个
+        PriorityExecutor priorityExecutor = new PriorityExecutor("bulkhead-shed-test", 1, 4);
+        CountDownLatch releaseLatch = new CountDownLatch(1);
+        CountDownLatch doneLatch = new CountDownLatch(3);
+        List<String> rejected = new CopyOnWriteArrayList<>();
+        bulkhead.execute(() -> {
+            await(releaseLatch);
+            doneLatch.countDown();
+        }, ProtocolMessagePriorityEnum.NORMAL, () -> rejected.add("running"), () -> priorityExecutor);
+        Thread.sleep(100);
+        for (String name : new String[]{"batch1", "batch2", "batch3"}) {
+            bulkhead.execute(doneLatch::countDown, ProtocolMessagePriorityEnum.BATCH, () -> rejected.add(name),
+                    () -> priorityExecutor);
+        }
+        // 批处理请求超过排队上限时被丢弃，并归还舱壁的许可
+        Assert.assertEquals(1, rejected.size());
+        Assert.assertEquals("batch3", rejected.get(0));
+        Assert.assertEquals(3, bulkhead.getStats().getActiveCount());
+        Assert.assertEquals(1, bulkhead.getStats().getRejectedCount());
+        releaseLatch.countDown();
+        Assert.assertTrue(doneLatch.await(5, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        Assert.assertEquals(0, bulkhead.getStats().getActiveCount());
+    }
+
+    @Test
+    public void resolve() {
+        RpcConfig rpcConfig = new RpcConfig();
+        rpcConfig.getRegistryConfig().setRegistry(RegistryKeys.MEMORY);
+        rpcConfig.getBulkheads().put("ConfiguredService", config(BulkheadKeys.SEMAPHORE, 3, 0, BulkheadKeys.ABORT));
+        RpcApplication.init(rpcConfig);
+        LocalRegistry.register("OrderService", OrderServiceImpl.class);
+        LocalRegistry.register("ConfiguredService", OrderServiceImpl.class);
+        LocalRegistry.register("PlainService", String.class);
+
+        // 方法上的注解优先于类上的注解
+        Bulkhead exportBulkhead = Bulkhead.get("OrderService", "export");
+        Assert.assertEquals("OrderService#export", exportBulkhead.getStats().getName());
+        Assert.assertEquals(2, exportBulkhead.getStats().getMaxConcurrency());
+        Bulkhead getBulkhead = Bulkhead.get("OrderService", "get");
+        Assert.assertEquals("OrderService", getBulkhead.getStats().getName());
+        Assert.assertEquals(4, getBulkhead.getStats().getMaxConcurrency());
+        Assert.assertSame(getBulkhead, Bulkhead.get("OrderService", "get"));
+
+        // 全局配置优先于类上的注解
+        Bulkhead configuredBulkhead = Bulkhead.get("ConfiguredService", "get");
+        Assert.assertEquals(BulkheadKeys.SEMAPHORE, configuredBulkhead.getStats().getType());
+        Assert.assertEquals(3, configuredBulkhead.getStats().getMaxConcurrency());
+
+        Assert.assertNull(Bulkhead.get("PlainService", "length"));
+        Bulkhead.register("PlainService", config(BulkheadKeys.THREAD_POOL, 5, 10, BulkheadKeys.ABORT));
+        Assert.assertEquals(5, Bulkhead.get("PlainService", "length").getStats().getMaxConcurrency());
+    }
+
+    private static BulkheadConfig config(String type, int maxConcurrency, int queueSize, String rejectionPolicy) {
+        BulkheadConfig bulkheadConfig = new BulkheadConfig();
+        bulkheadConfig.setType(type);
+        bulkheadConfig.setMaxConcurrency(maxConcurrency);
+        bulkheadConfig.setQueueSize(queueSize);
+        bulkheadConfig.setRejectionPolicy(rejectionPolicy);
+        return bulkheadConfig;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.yupi.yurpc.server.limiter;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 自适应并发限制测试
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">程序员鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航知识星球</a>
+ */
+public class AdaptiveConcurrencyLimiterTest {
+
+    @Test
+    public void rejectBeyondLimit() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 100);
+        Assert.assertTrue(limiter.tryAcquire());
+        Assert.assertTrue(limiter.tryAcquire());
+        Assert.assertFalse(limiter.tryAcquire());
+        Assert.assertEquals(1, limiter.getRejectedCount());
+        limiter.cancel();
+        Assert.assertTrue(limiter.tryAcquire());
+        Assert.assertEquals(2, limiter.getInflight());
+    }
+
+    @Test
+    public void adaptToLatency() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 1000);
+        // 延迟稳定：没有排队，上限增长
+        runRound(limiter, 1);
+        runRound(limiter, 1);
+        int grownLimit = limiter.getLimit();
+        Assert.assertTrue(grownLimit > 10);
+
+        // 延迟升高到 10 倍：请求在排队，上限下降
+        runRound(limiter, 10);
+        Assert.assertTrue(limiter.getLimit() < grownLimit);
+        Assert.assertEquals(0, limiter.getInflight());
+    }
+
+    @Test
+    public void keepLimitWhenUnderused() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 1000);
+        for (int i = 0; i < 50; i++) {
+            Assert.assertTrue(limiter.tryAcquire());
+            limiter.release(System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(i == 0 ? 1 : 10));
+        }
+        // 并发远未用满，延迟变化不调整上限
+        Assert.assertEquals(10, limiter.getLimit());
+    }
+
+    /**
+     * 占满当前上限后逐个完成
+     *
+     * @param limiter
+     * @param rttMillis
+     */
+    private static void runRound(AdaptiveConcurrencyLimiter limiter, long rttMillis) {
+        int acquired = 0;
+        while (limiter.tryAcquire()) {
+            acquired++;
+        }
+        for (int i = 0; i < acquired; i++) {
+            limiter.release(System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(rttMillis));
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.yupi.yurpc.server.scheduler;
+
+import com.yupi.yurpc.protocol.ProtocolMessagePriorityEnum;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 优先级调度测试
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">程序员鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航知识星球</a>
+ */
+public class PriorityExecutorTest {
+
+    @Test
+    public void highPriorityFirst() throws Exception {
+        PriorityExecutor priorityExecutor = new PriorityExecutor("test-order", 1, 100);
+        CountDownLatch blocker = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(3);
+        List<String> order = new CopyOnWriteArrayList<>();
+        // 先占住唯一的工作线程，让后面的任务排队
+        priorityExecutor.execute(() -> await(blocker));
+        Thread.sleep(100);
+        priorityExecutor.execute(record(order, "batch", done), ProtocolMessagePriorityEnum.BATCH, () -> {
+        });
+        priorityExecutor.execute(record(order, "normal", done), ProtocolMessagePriorityEnum.NORMAL, () -> {
+        });
+        priorityExecutor.execute(record(order, "interactive", done), ProtocolMessagePriorityEnum.INTERACTIVE, () -> {
+        });
+        blocker.countDown();
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals("interactive", order.get(0));
+        Assert.assertEquals("normal", order.get(1));
+        Assert.assertEquals("batch", order.get(2));
+    }
+
+    @Test
+    public void shedBatchFirst() throws Exception {
+        PriorityExecutor priorityExecutor = new PriorityExecutor("test-shed", 1, 10);
+        CountDownLatch blocker = new CountDownLatch(1);
+        priorityExecutor.execute(() -> await(blocker));
+        Thread.sleep(100);
+        AtomicInteger shed = new AtomicInteger();
+        Runnable noop = () -> {
+        };
+        // 批处理请求只能占用一半容量
+        for (int i = 0; i < 5; i++) {
+            Assert.assertTrue(priorityExecutor.execute(noop, ProtocolMessagePriorityEnum.BATCH, shed::incrementAndGet));
+        }
+        Assert.assertFalse(priorityExecutor.execute(noop, ProtocolMessagePriorityEnum.BATCH, shed::incrementAndGet));
+        // 普通请求可以用到 80%
+        for (int i = 0; i < 3; i++) {
+            Assert.assertTrue(priorityExecutor.execute(noop, ProtocolMessagePriorityEnum.NORMAL, noop));
+        }
+        Assert.assertFalse(priorityExecutor.execute(noop, ProtocolMessagePriorityEnum.NORMAL, noop));
+        // 交互请求填满队列后，再挤掉排队中的批处理请求
+        for (int i = 0; i < 2; i++) {
+            Assert.assertTrue(priorityExecutor.execute(noop, ProtocolMessagePriorityEnum.INTERACTIVE, noop));
+        }
+        Assert.assertTrue(priorityExecutor.execute(noop, ProtocolMessagePriorityEnum.INTERACTIVE, noop));
+        Assert.assertEquals(1, shed.get());
+        Assert.assertEquals(10, priorityExecutor.getQueuedCount());
+        Assert.assertEquals(2, priorityExecutor.getShedCount(ProtocolMessagePriorityEnum.BATCH));
+        Assert.assertEquals(1, priorityExecutor.getShedCount(ProtocolMessagePriorityEnum.NORMAL));
+        blocker.countDown();
+    }
+
+    private static Runnable record(List<String> order, String name, CountDownLatch done) {
+        return () -> {
+            order.add(name);
+            done.countDown();
+        };
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
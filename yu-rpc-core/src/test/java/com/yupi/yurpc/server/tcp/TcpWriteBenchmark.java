@@ -0,0 +1,98 @@
+package com.yupi.yurpc.server.tcp;
+
+import com.yupi.yurpc.RpcApplication;
+import com.yupi.yurpc.config.RpcConfig;
+import com.yupi.yurpc.model.RpcRequest;
+import com.yupi.yurpc.model.ServiceMetaInfo;
+import com.yupi.yurpc.registry.LocalRegistry;
+import com.yupi.yurpc.registry.RegistryKeys;
+
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 写入合并开启和关闭时的吞吐量与每条消息的写出（系统调用）次数对比（本机回环，直接运行 main 方法）
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">程序员鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航知识星球</a>
+ */
+public class TcpWriteBenchmark {
+
+    private static final int THREADS = 64;
+
+    private static final int CALLS_PER_THREAD = 5_000;
+
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) throws Exception {
+        LocalRegistry.register(VertxTcpClientTest.EchoService.class.getName(), VertxTcpClientTest.EchoServiceImpl.class);
+        // 服务端和客户端在连接建立时读取配置，两种模式各用一个端口
+        int coalescePort = startServer(true);
+        int directPort = startServer(false);
+        ExecutorService executorService = Executors.newFixedThreadPool(THREADS);
+        for (int round = 1; round <= ROUNDS; round++) {
+            report(round, "direct", run(executorService, directPort, false));
+            report(round, "coalesce", run(executorService, coalescePort, true));
+        }
+        executorService.shutdown();
+        System.exit(0);
+    }
+
+    private static int startServer(boolean writeCoalesce) throws Exception {
+        initConfig(writeCoalesce);
+        int port;
+        try (ServerSocket serverSocket = new ServerSocket(0)) {
+            port = serverSocket.getLocalPort();
+        }
+        new VertxTcpServer().doStart(port);
+        Thread.sleep(500);
+        return port;
+    }
+
+    private static long run(ExecutorService executorService, int port, boolean writeCoalesce) throws Exception {
+        initConfig(writeCoalesce);
+        ServiceMetaInfo serviceMetaInfo = new ServiceMetaInfo();
+        serviceMetaInfo.setServiceHost("localhost");
+        serviceMetaInfo.setServicePort(port);
+        RpcRequest rpcRequest = new RpcRequest();
+        rpcRequest.setServiceName(VertxTcpClientTest.EchoService.class.getName());
+        rpcRequest.setMethodName("echo");
+        rpcRequest.setParameterTypes(new Class<?>[]{String.class});
+        rpcRequest.setArgs(new Object[]{"hello"});
+        SocketWriteCoalescer.resetStats();
+        long start = System.nanoTime();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            futures.add(executorService.submit(() -> {
+                for (int j = 0; j < CALLS_PER_THREAD; j++) {
+                    VertxTcpClient.doRequest(rpcRequest, serviceMetaInfo);
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static void report(int round, String mode, long nanos) {
+        SocketWriteStats socketWriteStats = SocketWriteCoalescer.getStats();
+        long calls = (long) THREADS * CALLS_PER_THREAD;
+        System.out.printf("round %d %-8s: %.0f calls/s, %d messages, %d flushes, %.3f flushes/message%n", round, mode,
+                calls * 1e9 / nanos, socketWriteStats.getMessageCount(), socketWriteStats.getFlushCount(),
+                socketWriteStats.getFlushesPerMessage());
+    }
+
+    private static void initConfig(boolean writeCoalesce) {
+        RpcConfig rpcConfig = new RpcConfig();
+        rpcConfig.getRegistryConfig().setRegistry(RegistryKeys.MEMORY);
+        rpcConfig.setWriteCoalesce(writeCoalesce);
+        RpcApplication.init(rpcConfig);
+    }
+}
@@ -0,0 +1,285 @@
+package com.yupi.yurpc.server.tcp;
+
+import com.yupi.yurpc.RpcApplication;
+import com.yupi.yurpc.RpcContext;
+import com.yupi.yurpc.config.RpcConfig;
+import com.yupi.yurpc.exception.ServiceOverloadedException;
+import com.yupi.yurpc.model.RpcRequest;
+import com.yupi.yurpc.model.RpcResponse;
+import com.yupi.yurpc.model.ServiceMetaInfo;
+import com.yupi.yurpc.protocol.ProtocolConstant;
+import com.yupi.yurpc.protocol.ProtocolMessageStatusEnum;
+import com.yupi.yurpc.protocol.ProtocolMessageTypeEnum;
+import com.yupi.yurpc.registry.LocalRegistry;
+import com.yupi.yurpc.registry.RegistryKeys;
+import com.yupi.yurpc.serializer.SerializerKeys;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * TCP 客户端连接复用、批量发送和异常响应测试
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">程序员鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航知识星球</a>
+ */
+public class VertxTcpClientTest {
+
+    public interface EchoService {
+
+        String echo(String message);
+    }
+
+    public static class EchoServiceImpl implements EchoService {
+
+        @Override
+        public String echo(String message) {
+            return "echo:" + message;
+        }
+    }
+
+    public static class SlowEchoServiceImpl implements EchoService {
+
+        @Override
+        public String echo(String message) {
+            try {
+                Thread.sleep(300);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "slow:" + message;
+        }
+    }
+
+    public static class ContextEchoServiceImpl implements EchoService {
+
+        @Override
+        public String echo(String message) {
+            return message + ":" + RpcContext.getAttachment("tenant");
+        }
+    }
+
+    /**
+     * 与 EchoService 同接口、单独注册的慢服务，用于并发限制
+     */
+    private static final String SLOW_SERVICE_NAME = "SlowEchoService";
+
+    /**
+     * 返回请求附件的服务
+     */
+    private static final String CONTEXT_SERVICE_NAME = "ContextEchoService";
+
+    private static int port;
+
+    @BeforeClass
+    public static void startServer() throws Exception {
+        try (ServerSocket serverSocket = new ServerSocket(0)) {
+            port = serverSocket.getLocalPort();
+        }
+        LocalRegistry.register(EchoService.class.getName(), EchoServiceImpl.class);
+        LocalRegistry.register(SLOW_SERVICE_NAME, SlowEchoServiceImpl.class);
+        LocalRegistry.register(CONTEXT_SERVICE_NAME, ContextEchoServiceImpl.class);
+        new VertxTcpServer().doStart(port);
+        // 等待服务器监听
+        Thread.sleep(500);
+    }
+
+    @Test
+    public void singleRequest() throws Exception {
+        initConfig(false, SerializerKeys.JDK);
+        Assert.assertEquals("echo:a", call("a"));
+    }
+
+    @Test
+    public void batchRequestJdk() throws Exception {
+        initConfig(true, SerializerKeys.JDK);
+        concurrentCalls();
+    }
+
+    @Test
+    public void batchRequestJson() throws Exception {
+        initConfig(true, SerializerKeys.JSON);
+        concurrentCalls();
+    }
+
+    @Test
+    public void writeStats() throws Exception {
+        initConfig(false, SerializerKeys.JDK);
+        SocketWriteCoalescer.resetStats();
+        concurrentCalls();
+        SocketWriteStats socketWriteStats = SocketWriteCoalescer.getStats();
+        // 每次调用客户端写出请求、服务端写出响应
+        Assert.assertTrue(socketWriteStats.getMessageCount() >= 128);
+        Assert.assertTrue(socketWriteStats.getFlushCount() <= socketWriteStats.getMessageCount());
+    }
+
+    @Test
+    public void rejectWhenOverloaded() throws Exception {
+        initConfig(false, SerializerKeys.JDK);
+        RpcApplication.getRpcConfig().setConcurrencyLimitEnabled(true);
+        RpcApplication.getRpcConfig().setConcurrencyLimitInitial(1);
+        RpcApplication.getRpcConfig().setConcurrencyLimitMax(1);
+        // 服务端在连接建立时读取配置，单独建立一个新连接
+        ServiceMetaInfo serviceMetaInfo = new ServiceMetaInfo();
+        serviceMetaInfo.setServiceHost("127.0.0.1");
+        serviceMetaInfo.setServicePort(port);
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+        Future<RpcResponse> first = executorService.submit(() -> VertxTcpClient.doRequest(slowRequest(), serviceMetaInfo));
+        Thread.sleep(100);
+        Future<RpcResponse> second = executorService.submit(() -> VertxTcpClient.doRequest(slowRequest(), serviceMetaInfo));
+        try {
+            second.get(5, TimeUnit.SECONDS);
+            Assert.fail();
+        } catch (ExecutionException e) {
+            // 超过并发上限的请求立即被拒绝，不等待前一个请求完成
+            Assert.assertTrue(e.getCause().getCause() instanceof ServiceOverloadedException);
+            Assert.assertFalse(first.isDone());
+        }
+        Assert.assertEquals("slow:a", first.get(5, TimeUnit.SECONDS).getData());
+        executorService.shutdown();
+    }
+
+    @Test
+    public void attachments() throws Exception {
+        initConfig(true, SerializerKeys.JDK);
+        ServiceMetaInfo serviceMetaInfo = new ServiceMetaInfo();
+        serviceMetaInfo.setServiceHost("localhost");
+        serviceMetaInfo.setServicePort(port);
+        RpcRequest rpcRequest = new RpcRequest();
+        rpcRequest.setServiceName(CONTEXT_SERVICE_NAME);
+        rpcRequest.setMethodName("echo");
+        rpcRequest.setParameterTypes(new Class<?>[]{String.class});
+        rpcRequest.setArgs(new Object[]{"a"});
+        RpcContext.setAttachment("tenant", "t1");
+        try {
+            Assert.assertEquals("a:t1", VertxTcpClient.doRequest(rpcRequest, serviceMetaInfo).getData());
+        } finally {
+            RpcContext.clearAttachments();
+        }
+        Assert.assertEquals("a:null", VertxTcpClient.doRequest(rpcRequest, serviceMetaInfo).getData());
+    }
+
+    @Test
+    public void destroyAndRecreate() throws Exception {
+        initConfig(false, SerializerKeys.JDK);
+        Assert.assertEquals("echo:a", call("a"));
+        VertxTcpClient.destroy();
+        // 关闭后的请求重新创建 Vertx 和连接
+        Assert.assertEquals("echo:b", call("b"));
+    }
+
+    @Test
+    public void requestTimeout() throws Exception {
+        initConfig(false, SerializerKeys.JDK);
+        RpcApplication.getRpcConfig().setRequestTimeout(100);
+        ServiceMetaInfo serviceMetaInfo = new ServiceMetaInfo();
+        serviceMetaInfo.setServiceHost("localhost");
+        serviceMetaInfo.setServicePort(port);
+        try {
+            VertxTcpClient.doRequest(slowRequest(), serviceMetaInfo);
+            Assert.fail();
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof TimeoutException);
+        }
+        // 超时不影响连接上的其他请求
+        RpcApplication.getRpcConfig().setRequestTimeout(5000);
+        Assert.assertEquals("echo:b", call("b"));
+    }
+
+    @Test
+    public void failPendingOnUndecodableResponse() throws Exception {
+        initConfig(false, SerializerKeys.JDK);
+        // 对任何请求都返回序列化器非法的响应帧
+        Vertx vertx = Vertx.vertx();
+        int badPort;
+        try (ServerSocket serverSocket = new ServerSocket(0)) {
+            badPort = serverSocket.getLocalPort();
+        }
+        vertx.createNetServer()
+                .connectHandler(socket -> socket.handler(buffer -> socket.write(Buffer.buffer()
+                        .appendByte(ProtocolConstant.PROTOCOL_MAGIC)
+                        .appendByte(ProtocolConstant.PROTOCOL_VERSION)
+                        .appendByte((byte) 99)
+                        .appendByte((byte) ProtocolMessageTypeEnum.RESPONSE.getKey())
+                        .appendByte((byte) ProtocolMessageStatusEnum.OK.getValue())
+                        .appendLong(1)
+                        .appendInt(1)
+                        .appendByte((byte) 0))))
+                .listen(badPort)
+                .toCompletionStage().toCompletableFuture().get(5, TimeUnit.SECONDS);
+        ServiceMetaInfo serviceMetaInfo = new ServiceMetaInfo();
+        serviceMetaInfo.setServiceHost("localhost");
+        serviceMetaInfo.setServicePort(badPort);
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try {
+            Future<RpcResponse> future = executorService.submit(() -> VertxTcpClient.doRequest(slowRequest(), serviceMetaInfo));
+            // 解码失败时连接关闭，请求立即以异常结束，不等待超时
+            future.get(5, TimeUnit.SECONDS);
+            Assert.fail();
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause().getCause() instanceof IOException);
+        } finally {
+            executorService.shutdown();
+            vertx.close();
+        }
+    }
+
+    private static RpcRequest slowRequest() {
+        RpcRequest rpcRequest = new RpcRequest();
+        rpcRequest.setServiceName(SLOW_SERVICE_NAME);
+        rpcRequest.setMethodName("echo");
+        rpcRequest.setParameterTypes(new Class<?>[]{String.class});
+        rpcRequest.setArgs(new Object[]{"a"});
+        return rpcRequest;
+    }
+
+    private void concurrentCalls() throws Exception {
+        int threads = 16;
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        List<Future<Object>> futures = new ArrayList<>();
+        for (int i = 0; i < threads * 4; i++) {
+            String message = String.valueOf(i);
+            futures.add(executorService.submit(() -> call(message)));
+        }
+        for (int i = 0; i < futures.size(); i++) {
+            Assert.assertEquals("echo:" + i, futures.get(i).get(10, TimeUnit.SECONDS));
+        }
+        executorService.shutdown();
+    }
+
+    private static Object call(String message) throws Exception {
+        RpcRequest rpcRequest = new RpcRequest();
+        rpcRequest.setServiceName(EchoService.class.getName());
+        rpcRequest.setMethodName("echo");
+        rpcRequest.setParameterTypes(new Class<?>[]{String.class});
+        rpcRequest.setArgs(new Object[]{message});
+        ServiceMetaInfo serviceMetaInfo = new ServiceMetaInfo();
+        serviceMetaInfo.setServiceHost("localhost");
+        serviceMetaInfo.setServicePort(port);
+        RpcResponse rpcResponse = VertxTcpClient.doRequest(rpcRequest, serviceMetaInfo);
+        Assert.assertNull(rpcResponse.getException());
+        return rpcResponse.getData();
+    }
+
+    private static void initConfig(boolean batchEnabled, String serializer) {
+        RpcConfig rpcConfig = new RpcConfig();
+        rpcConfig.getRegistryConfig().setRegistry(RegistryKeys.MEMORY);
+        rpcConfig.setSerializer(serializer);
+        rpcConfig.setBatchEnabled(batchEnabled);
+        RpcApplication.init(rpcConfig);
+    }
+}
@@ -0,0 +1,142 @@
+package com.yupi.yurpc.skeleton;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 服务骨架生成测试
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">程序员鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航知识星球</a>
+ */
+public class RpcSkeletonProcessorTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void generateSkeleton() throws Throwable {
+        File sourceDir = temporaryFolder.newFolder("src");
+        File classesDir = temporaryFolder.newFolder("classes");
+        // 与 starter 同名的注解，处理器按全限定名匹配
+        Path annotationFile = writeSource(sourceDir, "com/yupi/yurpc/springboot/starter/annotation/RpcService.java",
+                "package com.yupi.yurpc.springboot.starter.annotation;\n"
+                        + "public @interface RpcService { Class<?> interfaceClass() default void.class; }\n");
+        Path referenceFile = writeSource(sourceDir, "com/yupi/yurpc/springboot/starter/annotation/RpcReference.java",
+                "package com.yupi.yurpc.springboot.starter.annotation;\n"
+                        + "public @interface RpcReference {}\n");
+        Path pointFile = writeSource(sourceDir, "demo/Point.java",
+                "package demo;\n"
+                        + "public class Point implements java.io.Serializable { public int x; public int y; }\n");
+        Path serviceFile = writeSource(sourceDir, "demo/CalcService.java",
+                "package demo;\n"
+                        + "public interface CalcService<T> {\n"
+                        + "    int add(int a, int b);\n"
+                        + "    java.util.List<Point> points();\n"
+                        + "    T echo(T message);\n"
+                        + "    void ping();\n"
+                        + "}\n");
+        Path implFile = writeSource(sourceDir, "demo/CalcServiceImpl.java",
+                "package demo;\n"
+                        + "@com.yupi.yurpc.springboot.starter.annotation.RpcService\n"
+                        + "public class CalcServiceImpl implements CalcService<String> {\n"
+                        + "    public int pings;\n"
+                        + "    public int add(int a, int b) { return a + b; }\n"
+                        + "    public java.util.List<Point> points() { return new java.util.ArrayList<>(); }\n"
+                        + "    public String echo(String message) { return message; }\n"
+                        + "    public void ping() { pings++; }\n"
+                        + "}\n");
+        Path clientFile = writeSource(sourceDir, "demo/CalcClient.java",
+                "package demo;\n"
+                        + "public class CalcClient {\n"
+                        + "    @com.yupi.yurpc.springboot.starter.annotation.RpcReference\n"
+                        + "    CalcService<String> calcService;\n"
+                        + "}\n");
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        int exitCode = compiler.run(null, null, null,
+                "-d", classesDir.getPath(),
+                "-classpath", System.getProperty("java.class.path"),
+                "-processor", RpcSkeletonProcessor.class.getName(),
+                annotationFile.toString(), referenceFile.toString(), pointFile.toString(),
+                serviceFile.toString(), implFile.toString(), clientFile.toString());
+        Assert.assertEquals(0, exitCode);
+
+        Path providerFile = classesDir.toPath().resolve("META-INF/services/" + RpcSkeletonProvider.class.getName());
+        List<String> providerNames = Files.readAllLines(providerFile, StandardCharsets.UTF_8);
+        Assert.assertEquals(Collections.singletonList("demo.CalcServiceImpl_RpcSkeleton$Provider"), providerNames);
+
+        // native image 配置：服务引用的动态代理、实现类构造器、参数和返回值中的业务类型
+        Path nativeImageDir = classesDir.toPath().resolve(NativeImageConfigWriter.CONFIG_DIR);
+        String proxyConfig = new String(Files.readAllBytes(nativeImageDir.resolve("proxy-config.json")), StandardCharsets.UTF_8);
+        Assert.assertTrue(proxyConfig.contains("\"interfaces\": [\"demo.CalcService\"]"));
+        String reflectConfig = new String(Files.readAllBytes(nativeImageDir.resolve("reflect-config.json")), StandardCharsets.UTF_8);
+        Assert.assertTrue(reflectConfig.contains("\"name\": \"demo.Point\""));
+        Assert.assertTrue(reflectConfig.contains("\"name\": \"demo.CalcServiceImpl\""));
+        Assert.assertFalse(reflectConfig.contains("java.util.List"));
+        String serializationConfig = new String(Files.readAllBytes(nativeImageDir.resolve("serialization-config.json")), StandardCharsets.UTF_8);
+        Assert.assertTrue(serializationConfig.contains("\"name\": \"demo.Point\""));
+
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]{classesDir.toURI().toURL()}, getClass().getClassLoader())) {
+            Class<?> implClass = classLoader.loadClass("demo.CalcServiceImpl");
+            Object service = implClass.getDeclaredConstructor().newInstance();
+            RpcSkeletonProvider provider = (RpcSkeletonProvider) classLoader.loadClass(providerNames.get(0))
+                    .getDeclaredConstructor().newInstance();
+            Assert.assertEquals(implClass, provider.getImplClass());
+            RpcSkeleton skeleton = provider.create(service);
+
+            int addId = skeleton.getMethodId("add", new Class<?>[]{int.class, int.class});
+            Assert.assertEquals(3, skeleton.invoke(addId, new Object[]{1, 2}));
+            Assert.assertEquals(int.class, skeleton.getReturnType(addId));
+
+            // 消费端按接口声明的擦除类型传参
+            int echoId = skeleton.getMethodId("echo", new Class<?>[]{Object.class});
+            Assert.assertEquals("hi", skeleton.invoke(echoId, new Object[]{"hi"}));
+            Assert.assertEquals(String.class, skeleton.getReturnType(echoId));
+
+            int pingId = skeleton.getMethodId("ping", new Class<?>[0]);
+            Assert.assertNull(skeleton.invoke(pingId, null));
+            Assert.assertEquals(1, implClass.getField("pings").get(service));
+
+            Assert.assertEquals(-1, skeleton.getMethodId("echo", new Class<?>[]{String.class}));
+            Assert.assertEquals(-1, skeleton.getMethodId("missing", new Class<?>[0]));
+        }
+    }
+
+    @Test
+    public void reflectiveSkeleton() throws Throwable {
+        RpcSkeleton skeleton = RpcSkeletons.create(new StringBuilder("abc"));
+        int methodId = skeleton.getMethodId("charAt", new Class<?>[]{int.class});
+        Assert.assertEquals(methodId, skeleton.getMethodId("charAt", new Class<?>[]{int.class}));
+        Assert.assertEquals('b', skeleton.invoke(methodId, new Object[]{1}));
+        Assert.assertEquals(char.class, skeleton.getReturnType(methodId));
+        Assert.assertEquals(-1, skeleton.getMethodId("missing", new Class<?>[0]));
+        try {
+            skeleton.invoke(methodId, new Object[]{10});
+            Assert.fail();
+        } catch (IndexOutOfBoundsException e) {
+            // 抛出实现方法自身的异常
+        }
+    }
+
+    private static Path writeSource(File sourceDir, String path, String code) throws Exception {
+        Path file = sourceDir.toPath().resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.write(file, code.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
@@ -0,0 +1,67 @@
+package com.yupi.yurpc.spi;
+
+import cn.hutool.core.io.resource.ResourceUtil;
+import cn.hutool.json.JSONArray;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * native image 配置测试：系统 SPI 的实现类都必须登记反射，否则 native image 中 SpiLoader 无法加载
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">程序员鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航知识星球</a>
+ */
+public class NativeImageConfigTest {
+
+    private static final String NATIVE_IMAGE_DIR = "META-INF/native-image/com.yupi/yu-rpc-core/";
+
+    private static final String[] SPI_TYPES = new String[]{
+            "com.yupi.yurpc.fault.retry.RetryStrategy",
+            "com.yupi.yurpc.fault.tolerant.TolerantStrategy",
+            "com.yupi.yurpc.loadbalancer.LoadBalancer",
+            "com.yupi.yurpc.registry.Registry",
+            "com.yupi.yurpc.serializer.Serializer"
+    };
+
+    @Test
+    public void spiImplementationsRegistered() throws Exception {
+        JSONArray reflectConfig = JSONUtil.parseArray(
+                ResourceUtil.readStr(NATIVE_IMAGE_DIR + "reflect-config.json", StandardCharsets.UTF_8));
+        Set<String> reflectClassNames = new HashSet<>();
+        for (Object entry : reflectConfig) {
+            reflectClassNames.add(((JSONObject) entry).getStr("name"));
+        }
+        for (String spiType : SPI_TYPES) {
+            String content = ResourceUtil.readStr("META-INF/rpc/system/" + spiType, StandardCharsets.UTF_8);
+            for (String line : content.split("\n")) {
+                String[] strArray = line.split("=");
+                if (strArray.length > 1) {
+                    String className = strArray[1].trim();
+                    Assert.assertTrue(className + " 未登记到 reflect-config.json", reflectClassNames.contains(className));
+                    // 登记的类必须存在
+                    Class.forName(className);
+                }
+            }
+        }
+        for (String className : reflectClassNames) {
+            if (className.startsWith("com.yupi.")) {
+                Class.forName(className);
+            }
+        }
+    }
+
+    @Test
+    public void configFilesAreValidJson() {
+        JSONUtil.parseArray(ResourceUtil.readStr(NATIVE_IMAGE_DIR + "serialization-config.json", StandardCharsets.UTF_8));
+        JSONObject resourceConfig = JSONUtil.parseObj(
+                ResourceUtil.readStr(NATIVE_IMAGE_DIR + "resource-config.json", StandardCharsets.UTF_8));
+        Assert.assertFalse(resourceConfig.getJSONObject("resources").getJSONArray("includes").isEmpty());
+    }
+}
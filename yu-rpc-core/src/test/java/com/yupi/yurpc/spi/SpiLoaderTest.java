@@ -0,0 +1,55 @@
+package com.yupi.yurpc.spi;
+
+import com.yupi.yurpc.loadbalancer.LoadBalancer;
+import com.yupi.yurpc.loadbalancer.RandomLoadBalancer;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * SPI 加载器测试
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">程序员鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航知识星球</a>
+ */
+public class SpiLoaderTest {
+
+    @Test
+    public void load() {
+        Map<String, String> keyClassNameMap = SpiLoader.load(LoadBalancer.class);
+        Assert.assertEquals(RandomLoadBalancer.class.getName(), keyClassNameMap.get("random"));
+    }
+
+    @Test
+    public void getInstanceConcurrently() throws Exception {
+        int threads = 16;
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        CountDownLatch startLatch = new CountDownLatch(1);
+        List<Future<Object>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            futures.add(executorService.submit(() -> {
+                startLatch.await();
+                return SpiLoader.getInstance(LoadBalancer.class, "consistentHash");
+            }));
+        }
+        startLatch.countDown();
+        Object instance = futures.get(0).get();
+        for (Future<Object> future : futures) {
+            Assert.assertSame(instance, future.get());
+        }
+        executorService.shutdown();
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void unknownKey() {
+        SpiLoader.getInstance(LoadBalancer.class, "notExists");
+    }
+}
@@ -0,0 +1,228 @@
+package com.yupi.yurpc.trace;
+
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.yupi.yurpc.RpcApplication;
+import com.yupi.yurpc.RpcContext;
+import com.yupi.yurpc.config.RpcConfig;
+import com.yupi.yurpc.model.ServiceMetaInfo;
+import com.yupi.yurpc.proxy.ServiceProxyFactory;
+import com.yupi.yurpc.registry.LocalRegistry;
+import com.yupi.yurpc.registry.RegistryFactory;
+import com.yupi.yurpc.registry.RegistryKeys;
+import com.yupi.yurpc.server.tcp.VertxTcpServer;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * 链路追踪测试
+ *
+ * @author <a href="https://github.com/liyupi">程序员鱼皮</a>
+ * @learn <a href="https://codefather.cn">程序员鱼皮的编程宝典</a>
+ * @from <a href="https://yupi.icu">编程导航知识星球</a>
+ */
+public class TracerTest {
+
+    public interface TraceEchoService {
+
+        String echo(String message);
+
+        Map<String, String> attachments();
+
+        String traceparent();
+    }
+
+    public static class TraceEchoServiceImpl implements TraceEchoService {
+
+        @Override
+        public String echo(String message) {
+            // 服务端执行期间当前跨度为服务端跨度
+            Span span = Tracer.current();
+            return message + ":" + (span == null || !span.isRecording() ? "none" : span.getKind().getText());
+        }
+
+        @Override
+        public Map<String, String> attachments() {
+            return new HashMap<>(RpcContext.getAttachments());
+        }
+
+        @Override
+        public String traceparent() {
+            // 服务端当前跨度的链路上下文，即向下游传播的内容
+            Span span = Tracer.current();
+            return span == null ? null : span.toTraceparent();
+        }
+    }
+
+    private static int port;
+
+    @BeforeClass
+    public static void startServer() throws Exception {
+        try (ServerSocket serverSocket = new ServerSocket(0)) {
+            port = serverSocket.getLocalPort();
+        }
+        RpcConfig rpcConfig = new RpcConfig();
+        rpcConfig.getRegistryConfig().setRegistry(RegistryKeys.MEMORY);
+        RpcApplication.init(rpcConfig);
+        LocalRegistry.register(TraceEchoService.class.getName(), TraceEchoServiceImpl.class);
+        ServiceMetaInfo serviceMetaInfo = new ServiceMetaInfo();
+        serviceMetaInfo.setServiceName(TraceEchoService.class.getName());
+        serviceMetaInfo.setServiceHost("localhost");
+        serviceMetaInfo.setServicePort(port);
+        RegistryFactory.getInstance(RegistryKeys.MEMORY).register(serviceMetaInfo);
+        new VertxTcpServer().doStart(port);
+        // 等待服务器监听
+        Thread.sleep(500);
+    }
+
+    @Before
+    public void reset() {
+        RpcApplication.getRpcConfig().setTraceExporter(SpanExporterKeys.MEMORY);
+        getExporter().reset();
+    }
+
+    @Test
+    public void clientAndServerSpans() throws Exception {
+        RpcApplication.getRpcConfig().setTraceSampleRatio(1);
+        TraceEchoService traceEchoService = ServiceProxyFactory.getProxy(TraceEchoService.class);
+        Assert.assertEquals("a:server", traceEchoService.echo("a"));
+
+        // 服务端跨度在响应写出后结束，可能晚于消费端收到响应
+        List<Span> spans = getExporter().getFinishedSpans();
+        for (int i = 0; i < 50 && spans.size() < 2; i++) {
+            Thread.sleep(20);
+            spans = getExporter().getFinishedSpans();
+        }
+        Span serverSpan = findSpan(spans, SpanKindEnum.SERVER);
+        Span clientSpan = findSpan(spans, SpanKindEnum.CLIENT);
+        // 链路上下文经过协议消息头传给服务端
+        Assert.assertEquals(clientSpan.getTraceId(), serverSpan.getTraceId());
+        Assert.assertEquals(clientSpan.getSpanId(), serverSpan.getParentSpanId());
+        Assert.assertNull(clientSpan.getParentSpanId());
+        Assert.assertEquals(TraceEchoService.class.getName() + "/echo", clientSpan.getName());
+        Assert.assertEquals(32, clientSpan.getTraceId().length());
+        Assert.assertEquals(16, clientSpan.getSpanId().length());
+        Assert.assertFalse(clientSpan.isError());
+
+        Assert.assertEquals(Arrays.asList(TraceEventKeys.DISCOVERY, TraceEventKeys.LOAD_BALANCE,
+                TraceEventKeys.REQUEST_ENCODED, TraceEventKeys.RESPONSE_RECEIVED, TraceEventKeys.RESPONSE_DECODED),
+                eventNames(clientSpan));
+        Assert.assertEquals(Arrays.asList(TraceEventKeys.REQUEST_DECODED, TraceEventKeys.EXECUTION_START,
+                TraceEventKeys.EXECUTION_END), eventNames(serverSpan));
+        Assert.assertTrue(clientSpan.getStartEpochNanos() <= serverSpan.getStartEpochNanos());
+    }
+
+    @Test
+    public void traceContextNotInRpcContext() {
+        RpcApplication.getRpcConfig().setTraceSampleRatio(1);
+        TraceEchoService traceEchoService = ServiceProxyFactory.getProxy(TraceEchoService.class);
+        RpcContext.setAttachment("tenant", "t1");
+        try {
+            // 服务端上下文中只有业务附件，链路上下文不参与响应缓存和请求合并的键
+            Map<String, String> attachments = traceEchoService.attachments();
+            Assert.assertEquals(Collections.singletonMap("tenant", "t1"), attachments);
+        } finally {
+            RpcContext.clearAttachments();
+        }
+        Map<String, String> attachments = new HashMap<>();
+        attachments.put(Tracer.TRACEPARENT, "00-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-01");
+        Assert.assertTrue(Tracer.withoutTraceContext(attachments).isEmpty());
+        Assert.assertSame(Collections.emptyMap(), Tracer.withoutTraceContext(Collections.emptyMap()));
+    }
+
+    @Test
+    public void notSampled() throws Exception {
+        RpcApplication.getRpcConfig().setTraceSampleRatio(0);
+        // 不采样的跨度不记录，但以不采样标记传播
+        Span clientSpan = Tracer.startClientSpan("service", "method");
+        Assert.assertFalse(clientSpan.isRecording());
+        Assert.assertTrue(clientSpan.toTraceparent().endsWith("-00"));
+        clientSpan.addEvent(TraceEventKeys.DISCOVERY);
+        Assert.assertTrue(clientSpan.getEvents().isEmpty());
+        Assert.assertFalse(Tracer.startServerSpan("service", "method", null, Tracer.nowEpochNanos()).isRecording());
+        // 上游已采样时不受本地采样率影响
+        String traceparent = "00-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-00";
+        Span span = Tracer.startServerSpan("service", "method", traceparent.substring(0, 53) + "01",
+                Tracer.nowEpochNanos());
+        Assert.assertTrue(span.isRecording());
+        Assert.assertEquals("0af7651916cd43dd8448eb211c80319c", span.getTraceId());
+        Assert.assertEquals("b7ad6b7169203331", span.getParentSpanId());
+
+        // 上游未采样时即使本地采样率为 1 也不开始新链路，沿用上游的链路 ID 继续传播
+        RpcApplication.getRpcConfig().setTraceSampleRatio(1);
+        Span unsampledSpan = Tracer.startServerSpan("service", "method", traceparent, Tracer.nowEpochNanos());
+        Assert.assertFalse(unsampledSpan.isRecording());
+        Assert.assertEquals("0af7651916cd43dd8448eb211c80319c", unsampledSpan.getTraceId());
+        TraceEchoService traceEchoService = ServiceProxyFactory.getProxy(TraceEchoService.class);
+        Tracer.setCurrent(unsampledSpan);
+        try {
+            Span childSpan = Tracer.startClientSpan("service", "method");
+            Assert.assertFalse(childSpan.isRecording());
+            Assert.assertEquals(unsampledSpan.getSpanId(), childSpan.getParentSpanId());
+            // 下游调用经过协议消息头传播不采样标记，服务端也跟随
+            Assert.assertEquals("a:none", traceEchoService.echo("a"));
+            String serverTraceparent = traceEchoService.traceparent();
+            Assert.assertEquals("0af7651916cd43dd8448eb211c80319c", serverTraceparent.substring(3, 35));
+            Assert.assertFalse(Tracer.isSampled(serverTraceparent));
+        } finally {
+            Tracer.setCurrent(null);
+        }
+        Thread.sleep(100);
+        Assert.assertTrue(getExporter().getFinishedSpans().isEmpty());
+    }
+
+    @Test
+    public void otlpFileExport() throws Exception {
+        File file = File.createTempFile("yu-rpc-spans", ".jsonl");
+        file.deleteOnExit();
+        RpcApplication.getRpcConfig().setTraceSampleRatio(1);
+        RpcApplication.getRpcConfig().setTraceExporter(SpanExporterKeys.OTLP_FILE);
+        RpcApplication.getRpcConfig().setTraceExportFile(file.getAbsolutePath());
+        Span span = Tracer.startClientSpan("service", "method");
+        span.addEvent(TraceEventKeys.DISCOVERY);
+        span.recordException(new RuntimeException("boom"));
+        span.end();
+        // 后台线程写入，等待写完
+        ((OtlpFileSpanExporter) SpanExporterFactory.getInstance(SpanExporterKeys.OTLP_FILE)).flush();
+
+        List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        Assert.assertEquals(1, lines.size());
+        JSONObject spanJson = JSONUtil.parseObj(lines.get(0)).getJSONArray("resourceSpans").getJSONObject(0)
+                .getJSONArray("scopeSpans").getJSONObject(0).getJSONArray("spans").getJSONObject(0);
+        Assert.assertEquals(span.getTraceId(), spanJson.getStr("traceId"));
+        Assert.assertEquals(SpanKindEnum.CLIENT.getValue(), (int) spanJson.getInt("kind"));
+        Assert.assertEquals(String.valueOf(span.getStartEpochNanos()), spanJson.getStr("startTimeUnixNano"));
+        Assert.assertEquals(2, spanJson.getJSONArray("events").size());
+        Assert.assertEquals(2, (int) spanJson.getJSONObject("status").getInt("code"));
+    }
+
+    private static InMemorySpanExporter getExporter() {
+        return (InMemorySpanExporter) SpanExporterFactory.getInstance(SpanExporterKeys.MEMORY);
+    }
+
+    private static Span findSpan(List<Span> spans, SpanKindEnum kind) {
+        for (Span span : spans) {
+            if (span.getKind() == kind) {
+                return span;
+            }
+        }
+        throw new AssertionError("没有 " + kind.getText() + " 跨度");
+    }
+
+    private static List<String> eventNames(Span span) {
+        return span.getEvents().stream().map(SpanEvent::getName).collect(Collectors.toList());
+    }
+}
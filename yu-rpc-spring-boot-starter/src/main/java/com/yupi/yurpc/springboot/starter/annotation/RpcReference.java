@@ -1,9 +1,6 @@
 package com.yupi.yurpc.springboot.starter.annotation;
 
 import com.yupi.yurpc.constant.RpcConstant;
-import com.yupi.yurpc.fault.retry.RetryStrategyKeys;
-import com.yupi.yurpc.fault.tolerant.TolerantStrategyKeys;
-import com.yupi.yurpc.loadbalancer.LoadBalancerKeys;
 
 import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
@@ -32,24 +29,39 @@ public @interface RpcReference {
     String serviceVersion() default RpcConstant.DEFAULT_SERVICE_VERSION;
 
     /**
-     * 负载均衡器
+     * 负载均衡器（为空则使用全局配置）
      */
-    String loadBalancer() default LoadBalancerKeys.ROUND_ROBIN;
+    String loadBalancer() default "";
 
     /**
-     * 重试策略
+     * 重试策略（为空则使用全局配置）
      */
-    String retryStrategy() default RetryStrategyKeys.NO;
+    String retryStrategy() default "";
 
     /**
-     * 容错策略
+     * 容错策略（为空则使用全局配置）
      */
-    String tolerantStrategy() default TolerantStrategyKeys.FAIL_FAST;
+    String tolerantStrategy() default "";
 
     /**
-     * 模拟调用
+     * 模拟调用（全局开启时也会生效）
      */
     boolean mock() default false;
 
-  
+    /**
+     * 直连地址，不为空时绕过注册中心直接调用
+     * 格式为 host:port,host:port 或 file:/path/to/providers（文件修改后自动重新加载）
+     */
+    String directUrl() default "";
+
+    /**
+     * 需要合并相同参数并发调用的方法名（也可以在接口方法上标注 @RpcCoalesce）
+     */
+    String[] coalesceMethods() default {};
+
+    /**
+     * 调用优先级：interactive、normal、batch（为空则为 normal，也可以在接口方法上标注 @RpcPriority）
+     */
+    String priority() default "";
+
 }
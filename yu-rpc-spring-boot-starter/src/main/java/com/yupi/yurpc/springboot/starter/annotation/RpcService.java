@@ -1,5 +1,6 @@
 package com.yupi.yurpc.springboot.starter.annotation;
 
+import com.yupi.yurpc.annotation.RpcBulkhead;
 import com.yupi.yurpc.constant.RpcConstant;
 import org.springframework.stereotype.Component;
 
@@ -29,4 +30,19 @@ public @interface RpcService {
      * 版本
      */
     String serviceVersion() default RpcConstant.DEFAULT_SERVICE_VERSION;
+
+    /**
+     * 权重（小于等于 0 时使用全局配置 rpc.serviceWeight）
+     */
+    int weight() default 0;
+
+    /**
+     * 预热时长，毫秒（小于 0 时使用全局配置 rpc.serviceWarmup）
+     */
+    long warmup() default -1;
+
+    /**
+     * 舱壁隔离（最多一个，为空时不隔离；全局配置 rpc.bulkheads 和方法上的 @RpcBulkhead 优先）
+     */
+    RpcBulkhead[] bulkhead() default {};
 }
@@ -1,5 +1,6 @@
 package com.yupi.yurpc.springboot.starter.bootstrap;
 
+import com.yupi.yurpc.config.ReferenceConfig;
 import com.yupi.yurpc.proxy.ServiceProxyFactory;
 import com.yupi.yurpc.springboot.starter.annotation.RpcReference;
 import lombok.extern.slf4j.Slf4j;
@@ -7,6 +8,8 @@ import org.springframework.beans.BeansException;
 import org.springframework.beans.factory.config.BeanPostProcessor;
 
 import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.HashSet;
 
 /**
  * Rpc 服务消费者启动
@@ -44,7 +47,7 @@ public class RpcConsumerBootstrap implements BeanPostProcessor {
 
                 // 创建服务代理
                 try {
-                    proxyObject = ServiceProxyFactory.getProxy(interfaceClass);
+                    proxyObject = ServiceProxyFactory.getProxy(interfaceClass, buildReferenceConfig(rpcReference));
                     field.set(bean, proxyObject);
                     field.setAccessible(false);
                 } catch (IllegalAccessException e) {
@@ -55,4 +58,23 @@ public class RpcConsumerBootstrap implements BeanPostProcessor {
         return BeanPostProcessor.super.postProcessAfterInitialization(bean, beanName);
     }
 
+    /**
+     * 根据注解构造服务引用配置，未指定的设置继承全局配置
+     *
+     * @param rpcReference
+     * @return
+     */
+    private ReferenceConfig buildReferenceConfig(RpcReference rpcReference) {
+        ReferenceConfig referenceConfig = new ReferenceConfig();
+        referenceConfig.setServiceVersion(rpcReference.serviceVersion());
+        referenceConfig.setLoadBalancer(rpcReference.loadBalancer());
+        referenceConfig.setRetryStrategy(rpcReference.retryStrategy());
+        referenceConfig.setTolerantStrategy(rpcReference.tolerantStrategy());
+        referenceConfig.setMock(rpcReference.mock());
+        referenceConfig.setDirectUrl(rpcReference.directUrl());
+        referenceConfig.setCoalesceMethods(new HashSet<>(Arrays.asList(rpcReference.coalesceMethods())));
+        referenceConfig.setPriority(rpcReference.priority());
+        return referenceConfig;
+    }
+
 }
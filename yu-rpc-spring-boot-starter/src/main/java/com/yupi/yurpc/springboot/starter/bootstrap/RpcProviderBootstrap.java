@@ -1,12 +1,14 @@
 package com.yupi.yurpc.springboot.starter.bootstrap;
 
 import com.yupi.yurpc.RpcApplication;
+import com.yupi.yurpc.config.BulkheadConfig;
 import com.yupi.yurpc.config.RegistryConfig;
 import com.yupi.yurpc.config.RpcConfig;
 import com.yupi.yurpc.model.ServiceMetaInfo;
 import com.yupi.yurpc.registry.LocalRegistry;
 import com.yupi.yurpc.registry.Registry;
 import com.yupi.yurpc.registry.RegistryFactory;
+import com.yupi.yurpc.server.bulkhead.Bulkhead;
 import com.yupi.yurpc.springboot.starter.annotation.RpcService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeansException;
@@ -46,7 +48,10 @@ public class RpcProviderBootstrap implements BeanPostProcessor {
             String serviceVersion = rpcService.serviceVersion();
             // 2. 注册服务
             // 本地注册
-            LocalRegistry.register(serviceName, beanClass);
+            LocalRegistry.register(serviceName, beanClass, bean);
+            if (rpcService.bulkhead().length > 0) {
+                Bulkhead.register(serviceName, BulkheadConfig.of(rpcService.bulkhead()[0]));
+            }
 
             // 全局配置
             final RpcConfig rpcConfig = RpcApplication.getRpcConfig();
@@ -58,6 +63,11 @@ public class RpcProviderBootstrap implements BeanPostProcessor {
             serviceMetaInfo.setServiceVersion(serviceVersion);
             serviceMetaInfo.setServiceHost(rpcConfig.getServerHost());
             serviceMetaInfo.setServicePort(rpcConfig.getServerPort());
+            serviceMetaInfo.setWeight(rpcService.weight() > 0 ? rpcService.weight() : rpcConfig.getServiceWeight());
+            serviceMetaInfo.setWarmup(rpcService.warmup() >= 0 ? rpcService.warmup() : rpcConfig.getServiceWarmup());
+            serviceMetaInfo.setRegisterTime(System.currentTimeMillis());
+            serviceMetaInfo.setZone(rpcConfig.getZone());
+            serviceMetaInfo.setRegion(rpcConfig.getRegion());
             try {
                 registry.register(serviceMetaInfo);
             } catch (Exception e) {